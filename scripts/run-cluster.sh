@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# 한 대에서 채팅 서버 노드 N개를 띄운다 (기본 3개, 노드 i: 채팅 900i / 웹 808i / 링크 910i, 0부터).
+#
+#   scripts/run-cluster.sh [노드 수]
+#
+# 데이터는 server/data/cluster/n<i>/ 에 노드별로, 로그는 server/build/cluster/n<i>.log.
+# 클라이언트: -De2ee.servers=127.0.0.1:9000,127.0.0.1:9001,... (앞에서부터 붙는 곳으로)
+# 노드 비우기: curl -X POST http://127.0.0.1:8080/api/cluster/drain
+# 노드끼리 나눠 갖는 비밀은 CHAT_CLUSTER_SECRET (없으면 이번 실행에서 쓸 값을 새로 뽑는다).
+# Ctrl+C 하면 모든 노드를 내린다.
+set -euo pipefail
+
+N=${1:-3}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+cd "$ROOT/server"
+
+./gradlew -q bootJar
+JAR=$(ls build/libs/*.jar | grep -v plain | head -n 1)
+mkdir -p build/cluster
+SECRET=${CHAT_CLUSTER_SECRET:-$(head -c 32 /dev/urandom | base64)}
+
+pids=()
+trap 'kill "${pids[@]}" 2>/dev/null; wait' INT TERM EXIT
+
+for ((i = 0; i < N; i++)); do
+    peers=""
+    for ((j = 0; j < N; j++)); do
+        [[ $j -eq $i ]] && continue
+        peers+="${peers:+,}n$j@127.0.0.1:$((9100 + j))"
+    done
+
+    java -jar "$JAR" \
+        --server.port=$((8080 + i)) \
+        --chat.tcp.port=$((9000 + i)) \
+        --chat.data-dir="data/cluster/n$i" \
+        --chat.cluster.enabled=true \
+        --chat.cluster.node-id="n$i" \
+        --chat.cluster.port=$((9100 + i)) \
+        --chat.cluster.peers="$peers" \
+        --chat.cluster.secret="$SECRET" \
+        > "build/cluster/n$i.log" 2>&1 &
+    pids+=($!)
+    echo "n$i: 채팅 $((9000 + i)), 웹 $((8080 + i)), 링크 $((9100 + i)) (pid $!, 로그 server/build/cluster/n$i.log)"
+done
+
+wait
@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# 한 대에서 채팅 서버를 부하 테스트용으로 띄우고 부하 생성기(src/loadgen)를 돌린 뒤 서버를 내린다.
+#
+#   scripts/run-loadgen.sh -Pload.clients=10000 -Pload.rate=5000 -Pload.mix=mixed -Pload.duration=60
+#
+# 서버: 채팅 19000 / 웹 18080, 데이터는 매번 새로 server/build/loadgen/data, 로그는 server/build/loadgen/server.log.
+# 가입 해시(PBKDF2) 반복 횟수를 1000으로 낮춘다 (운영 값이면 가입 램프만 수 분 걸린다).
+# 로그인 비용까지 재려면 KDF_ITERATIONS=210000 scripts/run-loadgen.sh -Pload.mix=storm ...
+# 클라이언트 수만 개면 먼저 ulimit -n 을 충분히 (예: 65536).
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+OUT="$ROOT/server/build/loadgen"
+
+cd "$ROOT/server"
+./gradlew -q bootJar
+JAR=$(ls build/libs/*.jar | grep -v plain | head -n 1)
+rm -rf "$OUT" && mkdir -p "$OUT"
+
+java -jar "$JAR" \
+    --server.port=18080 \
+    --chat.tcp.port=19000 \
+    --chat.data-dir="$OUT/data" \
+    --chat.auth.kdf-iterations="${KDF_ITERATIONS:-1000}" \
+    --chat.log.levels.session=warn \
+    --chat.log.levels.conn=warn \
+    --chat.log.levels.offline=warn \
+    > "$OUT/server.log" 2>&1 &
+server=$!
+trap 'kill $server 2>/dev/null; wait $server 2>/dev/null' INT TERM EXIT
+
+until grep -q "started on port" "$OUT/server.log"; do
+    kill -0 $server 2>/dev/null || { cat "$OUT/server.log"; exit 1; }
+    sleep 1
+done
+
+cd "$ROOT"
+./gradlew -q loadgen -Pload.servers=127.0.0.1:19000 "$@"
@@ -0,0 +1,92 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.cluster.NodeLink;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 노드 사이 링크(NodeLink) 처리량: 프레임 1024개를 큐에 넣고 받는 쪽(루프백 소켓)이 다 읽을 때까지, 프레임당.
+ *
+ *   batchFrames = 1  : 프레임마다 flush (쓰기 시스템 콜 하나씩)
+ *   batchFrames = 64 : 큐에 쌓인 것을 최대 64개씩 이어 쓰고 flush 한 번
+ *
+ * 받는 쪽은 길이만 보고 건너뛰므로 ClusterNode의 처리 비용은 들어가지 않는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterLinkBenchmark {
+
+    private static final int FRAMES = 1024;
+
+    @Param({"1", "64"})
+    public int batchFrames;
+
+    @Param({"128", "4096"})
+    public int frameBytes;
+
+    private ServerSocket server;
+    private NodeLink link;
+    private byte[] frame;
+    private final AtomicLong received = new AtomicLong();
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new ServerSocket(0);
+        Thread sink = new Thread(this::sink, "bench-sink");
+        sink.setDaemon(true);
+        sink.start();
+
+        frame = new byte[frameBytes];
+        int len = frameBytes - 4;
+        frame[0] = (byte) (len >>> 24);
+        frame[1] = (byte) (len >>> 16);
+        frame[2] = (byte) (len >>> 8);
+        frame[3] = (byte) len;
+
+        link = new NodeLink("bench", "127.0.0.1", server.getLocalPort(), 65536, batchFrames, List::of);
+        link.start();
+        while (!link.isUp()) Thread.sleep(10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        link.stop();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long offerAndDrain() {
+        for (int i = 0; i < FRAMES; i++) {
+            while (!link.offer(frame)) Thread.onSpinWait();
+        }
+        sent += FRAMES;
+        while (received.get() < sent) Thread.onSpinWait();
+        return sent;
+    }
+
+    private void sink() {
+        try (Socket s = server.accept();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024))) {
+            while (true) {
+                int len = in.readInt();
+                in.skipNBytes(len);
+                received.incrementAndGet();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON 줄 코덱 vs 바이너리 코덱: 메시지당 바이트 수와 인코딩/디코딩 비용.
+ *
+ * 메시지당 바이트 수는 Setup에서 한 번 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    // 평문 길이 (암호문 = 평문 + 16바이트 태그)
+    @Param({"32", "256", "4096"})
+    public int plainBytes;
+
+    private ChatMessage msg;
+
+    private byte[] jsonFrame;
+    private byte[] binaryFrame;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        byte[] nonce = new byte[12];
+        byte[] cipher = new byte[plainBytes + 16];
+        rnd.nextBytes(nonce);
+        rnd.nextBytes(cipher);
+
+        String body = "AES/GCM/NoPadding:" +
+                Base64.getEncoder().encodeToString(nonce) + ":" +
+                Base64.getEncoder().encodeToString(cipher);
+
+        msg = new ChatMessage(MessageType.CHAT, "alice#0001", "bob#0001", body, "2025-11-19T00:00:00");
+
+        byte[] json = FrameCodec.JSON.encode(msg);
+        // 디코더는 구분자를 뗀 본문을 받는다
+        jsonFrame = java.util.Arrays.copyOf(json, json.length - 1);
+
+        byte[] bin = FrameCodec.BINARY.encode(msg);
+        int prefix = bin.length - binaryBody(bin);
+        binaryFrame = java.util.Arrays.copyOfRange(bin, prefix, bin.length);
+
+        System.out.printf("%n[bytes/message] plain=%d json=%d binary=%d (%.1f%%)%n",
+                plainBytes, json.length, bin.length, 100.0 * bin.length / json.length);
+    }
+
+    // varint 접두사를 뺀 본문 길이
+    private static int binaryBody(byte[] frame) {
+        int len = 0;
+        for (int i = 0, shift = 0; ; i++, shift += 7) {
+            len |= (frame[i] & 0x7F) << shift;
+            if ((frame[i] & 0x80) == 0) return len;
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return FrameCodec.JSON.encode(msg);
+    }
+
+    @Benchmark
+    public ChatMessage jsonDecode() {
+        return FrameCodec.JSON.decode(jsonFrame);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return FrameCodec.BINARY.encode(msg);
+    }
+
+    @Benchmark
+    public ChatMessage binaryDecode() {
+        return FrameCodec.BINARY.decode(binaryFrame);
+    }
+}
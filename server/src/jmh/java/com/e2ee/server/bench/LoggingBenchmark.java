@@ -0,0 +1,73 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+import com.e2ee.server.log.LogLevel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 릴레이 스레드가 CHAT 한 건을 남기는 비용.
+ *
+ *   println   예전 방식: 문자열을 만들어 PrintStream(잠금 + 인코딩)에 바로 쓰기
+ *   event     EventLog: 링 칸 하나 잡고 참조만 채움 (줄 만들기와 쓰기는 백그라운드 스레드)
+ *   sampled   raw처럼 1000건 중 1건만 남기는 분류
+ *   disabled  수준이 꺼진 분류 (설정 배열 확인뿐)
+ *
+ * 출력은 버리는 스트림이라 콘솔 속도는 빠져 있다 (실제 터미널이면 println은 훨씬 느려진다).
+ * 쓰는 스레드가 못 따라가면 event는 버리는 경로가 섞인다 → 끝날 때 dropped 수를 찍는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final PrintStream NULL = new PrintStream(OutputStream.nullOutputStream(), true);
+
+    private EventLog log;
+    private String sender = "alice";
+    private String receiver = "bob";
+    private int bytes = 180;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        log = new EventLog(EventLog.DEFAULT_CAPACITY, NULL);
+        log.setSampleEvery(LogCategory.RAW, 1000);
+        log.setLevel(LogCategory.KEY, LogLevel.OFF);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        log.awaitDrained(1000);
+        System.out.println("written=" + log.getWritten() + " dropped=" + log.getDropped());
+    }
+
+    @Benchmark
+    public void println() {
+        NULL.println("[서버][CHAT] " + sender + " -> " + receiver + " (" + bytes + " bytes)");
+    }
+
+    @Benchmark
+    public void event() {
+        log.log(LogLevel.INFO, LogCategory.RELAY, "chat", 3, "from", sender, "to", receiver, "bytes", bytes,
+                null, null);
+    }
+
+    @Benchmark
+    public void sampled() {
+        log.log(LogLevel.INFO, LogCategory.RAW, "frame", 3, "from", sender, "to", receiver, "bytes", bytes,
+                null, null);
+    }
+
+    @Benchmark
+    public void disabled() {
+        log.log(LogLevel.INFO, LogCategory.KEY, "key", 2, "owner", receiver, "to", sender, null, null,
+                null, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.FrameHeader;
+import com.e2ee.server.protocol.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CHAT 한 건을 릴레이할 때 서버가 하는 일:
+ *   full = 전체 decode → 다시 encode (예전 방식)
+ *   fast = 헤더(type/sender/receiver)만 읽고 받은 바이트 그대로 (relay-fast-path)
+ *
+ * 할당량 비교는 -prof gc 로: ./gradlew jmh -Pjmh.includes=Relay -Pjmh.args="-prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelayBenchmark {
+
+    @Param({"32", "4096"})
+    public int plainBytes;
+
+    @Param({"json", "binary"})
+    public String codecName;
+
+    private FrameCodec codec;
+    private byte[] wire;
+    private int off;
+    private int len;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        byte[] nonce = new byte[12];
+        byte[] cipher = new byte[plainBytes + 16];
+        rnd.nextBytes(nonce);
+        rnd.nextBytes(cipher);
+
+        String body = "AES/GCM/NoPadding:" +
+                Base64.getEncoder().encodeToString(nonce) + ":" +
+                Base64.getEncoder().encodeToString(cipher);
+        ChatMessage msg = new ChatMessage(MessageType.CHAT, "alice#0001", "bob#0001", body, "2025-11-19T00:00:00");
+
+        codec = "binary".equals(codecName) ? FrameCodec.BINARY : FrameCodec.JSON;
+        wire = codec.encode(msg);
+
+        if (codec == FrameCodec.BINARY) {
+            off = 0;
+            while ((wire[off++] & 0x80) != 0) { }
+            len = wire.length - off;
+        } else {
+            off = 0;
+            len = wire.length - 1;
+        }
+    }
+
+    @Benchmark
+    public byte[] full() {
+        ChatMessage m = codec.decode(wire, off, len);
+        return codec.encode(m);
+    }
+
+    @Benchmark
+    public byte[] fast() {
+        FrameHeader h = codec.readHeader(wire, off, len);
+        return h.getType() == MessageType.CHAT ? wire : null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.HistoryPage;
+import com.e2ee.server.store.HistoryQuery;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.UserStore;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 저장소 쓰기 비용이 이미 쌓인 양에 따라 어떻게 변하는지.
+ *
+ *   historyAdd : HistoryStore.add (기록 existing건이 있는 상태에서 한 건 추가)
+ *   userAdd    : UserStore.addUser (회원 existing명이 있는 상태에서 한 명 추가)
+ *   historyQuery : 두 사람 대화 최신 50건 (기록 양과 상관없이 O(log n + 50) 이어야 함)
+ *
+ * 측정 중에도 계속 쌓이므로 existing은 "시작 시점" 크기다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    public int existing;
+
+    private Path dir;
+    private HistoryStore history;
+    private UserStore users;
+
+    private ChatMessage msg;
+    private HistoryQuery lastPage;
+    private String publicKey;
+    private long nextUser;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("store-bench");
+
+        msg = new ChatMessage(MessageType.CHAT, "alice#0001", "bob#0001",
+                "AES/GCM/NoPadding:AAAAAAAAAAAAAAAA:" + "B".repeat(200), "2025-11-19T00:00:00");
+        publicKey = "MCowBQYDK2VuAyEA" + "C".repeat(44);
+
+        history = new HistoryStore(dir,
+                HistoryStore.DEFAULT_SEGMENT_BYTES,
+                HistoryStore.DEFAULT_FSYNC_EVERY_RECORDS,
+                HistoryStore.DEFAULT_FSYNC_INTERVAL_MILLIS);
+        for (int i = 0; i < existing; i++) {
+            history.add(msg);
+        }
+        lastPage = new HistoryQuery("bob#0001", "alice#0001");
+
+        // addUser로 채우면 준비만 O(n^2)이라 파일을 직접 만들어서 로드시킨다
+        Map<String, UserStore.UserRecord> preload = new LinkedHashMap<>();
+        for (; nextUser < existing; nextUser++) {
+            String id = "user" + nextUser;
+            preload.put(id, new UserStore.UserRecord(id, "pw", publicKey));
+        }
+        Path userFile = dir.resolve("users.json");
+        Files.writeString(userFile, new Gson().toJson(preload));
+        // 비밀번호 해시 비용이 아니라 저장 비용을 보려고 반복 1회
+        users = new UserStore(userFile.toFile(), new PasswordHasher(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        history.close();
+        users.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void historyAdd() {
+        history.add(msg);
+    }
+
+    @Benchmark
+    public HistoryPage historyQuery() {
+        return history.query(lastPage);
+    }
+
+    @Benchmark
+    public void userAdd() {
+        users.addUser("user" + (nextUser++), "pw", publicKey);
+    }
+}
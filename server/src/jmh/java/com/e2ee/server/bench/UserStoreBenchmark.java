@@ -0,0 +1,145 @@
+package com.e2ee.server.bench;
+
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.UserStore;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * UserStore 스냅샷 + 저널.
+ *
+ *   signup  : 회원 existing명이 있는 상태에서 한 명 추가 (저널 한 건, 회원 수와 상관없이 같아야 함)
+ *             측정 중 저널이 차면 백그라운드 스냅샷도 같이 돈다.
+ *   startup : 회원 users명을 다시 읽는 시간
+ *             layout=snapshot → 전부 users.json에 있음, journal → 전부 저널에 있음 (스냅샷 전에 죽은 경우)
+ *
+ * 비밀번호 해시 비용이 아니라 저장 비용을 보려고 PBKDF2 반복은 1회.
+ */
+@Fork(1)
+public class UserStoreBenchmark {
+
+    private static final String PUBLIC_KEY = "MCowBQYDK2VuAyEA" + "C".repeat(44);
+
+    @State(Scope.Benchmark)
+    public static class Signup {
+
+        @Param({"0", "100000", "1000000"})
+        public int existing;
+
+        Path dir;
+        UserStore users;
+        long next;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("user-bench");
+            File file = dir.resolve("users.json").toFile();
+            next = writeSnapshot(file, existing);
+            users = new UserStore(file, new PasswordHasher(1));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            users.close();
+            deleteDir(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Startup {
+
+        @Param({"10000", "100000", "1000000"})
+        public int users;
+
+        @Param({"snapshot", "journal"})
+        public String layout;
+
+        Path dir;
+        File file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("user-bench");
+            file = dir.resolve("users.json").toFile();
+
+            if (layout.equals("snapshot")) {
+                writeSnapshot(file, users);
+            } else {
+                try (UserStore s = open(file)) {
+                    for (int i = 0; i < users; i++) s.addUser("user" + i, "pw", PUBLIC_KEY);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteDir(dir);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 3, time = 1)
+    public boolean signup(Signup s) {
+        return s.users.addUser("user" + (s.next++), "pw", PUBLIC_KEY);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int startup(Startup s) {
+        try (UserStore store = open(s.file)) {
+            return store.size();
+        }
+    }
+
+    // 시작할 때 스냅샷을 새로 쓰지 않게 (읽는 시간만 보려고) 한도를 없앤 저장소
+    private static UserStore open(File file) {
+        return new UserStore(file, new PasswordHasher(1), Integer.MAX_VALUE,
+                HistoryStore.DEFAULT_SEGMENT_BYTES, 0, 0);
+    }
+
+    // addUser로 채우면 준비가 너무 오래 걸려서 스냅샷 파일을 직접 만든다
+    private static long writeSnapshot(File file, int n) throws IOException {
+        String hash = new PasswordHasher(1).hash("pw");
+        Map<String, UserStore.UserRecord> preload = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            String id = "user" + i;
+            preload.put(id, new UserStore.UserRecord(id, hash, PUBLIC_KEY));
+        }
+        try (Writer w = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            new Gson().toJson(preload, w);
+        }
+        return n;
+    }
+
+    private static void deleteDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
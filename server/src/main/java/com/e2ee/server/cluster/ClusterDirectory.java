@@ -0,0 +1,79 @@
+package com.e2ee.server.cluster;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 다른 노드에 접속해 있는 사용자 위치 (user → 노드들).
+ *
+ * 이 노드에 접속한 사용자는 SessionRegistry에 있고, 여기에는 다른 노드가 링크로 알려 준 것만 둔다.
+ * 그 노드의 링크가 끊기면(죽었거나 네트워크) 그 노드 몫은 통째로 지운다 → 그 사이 메시지는 받은편지함으로.
+ *
+ * SessionRegistry처럼 사용자별 배열을 통째로 바꿔 끼우므로 라우팅(조회)은 잠금 없이 스냅샷을 본다.
+ */
+public class ClusterDirectory {
+
+    private static final String[] NONE = new String[0];
+
+    private final Map<String, String[]> byUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byNode = new ConcurrentHashMap<>();
+
+    public void online(String user, String node) {
+        byNode.computeIfAbsent(node, k -> ConcurrentHashMap.newKeySet()).add(user);
+        byUser.compute(user, (k, arr) -> {
+            if (arr == null) return new String[]{node};
+            for (String n : arr) {
+                if (n.equals(node)) return arr;
+            }
+            String[] next = Arrays.copyOf(arr, arr.length + 1);
+            next[arr.length] = node;
+            return next;
+        });
+    }
+
+    public void offline(String user, String node) {
+        Set<String> users = byNode.get(node);
+        if (users != null) users.remove(user);
+        unlink(user, node);
+    }
+
+    // user가 접속해 있는 다른 노드들 (없으면 빈 배열)
+    public String[] nodesOf(String user) {
+        return byUser.getOrDefault(user, NONE);
+    }
+
+    // node 몫을 모두 지운다 → 지운 사용자 수
+    public int removeNode(String node) {
+        Set<String> users = byNode.remove(node);
+        if (users == null) return 0;
+        for (String user : users) {
+            unlink(user, node);
+        }
+        return users.size();
+    }
+
+    public int usersOn(String node) {
+        Set<String> users = byNode.get(node);
+        return users == null ? 0 : users.size();
+    }
+
+    // 다른 노드에 접속한 사용자 수
+    public int size() {
+        return byUser.size();
+    }
+
+    private void unlink(String user, String node) {
+        byUser.computeIfPresent(user, (k, arr) -> {
+            int i = Arrays.asList(arr).indexOf(node);
+            if (i < 0) return arr;
+            if (arr.length == 1) return null;
+
+            String[] next = new String[arr.length - 1];
+            System.arraycopy(arr, 0, next, 0, i);
+            System.arraycopy(arr, i + 1, next, i, arr.length - i - 1);
+            return next;
+        });
+    }
+}
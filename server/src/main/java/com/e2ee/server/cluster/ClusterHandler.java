@@ -0,0 +1,36 @@
+package com.e2ee.server.cluster;
+
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.UserStore;
+import com.e2ee.server.tcp.EncodedMessage;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 다른 노드에서 링크로 온 것을 이 노드에 적용하는 곳 (ChatTcpServer가 구현).
+ * 링크 읽기 스레드에서 불리므로 오래 막히면 안 된다.
+ */
+public interface ClusterHandler {
+
+    // 이 노드에 접속한 user의 기기들에게 (fileType이 있으면 파일 릴레이 규칙으로)
+    void deliverToUser(String user, EncodedMessage msg, MessageType fileType);
+
+    // 이 노드에 접속한 방 멤버들에게
+    void deliverToRoom(String room, EncodedMessage msg);
+
+    // 이 노드에 접속한 모두에게 (전체방)
+    void deliverToAll(EncodedMessage msg);
+
+    // 다른 노드에서 방에 들어오거나 나감 (멤버 목록만 맞춘다, 알림은 그 노드가 방으로 보냄)
+    void onMembership(String room, String user, boolean joined);
+
+    // 다른 노드에서 가입한 회원
+    void onUserAdded(UserStore.UserRecord record);
+
+    // user가 다른 노드(node)에 접속함 → 여기 쌓여 있던 오프라인 메시지를 그쪽으로 넘길 때
+    void onRemoteLogin(String user, String node);
+
+    // 링크가 (다시) 맺힐 때 상대에게 알려 줄 이 노드 상태: 접속한 사용자 → 들어가 있는 방들
+    Map<String, Collection<String>> localUsers();
+}
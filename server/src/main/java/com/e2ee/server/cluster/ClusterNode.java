@@ -0,0 +1,493 @@
+package com.e2ee.server.cluster;
+
+import com.e2ee.server.config.ChatServerProperties;
+import com.e2ee.server.crypto.CryptoPool;
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.UserStore;
+import com.e2ee.server.tcp.EncodedMessage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 여러 노드로 나눠 띄운 채팅 서버의 노드 하나 (chat.cluster.enabled=true 일 때).
+ *
+ * 노드마다 저장소(회원, 기록, 받은편지함)와 방 목록을 따로 들고, 다른 노드와는 링크로 이런 것을 주고받는다.
+ *   ONLINE / OFFLINE  : 이 노드에 사용자가 접속 / 마지막 기기가 나감 → 상대 ClusterDirectory
+ *   DELIVER           : user에게 보낼 프레임 (받은 본문 바이트 그대로, 파일이면 종류도)
+ *   ROOM / ALL        : 방 / 전체방 프레임 → 받는 노드가 자기 쪽 멤버에게 팬아웃
+ *   MEMBER            : 방 들어옴 / 나감 (방 멤버 목록은 모든 노드가 같이 갖는다)
+ *   USER              : 가입 (비밀번호 해시 그대로 → 어느 노드로든 로그인)
+ *
+ * 링크 프레임 = [int 길이][op 1바이트][필드들 (DataOutput: 문자열 writeUTF, 바이트는 int 길이 + 본문)]
+ *
+ * 링크를 받는 쪽은 붙자마자 랜덤 challenge 16바이트를 보내고, 붙은 쪽은 HELLO에
+ * HMAC-SHA256(chat.cluster.secret, challenge + HELLO 필드)를 담는다. 맞지 않으면 그 연결은 닫고,
+ * HELLO가 통과하기 전에는 다른 op(ONLINE, USER ...)를 하나도 받지 않는다.
+ * 링크 포트는 chat.cluster.bind-address에만 열린다 (기본 127.0.0.1).
+ *
+ * 노드 사이 연결은 방향마다 하나: 내가 상대에게 붙은 NodeLink로 보내고, 상대가 나에게 붙은 연결로 받는다.
+ * 받는 연결이 끊기면 그 노드는 죽은 것으로 보고 그 노드 사용자 위치를 지운다
+ * → 그 사용자들에게 가는 메시지는 보낸 쪽 노드의 받은편지함에 쌓이고, 다른 노드로 다시 접속하면 그쪽으로 넘긴다.
+ *
+ * 기록(HISTORY_REQ)은 노드마다 따로라 그 노드를 거쳐 간 메시지만 보인다.
+ */
+public final class ClusterNode {
+
+    static final byte HELLO = 1;
+    static final byte ONLINE = 2;
+    static final byte OFFLINE = 3;
+    static final byte DELIVER = 4;
+    static final byte ROOM = 5;
+    static final byte ALL = 6;
+    static final byte MEMBER = 7;
+    static final byte USER = 8;
+
+    private static final int MAX_LINK_FRAME = 16 * 1024 * 1024;
+    private static final long HANDOFF_TIMEOUT_MILLIS = 5000;
+    static final int CHALLENGE_BYTES = 16;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final MessageType[] TYPES = MessageType.values();
+
+    private final String nodeId;
+    private final int listenPort;
+    private final String bindAddress;
+    private final SecretKeySpec secret;
+    private final String advertiseHost;
+    private final int queueCapacity;
+    private final int batchFrames;
+    private final ClusterHandler handler;
+
+    private final ClusterDirectory directory = new ClusterDirectory();
+
+    // 내가 보내는 링크 (peer id → 링크)
+    private final Map<String, NodeLink> links = new ConcurrentHashMap<>();
+
+    // 상대가 나에게 붙은 연결 (peer id → 소켓) + 그 노드의 클라이언트 주소 (MOVED 안내용)
+    private final Map<String, Socket> inbound = new ConcurrentHashMap<>();
+    private final Map<String, String> clientAddresses = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private volatile ServerSocket server;
+    private volatile int clientPort;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    public ClusterNode(ChatServerProperties.Cluster props, ClusterHandler handler) {
+        this.nodeId = props.getNodeId();
+        this.listenPort = props.getPort();
+        this.bindAddress = props.getBindAddress();
+        String key = props.getSecret();
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("chat.cluster.secret을 정해야 합니다 (모든 노드가 같은 값)");
+        }
+        this.secret = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.advertiseHost = props.getAdvertiseHost();
+        this.queueCapacity = props.getLinkQueueCapacity();
+        this.batchFrames = props.getLinkBatchFrames();
+        this.handler = handler;
+
+        for (String peer : props.getPeers()) {
+            // "id@host:port"
+            int at = peer.indexOf('@');
+            int colon = peer.lastIndexOf(':');
+            if (at <= 0 || colon < at) throw new IllegalArgumentException("chat.cluster.peers 형식: id@host:port (" + peer + ")");
+            addPeer(peer.substring(0, at), peer.substring(at + 1, colon), Integer.parseInt(peer.substring(colon + 1)));
+        }
+    }
+
+    /**
+     * @param clientPort 이 노드의 채팅 포트 (다른 노드가 MOVED로 안내할 주소)
+     * @return 링크를 받는 실제 포트
+     */
+    public int start(int clientPort) throws IOException {
+        this.clientPort = clientPort;
+        running = true;
+        server = new ServerSocket(listenPort, 50, InetAddress.getByName(bindAddress));
+
+        Thread accept = new Thread(this::acceptLoop, "cluster-accept");
+        accept.setDaemon(true);
+        accept.start();
+        for (NodeLink link : links.values()) link.start();
+
+        EventLog.info(LogCategory.CLUSTER, "start", "node", nodeId,
+                "link_port", server.getLocalPort(), "peers", links.keySet());
+        return server.getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        for (NodeLink link : links.values()) link.stop();
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket s : inbound.values()) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // 다른 노드 추가 (설정의 peers, 테스트에서는 포트를 안 뒤에)
+    public void addPeer(String id, String host, int port) {
+        NodeLink link = new NodeLink(id, host, port, queueCapacity, batchFrames, this::greeting);
+        if (links.putIfAbsent(id, link) == null && running) link.start();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPort() {
+        return server == null ? -1 : server.getLocalPort();
+    }
+
+    public ClusterDirectory getDirectory() {
+        return directory;
+    }
+
+    // user가 접속해 있는 다른 노드들
+    public String[] nodesOf(String user) {
+        return directory.nodesOf(user);
+    }
+
+    // ======================= 알리기 =======================
+
+    public void userOnline(String user) {
+        broadcast(frame(ONLINE, 16, out -> out.writeUTF(user)));
+    }
+
+    public void userOffline(String user) {
+        broadcast(frame(OFFLINE, 16, out -> out.writeUTF(user)));
+    }
+
+    public void memberChanged(String room, String user, boolean joined) {
+        broadcast(memberFrame(room, user, joined));
+    }
+
+    public void userAdded(UserStore.UserRecord r) {
+        broadcast(frame(USER, 256, out -> {
+            out.writeUTF(r.id);
+            out.writeUTF(r.passwordHash == null ? "" : r.passwordHash);
+            out.writeUTF(r.publicKey == null ? "" : r.publicKey);
+        }));
+    }
+
+    // ======================= 전달 =======================
+
+    // user가 다른 노드에 있으면 그 노드들로 → 하나라도 보냈으면 true
+    public boolean forwardToUser(String user, EncodedMessage msg) {
+        String[] nodes = directory.nodesOf(user);
+        if (nodes.length == 0) return false;
+
+        byte[] f = deliverFrame(user, null, msg);
+        for (String node : nodes) send(node, f);
+        return true;
+    }
+
+    // 파일: OFFER/CHUNK는 한 노드에만 (받는 쪽 기기 하나), ACK는 모든 노드에
+    public boolean forwardFile(MessageType type, String user, EncodedMessage msg) {
+        String[] nodes = directory.nodesOf(user);
+        if (nodes.length == 0) return false;
+
+        byte[] f = deliverFrame(user, type, msg);
+        if (type == MessageType.FILE_ACK) {
+            for (String node : nodes) send(node, f);
+        } else {
+            send(nodes[0], f);
+        }
+        return true;
+    }
+
+    // 방 / 전체방: 모든 노드가 자기 쪽 멤버에게
+    public void forwardToRoom(String room, EncodedMessage msg) {
+        if (links.isEmpty()) return;
+        broadcast(frame(ROOM, 32 + msg.recordLength(), out -> {
+            out.writeUTF(room);
+            writeRecord(out, msg);
+        }));
+    }
+
+    public void forwardToAll(EncodedMessage msg) {
+        if (links.isEmpty()) return;
+        broadcast(frame(ALL, 8 + msg.recordLength(), out -> writeRecord(out, msg)));
+    }
+
+    // 오프라인 메시지를 user가 접속한 node로 넘긴다 (큐에 자리가 없으면 기다림, 링크가 끊겼으면 false)
+    public boolean handOff(String node, String user, byte[] record) throws InterruptedException {
+        NodeLink link = links.get(node);
+        if (link == null) return false;
+        byte[] f = frame(DELIVER, 32 + record.length, out -> {
+            out.writeUTF(user);
+            out.writeByte(0);
+            out.writeInt(record.length);
+            out.write(record);
+        });
+        if (!link.put(f, HANDOFF_TIMEOUT_MILLIS)) return false;
+        forwarded.increment();
+        return true;
+    }
+
+    // 살아 있는 다른 노드 하나의 클라이언트 주소 "host:port" (없으면 null) - 이 노드를 비울 때 안내
+    public String movedTarget() {
+        for (NodeLink link : links.values()) {
+            String addr = clientAddresses.get(link.getPeerId());
+            if (link.isUp() && inbound.containsKey(link.getPeerId()) && addr != null) return addr;
+        }
+        return null;
+    }
+
+    public Map<String, Object> metrics() {
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (NodeLink link : links.values()) {
+            Map<String, Object> m = link.metrics();
+            m.put("inbound", inbound.containsKey(link.getPeerId()));
+            m.put("users", directory.usersOn(link.getPeerId()));
+            peers.add(m);
+        }
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("node", nodeId);
+        m.put("linkPort", getPort());
+        m.put("remoteUsers", directory.size());
+        m.put("forwarded", forwarded.sum());
+        m.put("received", received.sum());
+        m.put("purgedUsers", purged.sum());
+        m.put("peers", peers);
+        return m;
+    }
+
+    // ======================= 받기 =======================
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                Thread.ofVirtual().name("cluster-in").start(() -> serve(s));
+            } catch (IOException e) {
+                if (running) EventLog.warn(LogCategory.CLUSTER, "accept_failed", "error", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        String node = null;
+        try (s; DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024))) {
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            CryptoPool.random().nextBytes(challenge);
+            OutputStream out = s.getOutputStream();
+            out.write(challenge);
+            out.flush();
+            s.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+
+            while (running) {
+                int len = in.readInt();
+                if (len <= 0 || len > MAX_LINK_FRAME) throw new IOException("링크 프레임 길이: " + len);
+                byte op = in.readByte();
+                if (node == null && op != HELLO) throw new IOException("HELLO 전에 op " + op);
+                received.increment();
+
+                switch (op) {
+                    case HELLO -> {
+                        if (node != null) throw new IOException("HELLO가 두 번");
+                        String id = in.readUTF();
+                        String host = in.readUTF();
+                        int port = in.readInt();
+                        byte[] mac = readBytes(in);
+                        if (!MessageDigest.isEqual(mac, helloMac(challenge, id, host, port))) {
+                            EventLog.warn(LogCategory.CLUSTER, "auth_failed",
+                                    "peer", s.getRemoteSocketAddress(), "node", id);
+                            return;
+                        }
+                        s.setSoTimeout(0);
+                        node = id;
+                        Socket old = inbound.put(node, s);
+                        if (old != null) old.close();
+                        clientAddresses.put(node, host + ":" + port);
+                        // 다시 붙은 노드는 지금 상태를 처음부터 다시 알려 준다
+                        purged.add(directory.removeNode(node));
+                        EventLog.info(LogCategory.CLUSTER, "peer_up", "node", node, "client", host + ":" + port);
+                    }
+                    case ONLINE -> {
+                        String user = in.readUTF();
+                        directory.online(user, node);
+                        handler.onRemoteLogin(user, node);
+                    }
+                    case OFFLINE -> directory.offline(in.readUTF(), node);
+                    case DELIVER -> {
+                        String user = in.readUTF();
+                        int type = in.readByte();
+                        handler.deliverToUser(user, EncodedMessage.fromRecord(readBytes(in)),
+                                type == 0 ? null : TYPES[type - 1]);
+                    }
+                    case ROOM -> {
+                        String room = in.readUTF();
+                        handler.deliverToRoom(room, EncodedMessage.fromRecord(readBytes(in)));
+                    }
+                    case ALL -> handler.deliverToAll(EncodedMessage.fromRecord(readBytes(in)));
+                    case MEMBER -> {
+                        String room = in.readUTF();
+                        String user = in.readUTF();
+                        handler.onMembership(room, user, in.readBoolean());
+                    }
+                    case USER -> {
+                        String id = in.readUTF();
+                        String hash = in.readUTF();
+                        String publicKey = in.readUTF();
+                        handler.onUserAdded(new UserStore.UserRecord(id,
+                                hash.isEmpty() ? null : hash, publicKey.isEmpty() ? null : publicKey));
+                    }
+                    default -> throw new IOException("알 수 없는 링크 op: " + op);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // 상대가 닫음 / 죽음
+        } catch (Exception e) {
+            EventLog.warn(LogCategory.CLUSTER, "link_error",
+                    "node", node == null ? s.getRemoteSocketAddress() : node, "error", e);
+        } finally {
+            if (node != null && inbound.remove(node, s)) {
+                int n = directory.removeNode(node);
+                purged.add(n);
+                EventLog.warn(LogCategory.CLUSTER, "peer_down", "node", node, "purged_users", n);
+            }
+        }
+    }
+
+    // ======================= 내부 =======================
+
+    // 링크가 (다시) 맺힐 때 먼저 보낼 것: HELLO(상대가 보낸 challenge에 대한 HMAC) + 이 노드에 접속한 사용자와 그 방들
+    private List<byte[]> greeting(byte[] challenge) {
+        List<byte[]> frames = new ArrayList<>();
+        byte[] mac = helloMac(challenge, nodeId, advertiseHost, clientPort);
+        frames.add(frame(HELLO, 64 + mac.length, out -> {
+            out.writeUTF(nodeId);
+            out.writeUTF(advertiseHost);
+            out.writeInt(clientPort);
+            out.writeInt(mac.length);
+            out.write(mac);
+        }));
+        for (Map.Entry<String, Collection<String>> e : handler.localUsers().entrySet()) {
+            String user = e.getKey();
+            frames.add(frame(ONLINE, 16, out -> out.writeUTF(user)));
+            for (String room : e.getValue()) {
+                frames.add(memberFrame(room, user, true));
+            }
+        }
+        return frames;
+    }
+
+    private void broadcast(byte[] f) {
+        for (NodeLink link : links.values()) {
+            if (link.offer(f)) forwarded.increment();
+        }
+    }
+
+    private void send(String node, byte[] f) {
+        NodeLink link = links.get(node);
+        if (link != null && link.offer(f)) forwarded.increment();
+    }
+
+    // HMAC-SHA256(secret, challenge + node + host + port)
+    private byte[] helloMac(byte[] challenge, String node, String host, int port) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.write(challenge);
+            out.writeUTF(node);
+            out.writeUTF(host);
+            out.writeInt(port);
+
+            Mac mac = CryptoPool.hmacSha256();
+            mac.init(secret);
+            return mac.doFinal(buf.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] deliverFrame(String user, MessageType fileType, EncodedMessage msg) {
+        return frame(DELIVER, 32 + msg.recordLength(), out -> {
+            out.writeUTF(user);
+            out.writeByte(fileType == null ? 0 : fileType.ordinal() + 1);
+            writeRecord(out, msg);
+        });
+    }
+
+    private static byte[] memberFrame(String room, String user, boolean joined) {
+        return frame(MEMBER, 32, out -> {
+            out.writeUTF(room);
+            out.writeUTF(user);
+            out.writeBoolean(joined);
+        });
+    }
+
+    private static void writeRecord(DataOutputStream out, EncodedMessage msg) throws IOException {
+        out.writeInt(msg.recordLength());
+        msg.writeRecord(out);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > MAX_LINK_FRAME) throw new IOException("링크 본문 길이: " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return b;
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // [int 길이][op][본문] (길이는 op부터)
+    private static byte[] frame(byte op, int sizeHint, Body body) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(sizeHint + 5);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeInt(0);
+            out.writeByte(op);
+            body.write(out);
+
+            byte[] f = buf.toByteArray();
+            int len = f.length - 4;
+            f[0] = (byte) (len >>> 24);
+            f[1] = (byte) (len >>> 16);
+            f[2] = (byte) (len >>> 8);
+            f[3] = (byte) len;
+            return f;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.e2ee.server.cluster;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 다른 노드 하나로 가는 링크 (보내기 전용, 받는 쪽은 상대 노드의 링크가 이쪽으로 붙는다).
+ *
+ * 라우팅 스레드는 프레임을 큐에 넣고 바로 돌아간다. 링크 스레드 하나가
+ *   - 큐에서 최대 batchFrames개를 한 번에 꺼내 버퍼에 이어 쓰고 flush 한 번 (묶어 쓰기)
+ *   - 상대의 응답을 기다리지 않고 다음 묶음을 바로 (파이프라인, TCP 순서만 믿는다)
+ * 연결이 끊기면 물러났다가(backoff) 다시 붙고, 붙을 때마다 상대의 challenge를 읽고
+ * 그 challenge로 만든 greeting(HMAC을 담은 HELLO + 이 노드 상태)부터 보낸다.
+ * 끊겨 있는 동안에도 큐에는 쌓이고, 가득 차면 새 프레임을 버리고 센다.
+ */
+public class NodeLink {
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final String peerId;
+    private final String host;
+    private final int port;
+    private final int batchFrames;
+    private final Function<byte[], List<byte[]>> greeting;
+
+    private final ArrayBlockingQueue<byte[]> queue;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile boolean up;
+    private volatile Socket socket;
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong connects = new AtomicLong();
+
+    public NodeLink(String peerId, String host, int port, int queueCapacity, int batchFrames,
+                    Function<byte[], List<byte[]>> greeting) {
+        this.peerId = peerId;
+        this.host = host;
+        this.port = port;
+        this.batchFrames = Math.max(1, batchFrames);
+        this.greeting = greeting;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "cluster-link-" + peerId);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        closeSocket();
+    }
+
+    // 큐에 넣기 (가득 차면 버림 → false)
+    public boolean offer(byte[] frame) {
+        if (queue.offer(frame)) return true;
+        dropped.increment();
+        return false;
+    }
+
+    // 버리면 안 되는 것 (오프라인 메시지 넘기기): 자리가 날 때까지 기다린다
+    public boolean put(byte[] frame, long timeoutMillis) throws InterruptedException {
+        if (!up) return false;
+        return queue.offer(frame, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public String getPeerId() {
+        return peerId;
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("peer", peerId);
+        m.put("address", host + ":" + port);
+        m.put("up", up);
+        m.put("queued", queue.size());
+        m.put("frames", frames.sum());
+        m.put("bytes", bytes.sum());
+        m.put("batches", batches.sum());
+        m.put("dropped", dropped.sum());
+        m.put("connects", connects.get());
+        return m;
+    }
+
+    // ---------------- 링크 스레드 ----------------
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        List<byte[]> batch = new ArrayList<>(batchFrames);
+
+        while (running) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                socket = s;
+
+                byte[] challenge = new byte[ClusterNode.CHALLENGE_BYTES];
+                s.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                new DataInputStream(s.getInputStream()).readFully(challenge);
+                s.setSoTimeout(0);
+
+                OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+                for (byte[] f : greeting.apply(challenge)) out.write(f);
+                out.flush();
+                up = true;
+                backoff = MIN_BACKOFF_MILLIS;
+                EventLog.info(LogCategory.CLUSTER, "link_up", "peer", peerId,
+                        "address", host + ":" + port, "connects", connects.incrementAndGet());
+
+                while (running) {
+                    byte[] first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) continue;
+
+                    batch.add(first);
+                    queue.drainTo(batch, batchFrames - 1);
+                    long n = 0;
+                    for (byte[] f : batch) {
+                        out.write(f);
+                        n += f.length;
+                    }
+                    out.flush();
+
+                    frames.add(batch.size());
+                    bytes.add(n);
+                    batches.increment();
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                // 쓰던 묶음은 버린다 (상대가 받았는지 모름, 받은편지함 경로는 받는 노드 쪽에서)
+                dropped.add(batch.size());
+                batch.clear();
+                if (up) EventLog.warn(LogCategory.CLUSTER, "link_down", "peer", peerId, "error", e.getMessage());
+            } finally {
+                up = false;
+                socket = null;
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    private void closeSocket() {
+        Socket s = socket;
+        if (s == null) return;
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.e2ee.server.config;
+
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.OfflineInbox;
+import com.e2ee.server.store.UserStore;
+import com.e2ee.server.tcp.ConnectionEngine;
+import com.e2ee.server.tcp.OutboundQueue;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * application.properties 의 chat.* 설정 묶음.
+ *
+ * 예)
+ *   chat.data-dir=data
+ *   chat.tcp.port=9000
+ *   chat.history.fsync-every-records=64
+ */
+@ConfigurationProperties(prefix = "chat")
+public class ChatServerProperties {
+
+    // users.json, history/ 등이 저장되는 디렉터리
+    private String dataDir = "data";
+
+    private final Tcp tcp = new Tcp();
+    private final History history = new History();
+    private final Offline offline = new Offline();
+    private final Rooms rooms = new Rooms();
+    private final Auth auth = new Auth();
+    private final Users users = new Users();
+    private final Keys keys = new Keys();
+    private final Files files = new Files();
+    private final Cluster cluster = new Cluster();
+    private final Log log = new Log();
+    private final Limits limits = new Limits();
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public Tcp getTcp() {
+        return tcp;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public Offline getOffline() {
+        return offline;
+    }
+
+    public Rooms getRooms() {
+        return rooms;
+    }
+
+    public Auth getAuth() {
+        return auth;
+    }
+
+    public Users getUsers() {
+        return users;
+    }
+
+    public Keys getKeys() {
+        return keys;
+    }
+
+    public Files getFiles() {
+        return files;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Log getLog() {
+        return log;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    // -------- TCP 서버 --------
+    public static class Tcp {
+        // 0이면 빈 포트를 아무거나 잡음 (테스트용)
+        private int port = 9000;
+
+        // 연결 엔진: thread / virtual / nio
+        private ConnectionEngine.Mode engine = ConnectionEngine.Mode.VIRTUAL;
+
+        // nio 엔진의 Selector 루프 개수 (0 이하 = 코어 수의 절반)
+        private int nioLoops = 0;
+
+        // 연결별 보낼 큐 크기 (프레임 개수)
+        private int outboundCapacity = 1024;
+
+        // 큐가 가득 찼을 때: drop_oldest / disconnect / spill
+        private OutboundQueue.OverflowPolicy overflowPolicy = OutboundQueue.OverflowPolicy.DROP_OLDEST;
+
+        // CHAT은 헤더만 읽고 받은 바이트 그대로 전달 (false = 매번 전체 decode/encode)
+        private boolean relayFastPath = true;
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public ConnectionEngine.Mode getEngine() {
+            return engine;
+        }
+
+        public void setEngine(ConnectionEngine.Mode engine) {
+            this.engine = engine;
+        }
+
+        public int getNioLoops() {
+            return nioLoops;
+        }
+
+        public void setNioLoops(int nioLoops) {
+            this.nioLoops = nioLoops;
+        }
+
+        public int getOutboundCapacity() {
+            return outboundCapacity;
+        }
+
+        public void setOutboundCapacity(int outboundCapacity) {
+            this.outboundCapacity = outboundCapacity;
+        }
+
+        public OutboundQueue.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OutboundQueue.OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public boolean isRelayFastPath() {
+            return relayFastPath;
+        }
+
+        public void setRelayFastPath(boolean relayFastPath) {
+            this.relayFastPath = relayFastPath;
+        }
+    }
+
+    // -------- 채팅 기록 로그 --------
+    public static class History {
+        // 세그먼트 파일 하나의 최대 크기
+        private long segmentBytes = HistoryStore.DEFAULT_SEGMENT_BYTES;
+
+        // N건마다 fsync (0 이하 = 개수 기준 fsync 끔)
+        private int fsyncEveryRecords = HistoryStore.DEFAULT_FSYNC_EVERY_RECORDS;
+
+        // T ms마다 fsync (0 이하 = 시간 기준 fsync 끔)
+        private long fsyncIntervalMillis = HistoryStore.DEFAULT_FSYNC_INTERVAL_MILLIS;
+
+        public long getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(long segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public int getFsyncEveryRecords() {
+            return fsyncEveryRecords;
+        }
+
+        public void setFsyncEveryRecords(int fsyncEveryRecords) {
+            this.fsyncEveryRecords = fsyncEveryRecords;
+        }
+
+        public long getFsyncIntervalMillis() {
+            return fsyncIntervalMillis;
+        }
+
+        public void setFsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+        }
+    }
+
+    // -------- 회원 저장소 (users.json 스냅샷 + 저널) --------
+    public static class Users {
+        // 저널이 이 건수를 넘으면 스냅샷을 새로 쓰고 저널을 비움
+        private int snapshotEvery = UserStore.DEFAULT_SNAPSHOT_EVERY;
+
+        public int getSnapshotEvery() {
+            return snapshotEvery;
+        }
+
+        public void setSnapshotEvery(int snapshotEvery) {
+            this.snapshotEvery = snapshotEvery;
+        }
+    }
+
+    // -------- 공개키 디렉터리 --------
+    public static class Keys {
+        // KEY_BATCH_REQ 한 번에 물을 수 있는 최대 인원
+        private int maxBatch = 500;
+
+        // 로그인 때 미리 보낼 최근 1:1 상대 수 (0 = 안 보냄)
+        private int prefetchMax = 200;
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        public void setMaxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        public int getPrefetchMax() {
+            return prefetchMax;
+        }
+
+        public void setPrefetchMax(int prefetchMax) {
+            this.prefetchMax = prefetchMax;
+        }
+    }
+
+    // -------- 파일 전송 릴레이 --------
+    public static class Files {
+        // FILE_CHUNK 프레임 하나의 최대 크기 (바이트, 넘으면 FILE_FAIL:TOO_LARGE)
+        private int maxChunkBytes = 256 * 1024;
+
+        // 받는 쪽 보낼 큐에 이만큼 쌓여 있으면 조각을 넘기지 않음 (FILE_FAIL:RECEIVER_BUSY)
+        private int maxQueuedFrames = 64;
+
+        public int getMaxChunkBytes() {
+            return maxChunkBytes;
+        }
+
+        public void setMaxChunkBytes(int maxChunkBytes) {
+            this.maxChunkBytes = maxChunkBytes;
+        }
+
+        public int getMaxQueuedFrames() {
+            return maxQueuedFrames;
+        }
+
+        public void setMaxQueuedFrames(int maxQueuedFrames) {
+            this.maxQueuedFrames = maxQueuedFrames;
+        }
+    }
+
+    // -------- 오프라인 받은편지함 --------
+    public static class Offline {
+        // 사용자당 최대 보관 건수 (넘치면 오래된 것부터 버림)
+        private int maxPerUser = OfflineInbox.DEFAULT_MAX_PER_USER;
+
+        // 한 묶음에 보낼 메시지 수 (묶음마다 클라이언트 ACK를 기다림)
+        private int batchSize = 100;
+
+        // 묶음 사이 최소 간격 (사용자당 초당 batchSize * 1000 / 간격 건 이하)
+        private long batchIntervalMillis = 50;
+
+        // 받은편지함을 흘려보내는 스레드 수
+        private int drainThreads = 2;
+
+        public int getMaxPerUser() {
+            return maxPerUser;
+        }
+
+        public void setMaxPerUser(int maxPerUser) {
+            this.maxPerUser = maxPerUser;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getBatchIntervalMillis() {
+            return batchIntervalMillis;
+        }
+
+        public void setBatchIntervalMillis(long batchIntervalMillis) {
+            this.batchIntervalMillis = batchIntervalMillis;
+        }
+
+        public int getDrainThreads() {
+            return drainThreads;
+        }
+
+        public void setDrainThreads(int drainThreads) {
+            this.drainThreads = drainThreads;
+        }
+    }
+
+    // -------- 방 팬아웃 --------
+    public static class Rooms {
+        // 팬아웃 레인(스레드) 수
+        private int fanoutThreads = 4;
+
+        // 멤버가 이보다 많으면 이만큼씩 잘라서 여러 레인에 나눔
+        private int shardSize = 1000;
+
+        public int getFanoutThreads() {
+            return fanoutThreads;
+        }
+
+        public void setFanoutThreads(int fanoutThreads) {
+            this.fanoutThreads = fanoutThreads;
+        }
+
+        public int getShardSize() {
+            return shardSize;
+        }
+
+        public void setShardSize(int shardSize) {
+            this.shardSize = shardSize;
+        }
+    }
+
+    // -------- 비밀번호 해시 (가입/로그인) --------
+    public static class Auth {
+        // PBKDF2 반복 횟수 (올리면 다음 로그인 때 새 비용으로 다시 해시)
+        private int kdfIterations = PasswordHasher.DEFAULT_ITERATIONS;
+
+        // 해시 전용 스레드 수 (기본: 코어 수의 절반, 나머지는 채팅 처리용으로 남김)
+        private int kdfThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        // 대기열 한도, 넘치면 AUTH_RESULT ...:BUSY
+        private int kdfQueueCapacity = 256;
+
+        public int getKdfIterations() {
+            return kdfIterations;
+        }
+
+        public void setKdfIterations(int kdfIterations) {
+            this.kdfIterations = kdfIterations;
+        }
+
+        public int getKdfThreads() {
+            return kdfThreads;
+        }
+
+        public void setKdfThreads(int kdfThreads) {
+            this.kdfThreads = kdfThreads;
+        }
+
+        public int getKdfQueueCapacity() {
+            return kdfQueueCapacity;
+        }
+
+        public void setKdfQueueCapacity(int kdfQueueCapacity) {
+            this.kdfQueueCapacity = kdfQueueCapacity;
+        }
+    }
+
+    // -------- 여러 노드 (cluster) --------
+    public static class Cluster {
+        // 끄면 예전처럼 노드 하나 (링크도 디렉터리도 없음)
+        private boolean enabled = false;
+
+        // 이 노드 이름 (노드마다 달라야 함)
+        private String nodeId = "n1";
+
+        // 다른 노드의 링크를 받는 포트 (0 = 빈 포트 아무거나)
+        private int port = 9100;
+
+        // 링크를 받을 주소 (기본은 이 기계 안에서만, 다른 기계의 노드와 묶으려면 그 망의 주소로)
+        private String bindAddress = "127.0.0.1";
+
+        // 노드끼리 나눠 갖는 비밀 (HELLO의 HMAC 키, 모든 노드가 같아야 하고 비어 있으면 시작하지 않음)
+        private String secret = "";
+
+        // 다른 노드들 "id@host:port" (port는 그 노드의 chat.cluster.port)
+        private List<String> peers = new ArrayList<>();
+
+        // 클라이언트에게 알려 줄 이 노드의 주소 (다른 노드가 MOVED로 안내할 때)
+        private String advertiseHost = "127.0.0.1";
+
+        // 링크별 보낼 큐 크기 (프레임 개수, 넘치면 버리고 셈)
+        private int linkQueueCapacity = 65536;
+
+        // 링크가 한 번에 묶어 쓰는 최대 프레임 수
+        private int linkBatchFrames = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public String getAdvertiseHost() {
+            return advertiseHost;
+        }
+
+        public void setAdvertiseHost(String advertiseHost) {
+            this.advertiseHost = advertiseHost;
+        }
+
+        public int getLinkQueueCapacity() {
+            return linkQueueCapacity;
+        }
+
+        public void setLinkQueueCapacity(int linkQueueCapacity) {
+            this.linkQueueCapacity = linkQueueCapacity;
+        }
+
+        public int getLinkBatchFrames() {
+            return linkBatchFrames;
+        }
+
+        public void setLinkBatchFrames(int linkBatchFrames) {
+            this.linkBatchFrames = linkBatchFrames;
+        }
+    }
+
+    // -------- 이벤트 로그 (EventLog) --------
+    public static class Log {
+        // 분류별 수준 (raw, relay, auth, session, key, room, offline, conn, cluster, system → debug/info/warn/error/off)
+        private Map<String, String> levels = new LinkedHashMap<>();
+
+        // 분류별 표본 비율 (N이면 N건 중 1건꼴), 적지 않은 분류는 모두 남김
+        private Map<String, Integer> sample = new LinkedHashMap<>(Map.of("raw", 1000));
+
+        // 메시지 본문(body)도 남길지 (기본 끔)
+        private boolean bodies = false;
+
+        public Map<String, String> getLevels() {
+            return levels;
+        }
+
+        public void setLevels(Map<String, String> levels) {
+            this.levels = levels;
+        }
+
+        public Map<String, Integer> getSample() {
+            return sample;
+        }
+
+        public void setSample(Map<String, Integer> sample) {
+            this.sample = sample;
+        }
+
+        public boolean isBodies() {
+            return bodies;
+        }
+
+        public void setBodies(boolean bodies) {
+            this.bodies = bodies;
+        }
+    }
+
+    // -------- 보내기 한도 (토큰 버킷, 넘으면 SYSTEM THROTTLED:...) --------
+    public static class Limits {
+        // 끄면 한도 없음
+        private boolean enabled = true;
+
+        // 연결마다 모든 프레임 (인증 전 포함, decode 전에 확인)
+        private final Rate connection = new Rate(1000, 2000);
+
+        // 사용자마다 (기기 모두 합쳐) 전달 건수: 1:1 = 1, 방 = 멤버 수, 전체방(ALL) = 접속 세션 수
+        private final Rate user = new Rate(10000, 50000);
+
+        // 연결마다 타입별 (키는 MessageType 이름을 소문자-하이픈으로: auth-login, key-req ...), 없는 타입은 제한 없음
+        private Map<String, Rate> types = new LinkedHashMap<>(Map.of(
+                "auth-signup", new Rate(2, 5),
+                "auth-login", new Rate(2, 5),
+                "key-req", new Rate(50, 100),
+                "key-batch-req", new Rate(10, 20),
+                "history-req", new Rate(10, 20),
+                "room-join", new Rate(5, 20),
+                "room-leave", new Rate(5, 20)));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Rate getConnection() {
+            return connection;
+        }
+
+        public Rate getUser() {
+            return user;
+        }
+
+        public Map<String, Rate> getTypes() {
+            return types;
+        }
+
+        public void setTypes(Map<String, Rate> types) {
+            this.types = types;
+        }
+
+        // 초당 rate개씩 채워지고 최대 burst개까지 모이는 버킷
+        public static class Rate {
+            private double rate;
+            private int burst;
+
+            public Rate() {
+            }
+
+            public Rate(double rate, int burst) {
+                this.rate = rate;
+                this.burst = burst;
+            }
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.e2ee.server.config;
+
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.OfflineInbox;
+import com.e2ee.server.store.UserStore;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 저장소들을 빈으로 만들어 TCP 서버와 REST 컨트롤러가 같은 인스턴스를 쓰게 한다.
+ */
+@Configuration
+public class StoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public UserStore userStore(ChatServerProperties props) {
+        Path dataDir = Paths.get(props.getDataDir());
+        ChatServerProperties.History h = props.getHistory();
+        return new UserStore(dataDir.resolve("users.json").toFile(),
+                new PasswordHasher(props.getAuth().getKdfIterations()),
+                props.getUsers().getSnapshotEvery(),
+                h.getSegmentBytes(),
+                h.getFsyncEveryRecords(),
+                h.getFsyncIntervalMillis());
+    }
+
+    // 종료 시 아직 fsync 안 된 기록을 내려쓴다
+    @Bean(destroyMethod = "close")
+    public HistoryStore historyStore(ChatServerProperties props) {
+        ChatServerProperties.History h = props.getHistory();
+        return new HistoryStore(Paths.get(props.getDataDir()),
+                h.getSegmentBytes(),
+                h.getFsyncEveryRecords(),
+                h.getFsyncIntervalMillis());
+    }
+
+    @Bean(destroyMethod = "close")
+    public OfflineInbox offlineInbox(ChatServerProperties props) {
+        ChatServerProperties.History h = props.getHistory();
+        return new OfflineInbox(Paths.get(props.getDataDir()),
+                props.getOffline().getMaxPerUser(),
+                h.getSegmentBytes(),
+                h.getFsyncEveryRecords(),
+                h.getFsyncIntervalMillis());
+    }
+}
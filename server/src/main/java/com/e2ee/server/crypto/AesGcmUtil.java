@@ -4,7 +4,6 @@ import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import java.security.SecureRandom;
 import java.util.Base64;
 
 import java.nio.charset.StandardCharsets;
@@ -34,10 +33,10 @@ public class AesGcmUtil {
     public static EncryptedPayload encrypt(String plaintext, SecretKey key) throws Exception {
         // 1. Nonce(IV) 12바이트 랜덤으로 만들기
         byte[] nonce = new byte[NONCE_LENGTH];
-        new SecureRandom().nextBytes(nonce);
+        CryptoPool.random().nextBytes(nonce);
 
-        // 2. Cipher(AES/GCM/NoPadding) 준비하기
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        // 2. Cipher(AES/GCM/NoPadding) 준비하기 (스레드별로 재사용, 아래 init이 매번 초기화)
+        Cipher cipher = CryptoPool.aesGcm();
 
         // GCM 모드에 Nonce와 태그 길이 설정
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
@@ -62,8 +61,8 @@ public class AesGcmUtil {
         byte[] nonce = Base64.getDecoder().decode(payload.getNonceBase64());
         byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
 
-        // 2. Cipher(AES/GCM/NoPadding) 준비
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        // 2. Cipher(AES/GCM/NoPadding) 준비 (스레드별로 재사용)
+        Cipher cipher = CryptoPool.aesGcm();
 
         // GCMParameterSpec에 똑같은 태그 길이 + nonce 사용
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
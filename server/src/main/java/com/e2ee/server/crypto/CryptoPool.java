@@ -0,0 +1,85 @@
+package com.e2ee.server.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.SecureRandom;
+
+/**
+ * 스레드마다 하나씩 만들어 두고 재사용하는 JCA 객체들.
+ *
+ * Cipher.getInstance / Mac.getInstance 같은 호출은 매번 프로바이더를 찾고,
+ * new SecureRandom()은 시드를 새로 뽑기 때문에 메시지 한 건 비용의 큰 부분을 차지한다.
+ *
+ * 이 객체들은 스레드 안전하지 않으므로 스레드별로 따로 두고,
+ * 쓰는 쪽에서 매번 init()을 다시 불러서 이전 상태가 남지 않게 한다.
+ * (한 메서드 안에서 받은 객체를 다른 스레드로 넘기거나, 같은 종류를 중첩해서 쓰면 안 됨)
+ */
+public final class CryptoPool {
+
+    private static final ThreadLocal<Cipher> AES_GCM =
+            ThreadLocal.withInitial(() -> create(() -> Cipher.getInstance("AES/GCM/NoPadding")));
+
+    private static final ThreadLocal<Mac> HMAC_SHA256 =
+            ThreadLocal.withInitial(() -> create(() -> Mac.getInstance("HmacSHA256")));
+
+    private static final ThreadLocal<KeyAgreement> X25519_AGREEMENT =
+            ThreadLocal.withInitial(() -> create(() -> KeyAgreement.getInstance("X25519")));
+
+    private static final ThreadLocal<KeyFactory> X25519_KEY_FACTORY =
+            ThreadLocal.withInitial(() -> create(() -> KeyFactory.getInstance("X25519")));
+
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 =
+            ThreadLocal.withInitial(() -> create(() -> SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")));
+
+    private static final ThreadLocal<SecureRandom> RANDOM =
+            ThreadLocal.withInitial(SecureRandom::new);
+
+    private CryptoPool() {
+    }
+
+    // AES/GCM/NoPadding (쓰기 전에 반드시 init)
+    public static Cipher aesGcm() {
+        return AES_GCM.get();
+    }
+
+    // HmacSHA256 (쓰기 전에 반드시 init)
+    public static Mac hmacSha256() {
+        return HMAC_SHA256.get();
+    }
+
+    // X25519 키 합의 (쓰기 전에 반드시 init)
+    public static KeyAgreement x25519Agreement() {
+        return X25519_AGREEMENT.get();
+    }
+
+    public static KeyFactory x25519KeyFactory() {
+        return X25519_KEY_FACTORY.get();
+    }
+
+    // 비밀번호 해시 (PasswordHasher)
+    public static SecretKeyFactory pbkdf2() {
+        return PBKDF2.get();
+    }
+
+    // nonce 등 랜덤 바이트용
+    public static SecureRandom random() {
+        return RANDOM.get();
+    }
+
+    private interface Factory<T> {
+        T get() throws GeneralSecurityException;
+    }
+
+    private static <T> T create(Factory<T> factory) {
+        try {
+            return factory.get();
+        } catch (GeneralSecurityException e) {
+            // JDK 기본 프로바이더에 항상 있는 알고리즘들이라 여기 오면 환경 문제
+            throw new IllegalStateException("암호 알고리즘을 찾을 수 없습니다", e);
+        }
+    }
+}
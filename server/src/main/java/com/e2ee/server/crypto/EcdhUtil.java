@@ -33,8 +33,8 @@ public class EcdhUtil {
     // 2) 내 개인키 + 상대 공개키로 공유 비밀키 생성하기
     public static byte[] deriveSharedSecret(PrivateKey myPrivate, PublicKey theirPublic) throws Exception {
 
-        //1. X25519용 비밀 공유 기계(KeyAgreement) 준비
-        KeyAgreement ka = KeyAgreement.getInstance("X25519");
+        //1. X25519용 비밀 공유 기계(KeyAgreement) 준비 (스레드별로 재사용, init이 매번 초기화)
+        KeyAgreement ka = CryptoPool.x25519Agreement();
 
         //2. 내 개인키로 초기화
         ka.init(myPrivate);
@@ -71,8 +71,8 @@ public class EcdhUtil {
             salt = new byte[32]; //자동으로 0으로 채워짐
         }
 
-        // 2. HmacSHA256 준비 (키 = salt)
-        Mac mac = Mac.getInstance("HmacSHA256");
+        // 2. HmacSHA256 준비 (키 = salt, 스레드별로 재사용)
+        Mac mac = CryptoPool.hmacSha256();
         SecretKeySpec keySpec = new SecretKeySpec(salt, "HmacSHA256");
         mac.init(keySpec);
 
@@ -89,7 +89,7 @@ public class EcdhUtil {
         byte[] previousT = new byte[0];
         int offset = 0;
 
-        Mac mac = Mac.getInstance("HmacSHA256");
+        Mac mac = CryptoPool.hmacSha256();
         SecretKeySpec keySpec = new SecretKeySpec(prk, "HmacSHA256");
         mac.init(keySpec);
 
@@ -124,7 +124,7 @@ public class EcdhUtil {
     public static PublicKey decodePublicKey(String base64) throws Exception {
         byte[] encoded = Base64.getDecoder().decode(base64);
         X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
-        KeyFactory kf = KeyFactory.getInstance("X25519");
+        KeyFactory kf = CryptoPool.x25519KeyFactory();
         return kf.generatePublic(spec);
     }
 
@@ -0,0 +1,90 @@
+package com.e2ee.server.crypto;
+
+import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+
+/**
+ * 비밀번호 해시 (PBKDF2-HMAC-SHA256, 사용자마다 랜덤 salt).
+ *
+ * 저장 형식: "pbkdf2-sha256$반복횟수$saltBase64$hashBase64"
+ *
+ * 반복 횟수를 문자열 안에 같이 저장하므로 설정(chat.auth.kdf-iterations)을 올려도
+ * 예전 해시는 그대로 검증되고, needsRehash()로 로그인 성공 때 새 비용으로 바꿔 저장할 수 있다.
+ *
+ * 한 번 계산에 수십~수백 ms가 걸리도록 정하는 값이라 연결 스레드에서 부르면 안 된다. (KdfExecutor)
+ */
+public class PasswordHasher {
+
+    public static final String PREFIX = "pbkdf2-sha256";
+
+    // OWASP 권장 (PBKDF2-HMAC-SHA256)
+    public static final int DEFAULT_ITERATIONS = 210_000;
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations >= 1");
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        CryptoPool.random().nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+
+        Base64.Encoder b64 = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    public boolean verify(String password, String stored) {
+        String[] parts = split(stored);
+        if (parts == null || password == null) return false;
+
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        byte[] actual = pbkdf2(password, salt, Integer.parseInt(parts[1]));
+
+        // 비교 시간으로 몇 바이트가 맞았는지 새지 않게
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    // 지금 설정보다 싼 비용으로 만든 해시면 true
+    public boolean needsRehash(String stored) {
+        String[] parts = split(stored);
+        return parts == null || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    public static boolean isHash(String s) {
+        return split(s) != null;
+    }
+
+    private static String[] split(String stored) {
+        if (stored == null) return null;
+        String[] parts = stored.split("\\$");
+        return (parts.length == 4 && PREFIX.equals(parts[0])) ? parts : null;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return CryptoPool.pbkdf2().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.e2ee.server.log;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 서버 이벤트 로그 (구조화: 분류 + 이벤트 이름 + key=value 필드).
+ *
+ *   EventLog.info(LogCategory.RELAY, "chat", "from", sender, "to", receiver, "bytes", n);
+ *   → 2026-10-18T12:00:00.123 INFO  relay    chat from=alice to=bob bytes=180
+ *
+ * 부르는 스레드는 링 버퍼 칸 하나를 CAS로 잡아 참조만 채우고 바로 돌아간다 (잠금, 문자열 만들기, 콘솔 I/O 없음).
+ * 한 줄로 만들고 stdout에 쓰는 것은 백그라운드 스레드 하나가 한다 (링이 비면 flush).
+ * 링이 가득 차면 기다리지 않고 버린 뒤 세고, 버린 수는 다음에 쓸 때 한 줄로 알린다.
+ *
+ * 분류마다 수준(setLevel)과 표본 비율(setSampleEvery: N건 중 1건꼴)을 따로 둔다.
+ * 메시지 본문은 기본으로 남기지 않는다 (logBodies() 일 때만 부르는 쪽이 body 필드를 넣는다).
+ */
+public final class EventLog {
+
+    public static final int DEFAULT_CAPACITY = 16384;
+    private static final int MAX_FIELDS = 4;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private static final EventLog INSTANCE = new EventLog(DEFAULT_CAPACITY, System.out);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.awaitDrained(500), "event-log-flush"));
+    }
+
+    private static final class Slot {
+        volatile long published = -1;
+        long millis;
+        LogLevel level;
+        LogCategory category;
+        String event;
+        int sampleEvery;
+        int fields;
+        final String[] keys = new String[MAX_FIELDS];
+        final Object[] values = new Object[MAX_FIELDS];
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final PrintStream out;
+
+    // 다음에 잡을 칸 (부르는 스레드들) / 다음에 쓸 칸 (쓰는 스레드만 증가)
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private volatile LogLevel[] levels;
+    private volatile int[] sampleEvery;
+    private volatile boolean bodies;
+
+    private final LongAdder dropped = new LongAdder();
+    private long reportedDropped;
+    private volatile long written;
+
+    public EventLog(int capacity, PrintStream out) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        this.mask = size - 1;
+        this.out = out;
+
+        LogLevel[] l = new LogLevel[LogCategory.values().length];
+        Arrays.fill(l, LogLevel.INFO);
+        this.levels = l;
+        int[] s = new int[l.length];
+        Arrays.fill(s, 1);
+        s[LogCategory.RAW.ordinal()] = 1000;
+        this.sampleEvery = s;
+
+        Thread writer = new Thread(this::drain, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static EventLog get() {
+        return INSTANCE;
+    }
+
+    // ---------------- 설정 ----------------
+
+    public synchronized void setLevel(LogCategory category, LogLevel level) {
+        LogLevel[] l = levels.clone();
+        l[category.ordinal()] = level;
+        levels = l;
+    }
+
+    // 1이면 모두, N이면 N건 중 1건꼴 (무작위라 스레드끼리 다투지 않는다)
+    public synchronized void setSampleEvery(LogCategory category, int every) {
+        int[] s = sampleEvery.clone();
+        s[category.ordinal()] = Math.max(1, every);
+        sampleEvery = s;
+    }
+
+    public void setBodies(boolean bodies) {
+        this.bodies = bodies;
+    }
+
+    public static boolean logBodies() {
+        return INSTANCE.bodies;
+    }
+
+    public static boolean isEnabled(LogCategory category, LogLevel level) {
+        return INSTANCE.enabled(category, level);
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    // ---------------- 남기기 ----------------
+
+    public static void debug(LogCategory c, String event, String k1, Object v1) {
+        INSTANCE.log(LogLevel.DEBUG, c, event, 1, k1, v1, null, null, null, null, null, null);
+    }
+
+    public static void debug(LogCategory c, String event, String k1, Object v1, String k2, Object v2) {
+        INSTANCE.log(LogLevel.DEBUG, c, event, 2, k1, v1, k2, v2, null, null, null, null);
+    }
+
+    public static void debug(LogCategory c, String event, String k1, Object v1, String k2, Object v2,
+                             String k3, Object v3) {
+        INSTANCE.log(LogLevel.DEBUG, c, event, 3, k1, v1, k2, v2, k3, v3, null, null);
+    }
+
+    public static void info(LogCategory c, String event) {
+        INSTANCE.log(LogLevel.INFO, c, event, 0, null, null, null, null, null, null, null, null);
+    }
+
+    public static void info(LogCategory c, String event, String k1, Object v1) {
+        INSTANCE.log(LogLevel.INFO, c, event, 1, k1, v1, null, null, null, null, null, null);
+    }
+
+    public static void info(LogCategory c, String event, String k1, Object v1, String k2, Object v2) {
+        INSTANCE.log(LogLevel.INFO, c, event, 2, k1, v1, k2, v2, null, null, null, null);
+    }
+
+    public static void info(LogCategory c, String event, String k1, Object v1, String k2, Object v2,
+                            String k3, Object v3) {
+        INSTANCE.log(LogLevel.INFO, c, event, 3, k1, v1, k2, v2, k3, v3, null, null);
+    }
+
+    public static void info(LogCategory c, String event, String k1, Object v1, String k2, Object v2,
+                            String k3, Object v3, String k4, Object v4) {
+        INSTANCE.log(LogLevel.INFO, c, event, 4, k1, v1, k2, v2, k3, v3, k4, v4);
+    }
+
+    public static void warn(LogCategory c, String event, String k1, Object v1) {
+        INSTANCE.log(LogLevel.WARN, c, event, 1, k1, v1, null, null, null, null, null, null);
+    }
+
+    public static void warn(LogCategory c, String event, String k1, Object v1, String k2, Object v2) {
+        INSTANCE.log(LogLevel.WARN, c, event, 2, k1, v1, k2, v2, null, null, null, null);
+    }
+
+    public static void warn(LogCategory c, String event, String k1, Object v1, String k2, Object v2,
+                            String k3, Object v3) {
+        INSTANCE.log(LogLevel.WARN, c, event, 3, k1, v1, k2, v2, k3, v3, null, null);
+    }
+
+    public void log(LogLevel level, LogCategory c, String event, int n,
+                    String k1, Object v1, String k2, Object v2, String k3, Object v3, String k4, Object v4) {
+        if (!enabled(c, level)) return;
+        int every = sampleEvery[c.ordinal()];
+        if (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0) return;
+
+        // 칸 잡기: 쓰는 스레드가 아직 못 비운 칸까지 돌아오면 버린다
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        Slot s = slots[(int) (seq & mask)];
+        s.millis = System.currentTimeMillis();
+        s.level = level;
+        s.category = c;
+        s.event = event;
+        s.sampleEvery = every;
+        s.fields = n;
+        s.keys[0] = k1;
+        s.values[0] = v1;
+        s.keys[1] = k2;
+        s.values[1] = v2;
+        s.keys[2] = k3;
+        s.values[2] = v3;
+        s.keys[3] = k4;
+        s.values[3] = v4;
+        s.published = seq;
+    }
+
+    private boolean enabled(LogCategory c, LogLevel level) {
+        return level != LogLevel.OFF && level.ordinal() >= levels[c.ordinal()].ordinal();
+    }
+
+    /**
+     * 지금까지 남긴 것이 다 쓰일 때까지 (테스트, 종료 때).
+     * @return 제때 다 썼으면 true
+     */
+    public boolean awaitDrained(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (head < target) {
+            if (System.currentTimeMillis() > deadline) return false;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    // ---------------- 쓰는 스레드 ----------------
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        ZoneId zone = ZoneId.systemDefault();
+        boolean dirty = false;
+
+        while (true) {
+            long h = head;
+            Slot s = slots[(int) (h & mask)];
+            if (s.published != h) {
+                // 비었거나 잡은 스레드가 아직 채우는 중
+                if (dirty) {
+                    out.flush();
+                    dirty = false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            line.setLength(0);
+            format(s, line, zone);
+            for (int i = 0; i < MAX_FIELDS; i++) s.values[i] = null;
+            s.event = null;
+            head = h + 1;
+
+            reportDropped(line);
+            out.println(line);
+            written++;
+            dirty = true;
+        }
+    }
+
+    private void reportDropped(StringBuilder line) {
+        long d = dropped.sum();
+        if (d == reportedDropped) return;
+        line.append(System.lineSeparator())
+                .append(TIME.format(LocalDateTime.now()))
+                .append(" WARN  system   log_dropped count=").append(d - reportedDropped);
+        reportedDropped = d;
+    }
+
+    private static void format(Slot s, StringBuilder b, ZoneId zone) {
+        b.append(TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(s.millis), zone))).append(' ');
+        pad(b, s.level.name(), 6);
+        pad(b, s.category.key(), 9);
+        b.append(s.event);
+        for (int i = 0; i < s.fields; i++) {
+            b.append(' ').append(s.keys[i]).append('=');
+            appendValue(b, s.values[i]);
+        }
+        if (s.sampleEvery > 1) b.append(" sample=1/").append(s.sampleEvery);
+    }
+
+    private static void pad(StringBuilder b, String text, int width) {
+        b.append(text);
+        for (int i = text.length(); i < width; i++) b.append(' ');
+    }
+
+    // 공백, 따옴표, '=', 줄바꿈이 있으면 따옴표로 감싸고 이스케이프 (한 이벤트 = 한 줄)
+    static void appendValue(StringBuilder b, Object value) {
+        String v = String.valueOf(value);
+        boolean quote = v.isEmpty();
+        for (int i = 0; i < v.length() && !quote; i++) {
+            char ch = v.charAt(i);
+            quote = ch <= ' ' || ch == '"' || ch == '=';
+        }
+        if (!quote) {
+            b.append(v);
+            return;
+        }
+        b.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            switch (ch) {
+                case '"' -> b.append("\\\"");
+                case '\\' -> b.append("\\\\");
+                case '\n' -> b.append("\\n");
+                case '\r' -> b.append("\\r");
+                default -> b.append(ch);
+            }
+        }
+        b.append('"');
+    }
+}
@@ -0,0 +1,26 @@
+package com.e2ee.server.log;
+
+/**
+ * 서버 이벤트 분류. 분류마다 수준과 표본 비율을 따로 둔다 (chat.log.levels.*, chat.log.sample.*).
+ */
+public enum LogCategory {
+    RAW,        // 받은 프레임 하나하나 (가장 많음, 기본은 표본만)
+    RELAY,      // CHAT / 파일 릴레이
+    AUTH,       // 가입 / 로그인
+    SESSION,    // 세션 등록 / 해제
+    KEY,        // 공개키 조회
+    ROOM,       // 방 들어오기 / 나가기
+    OFFLINE,    // 받은편지함 전달
+    CONN,       // TCP 연결 열림 / 닫힘 / 느린 수신자
+    CLUSTER,    // 노드 사이 링크
+    SYSTEM;     // 그 밖
+
+    // 설정 키(소문자) → 분류
+    public static LogCategory of(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    public String key() {
+        return name().toLowerCase();
+    }
+}
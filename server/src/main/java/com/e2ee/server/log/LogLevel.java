@@ -0,0 +1,12 @@
+package com.e2ee.server.log;
+
+/**
+ * 분류별 로그 수준. 설정한 수준 이상만 남는다 (OFF는 모두 끔).
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
@@ -0,0 +1,39 @@
+package com.e2ee.server.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR: 저장소(history / user / inbox) 한 건 쓰기.
+ */
+@Name("com.e2ee.Persist")
+@Label("Store Append")
+@Category({"E2EE Chat", "Store"})
+@StackTrace(false)
+class PersistEvent extends Event {
+
+    @Label("Store")
+    String store;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    static void commit(String store, int bytes, long latency) {
+        PersistEvent e = new PersistEvent();
+        if (!e.shouldCommit()) return;
+        e.store = store;
+        e.bytes = bytes;
+        e.latency = latency;
+        e.commit();
+    }
+}
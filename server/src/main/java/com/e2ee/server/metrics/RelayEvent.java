@@ -0,0 +1,45 @@
+package com.e2ee.server.metrics;
+
+import com.e2ee.server.protocol.MessageType;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR: 프레임 하나를 받아서 수신자 보낼 큐에 다 넣기까지 (또는 방 팬아웃 조각 하나).
+ *
+ * 녹화: java -XX:StartFlightRecording=filename=relay.jfr ... → jfr print --events com.e2ee.Relay relay.jfr
+ * 녹화가 꺼져 있으면 shouldCommit()에서 바로 돌아가고, 이벤트 객체는 JIT가 없앤다.
+ */
+@Name("com.e2ee.Relay")
+@Label("Chat Relay")
+@Category({"E2EE Chat", "Relay"})
+@StackTrace(false)
+class RelayEvent extends Event {
+
+    @Label("Type")
+    String type;
+
+    @Label("Recipients")
+    int recipients;
+
+    @Label("Room Fan-out")
+    boolean fanout;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    static void commit(MessageType type, long startNanos, long latency, int recipients, boolean fanout) {
+        RelayEvent e = new RelayEvent();
+        if (!e.shouldCommit()) return;
+        e.type = type == null ? null : type.name();
+        e.latency = latency;
+        e.recipients = recipients;
+        e.fanout = fanout;
+        e.commit();
+    }
+}
@@ -0,0 +1,184 @@
+package com.e2ee.server.metrics;
+
+import com.e2ee.server.protocol.MessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 릴레이 지표 (Micrometer, /actuator/metrics 에서 조회).
+ *
+ *   chat.frames{type}              받은 프레임 수 (MessageType별)
+ *   chat.bytes{direction=in|out}   받은 본문 바이트 / 보낼 큐에 넣은 바이트
+ *   chat.relay.latency{path}       받은 순간 → 마지막 수신자 보낼 큐에 넣을 때까지
+ *                                  (direct = 1:1/파일, room = 방/전체방 조각마다)
+ *   chat.store.latency{store}      저장소 한 건 쓰기 (history / user / inbox)
+ *   *.latency.percentile{phi}      위 지연의 p50 / p99 / p999 (초, 시작 후 누적, LatencyHistogram)
+ *   chat.throttled{scope}          보내기 한도에 걸려 처리하지 않은 프레임 (CONN / TYPE / USER)
+ *   chat.kdf.wait / chat.kdf.time  비밀번호 해시 대기열에서 기다린 시간 / 해시 시간
+ *   chat.kdf.rejected              대기열이 가득 차 BUSY로 돌려보낸 요청
+ *   chat.files{type}               넘긴 FILE_OFFER / FILE_CHUNK / FILE_ACK 수
+ *   chat.files.bytes               넘긴 조각 프레임 바이트
+ *   chat.files.refused{reason}     넘기지 않은 파일 프레임 (TARGET_OFFLINE / RECEIVER_BUSY / TOO_LARGE)
+ *   chat.connections, chat.sessions, chat.outbound.depth, chat.kdf.queue ...  게이지 (ChatTcpServer가 등록)
+ *
+ * 기록 경로는 미리 만들어 둔 Counter/Timer에 숫자만 넣는다 (태그 조회, 문자열, 박싱 없음).
+ * 같은 구간을 JFR 이벤트(RelayEvent, PersistEvent)로도 남긴다 → 녹화를 켰을 때만 비용이 든다.
+ */
+public class RelayMetrics {
+
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+    private final Counter[] frames = new Counter[TYPES.length];
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final Timer directLatency;
+    private final Timer roomLatency;
+    private final LatencyHistogram directHistogram;
+    private final LatencyHistogram roomHistogram;
+    private final Timer kdfWait;
+    private final Timer kdfTime;
+    private final Counter kdfRejected;
+    private final Counter fileOffers;
+    private final Counter fileChunks;
+    private final Counter fileAcks;
+    private final Counter fileBytes;
+
+    // 기록기에 넘겨 줄 백분위 히스토그램 ("relay.direct", "store.history" ...)
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Counter> throttled = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fileRefused = new ConcurrentHashMap<>();
+
+    public RelayMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (MessageType t : TYPES) {
+            frames[t.ordinal()] = Counter.builder("chat.frames")
+                    .description("받은 프레임 수")
+                    .tag("type", t.name())
+                    .register(registry);
+        }
+        bytesIn = Counter.builder("chat.bytes").baseUnit("bytes").tag("direction", "in").register(registry);
+        bytesOut = Counter.builder("chat.bytes").baseUnit("bytes").tag("direction", "out").register(registry);
+        directLatency = latencyTimer("chat.relay.latency", "path", "direct");
+        roomLatency = latencyTimer("chat.relay.latency", "path", "room");
+        directHistogram = histograms.get("relay.direct");
+        roomHistogram = histograms.get("relay.room");
+
+        kdfWait = Timer.builder("chat.kdf.wait").description("비밀번호 해시 대기열에서 기다린 시간").register(registry);
+        kdfTime = Timer.builder("chat.kdf.time").description("비밀번호 해시 시간").register(registry);
+        kdfRejected = Counter.builder("chat.kdf.rejected").description("대기열이 가득 차 거절한 해시 요청").register(registry);
+        fileOffers = fileCounter(MessageType.FILE_OFFER);
+        fileChunks = fileCounter(MessageType.FILE_CHUNK);
+        fileAcks = fileCounter(MessageType.FILE_ACK);
+        fileBytes = Counter.builder("chat.files.bytes").baseUnit("bytes").register(registry);
+    }
+
+    // 저장소에 넘겨 줄 쓰기 시간 기록기 (store = history / user / inbox)
+    public StoreTimer storeTimer(String store) {
+        Timer timer = latencyTimer("chat.store.latency", "store", store);
+        return new StoreTimer(store, timer, histograms.get("store." + store));
+    }
+
+    public void gauge(String name, Supplier<Number> value) {
+        Gauge.builder(name, value).register(registry);
+    }
+
+    public void frameReceived(MessageType type, int bytes) {
+        if (type != null) frames[type.ordinal()].increment();
+        bytesIn.increment(bytes);
+    }
+
+    public void bytesOut(int bytes) {
+        bytesOut.increment(bytes);
+    }
+
+    // 한도에 걸린 경우만이라 드물다 → 태그별 Counter는 처음 걸릴 때 만든다
+    public void throttled(String scope) {
+        throttled.computeIfAbsent(scope, s -> Counter.builder("chat.throttled")
+                .description("보내기 한도에 걸린 프레임 수")
+                .tag("scope", s)
+                .register(registry)).increment();
+    }
+
+    // KDF 작업 하나가 끝났을 때 (넣은 시각 → 시작, 시작 → 끝)
+    public void kdfRan(long waitNanos, long runNanos) {
+        kdfWait.record(waitNanos, TimeUnit.NANOSECONDS);
+        kdfTime.record(runNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void kdfRejected() {
+        kdfRejected.increment();
+    }
+
+    // type = FILE_OFFER / FILE_CHUNK / FILE_ACK, bytes는 조각일 때만 센다
+    public void fileRelayed(MessageType type, int bytes) {
+        switch (type) {
+            case FILE_OFFER -> fileOffers.increment();
+            case FILE_CHUNK -> {
+                fileChunks.increment();
+                fileBytes.increment(bytes);
+            }
+            case FILE_ACK -> fileAcks.increment();
+            default -> { }
+        }
+    }
+
+    // reason = FILE_FAIL 사유 (throttled와 같이 처음 걸릴 때 만든다)
+    public void fileRefused(String reason) {
+        fileRefused.computeIfAbsent(reason, r -> Counter.builder("chat.files.refused")
+                .description("넘기지 않은 파일 프레임 수")
+                .tag("reason", r)
+                .register(registry)).increment();
+    }
+
+    // startNanos = onFrame에서 잰 System.nanoTime()
+    public void relayed(MessageType type, long startNanos, int recipients) {
+        long took = System.nanoTime() - startNanos;
+        directLatency.record(took, TimeUnit.NANOSECONDS);
+        directHistogram.record(took);
+        RelayEvent.commit(type, startNanos, took, recipients, false);
+    }
+
+    public void fannedOut(long startNanos, int recipients) {
+        long took = System.nanoTime() - startNanos;
+        roomLatency.record(took, TimeUnit.NANOSECONDS);
+        roomHistogram.record(took);
+        RelayEvent.commit(MessageType.CHAT, startNanos, took, recipients, true);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    // 건수 / 합계 / 최대는 Micrometer Timer, 백분위는 LatencyHistogram을 읽는 게이지로.
+    // (Timer.publishPercentiles는 기록할 때마다 백분위 구조를 갱신해 건당 수백 ns가 든다)
+    private Timer latencyTimer(String name, String tag, String value) {
+        LatencyHistogram h = new LatencyHistogram();
+        for (double phi : PERCENTILES) {
+            Gauge.builder(name + ".percentile", h, x -> x.percentile(phi) / 1e9)
+                    .tags(tag, value, "phi", String.valueOf(phi))
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+        Timer timer = Timer.builder(name).tag(tag, value).register(registry);
+
+        String key = name.substring("chat.".length(), name.lastIndexOf('.')) + "." + value;
+        histograms.put(key, h);
+        return timer;
+    }
+
+    private Counter fileCounter(MessageType type) {
+        return Counter.builder("chat.files")
+                .description("넘긴 파일 프레임 수")
+                .tag("type", type.name())
+                .register(registry);
+    }
+}
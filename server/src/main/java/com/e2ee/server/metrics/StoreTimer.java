@@ -0,0 +1,33 @@
+package com.e2ee.server.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 저장소 한 건 쓰기 시간 기록 (chat.store.latency Timer + 백분위 히스토그램 + JFR PersistEvent).
+ * 저장소는 지표 없이도 쓰이므로(테스트, 벤치마크) 기본은 NONE.
+ */
+public final class StoreTimer {
+
+    public static final StoreTimer NONE = new StoreTimer(null, null, null);
+
+    private final String store;
+    private final Timer timer;
+    private final LatencyHistogram histogram;
+
+    StoreTimer(String store, Timer timer, LatencyHistogram histogram) {
+        this.store = store;
+        this.timer = timer;
+        this.histogram = histogram;
+    }
+
+    // startNanos = 쓰기 직전 System.nanoTime()
+    public void record(long startNanos, int bytes) {
+        if (timer == null) return;
+        long took = System.nanoTime() - startNanos;
+        timer.record(took, TimeUnit.NANOSECONDS);
+        histogram.record(took);
+        PersistEvent.commit(store, bytes, took);
+    }
+}
@@ -6,6 +6,9 @@ package com.e2ee.server.protocol;
  */
 public class ChatMessage {
 
+    // receiver가 "room:이름" 이면 방 메시지
+    public static final String ROOM_PREFIX = "room:";
+
     private MessageType type;
     private String sender;
     private String receiver;
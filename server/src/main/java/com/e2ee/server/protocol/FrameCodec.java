@@ -0,0 +1,34 @@
+package com.e2ee.server.protocol;
+
+/**
+ * ChatMessage ↔ 네트워크 프레임 바이트 변환기.
+ *
+ * - JSON   : 예전과 같은 "JSON 한 줄 + \n"
+ * - BINARY : varint 길이 접두사 + 타입 바이트 + 원시 nonce/암호문 (Base64 없음)
+ *
+ * 어떤 코덱을 쓸지는 연결 첫 바이트(핸드셰이크)로 정해진다. (BinaryFrameCodec.PREAMBLE 참고)
+ */
+public interface FrameCodec {
+
+    FrameCodec JSON = new JsonFrameCodec();
+    FrameCodec BINARY = new BinaryFrameCodec();
+
+    String name();
+
+    /** 구분자(줄바꿈 또는 길이 접두사)까지 포함한, 바로 소켓에 쓸 수 있는 프레임 */
+    byte[] encode(ChatMessage msg);
+
+    /** 구분자를 뗀 프레임 본문을 메시지로 */
+    ChatMessage decode(byte[] frame, int off, int len);
+
+    default ChatMessage decode(byte[] frame) {
+        return decode(frame, 0, frame.length);
+    }
+
+    /**
+     * body는 건드리지 않고 type/sender/receiver만 읽는다.
+     *
+     * @return 헤더, 빠르게 읽을 수 없는 모양이면 null (그땐 decode()로)
+     */
+    FrameHeader readHeader(byte[] frame, int off, int len);
+}
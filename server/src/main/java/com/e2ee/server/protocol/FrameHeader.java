@@ -0,0 +1,40 @@
+package com.e2ee.server.protocol;
+
+/**
+ * 프레임의 라우팅 헤더 (type, sender, receiver) 만 읽은 결과.
+ *
+ * 릴레이 빠른 경로에서는 body를 해석하지 않고 이것만 보고 전달한다.
+ */
+public class FrameHeader {
+
+    private final MessageType type;
+    private final String sender;
+    private final String receiver;
+
+    public FrameHeader(MessageType type, String sender, String receiver) {
+        this.type = type;
+        this.sender = sender;
+        this.receiver = receiver;
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameHeader{" +
+                "type=" + type +
+                ", sender='" + sender + '\'' +
+                ", receiver='" + receiver + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.e2ee.server.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 사용자 ID(UTF-8 바이트) → String 캐시.
+ *
+ * 같은 sender/receiver가 프레임마다 반복되므로,
+ * 바이트가 같으면 예전에 만든 String을 그대로 돌려줘서 매번 새로 만들지 않는다.
+ * (슬롯 충돌 시 그냥 덮어쓰는 direct-mapped 캐시, 락 없음)
+ */
+public class IdInterner {
+
+    private static final int SLOTS = 4096;   // 2의 거듭제곱
+    private static final int MAX_ID_BYTES = 64;
+
+    private static final class Entry {
+        final byte[] bytes;
+        final String value;
+
+        Entry(byte[] bytes, String value) {
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    private final Entry[] table = new Entry[SLOTS];
+
+    public String intern(byte[] src, int off, int len) {
+        if (len > MAX_ID_BYTES) {
+            return new String(src, off, len, StandardCharsets.UTF_8);
+        }
+
+        int h = 1;
+        for (int i = 0; i < len; i++) h = 31 * h + src[off + i];
+        int slot = (h ^ (h >>> 16)) & (SLOTS - 1);
+
+        Entry e = table[slot];
+        if (e != null && Arrays.equals(e.bytes, 0, e.bytes.length, src, off, off + len)) {
+            return e.value;
+        }
+
+        byte[] copy = Arrays.copyOfRange(src, off, off + len);
+        String value = new String(copy, StandardCharsets.UTF_8);
+        table[slot] = new Entry(copy, value);
+        return value;
+    }
+}
@@ -0,0 +1,218 @@
+package com.e2ee.server.protocol;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 예전 방식: Gson JSON 한 줄.
+ */
+public class JsonFrameCodec implements FrameCodec {
+
+    private static final byte[] KEY_TYPE = "type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_SENDER = "sender".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_RECEIVER = "receiver".getBytes(StandardCharsets.US_ASCII);
+
+    // readHeader에서 본 헤더 키 (비트 하나씩)
+    private static final int TYPE = 1;
+    private static final int SENDER = 2;
+    private static final int RECEIVER = 4;
+
+    private final Gson gson = new Gson();
+
+    private final IdInterner ids = new IdInterner();
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(ChatMessage msg) {
+        return (gson.toJson(msg) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ChatMessage decode(byte[] frame, int off, int len) {
+        return gson.fromJson(new String(frame, off, len, StandardCharsets.UTF_8), ChatMessage.class);
+    }
+
+    // ======================= 헤더만 읽기 =======================
+
+    /**
+     * 최상위 키 중 type/sender/receiver만 바이트 단위로 찾는다.
+     *
+     * 원본 바이트를 그대로 넘기므로 받는 쪽 Gson이 읽을 값과 똑같아야 한다.
+     * Gson은 같은 키가 두 번 나오면 마지막 것을 쓰기 때문에 객체 끝까지 훑고,
+     * 헤더 키가 두 번 나오거나 키/값에 이스케이프가 있거나 lenient 문법처럼
+     * 애매한 경우는 null → 전체 decode()로 넘긴다. body는 값을 건너뛰기만 한다.
+     */
+    @Override
+    public FrameHeader readHeader(byte[] f, int off, int len) {
+        int end = off + len;
+        int i = skipSpace(f, off, end);
+        if (i >= end || f[i] != '{') return null;
+        i++;
+
+        MessageType type = null;
+        String sender = null;
+        String receiver = null;
+        int seen = 0;
+
+        while (true) {
+            i = skipSpace(f, i, end);
+            if (i >= end) return null;
+            if (f[i] == '}') {
+                i++;
+                break;
+            }
+            if (f[i] != '"') return null;
+
+            int keyStart = i + 1;
+            int keyEnd = stringEnd(f, keyStart, end);
+            // "s\u0065nder" 같은 키는 바이트로 비교할 수 없다
+            if (keyEnd < 0 || indexOf(f, keyStart, keyEnd, (byte) '\\') >= 0) return null;
+
+            i = skipSpace(f, keyEnd + 1, end);
+            if (i >= end || f[i] != ':') return null;
+            i = skipSpace(f, i + 1, end);
+            if (i >= end) return null;
+
+            int field = field(f, keyStart, keyEnd);
+            if (field != 0) {
+                // 같은 헤더 키가 또 나오면 뒤의 것이 이긴다 → 여기서 판단하지 않음
+                if ((seen & field) != 0 || f[i] != '"') return null;
+                seen |= field;
+
+                int valStart = i + 1;
+                int valEnd = stringEnd(f, valStart, end);
+                if (valEnd < 0 || indexOf(f, valStart, valEnd, (byte) '\\') >= 0) return null;
+
+                if (field == TYPE) {
+                    type = typeOf(f, valStart, valEnd);
+                    if (type == null) return null;
+                } else if (field == SENDER) {
+                    sender = ids.intern(f, valStart, valEnd - valStart);
+                } else {
+                    receiver = ids.intern(f, valStart, valEnd - valStart);
+                }
+                i = valEnd + 1;
+            } else {
+                i = skipValue(f, i, end);
+                if (i < 0) return null;
+            }
+
+            i = skipSpace(f, i, end);
+            if (i >= end) return null;
+            if (f[i] == ',') {
+                i++;
+            } else if (f[i] != '}') {
+                return null;
+            }
+        }
+
+        // 객체 뒤에 뭔가 더 있으면 decode()가 거절한다
+        if (skipSpace(f, i, end) != end) return null;
+        return type == null ? null : new FrameHeader(type, sender, receiver);
+    }
+
+    // TYPE/SENDER/RECEIVER, 0 = 관심 없음
+    private static int field(byte[] f, int from, int to) {
+        if (equalsAscii(f, from, to, KEY_TYPE)) return TYPE;
+        if (equalsAscii(f, from, to, KEY_SENDER)) return SENDER;
+        if (equalsAscii(f, from, to, KEY_RECEIVER)) return RECEIVER;
+        return 0;
+    }
+
+    private static MessageType typeOf(byte[] f, int from, int to) {
+        for (MessageType t : MessageType.values()) {
+            String name = t.name();
+            if (name.length() != to - from) continue;
+
+            boolean same = true;
+            for (int k = 0; k < name.length(); k++) {
+                if (f[from + k] != name.charAt(k)) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) return t;
+        }
+        return null;
+    }
+
+    private static boolean equalsAscii(byte[] f, int from, int to, byte[] key) {
+        if (to - from != key.length) return false;
+        for (int k = 0; k < key.length; k++) {
+            if (f[from + k] != key[k]) return false;
+        }
+        return true;
+    }
+
+    private static int skipSpace(byte[] f, int i, int end) {
+        while (i < end && (f[i] == ' ' || f[i] == '\t' || f[i] == '\r' || f[i] == '\n')) i++;
+        return i;
+    }
+
+    // 여는 따옴표 다음 위치부터 닫는 따옴표 위치 (없으면 -1)
+    private static int stringEnd(byte[] f, int i, int end) {
+        while (i < end) {
+            byte b = f[i];
+            if (b == '\\') {
+                i += 2;
+            } else if (b == '"') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    // 값 하나를 건너뛴 다음 위치 (모양이 이상하면 -1)
+    private static int skipValue(byte[] f, int i, int end) {
+        byte b = f[i];
+        if (b == '"') {
+            int e = stringEnd(f, i + 1, end);
+            return e < 0 ? -1 : e + 1;
+        }
+
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while (i < end) {
+                byte c = f[i];
+                if (c == '"') {
+                    int e = stringEnd(f, i + 1, end);
+                    if (e < 0) return -1;
+                    i = e + 1;
+                    continue;
+                }
+                // 작은따옴표 문자열, 주석 같은 lenient 문법은 괄호 세기를 속일 수 있다
+                if (c == '\'' || c == '/' || c == '#') return -1;
+                if (c == '{' || c == '[') depth++;
+                if (c == '}' || c == ']') {
+                    if (--depth == 0) return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        }
+
+        // 숫자, true/false/null (따옴표 없는 문자열 같은 lenient 값은 거절)
+        int start = i;
+        while (i < end && isBare(f[i])) i++;
+        return i == start ? -1 : i;
+    }
+
+    private static boolean isBare(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')
+                || b == '-' || b == '+' || b == '.';
+    }
+
+    private static int indexOf(byte[] f, int from, int to, byte b) {
+        for (int k = from; k < to; k++) {
+            if (f[k] == b) return k;
+        }
+        return -1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.e2ee.server.protocol;
 
+// 새 타입은 항상 맨 끝에 추가할 것 (바이너리 코덱이 순서 번호를 타입 바이트로 씀)
 public enum MessageType {
     CHAT,       // 일반 채팅
     KEY_REQ,    // 키 교환 요청
@@ -7,5 +8,18 @@ public enum MessageType {
     SYSTEM,      // 시스템 메시지(공지 등)
     AUTH_SIGNUP,   // 회원가입 요청
     AUTH_LOGIN,    // 로그인 요청
-    AUTH_RESULT    // 회원가입/로그인 결과
+    AUTH_RESULT,   // 회원가입/로그인 결과
+    HISTORY_REQ,   // 채팅 기록 조회 (body = HistoryQuery JSON)
+    HISTORY_RES,   // 채팅 기록 한 페이지 (body = HistoryPage JSON)
+    OFFLINE_BATCH, // 오프라인 메시지 한 묶음 끝 (body = {"last":seq,"remaining":n})
+    OFFLINE_ACK,   // 묶음 받았음 (body = last seq)
+    ROOM_JOIN,     // 방 들어가기 (body = 방 이름)
+    ROOM_LEAVE,    // 방 나가기 (body = 방 이름)
+    ROOM_MEMBERS,  // 방 멤버 변동 (body = {"room":..,"members":[..]} / {"joined":id} / {"left":id})
+    SENDER_KEY,    // 방 체인 키 전달 (1:1 세션으로 암호화, receiver = 멤버 ID)
+    KEY_BATCH_REQ, // 여러 명의 공개키 요청 (body = {"ids":[..]})
+    KEY_BATCH_RES, // 여러 명의 공개키 응답 (body = {"keys":{id:공개키},"missing":[..]}), 로그인 직후 미리 보내기도 이것
+    FILE_OFFER,    // 파일 보내기 시작 (body = 1:1 세션으로 암호화한 {"id":..,"name":..,"size":..,"chunk":..}), 저장 안 함
+    FILE_CHUNK,    // 파일 조각 (body = FileStream 암호문), 받는 쪽이 접속해 있을 때만 릴레이
+    FILE_ACK       // 받은 조각 수 (body = "fileId:조각 수" 또는 "fileId:FAIL"), 보내는 쪽 창(window)을 연다
 }
@@ -0,0 +1,185 @@
+package com.e2ee.server.store;
+
+import com.e2ee.server.protocol.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 채팅 기록의 메모리 색인.
+ *
+ *   seq → appendMillis            (전체, 시간 범위 → seq 범위 변환용)
+ *   대화(두 사람 또는 ALL) → seq 목록
+ *   사용자(보냈거나 받은 것) → seq 목록
+ *
+ * 사람은 기기 태그를 뗀 사용자 ID로 묶는다 ("alice#0001" → "alice"): 어느 기기로 주고받았든 같은 대화, 같은 사용자.
+ *   사용자 ID → 1:1로 주고받은 상대 ID (최근 것이 뒤, 로그인 때 공개키 미리 보내기용)
+ *
+ * seq 목록은 오름차순 long 배열이라
+ * "이 범위에서 몇 건" 은 이진 탐색 두 번 + 페이지 크기만큼 복사로 끝난다. → O(log n + page)
+ */
+class HistoryIndex {
+
+    static final String ALL = "ALL";
+
+    // 사용자 한 명이 기억하는 최근 상대 수
+    static final int MAX_CONTACTS = 1000;
+
+    // 오름차순 seq 목록 (거의 항상 끝에 붙음)
+    static final class SeqList {
+        long[] seqs = new long[8];
+        int size;
+
+        void add(long seq) {
+            if (size == seqs.length) seqs = Arrays.copyOf(seqs, size * 2);
+
+            // 동시에 저장된 두 건이 순서가 바뀌어 들어오는 경우만 뒤로 밀어 넣는다
+            int i = size;
+            while (i > 0 && seqs[i - 1] > seq) {
+                seqs[i] = seqs[i - 1];
+                i--;
+            }
+            seqs[i] = seq;
+            size++;
+        }
+
+        // seq 이상인 첫 위치
+        int lowerBound(long seq) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (seqs[mid] < seq) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private long[] times = new long[1024];
+    private long count;
+
+    private final Map<String, SeqList> conversations = new HashMap<>();
+    private final Map<String, SeqList> users = new HashMap<>();
+    private final Map<String, LinkedHashSet<String>> contacts = new HashMap<>();
+
+    synchronized void add(long seq, long millis, String sender, String receiver) {
+        if (seq >= times.length) {
+            times = Arrays.copyOf(times, (int) Math.max(times.length * 2L, seq + 1));
+        }
+        // 시간은 seq 순서대로 줄어들지 않게 (seqAtOrAfter의 이진 탐색 조건)
+        times[(int) seq] = (seq > 0) ? Math.max(millis, times[(int) seq - 1]) : millis;
+        count = Math.max(count, seq + 1);
+
+        conversations.computeIfAbsent(conversationKey(sender, receiver), k -> new SeqList()).add(seq);
+
+        String from = sender == null ? null : userIdOf(sender);
+        if (from != null) {
+            users.computeIfAbsent(from, k -> new SeqList()).add(seq);
+        }
+        if (receiver != null && !isGroup(receiver)) {
+            String to = userIdOf(receiver);
+            if (!to.equals(from)) {
+                users.computeIfAbsent(to, k -> new SeqList()).add(seq);
+                if (from != null) {
+                    touch(from, to);
+                    touch(to, from);
+                }
+            }
+        }
+    }
+
+    // user가 1:1로 주고받은 상대들, 최근 순으로 최대 max명
+    synchronized List<String> contacts(String user, int max) {
+        LinkedHashSet<String> set = contacts.get(user);
+        if (set == null) return List.of();
+
+        List<String> all = new ArrayList<>(set);
+        List<String> result = new ArrayList<>(Math.min(max, all.size()));
+        for (int i = all.size() - 1; i >= 0 && result.size() < max; i--) {
+            result.add(all.get(i));
+        }
+        return result;
+    }
+
+    // 맨 뒤(가장 최근)로 옮기고, 넘치면 가장 오래된 상대를 뺀다
+    private void touch(String user, String peer) {
+        LinkedHashSet<String> set = contacts.computeIfAbsent(user, k -> new LinkedHashSet<>());
+        set.remove(peer);
+        set.add(peer);
+        if (set.size() > MAX_CONTACTS) {
+            Iterator<String> it = set.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * @param key      conversationKey(...) 또는 사용자 ID
+     * @param byUser   true면 사용자 색인, false면 대화 색인
+     * @param fromSeq  이 seq 이상
+     * @param toSeq    이 seq 미만
+     * @param limit    최대 건수
+     * @param forward  true면 fromSeq 쪽부터, false면 toSeq 쪽(최신)부터
+     * @return {seq..., 더 있으면 마지막에 -1을 하나 더} (오름차순)
+     */
+    synchronized long[] page(String key, boolean byUser, long fromSeq, long toSeq, int limit, boolean forward) {
+        SeqList list = (byUser ? users : conversations).get(key);
+        if (list == null || fromSeq >= toSeq) return new long[0];
+
+        int from = list.lowerBound(fromSeq);
+        int to = list.lowerBound(toSeq);
+        int n = Math.min(limit, to - from);
+        boolean more = (to - from) > n;
+
+        int start = forward ? from : to - n;
+        long[] result = Arrays.copyOfRange(list.seqs, start, start + n + (more ? 1 : 0));
+        if (more) result[n] = -1;
+        return result;
+    }
+
+    // millis 이상인 첫 seq (appendMillis는 줄어들지 않으므로 이진 탐색)
+    synchronized long seqAtOrAfter(long millis) {
+        long lo = 0;
+        long hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (times[(int) mid] < millis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    synchronized long time(long seq) {
+        return times[(int) seq];
+    }
+
+    synchronized long size() {
+        return count;
+    }
+
+    // 두 사람 대화는 순서와 기기 태그에 상관없이 같은 키, 전체방은 "ALL", 방은 "room:이름"
+    static String conversationKey(String a, String b) {
+        if (b == null || ALL.equalsIgnoreCase(b)) return ALL;
+        if (b.startsWith(ChatMessage.ROOM_PREFIX)) return b;
+        a = (a == null) ? "" : userIdOf(a);
+        b = userIdOf(b);
+        return a.compareTo(b) <= 0 ? a + '\u0000' + b : b + '\u0000' + a;
+    }
+
+    // "bob#0001" → "bob"
+    static String userIdOf(String tag) {
+        int i = tag.indexOf('#');
+        return i < 0 ? tag : tag.substring(0, i);
+    }
+
+    // 전체방/방: 받는 "사람"이 아님
+    private static boolean isGroup(String receiver) {
+        return ALL.equalsIgnoreCase(receiver) || receiver.startsWith(ChatMessage.ROOM_PREFIX);
+    }
+}
@@ -0,0 +1,54 @@
+package com.e2ee.server.store;
+
+import com.e2ee.server.protocol.ChatMessage;
+
+import java.util.List;
+
+/**
+ * 채팅 기록 한 페이지 (오래된 것 → 최신 순).
+ *
+ * nextCursor가 null이면 그 방향으로 더 없음.
+ */
+public class HistoryPage {
+
+    // 기록 한 건: 로그 번호, 서버 저장 시각(epoch ms), 메시지
+    public static class Entry {
+        private final long seq;
+        private final long time;
+        private final ChatMessage message;
+
+        public Entry(long seq, long time, ChatMessage message) {
+            this.seq = seq;
+            this.time = time;
+            this.message = message;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public ChatMessage getMessage() {
+            return message;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final Long nextCursor;
+
+    public HistoryPage(List<Entry> entries, Long nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
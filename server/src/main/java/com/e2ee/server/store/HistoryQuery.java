@@ -0,0 +1,91 @@
+package com.e2ee.server.store;
+
+/**
+ * 채팅 기록 조회 조건 (HISTORY_REQ 본문 JSON / REST 파라미터 공통).
+ *
+ *   user만        → user가 보내거나 받은 메시지
+ *   user + peer   → 두 사람 사이 대화
+ *   peer = "ALL"  → 전체방
+ *   peer = "room:이름" → 그 방
+ *
+ * since/until은 epoch ms (until은 포함 안 함).
+ * cursor는 이전 페이지의 nextCursor를 그대로 넘기면 이어서 가져온다.
+ * forward=false(기본)면 최신 쪽부터 거슬러 올라가고, true면 cursor 이후 새 메시지 쪽으로 간다.
+ */
+public class HistoryQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private String user;
+    private String peer;
+    private Long since;
+    private Long until;
+    private Long cursor;
+    private boolean forward;
+    private int limit = DEFAULT_LIMIT;
+
+    public HistoryQuery() {
+    }
+
+    public HistoryQuery(String user, String peer) {
+        this.user = user;
+        this.peer = peer;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public void setPeer(String peer) {
+        this.peer = peer;
+    }
+
+    public Long getSince() {
+        return since;
+    }
+
+    public void setSince(Long since) {
+        this.since = since;
+    }
+
+    public Long getUntil() {
+        return until;
+    }
+
+    public void setUntil(Long until) {
+        this.until = until;
+    }
+
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Long cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    public void setForward(boolean forward) {
+        this.forward = forward;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
@@ -1,72 +1,236 @@
 package com.e2ee.server.store;
 
+import com.e2ee.server.metrics.StoreTimer;
 import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.FrameHeader;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
-public class HistoryStore {
-
-    private static final String HISTORY_FILE = "data/history.json";
+/**
+ * 채팅 기록 저장소.
+ *
+ * 예전에는 메시지 하나마다 전체 목록을 history.json에 다시 썼지만,
+ * 이제는 MessageLog(세그먼트 append-only 로그)에 JSON 한 건씩 이어 붙인다.
+ * → 기록이 아무리 많아져도 add() 비용은 메시지 크기에만 비례.
+ *
+ * 릴레이 빠른 경로는 받은 프레임 본문을 그대로 붙이므로(addFrame),
+ * 레코드는 JSON('{'로 시작)이거나 바이너리 프레임 본문(첫 바이트 = 타입 번호)이다.
+ *
+ * 대화별/사용자별 색인(HistoryIndex)을 메모리에 유지해서
+ * query()는 기록이 아무리 많아도 O(log n + 페이지 크기)로 끝난다.
+ * 시작할 때 로그를 한 번 훑어 색인을 다시 만든다 (레코드마다 헤더만 읽음).
+ */
+public final class HistoryStore implements Closeable {
+
+    // 기본값: 세그먼트 64MB, 64건 또는 200ms마다 fsync
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_FSYNC_EVERY_RECORDS = 64;
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 200;
 
     private final Gson gson = new Gson();
 
-    // 메모리 캐시
-    private final List<ChatMessage> logs = new ArrayList<>();
+    private final MessageLog log;
+
+    private volatile StoreTimer appendTimer = StoreTimer.NONE;
+
+    private final HistoryIndex index = new HistoryIndex();
 
     public HistoryStore() {
-        load();
+        this(Paths.get("data"),
+                DEFAULT_SEGMENT_BYTES,
+                DEFAULT_FSYNC_EVERY_RECORDS,
+                DEFAULT_FSYNC_INTERVAL_MILLIS);
     }
 
-    // 로드
-    private void load() {
+    /**
+     * @param dataDir 데이터 디렉터리 (세그먼트는 dataDir/history/ 아래에 쌓인다)
+     */
+    public HistoryStore(Path dataDir,
+                        long segmentBytes,
+                        int fsyncEveryRecords,
+                        long fsyncIntervalMillis) {
         try {
-            File f = new File(HISTORY_FILE);
-            if (!f.exists()) {
-                save();
-                return;
-            }
+            this.log = new MessageLog(dataDir.resolve("history"),
+                    segmentBytes, fsyncEveryRecords, fsyncIntervalMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException("히스토리 로그 열기 실패", e);
+        }
+
+        buildIndex();
+        importLegacy(dataDir.resolve("history.json"));
+    }
+
+    private void buildIndex() {
+        long started = System.currentTimeMillis();
+        try {
+            log.forEach((seq, millis, payload) -> index(seq, millis, payload, 0, payload.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("히스토리 색인 만들기 실패", e);
+        }
+        if (index.size() > 0) {
+            System.out.println("[HistoryStore] 색인 완료: " + index.size() + "건, "
+                    + (System.currentTimeMillis() - started) + "ms");
+        }
+    }
+
+    // 레코드 하나를 색인에 넣는다 (라우팅 헤더만 읽음)
+    private void index(long seq, long millis, byte[] record, int off, int len) {
+        FrameCodec codec = (len > 0 && record[off] == '{') ? FrameCodec.JSON : FrameCodec.BINARY;
+        FrameHeader h = codec.readHeader(record, off, len);
+        if (h != null) {
+            index.add(seq, millis, h.getSender(), h.getReceiver());
+        } else {
+            ChatMessage m = codec.decode(record, off, len);
+            index.add(seq, millis, m.getSender(), m.getReceiver());
+        }
+    }
 
-            Reader reader = new FileReader(f);
+    // 예전 형식(history.json 통째 저장)이 남아 있으면 로그로 한 번만 옮긴다
+    private void importLegacy(Path legacy) {
+        if (!Files.exists(legacy) || log.size() > 0) return;
+
+        try (Reader reader = Files.newBufferedReader(legacy, StandardCharsets.UTF_8)) {
             Type type = new TypeToken<List<ChatMessage>>(){}.getType();
             List<ChatMessage> loaded = gson.fromJson(reader, type);
+            if (loaded == null || loaded.isEmpty()) return;
 
-            if (loaded != null) logs.addAll(loaded);
-
-            reader.close();
-            System.out.println("[HistoryStore] 기록 로드: " + logs.size());
+            for (ChatMessage m : loaded) {
+                add(m);
+            }
+            System.out.println("[HistoryStore] history.json → 로그 이전: " + loaded.size() + "건");
 
         } catch (Exception e) {
             e.printStackTrace();
+            return;
         }
-    }
 
-    // 저장
-    private void save() {
         try {
-            File f = new File(HISTORY_FILE);
-            f.getParentFile().mkdirs();
+            Files.move(legacy, legacy.resolveSibling("history.json.imported"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            Writer writer = new FileWriter(f);
-            gson.toJson(logs, writer);
-            writer.close();
+    // 쓰기 시간 지표 (ChatTcpServer가 RelayMetrics로 설정)
+    public void setAppendTimer(StoreTimer timer) {
+        this.appendTimer = timer;
+    }
 
-        } catch (Exception e) {
+    // 추가 (로그 끝에 붙이기만 함) → 저장된 seq
+    public long add(ChatMessage msg) {
+        return add(gson.toJson(msg));
+    }
+
+    // 이미 JSON으로 만든 메시지를 그대로 추가 (릴레이에서 두 번 직렬화하지 않도록)
+    public long add(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return addFrame(bytes, 0, bytes.length);
+    }
+
+    // 받은 프레임 본문(JSON 또는 바이너리)을 다시 만들지 않고 그대로 추가 → 저장된 seq (실패 시 -1)
+    public long addFrame(byte[] frame, int off, int len) {
+        long start = System.nanoTime();
+        try {
+            long seq = log.append(frame, off, len);
+            index(seq, System.currentTimeMillis(), frame, off, len);
+            appendTimer.record(start, len);
+            return seq;
+        } catch (IOException e) {
             e.printStackTrace();
+            return -1;
         }
     }
 
-    // 추가 후 저장
-    public synchronized void add(ChatMessage msg) {
-        logs.add(msg);
-        save();
+    // 저장된 레코드 그대로 (JSON 또는 바이너리 본문, decodeRecord로 해석)
+    public byte[] readRecord(long seq) throws IOException {
+        return log.read(seq);
     }
 
+    // 레코드가 어떤 코덱의 본문인지 (첫 바이트로 구분)
+    public static FrameCodec codecOf(byte[] record) {
+        return (record.length > 0 && record[0] == '{') ? FrameCodec.JSON : FrameCodec.BINARY;
+    }
+
+    // 레코드 하나 → ChatMessage
+    public static ChatMessage decodeRecord(byte[] record) {
+        return codecOf(record).decode(record);
+    }
+
+    /**
+     * 조건에 맞는 기록 한 페이지.
+     *
+     * 색인에서 seq 목록을 이진 탐색으로 잘라 온 뒤 그 레코드들만 로그에서 읽는다.
+     */
+    public HistoryPage query(HistoryQuery q) {
+        if (q.getUser() == null && q.getPeer() == null) {
+            throw new IllegalArgumentException("user 또는 peer가 필요합니다");
+        }
+        int limit = Math.max(1, Math.min(q.getLimit(), HistoryQuery.MAX_LIMIT));
+
+        long fromSeq = q.getSince() != null ? index.seqAtOrAfter(q.getSince()) : 0;
+        long toSeq = q.getUntil() != null ? index.seqAtOrAfter(q.getUntil()) : Long.MAX_VALUE;
+        if (q.getCursor() != null) {
+            if (q.isForward()) fromSeq = Math.max(fromSeq, q.getCursor() + 1);
+            else toSeq = Math.min(toSeq, q.getCursor());
+        }
+
+        boolean byUser = q.getPeer() == null;
+        String key = byUser ? HistoryIndex.userIdOf(q.getUser()) : HistoryIndex.conversationKey(q.getUser(), q.getPeer());
+
+        long[] seqs = index.page(key, byUser, fromSeq, toSeq, limit, q.isForward());
+        boolean more = seqs.length > 0 && seqs[seqs.length - 1] < 0;
+        int n = more ? seqs.length - 1 : seqs.length;
+
+        List<HistoryPage.Entry> entries = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                entries.add(new HistoryPage.Entry(seqs[i], index.time(seqs[i]), decodeRecord(log.read(seqs[i]))));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("히스토리 읽기 실패", e);
+        }
+
+        Long next = null;
+        if (more) next = q.isForward() ? seqs[n - 1] : seqs[0];
+        return new HistoryPage(entries, next);
+    }
+
+    // user(ID)와 1:1로 주고받은 상대 ID, 최근 순으로 최대 max명
+    public List<String> contactsOf(String user, int max) {
+        return index.contacts(HistoryIndex.userIdOf(user), max);
+    }
+
+    // 전체 기록 (로그를 처음부터 읽는다 - 관리/디버그용)
     public List<ChatMessage> getAll() {
-        return new ArrayList<>(logs);
+        List<ChatMessage> result = new ArrayList<>();
+        try {
+            log.forEach((seq, millis, payload) -> result.add(decodeRecord(payload)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    public long size() {
+        return log.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,429 @@
+package com.e2ee.server.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 세그먼트 파일에 길이 접두사 레코드를 이어 붙이기만 하는 메시지 로그.
+ *
+ * 레코드 형식: [int length][int crc32][long appendMillis][payload(length 바이트)]
+ *
+ * - 세그먼트 파일 이름은 그 파일의 첫 레코드 번호(seq)이다. (예: 00000000000000000000.log)
+ * - 세그먼트가 segmentBytes를 넘으면 새 파일로 넘어간다(rolling).
+ * - fsync는 N개 레코드마다 또는 T ms마다 묶어서 한다.
+ * - 시작할 때 모든 세그먼트를 훑어 레코드 수를 세고,
+ *   마지막 세그먼트 끝의 찢어진(torn) 레코드는 잘라낸다.
+ * - 레코드마다 세그먼트 안 위치를 메모리에 들고 있어서 read(seq)는 파일 읽기 두 번이면 된다.
+ * - appendMillis는 줄어들지 않게 기록한다 (시계가 뒤로 가도 시간 범위 검색이 이진 탐색 가능).
+ */
+public class MessageLog implements Closeable {
+
+    public static final int HEADER_SIZE = 16;
+
+    // 레코드 하나의 최대 크기 (길이 필드가 깨졌을 때 엉뚱한 값으로 읽지 않게)
+    public static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int fsyncEveryRecords;
+
+    // 세그먼트 시작 seq 목록 (오름차순)
+    private final List<Long> segmentBases = new ArrayList<>();
+
+    // 현재 쓰고 있는 세그먼트
+    private FileChannel active;
+    private long activeBase;
+    private long activeSize;
+
+    // 다음에 붙일 레코드 번호
+    private long nextSeq;
+
+    // seq → 세그먼트 파일 안에서의 시작 위치
+    private long[] positions = new long[1024];
+
+    // 마지막으로 기록한 appendMillis
+    private long lastMillis;
+
+    // 읽기용 채널 (세그먼트 시작 seq → 채널), 위치 지정 읽기라 여러 스레드가 같이 써도 됨
+    private final Map<Long, FileChannel> readers = new ConcurrentHashMap<>();
+
+    // 마지막 fsync 이후 쌓인 레코드 수
+    private int unsynced;
+
+    // 시간 기준 fsync 담당
+    private final ScheduledExecutorService syncer;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private volatile boolean closed;
+
+    /**
+     * @param dir                 세그먼트 파일을 둘 디렉터리
+     * @param segmentBytes        세그먼트 하나의 최대 크기
+     * @param fsyncEveryRecords   N개 레코드마다 fsync (0 이하이면 개수 기준 fsync 안 함)
+     * @param fsyncIntervalMillis T ms마다 fsync (0 이하이면 시간 기준 fsync 안 함)
+     */
+    public MessageLog(Path dir,
+                      long segmentBytes,
+                      int fsyncEveryRecords,
+                      long fsyncIntervalMillis) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsyncEveryRecords = fsyncEveryRecords;
+
+        Files.createDirectories(dir);
+        recover();
+
+        if (fsyncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "message-log-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncIfDirty,
+                    fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    // ---------------- 복구 ----------------
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : ds) files.add(p);
+        }
+        files.sort(null);
+
+        long seq = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path p = files.get(i);
+            long base = parseBase(p);
+            boolean last = (i == files.size() - 1);
+
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long[] scan = scanValid(ch, base);
+                long validEnd = scan[0];
+                long count = scan[1];
+
+                if (validEnd < ch.size()) {
+                    // 중간 세그먼트가 깨진 건 이상한 상황이지만, 읽을 수 있는 데까지만 살린다
+                    System.out.println("[MessageLog] " + p.getFileName() + " 끝의 깨진 레코드 잘라냄: "
+                            + (ch.size() - validEnd) + " bytes" + (last ? "" : " (중간 세그먼트!)"));
+                    ch.truncate(validEnd);
+                    ch.force(true);
+                }
+
+                segmentBases.add(base);
+                seq = base + count;
+            }
+        }
+
+        nextSeq = seq;
+
+        if (segmentBases.isEmpty()) {
+            openNewSegment(0);
+        } else {
+            activeBase = segmentBases.get(segmentBases.size() - 1);
+            active = FileChannel.open(segmentPath(activeBase), StandardOpenOption.WRITE);
+            activeSize = active.size();
+            active.position(activeSize);
+        }
+
+        System.out.println("[MessageLog] 복구 완료: 세그먼트 " + segmentBases.size()
+                + "개, 레코드 " + nextSeq + "개");
+    }
+
+    // 채널 처음부터 유효한 레코드를 세면서 훑는다 → {유효한 끝 위치, 레코드 수}
+    // 훑으면서 레코드 위치(positions)와 마지막 appendMillis도 채운다
+    private long[] scanValid(FileChannel ch, long base) throws IOException {
+        long size = ch.size();
+        long pos = 0;
+        long count = 0;
+        ByteBuffer hdr = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 c = new CRC32();
+
+        while (pos + HEADER_SIZE <= size) {
+            hdr.clear();
+            if (readFully(ch, hdr, pos) < HEADER_SIZE) break;
+            hdr.flip();
+            int len = hdr.getInt();
+            int sum = hdr.getInt();
+            long millis = hdr.getLong();
+
+            if (len < 0 || len > MAX_RECORD_SIZE || pos + HEADER_SIZE + len > size) break;
+
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(ch, payload, pos + HEADER_SIZE);
+            c.reset();
+            c.update(payload.array(), 0, len);
+            if ((int) c.getValue() != sum) break;
+
+            setPosition(base + count, pos);
+            lastMillis = Math.max(lastMillis, millis);
+
+            pos += HEADER_SIZE + len;
+            count++;
+        }
+        return new long[]{pos, count};
+    }
+
+    // ---------------- 쓰기 ----------------
+
+    /**
+     * 레코드 하나를 로그 끝에 붙인다. 비용은 payload 크기에만 비례한다.
+     *
+     * @return 붙인 레코드의 번호(seq)
+     */
+    public long append(byte[] payload) throws IOException {
+        return append(payload, 0, payload.length);
+    }
+
+    // payload[off, off+len) 만 붙인다 (받은 프레임 배열을 복사 없이 그대로 쓸 때)
+    public long append(byte[] payload, int off, int len) throws IOException {
+        if (len > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("레코드가 너무 큽니다: " + len);
+        }
+
+        FileChannel toSync = null;
+        long seq;
+
+        synchronized (this) {
+            if (closed) throw new ClosedChannelException();
+
+            if (activeSize > 0 && activeSize + HEADER_SIZE + len > segmentBytes) {
+                roll();
+            }
+
+            crc.reset();
+            crc.update(payload, off, len);
+
+            lastMillis = Math.max(lastMillis, System.currentTimeMillis());
+
+            header.clear();
+            header.putInt(len);
+            header.putInt((int) crc.getValue());
+            header.putLong(lastMillis);
+            header.flip();
+
+            ByteBuffer body = ByteBuffer.wrap(payload, off, len);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                active.write(new ByteBuffer[]{header, body});
+            }
+
+            seq = nextSeq++;
+            setPosition(seq, activeSize);
+            activeSize += HEADER_SIZE + len;
+
+            if (fsyncEveryRecords > 0 && ++unsynced >= fsyncEveryRecords) {
+                unsynced = 0;
+                toSync = active;
+            }
+        }
+
+        // fsync는 락 밖에서 (그 사이 다른 스레드는 계속 append 가능)
+        if (toSync != null) {
+            force(toSync);
+        }
+        return seq;
+    }
+
+    private void setPosition(long seq, long pos) {
+        if (seq >= positions.length) {
+            positions = Arrays.copyOf(positions, (int) Math.max(positions.length * 2L, seq + 1));
+        }
+        positions[(int) seq] = pos;
+    }
+
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        unsynced = 0;
+        openNewSegment(nextSeq);
+    }
+
+    private void openNewSegment(long base) throws IOException {
+        active = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeBase = base;
+        activeSize = active.size();
+        active.position(activeSize);
+        if (segmentBases.isEmpty() || segmentBases.get(segmentBases.size() - 1) != base) {
+            segmentBases.add(base);
+        }
+    }
+
+    private void syncIfDirty() {
+        FileChannel toSync;
+        synchronized (this) {
+            if (closed || unsynced == 0) return;
+            unsynced = 0;
+            toSync = active;
+        }
+        force(toSync);
+    }
+
+    private void force(FileChannel ch) {
+        try {
+            ch.force(false);
+        } catch (ClosedChannelException e) {
+            // 그 사이 roll/close 되면서 이미 fsync 됨
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ---------------- 읽기 ----------------
+
+    /** 로그를 처음부터 끝까지 읽을 때 레코드마다 불리는 콜백 */
+    public interface RecordVisitor {
+        void visit(long seq, long appendMillis, byte[] payload) throws IOException;
+    }
+
+    /** 지금까지 붙은 모든 레코드를 순서대로 훑는다. */
+    public void forEach(RecordVisitor visitor) throws IOException {
+        List<Long> bases;
+        long end;
+        synchronized (this) {
+            bases = new ArrayList<>(segmentBases);
+            end = nextSeq;
+            active.force(false);
+        }
+
+        ByteBuffer hdr = ByteBuffer.allocate(HEADER_SIZE);
+        for (long base : bases) {
+            try (FileChannel ch = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                long pos = 0;
+                long seq = base;
+                while (seq < end) {
+                    hdr.clear();
+                    if (readFully(ch, hdr, pos) < HEADER_SIZE) break;
+                    hdr.flip();
+                    int len = hdr.getInt();
+                    hdr.getInt();
+                    long millis = hdr.getLong();
+
+                    ByteBuffer payload = ByteBuffer.allocate(len);
+                    if (readFully(ch, payload, pos + HEADER_SIZE) < len) break;
+
+                    visitor.visit(seq, millis, payload.array());
+                    pos += HEADER_SIZE + len;
+                    seq++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 레코드 하나를 번호로 바로 읽는다. (헤더 + payload 두 번 읽기)
+     */
+    public byte[] read(long seq) throws IOException {
+        long base;
+        long pos;
+        synchronized (this) {
+            if (closed) throw new ClosedChannelException();
+            if (seq < 0 || seq >= nextSeq) {
+                throw new IllegalArgumentException("없는 레코드: " + seq + " (size=" + nextSeq + ")");
+            }
+            pos = positions[(int) seq];
+            base = segmentBaseOf(seq);
+        }
+
+        FileChannel ch = readers.computeIfAbsent(base, b -> {
+            try {
+                return FileChannel.open(segmentPath(b), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        ByteBuffer hdr = ByteBuffer.allocate(HEADER_SIZE);
+        if (readFully(ch, hdr, pos) < HEADER_SIZE) throw new IOException("레코드 헤더를 읽을 수 없음: " + seq);
+        hdr.flip();
+        int len = hdr.getInt();
+
+        ByteBuffer payload = ByteBuffer.allocate(len);
+        if (readFully(ch, payload, pos + HEADER_SIZE) < len) throw new IOException("레코드가 잘렸음: " + seq);
+        return payload.array();
+    }
+
+    // seq가 들어 있는 세그먼트의 시작 seq (segmentBases 이진 탐색)
+    private long segmentBaseOf(long seq) {
+        int lo = 0;
+        int hi = segmentBases.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentBases.get(mid) <= seq) lo = mid;
+            else hi = mid - 1;
+        }
+        return segmentBases.get(lo);
+    }
+
+    /** 다음에 붙을 레코드 번호 = 지금까지 붙은 레코드 수 */
+    public synchronized long size() {
+        return nextSeq;
+    }
+
+    public synchronized int segmentCount() {
+        return segmentBases.size();
+    }
+
+    // ---------------- 종료 ----------------
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) syncer.shutdownNow();
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            active.force(false);
+            active.close();
+        }
+        for (FileChannel ch : readers.values()) {
+            ch.close();
+        }
+        readers.clear();
+    }
+
+    // ---------------- 유틸 ----------------
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    private static long parseBase(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+}
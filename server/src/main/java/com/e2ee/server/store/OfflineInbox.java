@@ -0,0 +1,303 @@
+package com.e2ee.server.store;
+
+import com.e2ee.server.metrics.StoreTimer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 오프라인 수신자별 받은편지함.
+ *
+ * 메시지 본문은 이미 HistoryStore에 있으므로 여기에는 히스토리 seq만 쌓는다.
+ * 변경은 전부 저널(MessageLog, dataDir/inbox/)에 한 건씩 붙인다.
+ *
+ *   ENQ user seq  : user 앞으로 seq 추가
+ *   ACK user seq  : 그때 큐에 있던 user의 seq 이하 전부 처리됨 (전달 확인, 또는 한도 초과로 버림)
+ *
+ * seq는 히스토리에 저장할 때 정해지고 여기 넣는 건 그 뒤라 (동시 송신, SPILL)
+ * 순서가 바뀌어 올 수 있다. 큐는 늘 오름차순으로 끼워 넣고, 전달 확인은
+ * 실제로 보낸 것만 지운다 (보내는 사이 끼어든 더 작은 seq는 남긴다).
+ *
+ * 시작할 때 저널을 재생해서 메모리 큐를 다시 만들고,
+ * 저널이 남은 건수에 비해 많이 커졌으면 남은 것만으로 새 저널을 만들어 바꿔 끼운다.
+ *
+ * 사용자당 maxPerUser건까지만 보관하고, 넘치면 가장 오래된 것부터 버린다.
+ */
+public class OfflineInbox implements Closeable {
+
+    public static final int DEFAULT_MAX_PER_USER = 10_000;
+
+    private static final byte OP_ENQ = 1;
+    private static final byte OP_ACK = 2;
+
+    // 저널이 (남은 건수 * 2 + 이 값)보다 크면 시작할 때 압축
+    private static final long COMPACT_SLACK = 10_000;
+
+    // user 한 명의 대기열 (오름차순 seq, 앞에서 빼고 보통은 뒤에 붙임)
+    static final class Queue {
+        long[] seqs = new long[8];
+        int head;
+        int tail;
+
+        int size() {
+            return tail - head;
+        }
+
+        // 제자리에 끼운다 (늦게 온 작은 seq는 뒤에서부터 찾으므로 보통 몇 칸), 이미 있으면 false
+        boolean add(long seq) {
+            if (tail == seqs.length) {
+                if (head > 0) {
+                    System.arraycopy(seqs, head, seqs, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                }
+                if (tail == seqs.length) seqs = Arrays.copyOf(seqs, seqs.length * 2);
+            }
+
+            int i = tail;
+            while (i > head && seqs[i - 1] > seq) i--;
+            if (i > head && seqs[i - 1] == seq) return false;
+
+            System.arraycopy(seqs, i, seqs, i + 1, tail - i);
+            seqs[i] = seq;
+            tail++;
+            return true;
+        }
+
+        // seq 이하를 모두 뺀다
+        void removeUpTo(long seq) {
+            while (head < tail && seqs[head] <= seq) head++;
+            if (head == tail) head = tail = 0;
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int fsyncEveryRecords;
+    private final long fsyncIntervalMillis;
+    private final int maxPerUser;
+
+    private final Map<String, Queue> queues = new HashMap<>();
+    private long pending;
+    private long dropped;
+
+    private MessageLog journal;
+
+    private volatile StoreTimer appendTimer = StoreTimer.NONE;
+
+    /**
+     * @param dataDir 데이터 디렉터리 (저널은 dataDir/inbox/)
+     */
+    public OfflineInbox(Path dataDir, int maxPerUser,
+                        long segmentBytes, int fsyncEveryRecords, long fsyncIntervalMillis) {
+        this.dir = dataDir.resolve("inbox");
+        this.maxPerUser = maxPerUser;
+        this.segmentBytes = segmentBytes;
+        this.fsyncEveryRecords = fsyncEveryRecords;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+
+        try {
+            finishInterruptedCompaction();
+            journal = openJournal(dir);
+            replay();
+            compactIfLarge();
+        } catch (IOException e) {
+            throw new UncheckedIOException("오프라인 받은편지함 열기 실패", e);
+        }
+    }
+
+    // ---------------- 시작 ----------------
+
+    private MessageLog openJournal(Path d) throws IOException {
+        return new MessageLog(d, segmentBytes, fsyncEveryRecords, fsyncIntervalMillis);
+    }
+
+    private void replay() throws IOException {
+        journal.forEach((seq, millis, payload) -> {
+            ByteBuffer b = ByteBuffer.wrap(payload);
+            byte op = b.get();
+            long msgSeq = b.getLong();
+            String user = new String(payload, b.position(), b.remaining(), StandardCharsets.UTF_8);
+
+            if (op == OP_ENQ) {
+                if (queues.computeIfAbsent(user, k -> new Queue()).add(msgSeq)) pending++;
+            } else if (op == OP_ACK) {
+                removeUpTo(user, msgSeq);
+            }
+        });
+
+        if (pending > 0) {
+            System.out.println("[OfflineInbox] 대기 중인 오프라인 메시지: " + pending + "건 (" + queues.size() + "명)");
+        }
+    }
+
+    // 압축 도중 죽었으면: 새 저널이 다 만들어졌는지에 따라 마저 바꾸거나 버린다
+    private void finishInterruptedCompaction() throws IOException {
+        Path compact = dir.resolveSibling("inbox.compact");
+        Path old = dir.resolveSibling("inbox.old");
+
+        if (Files.exists(compact)) {
+            if (Files.exists(dir)) deleteDir(compact);
+            else Files.move(compact, dir);
+        }
+        if (Files.exists(old)) deleteDir(old);
+    }
+
+    private void compactIfLarge() throws IOException {
+        if (journal.size() <= pending * 2 + COMPACT_SLACK) return;
+
+        long before = journal.size();
+        Path compact = dir.resolveSibling("inbox.compact");
+        Path old = dir.resolveSibling("inbox.old");
+        deleteDir(compact);
+
+        try (MessageLog fresh = openJournal(compact)) {
+            for (Map.Entry<String, Queue> e : queues.entrySet()) {
+                Queue q = e.getValue();
+                for (int i = q.head; i < q.tail; i++) {
+                    fresh.append(record(OP_ENQ, e.getKey(), q.seqs[i]));
+                }
+            }
+        }
+
+        journal.close();
+        Files.move(dir, old);
+        Files.move(compact, dir);
+        deleteDir(old);
+        journal = openJournal(dir);
+
+        System.out.println("[OfflineInbox] 저널 압축: " + before + " → " + journal.size() + "건");
+    }
+
+    // ---------------- 사용 ----------------
+
+    /**
+     * user 앞으로 히스토리 seq 하나를 쌓는다 (이미 있으면 그대로).
+     *
+     * @return 한도를 넘어서 버린 오래된 메시지 수
+     */
+    public synchronized int enqueue(String user, long seq) {
+        Queue q = queues.computeIfAbsent(user, k -> new Queue());
+        if (!q.add(seq)) return 0;
+        append(record(OP_ENQ, user, seq));
+        pending++;
+
+        int over = q.size() - maxPerUser;
+        if (over <= 0) return 0;
+
+        long cut = q.seqs[q.head + over - 1];
+        append(record(OP_ACK, user, cut));
+        removeUpTo(user, cut);
+        dropped += over;
+        return over;
+    }
+
+    /**
+     * 아직 확인 안 된 것 중 afterSeq보다 큰 것을 오래된 순으로 최대 max개.
+     */
+    public synchronized long[] peek(String user, long afterSeq, int max) {
+        Queue q = queues.get(user);
+        if (q == null) return new long[0];
+
+        int from = q.head;
+        while (from < q.tail && q.seqs[from] <= afterSeq) from++;
+        int n = Math.min(max, q.tail - from);
+        return Arrays.copyOfRange(q.seqs, from, from + n);
+    }
+
+    /**
+     * 전달한 seq들(오름차순, peek으로 꺼낸 것)이 확인됨 → 큐 앞에서부터 그 안에 든 것까지 뺀다.
+     *
+     * 보내는 사이 더 작은 seq가 끼어들었으면 거기서 멈춘다.
+     * 그 뒤의 보낸 것들은 남아서 다음에 한 번 더 간다 (최소 한 번 전달).
+     */
+    public synchronized void ack(String user, long[] delivered) {
+        Queue q = queues.get(user);
+        if (q == null) return;
+
+        int i = q.head;
+        for (int k = 0; i < q.tail && k < delivered.length; k++) {
+            if (delivered[k] < q.seqs[i]) continue;     // 이미 빠진 것
+            if (delivered[k] > q.seqs[i]) break;        // 보내지 않은 것이 끼어 있음
+            i++;
+        }
+        if (i == q.head) return;
+
+        long cut = q.seqs[i - 1];
+        append(record(OP_ACK, user, cut));
+        removeUpTo(user, cut);
+    }
+
+    public synchronized int pendingFor(String user) {
+        Queue q = queues.get(user);
+        return q == null ? 0 : q.size();
+    }
+
+    public synchronized long getPending() {
+        return pending;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ---------------- 내부 ----------------
+
+    private void removeUpTo(String user, long seq) {
+        Queue q = queues.get(user);
+        if (q == null) return;
+
+        int before = q.size();
+        q.removeUpTo(seq);
+        pending -= before - q.size();
+        if (q.size() == 0) queues.remove(user);
+    }
+
+    // 쓰기 시간 지표 (ChatTcpServer가 RelayMetrics로 설정)
+    public void setAppendTimer(StoreTimer timer) {
+        this.appendTimer = timer;
+    }
+
+    private void append(byte[] record) {
+        long start = System.nanoTime();
+        try {
+            journal.append(record);
+            appendTimer.record(start, record.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("오프라인 받은편지함 저널 쓰기 실패", e);
+        }
+    }
+
+    private static byte[] record(byte op, String user, long seq) {
+        byte[] u = user.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 8 + u.length).put(op).putLong(seq).put(u).array();
+    }
+
+    private static void deleteDir(Path d) throws IOException {
+        if (!Files.exists(d)) return;
+        try (Stream<Path> files = Files.walk(d)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -1,90 +1,301 @@
 package com.e2ee.server.store;
 
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.metrics.StoreTimer;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
-public class UserStore {
+/**
+ * 회원 정보 (id, 비밀번호 해시, 공개키) 파일 저장소.
+ *
+ * 비밀번호는 PasswordHasher 해시로만 저장한다.
+ * 예전 파일의 평문 password는 그대로 읽어서 로그인이 되고, 로그인에 성공하면 해시로 바꿔 저장한다.
+ *
+ * addUser / checkPassword는 KDF를 돌리므로 느리다 (연결 스레드가 아니라 KdfExecutor에서 부를 것).
+ *
+ * 저장은 스냅샷 + 저널:
+ *   users.json          : 어느 시점의 전체 회원 (임시 파일에 다 쓰고 fsync 한 뒤 rename으로 바꿔 끼움)
+ *   users.journal/      : 그 뒤의 변경 (MessageLog, 레코드 하나 = 바뀐 UserRecord JSON 한 건)
+ *
+ * 가입/재해시 한 번은 저널에 한 건 붙이는 것뿐이라 회원 수와 상관없이 비용이 같다.
+ * 저널이 snapshotEvery건을 넘으면 백그라운드에서 스냅샷을 새로 쓰고 저널을 비운다.
+ *
+ * 스냅샷을 쓰기 직전에 지금 저널을 users.journal.old로 넘기고 새 저널로 갈아탄다.
+ * 스냅샷 rename이 끝난 뒤에야 .old를 지우므로, 어디서 죽어도 시작할 때
+ * 스냅샷 → .old → 저널 순서로 재생하면 빠진 것이 없다. (레코드는 덮어쓰기라 두 번 재생해도 같음)
+ */
+public final class UserStore implements Closeable {
 
     private static final String USER_FILE = "data/users.json";
 
+    // 저널이 이 건수를 넘으면 스냅샷
+    public static final int DEFAULT_SNAPSHOT_EVERY = 100_000;
+
+    private final File userFile;
+    private final Path journalDir;
+    private final Path oldJournalDir;
+
     private final Gson gson = new Gson();
 
+    private final PasswordHasher hasher;
+
+    private final int snapshotEvery;
+    private final long segmentBytes;
+    private final int fsyncEveryRecords;
+    private final long fsyncIntervalMillis;
+
     // 메모리에 캐시 형태로 올려둠
     private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
 
+    private MessageLog journal;
+
+    private volatile StoreTimer appendTimer = StoreTimer.NONE;
+
+    // 스냅샷은 한 번에 하나만, 가입 스레드를 막지 않게 따로
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "users-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean snapshotting;
+
     public UserStore() {
+        this(new File(USER_FILE));
+    }
+
+    public UserStore(File userFile) {
+        this(userFile, new PasswordHasher());
+    }
+
+    public UserStore(File userFile, PasswordHasher hasher) {
+        this(userFile, hasher, DEFAULT_SNAPSHOT_EVERY,
+                HistoryStore.DEFAULT_SEGMENT_BYTES,
+                HistoryStore.DEFAULT_FSYNC_EVERY_RECORDS,
+                HistoryStore.DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+    public UserStore(File userFile, PasswordHasher hasher, int snapshotEvery,
+                     long segmentBytes, int fsyncEveryRecords, long fsyncIntervalMillis) {
+        this.userFile = userFile;
+        this.journalDir = userFile.toPath().resolveSibling(userFile.getName().replace(".json", "") + ".journal");
+        this.oldJournalDir = journalDir.resolveSibling(journalDir.getFileName() + ".old");
+        this.hasher = hasher;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.segmentBytes = segmentBytes;
+        this.fsyncEveryRecords = fsyncEveryRecords;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
         load();
     }
 
     // -------- User 구조 --------
     public static class UserRecord {
         public String id;
-        public String password;
+        public String passwordHash;
         public String publicKey;
 
-        public UserRecord(String id, String pw, String publicKey) {
+        // 해시 도입 전 파일의 평문 비밀번호 (첫 로그인 성공 때 passwordHash로 옮기고 지움)
+        public String password;
+
+        public UserRecord(String id, String passwordHash, String publicKey) {
             this.id = id;
-            this.password = pw;
+            this.passwordHash = passwordHash;
             this.publicKey = publicKey;
         }
     }
 
-    // 파일 -> 메모리 로드
+    // 스냅샷 + 저널 → 메모리
     private void load() {
+        long started = System.nanoTime();
         try {
-            File f = new File(USER_FILE);
-            if (!f.exists()) {
-                System.out.println("[UserStore] users.json 없음 → 새로 생성");
-                save();    // 빈 파일 생성
-                return;
+            File f = userFile;
+            if (f.exists()) {
+                try (Reader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+                    Type type = new TypeToken<Map<String, UserRecord>>(){}.getType();
+                    Map<String, UserRecord> loaded = gson.fromJson(reader, type);
+                    if (loaded != null) users.putAll(loaded);
+                }
+            } else {
+                System.out.println("[UserStore] users.json 없음 → 새로 시작");
             }
+            int fromSnapshot = users.size();
 
-            Reader reader = new FileReader(f);
-            Type type = new TypeToken<Map<String, UserRecord>>(){}.getType();
-            Map<String, UserRecord> loaded = gson.fromJson(reader, type);
+            // 지난번 스냅샷 도중 죽었으면 넘겨 둔 저널이 남아 있다
+            long replayed = 0;
+            boolean leftover = Files.exists(oldJournalDir);
+            if (leftover) {
+                try (MessageLog old = openJournal(oldJournalDir)) {
+                    replayed += replay(old);
+                }
+            }
+            journal = openJournal(journalDir);
+            replayed += replay(journal);
 
-            if (loaded != null) users.putAll(loaded);
+            System.out.println("[UserStore] 회원정보 로드완료: " + users.size() + "명 (스냅샷 " + fromSnapshot
+                    + "명 + 저널 " + replayed + "건, " + (System.nanoTime() - started) / 1_000_000 + "ms)");
 
-            reader.close();
-            System.out.println("[UserStore] 회원정보 로드완료: " + users.size() + "명");
+            long legacy = users.values().stream().filter(r -> r.passwordHash == null).count();
+            if (legacy > 0) {
+                System.out.println("[UserStore] 평문 비밀번호 " + legacy + "명 → 다음 로그인 때 해시로 바꿈");
+            }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+            if (leftover || journal.size() >= snapshotEvery) snapshot();
+
+        } catch (IOException e) {
+            throw new UncheckedIOException("회원정보 열기 실패", e);
         }
     }
 
-    // 메모리 → 파일 저장
-    private synchronized void save() {
-        try {
-            File f = new File(USER_FILE);
-            f.getParentFile().mkdirs();
+    private MessageLog openJournal(Path dir) throws IOException {
+        return new MessageLog(dir, segmentBytes, fsyncEveryRecords, fsyncIntervalMillis);
+    }
 
-            Writer writer = new FileWriter(f);
-            gson.toJson(users, writer);
-            writer.close();
+    private long replay(MessageLog log) throws IOException {
+        long[] n = new long[1];
+        log.forEach((seq, millis, payload) -> {
+            UserRecord r = gson.fromJson(new String(payload, StandardCharsets.UTF_8), UserRecord.class);
+            users.put(r.id, r);
+            n[0]++;
+        });
+        return n[0];
+    }
 
-            System.out.println("[UserStore] 회원정보 저장완료");
+    // 바뀐 회원 한 명을 저널에 붙인다
+    private synchronized void append(UserRecord r) {
+        long start = System.nanoTime();
+        try {
+            byte[] json = gson.toJson(r).getBytes(StandardCharsets.UTF_8);
+            journal.append(json);
+            appendTimer.record(start, json.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("회원정보 저널 쓰기 실패", e);
+        }
+        if (journal.size() >= snapshotEvery && !snapshotting) {
+            snapshotting = true;
+            snapshotter.execute(this::snapshotQuietly);
+        }
+    }
 
-        } catch (Exception e) {
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                snapshotting = false;
+            }
+        }
+    }
+
+    /**
+     * 지금 회원 전체를 users.json으로 쓰고 저널을 비운다.
+     * 저널을 넘기는 동안만 쓰기를 잠깐 막고, 파일 쓰기는 잠금 밖에서 한다.
+     */
+    void snapshot() throws IOException {
+        long started = System.nanoTime();
+
+        synchronized (this) {
+            // .old가 이미 있으면(지난번 스냅샷 실패) 거기에 이어 붙일 수 없으므로 그것까지 덮는 스냅샷을 먼저 끝낸다
+            if (!Files.exists(oldJournalDir)) {
+                journal.close();
+                Files.move(journalDir, oldJournalDir, StandardCopyOption.ATOMIC_MOVE);
+                journal = openJournal(journalDir);
+            }
+        }
+
+        // 복사하지 않고 맵을 그대로 훑는다. 갈아탄 뒤의 변경이 섞여 들어가도 새 저널에도 있으니 상관없고,
+        // 레코드는 고치지 않고 통째로 새로 만들어 끼우므로(rehash) 반쯤 바뀐 레코드가 써질 일도 없다.
+        writeAtomically(users);
+        deleteDir(oldJournalDir);
+
+        System.out.println("[UserStore] 스냅샷 저장: " + users.size() + "명, "
+                + (System.nanoTime() - started) / 1_000_000 + "ms");
+    }
+
+    // 임시 파일에 다 쓰고 fsync → rename (중간에 죽어도 users.json은 예전 것 그대로)
+    private void writeAtomically(Map<String, UserRecord> snapshot) throws IOException {
+        Path target = userFile.toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(tmp), StandardCharsets.UTF_8), 1 << 16)) {
+            gson.toJson(snapshot, writer);
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // 돌고 있는 스냅샷은 끝날 때까지 기다린다
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     // ---------- 외부에서 사용하는 메서드 -----------
 
+    // 쓰기 시간 지표 (ChatTcpServer가 RelayMetrics로 설정)
+    public void setAppendTimer(StoreTimer timer) {
+        this.appendTimer = timer;
+    }
+
     public boolean exists(String id) {
         return users.containsKey(id);
     }
 
+    public int size() {
+        return users.size();
+    }
+
     public boolean checkPassword(String id, String pw) {
         UserRecord r = users.get(id);
-        if (r == null) return false;
-        return r.password.equals(pw);
+        if (r == null || pw == null) return false;
+
+        if (r.passwordHash == null) {
+            // 예전 평문 → 맞으면 이번에 해시로 바꿔 저장
+            if (r.password == null || !MessageDigest.isEqual(
+                    r.password.getBytes(StandardCharsets.UTF_8), pw.getBytes(StandardCharsets.UTF_8))) {
+                return false;
+            }
+            rehash(r, pw);
+            return true;
+        }
+
+        if (!hasher.verify(pw, r.passwordHash)) return false;
+        if (hasher.needsRehash(r.passwordHash)) rehash(r, pw);
+        return true;
     }
 
     public String getPublicKey(String id) {
@@ -93,8 +304,36 @@ public class UserStore {
         return r.publicKey;
     }
 
-    public void addUser(String id, String pw, String publicKey) {
-        users.put(id, new UserRecord(id, pw, publicKey));
-        save();
+    // 새 회원 (이미 있으면 false - 동시에 같은 아이디로 가입해도 한 명만)
+    public boolean addUser(String id, String pw, String publicKey) {
+        UserRecord r = new UserRecord(id, hasher.hash(pw), publicKey);
+        if (users.putIfAbsent(id, r) != null) return false;
+        append(r);
+        return true;
+    }
+
+    // 다른 노드에서 가입한 회원을 해시 그대로 (이미 있으면 false)
+    public boolean importUser(UserRecord r) {
+        if (r.id == null || users.putIfAbsent(r.id, r) != null) return false;
+        append(r);
+        return true;
+    }
+
+    public UserRecord getRecord(String id) {
+        return users.get(id);
+    }
+
+    private void rehash(UserRecord r, String pw) {
+        UserRecord next = new UserRecord(r.id, hasher.hash(pw), r.publicKey);
+        if (users.replace(r.id, r, next)) append(next);
+    }
+
+    private static void deleteDir(Path d) throws IOException {
+        if (!Files.exists(d)) return;
+        try (Stream<Path> files = Files.walk(d)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
     }
 }
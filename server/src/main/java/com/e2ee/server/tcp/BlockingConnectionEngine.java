@@ -0,0 +1,192 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 연결 하나당 스레드 하나가 블로킹 read()로 읽는 엔진.
+ *
+ * virtual=false 면 예전처럼 플랫폼 스레드, true 면 Java 21 가상 스레드를 쓴다.
+ * (가상 스레드는 블로킹 I/O 중에 캐리어 스레드를 놓아주므로 수만 연결도 가볍다)
+ *
+ * 쓰기는 읽기 스레드와 별개로, 연결별 writer 작업이 가상 스레드에서 큐를 비우며 한다.
+ * (느린 소켓에 막혀도 그 연결의 writer만 기다린다)
+ */
+public class BlockingConnectionEngine implements ConnectionEngine {
+
+    private static final int READ_CHUNK = 8 * 1024;
+
+    private final boolean virtual;
+    private final int queueCapacity;
+    private final OutboundQueue.OverflowPolicy overflow;
+
+    private volatile ServerSocket serverSocket;
+
+    private final Set<StreamConnection> connections = ConcurrentHashMap.newKeySet();
+
+    // 연결별 writer 작업을 돌리는 곳 (필요할 때만 가상 스레드 하나씩)
+    private final ExecutorService writers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("client-writer-", 0).factory());
+
+    public BlockingConnectionEngine(boolean virtual,
+                                    int queueCapacity,
+                                    OutboundQueue.OverflowPolicy overflow) {
+        this.virtual = virtual;
+        this.queueCapacity = queueCapacity;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public int start(int port, ConnectionHandler handler) throws IOException {
+        serverSocket = new ServerSocket(port);
+
+        Thread t = new Thread(() -> acceptLoop(handler), "tcp-accept");
+        t.setDaemon(true);
+        t.start();
+
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop(ConnectionHandler handler) {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket client = serverSocket.accept();
+                EventLog.info(LogCategory.CONN, "accept", "remote", client.getRemoteSocketAddress());
+
+                String name = "client-" + client.getPort();
+                Runnable task = () -> serve(client, handler);
+
+                if (virtual) {
+                    Thread.ofVirtual().name(name).start(task);
+                } else {
+                    new Thread(task, name).start();
+                }
+            }
+        } catch (SocketException e) {
+            // stop()에서 serverSocket을 닫으면 여기로 옴
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void serve(Socket client, ConnectionHandler handler) {
+        StreamConnection conn = null;
+
+        try (InputStream in = client.getInputStream()) {
+
+            conn = new StreamConnection(client,
+                    new BufferedOutputStream(client.getOutputStream(), OutboundQueue.BATCH_BYTES),
+                    new OutboundQueue(queueCapacity, overflow),
+                    handler);
+            connections.add(conn);
+            handler.onOpen(conn);
+
+            byte[] chunk = new byte[READ_CHUNK];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                conn.received(chunk, 0, n);
+            }
+
+        } catch (Exception e) {
+            EventLog.info(LogCategory.CONN, "close", "remote", client.getRemoteSocketAddress());
+        } finally {
+            if (conn != null) {
+                connections.remove(conn);
+                conn.close();
+                handler.onClose(conn);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (StreamConnection c : connections) {
+            c.close();
+        }
+        writers.shutdownNow();
+    }
+
+    // -------- 소켓 + 버퍼 스트림으로 된 연결 --------
+    class StreamConnection extends ClientConnection {
+
+        private final Socket socket;
+        private final OutputStream out;
+
+        // writer 작업이 예약/실행 중인지
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        // writer가 한 번에 꺼내 쓰는 프레임 묶음 (writer 하나만 쓰므로 재사용)
+        private final byte[][] batch = new byte[OutboundQueue.BATCH_FRAMES][];
+
+        StreamConnection(Socket socket, OutputStream out, OutboundQueue outbound, ConnectionHandler handler) {
+            super(String.valueOf(socket.getRemoteSocketAddress()), outbound, handler);
+            this.socket = socket;
+            this.out = out;
+        }
+
+        @Override
+        protected void scheduleWrite() {
+            if (writing.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (Exception e) {
+                    // 엔진 종료 중
+                    writing.set(false);
+                }
+            }
+        }
+
+        // 큐가 빌 때까지 묶어서 쓰고, 묶음마다 한 번만 flush
+        private void drain() {
+            try {
+                while (true) {
+                    int n = outbound.drainTo(batch, batch.length, OutboundQueue.BATCH_BYTES);
+                    if (n == 0) {
+                        writing.set(false);
+                        // 내려놓는 사이에 누가 넣었으면 다시 맡는다
+                        if (outbound.isEmpty() || !writing.compareAndSet(false, true)) return;
+                        continue;
+                    }
+
+                    for (int i = 0; i < n; i++) {
+                        out.write(batch[i]);
+                        batch[i] = null;
+                    }
+                    out.flush();
+                    outbound.markWritten(n);
+                }
+            } catch (IOException e) {
+                writing.set(false);
+                close();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !socket.isClosed();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            outbound.clear();
+        }
+    }
+}
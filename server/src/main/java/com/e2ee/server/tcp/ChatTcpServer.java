@@ -1,85 +1,381 @@
 package com.e2ee.server.tcp;
 
+import com.e2ee.server.cluster.ClusterHandler;
+import com.e2ee.server.cluster.ClusterNode;
+import com.e2ee.server.config.ChatServerProperties;
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+import com.e2ee.server.log.LogLevel;
+import com.e2ee.server.metrics.RelayMetrics;
 import com.e2ee.server.protocol.AuthPayload;
 import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.FrameHeader;
 import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.HistoryPage;
+import com.e2ee.server.store.HistoryQuery;
+import com.e2ee.server.store.OfflineInbox;
 import com.e2ee.server.store.UserStore;
 import com.e2ee.server.store.HistoryStore;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
-public class ChatTcpServer {
+public final class ChatTcpServer implements ConnectionHandler, ClusterHandler {
 
-    private static final int PORT = 9000;
+    private final int port;
+    private final ConnectionEngine.Mode engineMode;
+    private final ConnectionEngine engine;
+    private volatile int boundPort;
+    private final boolean relayFastPath;
     private final Gson gson = new Gson();
 
-    // userTag -> PrintWriter
-    private final Map<String, PrintWriter> clientOutputs = new ConcurrentHashMap<>();
+    // 인증된 세션 (사용자 → 기기들, 연결 → 세션)
+    private final SessionRegistry sessions;
 
-    // 파일 기반 유저 저장소 + 히스토리 저장소
-    private final UserStore userStore = new UserStore();
-    private final HistoryStore historyStore = new HistoryStore();
+    // 방 멤버십 + 방/전체방 팬아웃 전용 레인
+    private final RoomRegistry rooms;
+    private final RoomFanout roomFanout;
 
+    // 지금 열려 있는 모든 연결, 인증 전 포함 (큐 지표 조회용)
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+
+    // 보낼 큐가 넘쳐서 SPILL 된 프레임 수
+    private final AtomicLong spilled = new AtomicLong();
+
+    // 파일 기반 유저 저장소 + 히스토리 저장소 (StoreConfig 빈)
+    private final UserStore userStore;
+    private final HistoryStore historyStore;
+
+    // 비밀번호 해시 전용 스레드 (가득 차면 AUTH_RESULT ...:BUSY)
+    private final KdfExecutor kdf;
+
+    // 공개키 조회 (KEY_REQ / KEY_BATCH_REQ / 로그인 때 상대들 키 미리 보내기)
+    private final KeyDirectory keys;
+    private final int keyPrefetchMax;
+
+    // 파일 조각 릴레이 (저장 안 함, 받는 쪽 큐가 차 있으면 거절)
+    private final FileRelay files;
+
+    // 오프라인 수신자 받은편지함 + 로그인 시 묶음 전달
+    private final OfflineInbox offlineInbox;
+    private final OfflineDelivery offlineDelivery;
+
+    // 여러 노드로 띄웠을 때 다른 노드와의 링크 (chat.cluster.enabled=false면 null)
+    private final ClusterNode cluster;
+
+    // 다른 노드로 오프라인 메시지를 넘기는 중인 사용자 (한 사용자에 하나만)
+    private final Set<String> handoffs = ConcurrentHashMap.newKeySet();
+
+    // 이 노드를 비우는 중 → 새 로그인 거절
+    private volatile boolean draining;
+
+    // 보내기 한도 (연결 / 타입 / 사용자 토큰 버킷)
+    private final RateLimiter limiter;
+
+    // 타입별 프레임 수, 주고받은 바이트, 릴레이/저장 지연 (/actuator/metrics)
+    private final RelayMetrics metrics;
+
+    public ChatTcpServer(ChatServerProperties props, SessionRegistry sessions, RoomRegistry rooms,
+                         UserStore userStore, HistoryStore historyStore, OfflineInbox offlineInbox) {
+        this(props, sessions, rooms, userStore, historyStore, offlineInbox, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public ChatTcpServer(ChatServerProperties props, SessionRegistry sessions, RoomRegistry rooms,
+                         UserStore userStore, HistoryStore historyStore, OfflineInbox offlineInbox,
+                         MeterRegistry registry) {
+        this.port = props.getTcp().getPort();
+        this.engineMode = props.getTcp().getEngine();
+        this.engine = ConnectionEngine.create(engineMode,
+                props.getTcp().getNioLoops(),
+                props.getTcp().getOutboundCapacity(),
+                props.getTcp().getOverflowPolicy());
+        this.relayFastPath = props.getTcp().isRelayFastPath();
+        this.sessions = sessions;
+        this.metrics = new RelayMetrics(registry);
+        this.kdf = new KdfExecutor(props.getAuth().getKdfThreads(), props.getAuth().getKdfQueueCapacity(), metrics);
+        this.rooms = rooms;
+        this.limiter = new RateLimiter(props.getLimits(), sessions::isOnline);
+        this.roomFanout = new RoomFanout(sessions,
+                props.getRooms().getFanoutThreads(), props.getRooms().getShardSize(), metrics);
+
+        this.userStore = userStore;
+        this.historyStore = historyStore;
+        this.keys = new KeyDirectory(userStore, props.getKeys().getMaxBatch());
+        this.keyPrefetchMax = props.getKeys().getPrefetchMax();
+        this.files = new FileRelay(sessions,
+                props.getFiles().getMaxChunkBytes(), props.getFiles().getMaxQueuedFrames(), metrics);
+
+        ChatServerProperties.Offline off = props.getOffline();
+        this.offlineInbox = offlineInbox;
+        this.offlineDelivery = new OfflineDelivery(offlineInbox, historyStore,
+                off.getBatchSize(), off.getBatchIntervalMillis(), off.getDrainThreads());
+
+        this.cluster = props.getCluster().isEnabled() ? new ClusterNode(props.getCluster(), this) : null;
+
+        configureLog(props.getLog());
+        historyStore.setAppendTimer(metrics.storeTimer("history"));
+        userStore.setAppendTimer(metrics.storeTimer("user"));
+        offlineInbox.setAppendTimer(metrics.storeTimer("inbox"));
+        metrics.gauge("chat.connections", connections::size);
+        metrics.gauge("chat.sessions", sessions::getLiveSessions);
+        metrics.gauge("chat.rooms", rooms::getRoomCount);
+        metrics.gauge("chat.outbound.depth", this::outboundDepth);
+        metrics.gauge("chat.offline.pending", offlineInbox::getPending);
+        metrics.gauge("chat.log.dropped", EventLog.get()::getDropped);
+        metrics.gauge("chat.log.written", EventLog.get()::getWritten);
+        metrics.gauge("chat.limits.users", limiter::getUserBuckets);
+        metrics.gauge("chat.kdf.queue", kdf::getQueueDepth);
+    }
+
+    // chat.log.* → EventLog (분류 이름이 틀리면 시작할 때 바로 실패)
+    private static void configureLog(ChatServerProperties.Log conf) {
+        EventLog log = EventLog.get();
+        for (Map.Entry<String, String> e : conf.getLevels().entrySet()) {
+            log.setLevel(LogCategory.of(e.getKey()), LogLevel.valueOf(e.getValue().trim().toUpperCase()));
+        }
+        for (Map.Entry<String, Integer> e : conf.getSample().entrySet()) {
+            log.setSampleEvery(LogCategory.of(e.getKey()), e.getValue());
+        }
+        log.setBodies(conf.isBodies());
+    }
 
     // 서버 시작
     @PostConstruct
-    public void start() {
-        Thread t = new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-                System.out.println("[TCP] ChatServer started on port " + PORT);
-
-                while (true) {
-                    Socket client = serverSocket.accept();
-                    System.out.println("[TCP] 클라이언트 접속: " + client);
-
-                    new Thread(
-                            () -> handleClient(client),
-                            "client-" + client.getPort()
-                    ).start();
-                }
+    public void start() throws IOException {
+        boundPort = engine.start(port, this);
+        System.out.println("[TCP] ChatServer started on port " + boundPort + " (engine=" + engineMode + ")");
+        if (cluster != null) cluster.start(boundPort);
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
+    // 서버 종료 시 연결을 닫는다 (저장소는 StoreConfig 빈이 닫음)
+    @PreDestroy
+    public void stop() {
+        if (cluster != null) cluster.stop();
+        engine.stop();
+        offlineDelivery.shutdown();
+        roomFanout.shutdown();
+        kdf.shutdown();
+    }
 
-        t.setDaemon(true);
-        t.start();
+    // 실제로 열린 포트 (chat.tcp.port=0 일 때 확인용)
+    public int getPort() {
+        return boundPort;
     }
 
+    // 연결별 보낼 큐 상태 (깊이, 최고 깊이, 버린 수 등)
+    public Map<ClientConnection, OutboundQueue> outboundQueues() {
+        Map<ClientConnection, OutboundQueue> result = new LinkedHashMap<>();
+        for (ClientConnection c : connections) {
+            result.put(c, c.getOutbound());
+        }
+        return result;
+    }
 
-    private void handleClient(Socket client) {
-        System.out.println("[CLIENT] 핸들러 시작");
+    // 모든 연결의 보낼 큐에 쌓인 프레임 수
+    private long outboundDepth() {
+        long n = 0;
+        for (ClientConnection c : connections) n += c.getOutbound().getDepth();
+        return n;
+    }
 
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
-             PrintWriter out = new PrintWriter(
-                     new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8),
-                     true)) {
+    public RelayMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    public KdfExecutor getKdf() {
+        return kdf;
+    }
+
+    public KeyDirectory getKeys() {
+        return keys;
+    }
+
+    public FileRelay getFiles() {
+        return files;
+    }
+
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
 
-            String line;
-            while ((line = br.readLine()) != null) {
 
-                ChatMessage msg = gson.fromJson(line, ChatMessage.class);
-                System.out.println("[서버 RAW] " + line);
+    // ============ 엔진 → 서버 콜백 ============
+    @Override
+    public void onOpen(ClientConnection conn) {
+        conn.setLimits(limiter.newConnection());
+        connections.add(conn);
+    }
+
+    @Override
+    public void onFrame(ClientConnection conn, byte[] wire, int off, int len) {
+        long received = System.nanoTime();
+        FrameCodec codec = conn.getCodec();
 
-                // sender → out 매핑 (처음만 등록됨)
-                clientOutputs.putIfAbsent(msg.getSender(), out);
+        // 연결 한도: 본문을 보기 전에 (넘치면 decode도 하지 않음)
+        String over = limiter.admitFrame(conn.getLimits());
+        if (over != null) {
+            throttled(conn, over, null, null, null);
+            return;
+        }
 
-                handleMessage(msg, out);
+        // CHAT/파일 조각은 헤더만 보고 라우팅 → body는 decode도 re-encode도 하지 않는다
+        if (relayFastPath) {
+            FrameHeader h = codec.readHeader(wire, off, len);
+            if (h != null && h.getType() == MessageType.CHAT) {
+                metrics.frameReceived(MessageType.CHAT, len);
+                if (checkSender(conn, h.getSender(), null)
+                        && admit(conn, h.getSender(), MessageType.CHAT, chatCost(h.getReceiver()), null)) {
+                    handleChat(h.getSender(), h.getReceiver(),
+                            new EncodedMessage(codec, wire, off, len).receivedAt(received), conn);
+                }
+                return;
+            }
+            if (h != null && isFile(h.getType())) {
+                metrics.frameReceived(h.getType(), len);
+                if (checkSender(conn, h.getSender(), null) && admit(conn, h.getSender(), h.getType(), 1, null)) {
+                    handleFile(h.getType(), h.getSender(), h.getReceiver(),
+                            new EncodedMessage(codec, wire, off, len).receivedAt(received), conn);
+                }
+                return;
             }
+        }
+
+        // 깨진 프레임 (잘림, 모르는 타입/알고리즘 바이트, JSON 문법 오류): 이 프레임만 거절하고 연결은 유지
+        ChatMessage msg;
+        try {
+            msg = codec.decode(wire, off, len);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            EventLog.warn(LogCategory.CONN, "bad_frame", "conn", conn, "codec", codec.name(), "error", e.getMessage());
+            conn.send(new ChatMessage(MessageType.SYSTEM, "server", null, "BAD_FRAME", null));
+            return;
+        }
+        metrics.frameReceived(msg.getType(), len);
+        if (EventLog.logBodies()) {
+            EventLog.info(LogCategory.RAW, "frame", "type", msg.getType(), "from", msg.getSender(),
+                    "to", msg.getReceiver(), "body", msg.getBody());
+        } else {
+            EventLog.info(LogCategory.RAW, "frame", "type", msg.getType(), "from", msg.getSender(),
+                    "to", msg.getReceiver(), "bytes", len);
+        }
+
+        // 가입/로그인 말고는 인증된 연결에서, 자기 이름으로 보낸 것만 처리
+        if (msg.getType() != MessageType.AUTH_SIGNUP && msg.getType() != MessageType.AUTH_LOGIN
+                && !checkSender(conn, msg.getSender(), msg.getTimestamp())) {
+            return;
+        }
 
-        } catch (Exception e) {
-            System.out.println("[CLIENT] 연결 종료: " + client);
+        handleMessage(msg, conn, received);
+    }
+
+    @Override
+    public void onClose(ClientConnection conn) {
+        connections.remove(conn);
+        SessionRegistry.Session s = sessions.remove(conn);
+        if (s != null) {
+            EventLog.info(LogCategory.SESSION, "close", "session", s, "live", sessions.getLiveSessions());
+            if (cluster != null && !sessions.isOnline(s.getUser())) cluster.userOffline(s.getUser());
+        }
+        offlineDelivery.stop(conn);
+        if (s != null && !sessions.isOnline(s.getUser())) limiter.release(s.getUser());
+    }
+
+    // 인증 전 연결이거나 다른 사람 이름(sender)으로 보냈으면 거절
+    private boolean checkSender(ClientConnection conn, String sender, String timestamp) {
+        SessionRegistry.Session s = sessions.get(conn);
+        String reason = null;
+        if (s == null) {
+            reason = "NOT_AUTHENTICATED";
+        } else if (sender == null || !s.getUser().equals(userIdOf(sender))) {
+            reason = "SENDER_MISMATCH:" + sender;
+        }
+        if (reason == null) return true;
+
+        conn.send(new ChatMessage(MessageType.SYSTEM, "server", sender, reason, timestamp));
+        return false;
+    }
+
+    // 타입 / 사용자 한도: 처리(저장, 릴레이, 해시, 조회) 전에 확인, 넘치면 false
+    // sender가 null이거나 인증 전이면 사용자 한도는 건너뜀 (가입/로그인은 타입 한도로)
+    private boolean admit(ClientConnection conn, String sender, MessageType type, long cost, String timestamp) {
+        RateLimiter.Limits limits = conn.getLimits();
+        if (limits == null) return true;
+        SessionRegistry.Session s = sessions.get(conn);
+        String over = limiter.admit(limits, s == null ? null : s.getUser(), type, cost);
+        if (over == null) return true;
+        throttled(conn, over, type, sender, timestamp);
+        return false;
+    }
+
+    // 전달 건수: 전체방 = 접속 세션 수, 방 = 멤버 수, 1:1 = 1
+    private long chatCost(String receiver) {
+        if (receiver == null || !limiter.isEnabled()) return 1;
+        if ("ALL".equalsIgnoreCase(receiver)) return Math.max(1, sessions.getLiveSessions());
+        if (receiver.startsWith(ChatMessage.ROOM_PREFIX)) {
+            RoomRegistry.Room room = rooms.get(receiver.substring(ChatMessage.ROOM_PREFIX.length()));
+            return room == null ? 1 : Math.max(1, room.size());
+        }
+        return 1;
+    }
+
+    // 한도에 걸린 프레임: 처리하지 않고 SYSTEM "THROTTLED:<CONN|TYPE|USER>" (연결마다 1초에 한 번만)
+    private void throttled(ClientConnection conn, String scope, MessageType type, String sender, String timestamp) {
+        metrics.throttled(scope);
+        if (!conn.getLimits().shouldNotify()) return;
+        EventLog.warn(LogCategory.CONN, "throttled", "conn", conn, "scope", scope, "type", type);
+        conn.send(new ChatMessage(MessageType.SYSTEM, "server", sender, "THROTTLED:" + scope, timestamp));
+    }
+
+    @Override
+    public void onQueued(ClientConnection conn, int bytes) {
+        metrics.bytesOut(bytes);
+    }
+
+    // 느린 수신자 큐가 가득 참 (SPILL 정책) 또는 새 프레임에 밀려남 (DROP_OLDEST)
+    // 저장된 메시지(CHAT, SENDER_KEY, 방, 오프라인 묶음)는 seq를 그 사용자 받은편지함에 넣고 오프라인 전달을 건다
+    // → 큐가 절반 아래로 비면 묶음으로 다시 보낸다 (OfflineDelivery). 저장 안 된 프레임(알림, 파일 조각)은 버린다.
+    @Override
+    public void onOverflow(ClientConnection conn, byte[] frame, long seq) {
+        long n = spilled.incrementAndGet();
+        SessionRegistry.Session s = sessions.get(conn);
+        boolean queued = seq >= 0 && s != null;
+        if (queued) {
+            // 보내던 묶음의 것이면 확인이 와도 지우지 않게 먼저 뺀다 (받은편지함에는 이미 있음)
+            offlineDelivery.unsent(conn, seq);
+            offlineInbox.enqueue(s.getUser(), seq);
+            offlineDelivery.start(s.getUser(), conn);
+        }
+        if ((n & (n - 1)) == 0) {
+            EventLog.warn(LogCategory.CONN, "spill", "count", n, "conn", conn, "to_inbox", queued);
         }
     }
 
@@ -88,7 +384,7 @@ public class ChatTcpServer {
     // ----------------------------------------------------
     // 3-1) 회원가입 처리 (id, pw, publicKey 저장)
     // ----------------------------------------------------
-    private void handleSignup(ChatMessage msg, PrintWriter out) {
+    private void handleSignup(ChatMessage msg, ClientConnection conn) {
 
         AuthPayload p = gson.fromJson(msg.getBody(), AuthPayload.class);
 
@@ -104,7 +400,7 @@ public class ChatTcpServer {
                     "SIGNUP_FAIL:BAD_PAYLOAD",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            conn.send(res);
             return;
         }
 
@@ -117,14 +413,34 @@ public class ChatTcpServer {
                     "SIGNUP_FAIL:ID_EXISTS",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            conn.send(res);
             return;
         }
 
-        // ★ 저장: id, pw, publicKey
-        userStore.addUser(id, pw, publicKey);
+        // 비밀번호 해시는 KDF 스레드에서 (연결 스레드는 바로 다음 프레임으로)
+        if (!kdf.submit(() -> finishSignup(msg, conn, id, pw, publicKey))) {
+            conn.send(busy(msg, "SIGNUP_FAIL:BUSY"));
+        }
+    }
+
+    // KDF 스레드
+    private void finishSignup(ChatMessage msg, ClientConnection conn, String id, String pw, String publicKey) {
+        if (!conn.isOpen()) return;
+
+        // ★ 저장: id, pw 해시, publicKey (그 사이 같은 아이디로 먼저 가입했으면 실패)
+        if (!userStore.addUser(id, pw, publicKey)) {
+            conn.send(new ChatMessage(
+                    MessageType.AUTH_RESULT,
+                    "server",
+                    msg.getSender(),
+                    "SIGNUP_FAIL:ID_EXISTS",
+                    msg.getTimestamp()
+            ));
+            return;
+        }
 
-        System.out.println("[AUTH] 회원가입 완료: " + id);
+        EventLog.info(LogCategory.AUTH, "signup", "user", id);
+        if (cluster != null) cluster.userAdded(userStore.getRecord(id));
 
         ChatMessage res = new ChatMessage(
                 MessageType.AUTH_RESULT,
@@ -134,7 +450,10 @@ public class ChatTcpServer {
                 msg.getTimestamp()
         );
 
-        out.println(gson.toJson(res));
+        // 가입 직후 바로 채팅하는 클라이언트를 위해 가입 성공도 로그인으로 본다
+        // (응답을 받은 클라이언트가 곧바로 조회해도 보이도록 응답보다 먼저 등록)
+        register(id, conn);
+        conn.send(res);
     }
 
 
@@ -142,7 +461,7 @@ public class ChatTcpServer {
     // ----------------------------------------------------
     // 3-2) 로그인 처리 (파일 기반 UserStore 사용)
     // ----------------------------------------------------
-    private void handleLogin(ChatMessage msg, PrintWriter out) {
+    private void handleLogin(ChatMessage msg, ClientConnection conn) {
 
         AuthPayload p = gson.fromJson(msg.getBody(), AuthPayload.class);
 
@@ -157,10 +476,20 @@ public class ChatTcpServer {
                     "LOGIN_FAIL:ID_NOT_FOUND",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            conn.send(res);
             return;
         }
 
+        if (!kdf.submit(() -> finishLogin(msg, conn, id, pw))) {
+            conn.send(busy(msg, "LOGIN_FAIL:BUSY"));
+        }
+    }
+
+    // KDF 스레드: 해시 검증 후 결과 응답 + 세션 등록
+    private void finishLogin(ChatMessage msg, ClientConnection conn, String id, String pw) {
+        // 기다리는 동안 끊겼으면 해시 계산을 건너뛴다 (로그인 폭주 때 CPU 아끼기)
+        if (!conn.isOpen()) return;
+
         if (!userStore.checkPassword(id, pw)) {
             ChatMessage res = new ChatMessage(
                     MessageType.AUTH_RESULT,
@@ -169,7 +498,7 @@ public class ChatTcpServer {
                     "LOGIN_FAIL:BAD_PASSWORD",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            conn.send(res);
             return;
         }
 
@@ -181,113 +510,525 @@ public class ChatTcpServer {
                 msg.getTimestamp()
         );
 
-        out.println(gson.toJson(res));
+        // 최근 1:1 상대들 공개키 묶음은 라우팅에 올리기 전에 만들어 LOGIN_OK 바로 뒤에 넣는다
+        // → 새 기기로 가는 실시간/오프라인 메시지는 모두 그 뒤에 온다 (받자마자 세션을 만들어 풀 수 있게)
+        ChatMessage prefetch = prefetchKeys(id, msg);
+
+        SessionRegistry.Session s = sessions.authenticate(id, conn);
+        conn.send(res);
+        if (prefetch != null) conn.send(prefetch);
+        sessions.route(s);
+        registered(s);
+
+        // 없는 동안 쌓인 메시지를 묶음으로 흘려보낸다
+        offlineDelivery.start(id, conn);
+    }
+
+    // KDF 대기열이 가득 참 → 잠시 후 다시 시도하라는 응답
+    private static ChatMessage busy(ChatMessage msg, String code) {
+        return new ChatMessage(
+                MessageType.AUTH_RESULT,
+                "server",
+                msg.getSender(),
+                code,
+                msg.getTimestamp()
+        );
+    }
+
+    private void register(String id, ClientConnection conn) {
+        registered(sessions.register(id, conn));
+    }
+
+    private void registered(SessionRegistry.Session s) {
+        String id = s.getUser();
+        EventLog.info(LogCategory.SESSION, "open", "session", s, "devices", sessions.sessionsOf(id).length,
+                "live", sessions.getLiveSessions());
+        if (cluster != null) cluster.userOnline(id);
     }
 
 
     // ================= KEY_REQ → 서버가 직접 KEY_RES 보내기 ==================
-    private void handleKeyRequest(ChatMessage msg) {
+    private void handleKeyRequest(ChatMessage msg, ClientConnection conn) {
 
         String targetId = msg.getReceiver();
 
-        // 🔥 서버에 저장된 공개키 꺼내기
-        String targetPubKey = userStore.getPublicKey(targetId);
+        // 🔥 서버에 저장된 공개키 꺼내기 (본문에 키 주인 ID와 함께)
+        String body = keys.keyBody(targetId);
 
-        if (targetPubKey == null) {
+        if (body == null) {
             // 상대 없음
-            PrintWriter senderOut = clientOutputs.get(msg.getSender());
-            if (senderOut != null) {
-                ChatMessage warn = new ChatMessage(
-                        MessageType.SYSTEM,
-                        "server",
-                        msg.getSender(),
-                        "NO_SUCH_USER:" + targetId,
-                        msg.getTimestamp()
-                );
-                senderOut.println(gson.toJson(warn));
-            }
+            ChatMessage warn = new ChatMessage(
+                    MessageType.SYSTEM,
+                    "server",
+                    msg.getSender(),
+                    "NO_SUCH_USER:" + targetId,
+                    msg.getTimestamp()
+            );
+            conn.send(warn);
             return;
         }
 
-        // 🔥 KEY_RES 생성
+        // 🔥 KEY_RES 생성 (sender = server, 클라이언트는 server가 보낸 것만 믿는다)
         ChatMessage res = new ChatMessage(
                 MessageType.KEY_RES,
                 "server",               // server → requester
                 msg.getSender(),        // 요청자에게 보내기
-                targetPubKey,           // 공개키
+                body,                   // {"keys":{주인 ID:공개키}}
                 msg.getTimestamp()
         );
 
-        PrintWriter senderOut = clientOutputs.get(msg.getSender());
-        if (senderOut != null) senderOut.println(gson.toJson(res));
+        conn.send(res);
+
+        EventLog.debug(LogCategory.KEY, "key", "owner", msg.getReceiver(), "to", msg.getSender());
+    }
+
+
+    // ================= KEY_BATCH_REQ → 여러 명의 공개키를 KEY_BATCH_RES 한 번으로 ==================
+    // 본문: {"ids":["bob","carol",...]} (최대 chat.keys.max-batch명)
+    private void handleKeyBatchRequest(ChatMessage msg, ClientConnection conn) {
+        List<String> ids = new ArrayList<>();
+        try {
+            for (JsonElement e : JsonParser.parseString(msg.getBody()).getAsJsonObject().getAsJsonArray("ids")) {
+                ids.add(userIdOf(e.getAsString()));
+            }
+        } catch (RuntimeException e) {
+            conn.send(new ChatMessage(MessageType.SYSTEM, "server", msg.getSender(),
+                    "KEY_BATCH_FAIL:BAD_REQUEST", msg.getTimestamp()));
+            return;
+        }
+
+        conn.send(new ChatMessage(
+                MessageType.KEY_BATCH_RES,
+                "server",
+                msg.getSender(),
+                keys.batchBody(ids),
+                msg.getTimestamp()
+        ));
+    }
+
+    // 로그인 직후: 최근에 1:1로 주고받은 상대들 (없으면 보내지 않음)
+    private ChatMessage prefetchKeys(String id, ChatMessage msg) {
+        if (keyPrefetchMax <= 0) return null;
+
+        List<String> contacts = historyStore.contactsOf(id, keyPrefetchMax);
+        if (contacts.isEmpty()) return null;
 
-        System.out.println("[KEY] 서버가 공개키 전달: " +
-                msg.getReceiver() + " → " + msg.getSender());
+        return new ChatMessage(
+                MessageType.KEY_BATCH_RES,
+                "server",
+                msg.getSender(),
+                keys.batchBody(contacts),
+                msg.getTimestamp()
+        );
     }
 
 
     // ================= CHAT 릴레이 + 히스토리 저장 ==================
-    private void handleChat(ChatMessage msg, PrintWriter out) {
+    // sender/receiver는 헤더에서 읽은 값, encoded는 받은 프레임(빠른 경로) 또는 decode한 메시지
+    private void handleChat(String sender, String receiver, EncodedMessage encoded, ClientConnection conn) {
 
-        System.out.println("[서버][CHAT] " +
-                msg.getSender() + " -> " + msg.getReceiver() +
-                " : " + msg.getBody());
+        if (EventLog.isEnabled(LogCategory.RELAY, LogLevel.DEBUG)) {
+            EventLog.debug(LogCategory.RELAY, "chat", "from", sender, "to", receiver, "bytes", encoded.bodyBytes());
+        }
 
-        // 🔥 서버는 내용 해독 없이 그대로 저장
-        historyStore.add(msg);
+        // 방 메시지는 멤버만 보낼 수 있다 (저장 전에 확인)
+        RoomRegistry.Room room = null;
+        if (receiver.startsWith(ChatMessage.ROOM_PREFIX)) {
+            String name = receiver.substring(ChatMessage.ROOM_PREFIX.length());
+            room = rooms.get(name);
+            if (room == null || !room.contains(userIdOf(sender))) {
+                conn.send(new ChatMessage(MessageType.SYSTEM, "server", sender,
+                        "NOT_IN_ROOM:" + name, encoded.getMessage().getTimestamp()));
+                return;
+            }
+        }
 
-        String json = gson.toJson(msg);
+        // 🔥 서버는 내용 해독 없이 그대로 저장 (로그 끝에 한 건 추가)
+        long seq = encoded.storeIn(historyStore);
 
-        // 전체방
-        if ("ALL".equalsIgnoreCase(msg.getReceiver())) {
-            for (PrintWriter w : clientOutputs.values()) {
-                w.println(json);
+        // 전체방: 보낸 쪽과 같은 코덱이면 받은 바이트 배열 하나를 모두에게, 다른 코덱은 한 번만 변환
+        // 방/전체방: 팬아웃 레인에 넘기고 이 스레드는 바로 돌아간다
+        // 다른 노드의 멤버들은 그 노드가 팬아웃
+        if (room != null) {
+            roomFanout.publish(room, encoded);
+            if (cluster != null) cluster.forwardToRoom(room.getName(), encoded);
+            return;
+        }
+        if ("ALL".equalsIgnoreCase(receiver)) {
+            roomFanout.publishAll(encoded);
+            if (cluster != null) cluster.forwardToAll(encoded);
+            return;
+        }
+
+        // 1:1 메시지: 상대가 로그인한 기기 모두에게 (다른 노드에 접속한 기기는 그 노드로)
+        String targetId = userIdOf(receiver);
+        SessionRegistry.Session[] targets = sessions.sessionsOf(targetId);
+        for (SessionRegistry.Session t : targets) {
+            encoded.sendTo(t.getConnection());
+        }
+        boolean remote = cluster != null && cluster.forwardToUser(targetId, encoded);
+        if (targets.length > 0 || remote) {
+            if (encoded.getReceivedNanos() != 0) {
+                metrics.relayed(MessageType.CHAT, encoded.getReceivedNanos(), targets.length);
             }
             return;
         }
 
-        // 1:1 메시지
-        PrintWriter targetOut = clientOutputs.get(msg.getReceiver());
-        if (targetOut != null) {
-            targetOut.println(json);
+        // 대상이 오프라인: 가입한 사용자면 받은편지함에 seq만 쌓아 두고 다음 로그인 때 전달
+        boolean queued = seq >= 0 && userStore.exists(targetId);
+        if (queued) {
+            offlineInbox.enqueue(targetId, seq);
+        }
+
+        // 드문 경우라 timestamp 때문에 여기서만 decode
+        ChatMessage warn = new ChatMessage(
+                MessageType.SYSTEM,
+                "server",
+                sender,
+                (queued ? "TARGET_OFFLINE_QUEUED:" : "TARGET_OFFLINE:") + receiver,
+                encoded.getMessage().getTimestamp()
+        );
+        conn.send(warn);
+    }
+
+    // ================= FILE_OFFER / FILE_CHUNK / FILE_ACK 릴레이 ==================
+    private void handleFile(MessageType type, String sender, String receiver, EncodedMessage encoded, ClientConnection conn) {
+
+        String reason;
+        if (receiver == null || receiver.startsWith(ChatMessage.ROOM_PREFIX) || "ALL".equalsIgnoreCase(receiver)) {
+            reason = "BAD_TARGET";
         } else {
-            // 대상이 오프라인
-            ChatMessage warn = new ChatMessage(
+            String targetId = userIdOf(receiver);
+            // 이 노드에 없고 다른 노드에 있으면 그쪽에서 릴레이 (실패는 그 노드가 FILE_FAIL로 돌려준다)
+            if (cluster != null && !sessions.isOnline(targetId) && cluster.forwardFile(type, targetId, encoded)) return;
+            reason = files.relay(type, targetId, encoded);
+        }
+        if (reason == null) {
+            if (encoded.getReceivedNanos() != 0) metrics.relayed(type, encoded.getReceivedNanos(), 1);
+            return;
+        }
+
+        // 실패는 드물어서 timestamp 때문에 여기서만 decode
+        conn.send(new ChatMessage(MessageType.SYSTEM, "server", sender,
+                "FILE_FAIL:" + reason + ":" + receiver, encoded.getMessage().getTimestamp()));
+    }
+
+    private static boolean isFile(MessageType type) {
+        return type == MessageType.FILE_OFFER || type == MessageType.FILE_CHUNK || type == MessageType.FILE_ACK;
+    }
+
+    // "bob#0001" → "bob"
+    private static String userIdOf(String tag) {
+        int i = tag.indexOf('#');
+        return i < 0 ? tag : tag.substring(0, i);
+    }
+
+
+    // ================= ROOM_JOIN / ROOM_LEAVE ==================
+    private void handleRoom(ChatMessage msg, ClientConnection conn) {
+
+        String name = msg.getBody() == null ? null : msg.getBody().trim();
+        String user = sessions.get(conn).getUser();
+
+        if (!RoomRegistry.isValidName(name)) {
+            conn.send(new ChatMessage(MessageType.SYSTEM, "server", msg.getSender(),
+                    "ROOM_FAIL:BAD_NAME", msg.getTimestamp()));
+            return;
+        }
+
+        if (msg.getType() == MessageType.ROOM_JOIN) {
+            int count = rooms.join(name, user);
+            if (cluster != null) cluster.memberChanged(name, user, true);
+            conn.send(new ChatMessage(MessageType.SYSTEM, "server", msg.getSender(),
+                    "ROOM_JOINED:" + name + ":" + count, msg.getTimestamp()));
+
+            // 들어온 사람에게는 전체 멤버, 나머지에게는 누가 들어왔는지만 (각자 sender key를 나눠 주도록)
+            RoomRegistry.Room room = rooms.get(name);
+            if (room != null) {
+                JsonObject full = new JsonObject();
+                full.addProperty("room", name);
+                full.add("members", gson.toJsonTree(room.members()));
+                conn.send(new ChatMessage(MessageType.ROOM_MEMBERS, "server", msg.getSender(),
+                        full.toString(), msg.getTimestamp()));
+
+                publishMembership(room, "joined", user, msg.getTimestamp());
+            }
+            return;
+        }
+
+        boolean left = rooms.leave(name, user);
+        if (left && cluster != null) cluster.memberChanged(name, user, false);
+        conn.send(new ChatMessage(MessageType.SYSTEM, "server", msg.getSender(),
+                (left ? "ROOM_LEFT:" : "NOT_IN_ROOM:") + name, msg.getTimestamp()));
+
+        // 남은 멤버들은 sender key를 새로 만들어 다시 나눈다
+        RoomRegistry.Room room = rooms.get(name);
+        if (left && room != null) {
+            publishMembership(room, "left", user, msg.getTimestamp());
+        }
+    }
+
+    private void publishMembership(RoomRegistry.Room room, String change, String user, String timestamp) {
+        JsonObject delta = new JsonObject();
+        delta.addProperty("room", room.getName());
+        delta.addProperty(change, user);
+        EncodedMessage notice = new EncodedMessage(new ChatMessage(MessageType.ROOM_MEMBERS, "server",
+                ChatMessage.ROOM_PREFIX + room.getName(), delta.toString(), timestamp));
+        roomFanout.publish(room, notice);
+        if (cluster != null) cluster.forwardToRoom(room.getName(), notice);
+    }
+
+
+    // ================= OFFLINE_ACK → 다음 묶음 ==================
+    private void handleOfflineAck(ChatMessage msg, ClientConnection conn) {
+        try {
+            offlineDelivery.ack(conn, Long.parseLong(msg.getBody().trim()));
+        } catch (NumberFormatException | NullPointerException e) {
+            EventLog.warn(LogCategory.OFFLINE, "bad_ack", "user", msg.getSender(), "body", msg.getBody());
+        }
+    }
+
+
+    // ================= HISTORY_REQ → 기록 한 페이지 ==================
+    private void handleHistoryRequest(ChatMessage msg, ClientConnection conn) {
+
+        HistoryQuery q = (msg.getBody() == null || msg.getBody().isBlank())
+                ? new HistoryQuery()
+                : gson.fromJson(msg.getBody(), HistoryQuery.class);
+
+        // 자기가 보내거나 받은 것만 볼 수 있다 (방 기록은 지금 멤버인 방만)
+        q.setUser(userIdOf(msg.getSender()));
+        if (q.getPeer() != null && q.getPeer().startsWith(ChatMessage.ROOM_PREFIX)
+                && !rooms.isMember(q.getPeer().substring(ChatMessage.ROOM_PREFIX.length()), userIdOf(msg.getSender()))) {
+            conn.send(new ChatMessage(
                     MessageType.SYSTEM,
                     "server",
                     msg.getSender(),
-                    "TARGET_OFFLINE:" + msg.getReceiver(),
+                    "HISTORY_FAIL:NOT_IN_ROOM",
                     msg.getTimestamp()
-            );
-            out.println(gson.toJson(warn));
+            ));
+            return;
+        }
+
+        String body;
+        try {
+            HistoryPage page = historyStore.query(q);
+            body = gson.toJson(page);
+        } catch (IllegalArgumentException e) {
+            conn.send(new ChatMessage(
+                    MessageType.SYSTEM,
+                    "server",
+                    msg.getSender(),
+                    "HISTORY_FAIL:" + e.getMessage(),
+                    msg.getTimestamp()
+            ));
+            return;
         }
+
+        conn.send(new ChatMessage(
+                MessageType.HISTORY_RES,
+                "server",
+                msg.getSender(),
+                body,
+                msg.getTimestamp()
+        ));
     }
 
 
     // ============ 메시지 분배 ===============
-    private void handleMessage(ChatMessage msg, PrintWriter out) {
+    private void handleMessage(ChatMessage msg, ClientConnection conn, long received) {
+
+        // 한도: 어떤 처리든 하기 전에 (넘치면 알림만)
+        long cost = msg.getType() == MessageType.CHAT ? chatCost(msg.getReceiver()) : 1;
+        if (!admit(conn, msg.getSender(), msg.getType(), cost, msg.getTimestamp())) {
+            return;
+        }
+
+        // 비우는 중인 노드: 다른 노드를 알려 주고 로그인은 받지 않는다
+        if (draining && (msg.getType() == MessageType.AUTH_SIGNUP || msg.getType() == MessageType.AUTH_LOGIN)) {
+            sendMoved(conn, msg.getSender());
+            conn.send(busy(msg, (msg.getType() == MessageType.AUTH_SIGNUP ? "SIGNUP" : "LOGIN") + "_FAIL:DRAINING"));
+            return;
+        }
 
         if (msg.getType() == MessageType.AUTH_SIGNUP) {
-            handleSignup(msg, out);
+            handleSignup(msg, conn);
             return;
         }
 
         if (msg.getType() == MessageType.AUTH_LOGIN) {
-            handleLogin(msg, out);
+            handleLogin(msg, conn);
             return;
         }
 
         if (msg.getType() == MessageType.KEY_REQ) {
-            handleKeyRequest(msg);
+            handleKeyRequest(msg, conn);
+            return;
+        }
+
+        if (msg.getType() == MessageType.KEY_BATCH_REQ) {
+            handleKeyBatchRequest(msg, conn);
+            return;
+        }
+
+        // SENDER_KEY는 1:1 암호문이라 CHAT과 똑같이 릴레이 (오프라인이면 받은편지함)
+        if (msg.getType() == MessageType.CHAT || msg.getType() == MessageType.SENDER_KEY) {
+            handleChat(msg.getSender(), msg.getReceiver(), new EncodedMessage(msg).receivedAt(received), conn);
             return;
         }
 
-        if (msg.getType() == MessageType.CHAT) {
-            handleChat(msg, out);
+        if (isFile(msg.getType())) {
+            handleFile(msg.getType(), msg.getSender(), msg.getReceiver(), new EncodedMessage(msg).receivedAt(received), conn);
+            return;
+        }
+
+        if (msg.getType() == MessageType.HISTORY_REQ) {
+            handleHistoryRequest(msg, conn);
+            return;
+        }
+
+        if (msg.getType() == MessageType.ROOM_JOIN || msg.getType() == MessageType.ROOM_LEAVE) {
+            handleRoom(msg, conn);
+            return;
+        }
+
+        if (msg.getType() == MessageType.OFFLINE_ACK) {
+            handleOfflineAck(msg, conn);
+            return;
+        }
+
+        EventLog.warn(LogCategory.SYSTEM, "unknown_type", "type", msg.getType(), "from", msg.getSender());
+    }
+
+
+
+    // ================= 클러스터: 다른 노드에서 온 것 (링크 읽기 스레드) ==================
+
+    @Override
+    public void deliverToUser(String user, EncodedMessage msg, MessageType fileType) {
+        if (fileType != null) {
+            String reason = files.relay(fileType, user, msg);
+            if (reason == null || fileType == MessageType.FILE_ACK) return;
+
+            // 보낸 사람은 다른 노드에 있다 → 실패를 그쪽으로
+            ChatMessage m = msg.getMessage();
+            EncodedMessage fail = new EncodedMessage(new ChatMessage(MessageType.SYSTEM, "server", m.getSender(),
+                    "FILE_FAIL:" + reason + ":" + m.getReceiver(), m.getTimestamp()));
+            String senderId = userIdOf(m.getSender());
+            for (SessionRegistry.Session t : sessions.sessionsOf(senderId)) fail.sendTo(t.getConnection());
+            cluster.forwardToUser(senderId, fail);
             return;
         }
 
-        System.out.println("[서버] 알 수 없는 타입: " + msg.getType());
+        SessionRegistry.Session[] targets = sessions.sessionsOf(user);
+        for (SessionRegistry.Session t : targets) {
+            msg.sendTo(t.getConnection());
+        }
+        if (targets.length > 0) return;
+
+        // 그 사이 나갔다 → 이 노드 받은편지함에 (다시 접속하는 노드로 onRemoteLogin 때 넘어간다)
+        long seq = msg.storeIn(historyStore);
+        if (seq >= 0 && userStore.exists(user)) offlineInbox.enqueue(user, seq);
+    }
+
+    @Override
+    public void deliverToRoom(String room, EncodedMessage msg) {
+        RoomRegistry.Room r = rooms.get(room);
+        if (r != null) roomFanout.publish(r, msg);
+    }
+
+    @Override
+    public void deliverToAll(EncodedMessage msg) {
+        roomFanout.publishAll(msg);
+    }
+
+    @Override
+    public void onMembership(String room, String user, boolean joined) {
+        if (!RoomRegistry.isValidName(room)) return;
+        if (joined) {
+            rooms.join(room, user);
+        } else {
+            rooms.leave(room, user);
+        }
+    }
+
+    @Override
+    public void onUserAdded(UserStore.UserRecord record) {
+        if (userStore.importUser(record)) {
+            EventLog.info(LogCategory.CLUSTER, "user_imported", "user", record.id);
+        }
+    }
+
+    // 이 노드 받은편지함에 있던 것을 user가 접속한 노드로 (오래된 순, 넘긴 만큼 ack)
+    @Override
+    public void onRemoteLogin(String user, String node) {
+        if (offlineInbox.pendingFor(user) == 0 || !handoffs.add(user)) return;
+
+        Thread.ofVirtual().name("cluster-handoff").start(() -> {
+            int moved = 0;
+            try {
+                long[] seqs;
+                while ((seqs = offlineInbox.peek(user, -1, 100)).length > 0) {
+                    int n = 0;
+                    try {
+                        while (n < seqs.length) {
+                            byte[] record = historyStore.readRecord(seqs[n]);
+                            if (record != null && !cluster.handOff(node, user, record)) break;
+                            n++;
+                        }
+                    } finally {
+                        offlineInbox.ack(user, Arrays.copyOf(seqs, n));
+                        moved += n;
+                    }
+                    if (n < seqs.length) return;
+                }
+            } catch (Exception e) {
+                EventLog.warn(LogCategory.CLUSTER, "handoff_failed", "user", user, "node", node, "error", e);
+            } finally {
+                handoffs.remove(user);
+                if (moved > 0) EventLog.info(LogCategory.CLUSTER, "handoff", "user", user, "node", node, "moved", moved);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Collection<String>> localUsers() {
+        Map<String, Collection<String>> result = new LinkedHashMap<>();
+        for (String user : sessions.onlineUsers()) {
+            result.put(user, new ArrayList<>(rooms.roomsOf(user)));
+        }
+        return result;
+    }
+
+    /**
+     * 이 노드 비우기 (배포/점검): 접속한 기기마다 다른 노드 주소를 "MOVED:host:port"로 알리고 잠시 뒤 끊는다.
+     * 이후 로그인은 LOGIN_FAIL:DRAINING. 끊긴 사용자의 위치는 다른 노드들에서 OFFLINE으로 지워진다.
+     *
+     * @return 알린 세션 수
+     */
+    public int drain() {
+        draining = true;
+        List<ClientConnection> conns = new ArrayList<>();
+        for (SessionRegistry.Session s : sessions.all()) {
+            sendMoved(s.getConnection(), s.getUser());
+            conns.add(s.getConnection());
+        }
+
+        // 안내가 보낼 큐에서 나갈 시간을 조금 준다
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException ignored) {
+            }
+            for (ClientConnection c : conns) c.close();
+        });
+        EventLog.info(LogCategory.CLUSTER, "drain", "sessions", conns.size());
+        return conns.size();
     }
 
+    private void sendMoved(ClientConnection conn, String user) {
+        String target = cluster == null ? null : cluster.movedTarget();
+        conn.send(new ChatMessage(MessageType.SYSTEM, "server", user,
+                target == null ? "DRAINING" : "MOVED:" + target, null));
+    }
 }
@@ -0,0 +1,145 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+import com.e2ee.server.protocol.BinaryFrameCodec;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 접속한 클라이언트 하나.
+ *
+ * 어떤 엔진(스레드/가상스레드/NIO)으로 붙었든
+ * 서버 로직은 이 클래스의 send()/close()만 사용한다.
+ *
+ * send()는 연결별 OutboundQueue에 넣고 바로 돌아온다.
+ * 실제 쓰기는 엔진의 writer 작업(scheduleWrite)이 큐를 비우면서 한다.
+ *
+ * 연결마다 코덱(JSON/BINARY)이 다를 수 있으므로, 메시지 인코딩은 연결의 코덱을 따른다.
+ */
+public abstract class ClientConnection {
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final long id = IDS.incrementAndGet();
+    private final String remote;
+
+    protected final OutboundQueue outbound;
+    protected final ConnectionHandler handler;
+
+    // 첫 바이트를 보기 전까지는 JSON으로 가정
+    private volatile FrameCodec codec = FrameCodec.JSON;
+
+    // 보내기 한도 버킷 (한도를 껐으면 null, onOpen에서 붙임)
+    private volatile RateLimiter.Limits limits;
+
+    // 읽은 바이트 → 프레임 (읽는 스레드 하나만 만짐)
+    private final FrameDecoder decoder = new FrameDecoder(BinaryFrameCodec.MAX_FRAME);
+
+    private final FrameDecoder.Sink sink = new FrameDecoder.Sink() {
+        @Override
+        public void onCodec(FrameCodec c) {
+            codec = c;
+            // 바이너리 수락 → 같은 PREAMBLE을 돌려보낸다
+            if (c == FrameCodec.BINARY) {
+                sendFrame(BinaryFrameCodec.PREAMBLE.clone());
+            }
+        }
+
+        @Override
+        public void onFrame(byte[] wire, int off, int len) throws Exception {
+            dispatch(wire, off, len);
+        }
+    };
+
+    // DROP_OLDEST로 밀려난 저장 메시지 → SPILL과 같은 길(받은편지함)로
+    private final ObjLongConsumer<byte[]> pushedOut;
+
+    protected ClientConnection(String remote, OutboundQueue outbound, ConnectionHandler handler) {
+        this.remote = remote;
+        this.outbound = outbound;
+        this.handler = handler;
+        this.pushedOut = handler == null ? null : (frame, seq) -> handler.onOverflow(this, frame, seq);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getRemote() {
+        return remote;
+    }
+
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    public FrameCodec getCodec() {
+        return codec;
+    }
+
+    RateLimiter.Limits getLimits() {
+        return limits;
+    }
+
+    void setLimits(RateLimiter.Limits limits) {
+        this.limits = limits;
+    }
+
+    // 엔진이 소켓에서 읽은 바이트를 넘겨주는 곳
+    protected void received(byte[] src, int off, int n) throws Exception {
+        decoder.feed(src, off, n, sink);
+    }
+
+    // 완성된 프레임을 핸들러로 (기본: 읽은 스레드에서 바로, NIO는 작업 스레드로 넘김)
+    protected void dispatch(byte[] wire, int off, int len) throws Exception {
+        handler.onFrame(this, wire, off, len);
+    }
+
+    // 메시지를 이 연결의 코덱으로 인코딩해서 보내기
+    public void send(ChatMessage msg) {
+        sendFrame(codec.encode(msg));
+    }
+
+    // 이미 이 연결의 코덱으로 인코딩된 프레임 바이트 보내기
+    public void sendFrame(byte[] frame) {
+        sendFrame(frame, -1);
+    }
+
+    // seq: 히스토리에 저장된 메시지면 그 seq (큐가 넘치면 SPILL/DROP_OLDEST 모두 받은편지함에 넣는다), 아니면 -1
+    public void sendFrame(byte[] frame, long seq) {
+        if (!isOpen()) return;
+
+        switch (outbound.offer(frame, seq, pushedOut)) {
+            case QUEUED:
+            case DROPPED_OLDEST:
+                if (handler != null) handler.onQueued(this, frame.length);
+                scheduleWrite();
+                break;
+
+            case OVERFLOW:
+                if (outbound.getPolicy() == OutboundQueue.OverflowPolicy.DISCONNECT) {
+                    EventLog.warn(LogCategory.CONN, "slow_receiver", "conn", this, "queue", outbound);
+                    close();
+                } else {
+                    handler.onOverflow(this, frame, seq);
+                }
+                break;
+        }
+    }
+
+    // 큐에 쌓인 걸 writer가 비우도록 예약 (이미 예약돼 있으면 아무것도 안 함)
+    protected abstract void scheduleWrite();
+
+    public abstract boolean isOpen();
+
+    public abstract void close();
+
+    @Override
+    public String toString() {
+        return "conn#" + id + "(" + remote + ")";
+    }
+}
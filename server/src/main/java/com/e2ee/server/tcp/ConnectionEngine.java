@@ -0,0 +1,47 @@
+package com.e2ee.server.tcp;
+
+import java.io.IOException;
+
+/**
+ * 소켓 accept / 읽기 / 쓰기를 담당하는 연결 엔진.
+ *
+ * - THREAD  : 연결마다 플랫폼 스레드 1개 (예전 방식)
+ * - VIRTUAL : 연결마다 Java 21 가상 스레드 1개
+ * - NIO     : 소수의 Selector 이벤트 루프가 논블로킹 채널을 나눠 맡음
+ */
+public interface ConnectionEngine {
+
+    enum Mode {
+        THREAD,
+        VIRTUAL,
+        NIO
+    }
+
+    /**
+     * @param port 0이면 빈 포트 아무거나
+     * @return 실제로 열린 포트
+     */
+    int start(int port, ConnectionHandler handler) throws IOException;
+
+    void stop();
+
+    /**
+     * @param queueCapacity 연결별 보낼 큐 크기
+     * @param overflow      큐가 가득 찼을 때 정책
+     */
+    static ConnectionEngine create(Mode mode,
+                                   int nioLoops,
+                                   int queueCapacity,
+                                   OutboundQueue.OverflowPolicy overflow) {
+        switch (mode) {
+            case THREAD:
+                return new BlockingConnectionEngine(false, queueCapacity, overflow);
+            case VIRTUAL:
+                return new BlockingConnectionEngine(true, queueCapacity, overflow);
+            case NIO:
+                return new NioConnectionEngine(nioLoops, queueCapacity, overflow);
+            default:
+                throw new IllegalArgumentException("알 수 없는 엔진: " + mode);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.e2ee.server.tcp;
+
+/**
+ * 엔진이 연결 이벤트를 넘겨주는 곳 (ChatTcpServer가 구현).
+ */
+public interface ConnectionHandler {
+
+    void onOpen(ClientConnection conn);
+
+    // 클라이언트가 보낸 프레임 하나 (받은 그대로의 wire, 본문은 wire[off, off+len), 코덱은 conn.getCodec())
+    void onFrame(ClientConnection conn, byte[] wire, int off, int len) throws Exception;
+
+    void onClose(ClientConnection conn);
+
+    // 보낼 큐가 가득 차서 frame을 못 넣음 (SPILL) 또는 새 프레임에 밀려남 (DROP_OLDEST, 저장된 것만)
+    // seq: 히스토리에 저장된 메시지면 그 seq, 아니면 -1
+    void onOverflow(ClientConnection conn, byte[] frame, long seq);
+
+    // frame을 보낼 큐에 넣음 (보낸 바이트 지표용)
+    default void onQueued(ClientConnection conn, int bytes) {
+    }
+}
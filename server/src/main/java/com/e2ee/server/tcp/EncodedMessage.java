@@ -0,0 +1,153 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.BinaryFrameCodec;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.store.HistoryStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 여러 연결에 보낼 메시지 하나를 코덱별로 한 번씩만 인코딩해 두는 그릇.
+ *
+ * 전체방처럼 받는 사람이 많을 때, 연결마다 다시 직렬화하지 않고
+ * 같은 바이트 배열을 모든 수신자 큐에 넣는다.
+ *
+ * 받은 프레임으로 만들면(릴레이 빠른 경로) 보낸 쪽 코덱의 바이트는 받은 그대로 쓰고,
+ * 다른 코덱 수신자가 있을 때만 한 번 decode 해서 다시 인코딩한다.
+ */
+public class EncodedMessage {
+
+    private volatile ChatMessage msg;
+
+    // 받은 프레임 (메시지로 만들었으면 null)
+    private final FrameCodec sourceCodec;
+    private final byte[] wire;
+    private final int off;
+    private final int len;
+
+    private volatile byte[] json;
+    private volatile byte[] binary;
+
+    // 클라이언트에게서 받은 System.nanoTime() (릴레이 지연 지표, 0이면 서버가 만든 것)
+    private long receivedNanos;
+
+    // 이 노드 히스토리에 저장된 seq (-1: 저장 안 함) → 느린 수신자 큐가 넘치면 받은편지함으로 (SPILL)
+    private volatile long seq = -1;
+
+    public EncodedMessage(ChatMessage msg) {
+        this.msg = msg;
+        this.sourceCodec = null;
+        this.wire = null;
+        this.off = 0;
+        this.len = 0;
+    }
+
+    /**
+     * 받은 프레임 그대로. 본문은 wire[off, off+len).
+     */
+    public EncodedMessage(FrameCodec codec, byte[] wire, int off, int len) {
+        this.sourceCodec = codec;
+        this.wire = wire;
+        this.off = off;
+        this.len = len;
+
+        if (codec == FrameCodec.BINARY) {
+            this.binary = wire;
+        } else {
+            this.json = wire;
+        }
+    }
+
+    // HistoryStore에 저장된 레코드(JSON 또는 바이너리 본문)를 그대로 다시 보낼 때
+    public static EncodedMessage fromRecord(byte[] record) {
+        FrameCodec codec = HistoryStore.codecOf(record);
+        if (codec == FrameCodec.BINARY) {
+            byte[] wire = BinaryFrameCodec.frame(record);
+            return new EncodedMessage(codec, wire, wire.length - record.length, record.length);
+        }
+        byte[] wire = Arrays.copyOf(record, record.length + 1);
+        wire[record.length] = '\n';
+        return new EncodedMessage(codec, wire, 0, record.length);
+    }
+
+    // 이 노드 히스토리의 seq 레코드 (오프라인 묶음) → 큐에서 밀려나면 다시 받은편지함으로
+    public static EncodedMessage fromRecord(byte[] record, long seq) {
+        EncodedMessage m = fromRecord(record);
+        m.seq = seq;
+        return m;
+    }
+
+    public EncodedMessage receivedAt(long nanos) {
+        this.receivedNanos = nanos;
+        return this;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    // 필요할 때만 본문을 해석한다 (빠른 경로에선 다른 코덱 수신자가 있을 때뿐)
+    public ChatMessage getMessage() {
+        ChatMessage m = msg;
+        if (m == null) msg = m = sourceCodec.decode(wire, off, len);
+        return m;
+    }
+
+    // 코덱별로 처음 한 번만 인코딩 (팬아웃 레인 여러 개가 동시에 불러도 한 번)
+    public byte[] bytesFor(FrameCodec codec) {
+        byte[] b = (codec == FrameCodec.BINARY) ? binary : json;
+        return b != null ? b : encodeOnce(codec);
+    }
+
+    private synchronized byte[] encodeOnce(FrameCodec codec) {
+        if (codec == FrameCodec.BINARY) {
+            if (binary == null) binary = codec.encode(getMessage());
+            return binary;
+        }
+        if (json == null) json = codec.encode(getMessage());
+        return json;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void sendTo(ClientConnection conn) {
+        conn.sendFrame(bytesFor(conn.getCodec()), seq);
+    }
+
+    // 히스토리에 한 건 저장 (받은 프레임이면 본문 바이트를 그대로) → 저장된 seq
+    public long storeIn(HistoryStore history) {
+        long s;
+        if (wire != null) {
+            s = history.addFrame(wire, off, len);
+        } else {
+            byte[] j = bytesFor(FrameCodec.JSON);
+            s = history.addFrame(j, 0, j.length - 1);   // 끝의 '\n' 제외
+        }
+        seq = s;
+        return s;
+    }
+
+    // 저장 레코드와 같은 모양(프레임 없이 본문만)으로 쓰기 → 받는 노드가 fromRecord로 되살린다
+    public void writeRecord(OutputStream out) throws IOException {
+        if (wire != null) {
+            out.write(wire, off, len);
+            return;
+        }
+        byte[] j = bytesFor(FrameCodec.JSON);
+        out.write(j, 0, j.length - 1);
+    }
+
+    public int recordLength() {
+        return wire != null ? len : bytesFor(FrameCodec.JSON).length - 1;
+    }
+
+    // 로그용 본문 크기 (바이트)
+    public int bodyBytes() {
+        return wire != null ? len : bytesFor(FrameCodec.JSON).length;
+    }
+}
@@ -0,0 +1,70 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.metrics.RelayMetrics;
+import com.e2ee.server.protocol.MessageType;
+
+/**
+ * 파일 전송(FILE_OFFER / FILE_CHUNK / FILE_ACK) 릴레이.
+ *
+ * 채팅과 달리 기록(HistoryStore)에도 받은편지함에도 넣지 않고, 받는 쪽이 접속해 있을 때만 넘긴다.
+ * 서버는 조각을 풀지도 모으지도 않는다 → 받은 프레임 바이트를 그대로 받는 쪽 큐에 넣을 뿐.
+ *
+ * 흐름 제어
+ *   - 보내는 쪽: 받는 쪽 FILE_ACK가 올 때까지 창(window) 크기만큼만 조각을 보낸다 (클라이언트)
+ *   - 서버: 받는 쪽 보낼 큐에 이미 maxQueuedFrames개 넘게 쌓여 있으면 조각을 넘기지 않고 FILE_FAIL:RECEIVER_BUSY
+ *           (창을 지키지 않는 송신자 하나 때문에 받는 쪽 큐가 넘쳐 채팅 프레임이 밀려나지 않게)
+ *
+ * OFFER/CHUNK는 받는 사람의 기기 하나(가장 먼저 로그인한 기기)에만, ACK는 보낸 사람의 기기 모두에게
+ * (어느 기기에서 보냈는지 모르므로, 모르는 fileId의 ACK는 클라이언트가 무시한다).
+ *
+ * 넘긴 수 / 조각 바이트 / 거절 사유는 RelayMetrics의 chat.files* 로 센다.
+ */
+public class FileRelay {
+
+    private final SessionRegistry sessions;
+    private final int maxChunkBytes;
+    private final int maxQueuedFrames;
+    private final RelayMetrics metrics;
+
+    public FileRelay(SessionRegistry sessions, int maxChunkBytes, int maxQueuedFrames, RelayMetrics metrics) {
+        this.sessions = sessions;
+        this.maxChunkBytes = maxChunkBytes;
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return 넘겼으면 null, 아니면 보낸 쪽에 돌려줄 FILE_FAIL 사유
+     */
+    public String relay(MessageType type, String targetId, EncodedMessage encoded) {
+        if (type == MessageType.FILE_CHUNK && encoded.bodyBytes() > maxChunkBytes) {
+            return refuse("TOO_LARGE");
+        }
+
+        SessionRegistry.Session[] targets = sessions.sessionsOf(targetId);
+        if (targets.length == 0) {
+            return refuse("TARGET_OFFLINE");
+        }
+
+        if (type == MessageType.FILE_ACK) {
+            for (SessionRegistry.Session t : targets) {
+                encoded.sendTo(t.getConnection());
+            }
+            metrics.fileRelayed(type, 0);
+            return null;
+        }
+
+        ClientConnection target = targets[0].getConnection();
+        if (type == MessageType.FILE_CHUNK && target.getOutbound().getDepth() >= maxQueuedFrames) {
+            return refuse("RECEIVER_BUSY");
+        }
+        metrics.fileRelayed(type, encoded.bodyBytes());
+        encoded.sendTo(target);
+        return null;
+    }
+
+    private String refuse(String reason) {
+        metrics.fileRefused(reason);
+        return reason;
+    }
+}
@@ -0,0 +1,133 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.BinaryFrameCodec;
+import com.e2ee.server.protocol.FrameCodec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 소켓에서 읽은 바이트 조각들을 모아 프레임 단위로 잘라주는 연결별 디코더.
+ *
+ * 첫 바이트로 코덱을 정한다.
+ *   - BinaryFrameCodec.PREAMBLE → 바이너리(varint 길이 접두사) 프레임
+ *   - 그 외('{' 등)             → 예전 JSON 줄 단위 프레임
+ *
+ * 블로킹 엔진과 NIO 엔진이 같이 쓴다.
+ */
+public class FrameDecoder {
+
+    /** 프레임이 완성될 때마다 불린다 */
+    public interface Sink {
+        // 코덱이 정해졌을 때 (연결당 한 번)
+        void onCodec(FrameCodec codec) throws IOException;
+
+        /**
+         * 프레임 하나.
+         *
+         * wire는 구분자/길이 접두사까지 포함한 받은 그대로의 바이트이고,
+         * 본문은 wire[off, off+len) 이다. 같은 코덱 상대에게는 wire를 그대로 보내면 된다.
+         */
+        void onFrame(byte[] wire, int off, int len) throws Exception;
+    }
+
+    private final int maxFrame;
+
+    private FrameCodec codec;
+
+    // 아직 프레임이 안 된 바이트
+    private byte[] buf = new byte[512];
+    private int len;
+
+    // JSON 모드에서 줄바꿈을 어디까지 찾아봤는지 (같은 바이트를 두 번 훑지 않게)
+    private int scanned;
+
+    public FrameDecoder(int maxFrame) {
+        this.maxFrame = maxFrame;
+    }
+
+    public FrameCodec getCodec() {
+        return codec;
+    }
+
+    public void feed(byte[] src, int off, int n, Sink sink) throws Exception {
+        append(src, off, n);
+
+        int pos = 0;
+        while (pos < len) {
+            if (codec == null) {
+                if ((buf[pos] & 0xFF) != (BinaryFrameCodec.PREAMBLE[0] & 0xFF)) {
+                    codec = FrameCodec.JSON;
+                    sink.onCodec(codec);
+                    continue;
+                }
+                if (len - pos < BinaryFrameCodec.PREAMBLE.length) break;
+                if (!Arrays.equals(buf, pos, pos + BinaryFrameCodec.PREAMBLE.length,
+                        BinaryFrameCodec.PREAMBLE, 0, BinaryFrameCodec.PREAMBLE.length)) {
+                    throw new IOException("지원하지 않는 핸드셰이크");
+                }
+                pos += BinaryFrameCodec.PREAMBLE.length;
+                codec = FrameCodec.BINARY;
+                sink.onCodec(codec);
+                continue;
+            }
+
+            int next = (codec == FrameCodec.BINARY)
+                    ? nextBinary(pos, sink)
+                    : nextLine(pos, sink);
+            if (next < 0) break;
+            pos = next;
+        }
+
+        // 처리한 부분은 앞으로 당긴다
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, len - pos);
+            len -= pos;
+            scanned = Math.max(0, scanned - pos);
+        }
+
+        // 큰 프레임 하나 때문에 늘어난 버퍼는 비었을 때 돌려놓는다
+        if (len == 0 && buf.length > 64 * 1024) {
+            buf = new byte[512];
+        }
+    }
+
+    // JSON: '\n'까지가 한 프레임 → 다음 시작 위치, 아직 줄이 안 끝났으면 -1
+    private int nextLine(int pos, Sink sink) throws Exception {
+        int from = Math.max(pos, scanned);
+        for (int i = from; i < len; i++) {
+            if (buf[i] == '\n') {
+                int end = (i > pos && buf[i - 1] == '\r') ? i - 1 : i;
+                scanned = i + 1;
+                sink.onFrame(Arrays.copyOfRange(buf, pos, i + 1), 0, end - pos);
+                return i + 1;
+            }
+        }
+        scanned = len;
+        if (len - pos > maxFrame) throw new IOException("프레임이 너무 깁니다: " + (len - pos));
+        return -1;
+    }
+
+    // BINARY: [varint 길이][본문]
+    private int nextBinary(int pos, Sink sink) throws Exception {
+        int[] v = BinaryFrameCodec.readVarint(buf, pos, len);
+        if (v == null) return -1;
+
+        int bodyLen = v[0];
+        if (bodyLen < 0 || bodyLen > maxFrame) throw new IOException("프레임이 너무 깁니다: " + bodyLen);
+
+        int start = pos + v[1];
+        if (len - start < bodyLen) return -1;
+
+        sink.onFrame(Arrays.copyOfRange(buf, pos, start + bodyLen), v[1], bodyLen);
+        return start + bodyLen;
+    }
+
+    private void append(byte[] src, int off, int n) {
+        if (len + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+        System.arraycopy(src, off, buf, len, n);
+        len += n;
+    }
+}
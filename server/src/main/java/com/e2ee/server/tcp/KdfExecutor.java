@@ -0,0 +1,87 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.metrics.RelayMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 비밀번호 해시(KDF)를 돌리는 전용 스레드들.
+ *
+ * 가입/로그인 검증은 한 번에 수십~수백 ms씩 CPU를 쓰므로 연결 스레드에서 하지 않고 여기로 넘긴다.
+ * 재시작 직후처럼 로그인이 몰리면 대기열(queueCapacity)이 차는데,
+ * 그때는 더 쌓지 않고 submit()이 false를 돌려준다 → 호출한 쪽이 AUTH_RESULT ...:BUSY로 바로 답한다.
+ * (대기열이 길어 봐야 클라이언트는 어차피 타임아웃 - 빨리 거절하고 다시 시도하게 하는 편이 낫다)
+ *
+ * 지표(RelayMetrics): chat.kdf.wait(넣은 시각 → 시작), chat.kdf.time(실행), chat.kdf.rejected
+ */
+public class KdfExecutor {
+
+    private final ThreadPoolExecutor pool;
+    private final RelayMetrics metrics;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    public KdfExecutor(int threads, int queueCapacity) {
+        this(threads, queueCapacity, null);
+    }
+
+    public KdfExecutor(int threads, int queueCapacity, RelayMetrics metrics) {
+        this.metrics = metrics;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                Math.max(1, threads), Math.max(1, threads),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "kdf-" + n.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @return 대기열이 가득 차서 못 넣었으면 false (task는 실행되지 않음)
+     */
+    public boolean submit(Runnable task) {
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    if (metrics != null) metrics.kdfRan(start - queuedAt, System.nanoTime() - start);
+                    completed.increment();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            if (metrics != null) metrics.kdfRejected();
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+}
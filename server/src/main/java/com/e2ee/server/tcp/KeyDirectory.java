@@ -0,0 +1,111 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.store.UserStore;
+import com.google.gson.Gson;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 공개키 디렉터리: KEY_REQ / KEY_BATCH_REQ / 로그인 미리 보내기가 같이 쓰는 공개키 조회.
+ *
+ * 사용자마다 KEY_BATCH_RES 본문에 들어갈 JSON 조각("id":"공개키")을 한 번만 만들어 두고,
+ * 여러 명을 물으면 그 조각들을 이어 붙이기만 한다. (요청마다 Gson으로 다시 만들지 않음)
+ *
+ * 공개키는 가입 때 정해지고 바뀌지 않으므로 한 번 찾은 것은 계속 둔다.
+ * 없는 사용자는 기억하지 않는다 (나중에 가입하면 바로 보이게).
+ *
+ * KEY_BATCH_RES 본문: {"keys":{"bob":"MCow...","carol":"MCow..."},"missing":["dave"]}
+ * KEY_RES 본문: {"keys":{"bob":"MCow..."}} (보낸 사람은 늘 server, 키 주인은 본문에만)
+ */
+public class KeyDirectory {
+
+    private final UserStore users;
+    private final int maxBatch;
+    private final Gson gson = new Gson();
+
+    // ID → "id":"공개키" 조각
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchKeys = new LongAdder();
+
+    public KeyDirectory(UserStore users, int maxBatch) {
+        this.users = users;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    // 한 명 → KEY_RES 본문 (없으면 null)
+    public String keyBody(String id) {
+        String e = entry(id);
+        return e == null ? null : "{\"keys\":{" + e + "}}";
+    }
+
+    /**
+     * 여러 명을 한 번에 → KEY_BATCH_RES 본문.
+     * 같은 ID는 한 번만, maxBatch명을 넘는 뒷부분은 잘라서 missing에도 넣지 않는다.
+     */
+    public String batchBody(Collection<String> ids) {
+        StringBuilder keys = new StringBuilder(64 + ids.size() * 80).append("{\"keys\":{");
+        StringBuilder missing = new StringBuilder("\"missing\":[");
+        boolean firstKey = true;
+        boolean firstMissing = true;
+        int n = 0;
+
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (n++ == maxBatch) break;
+            String e = entry(id);
+            if (e != null) {
+                if (!firstKey) keys.append(',');
+                keys.append(e);
+                firstKey = false;
+            } else {
+                if (!firstMissing) missing.append(',');
+                missing.append(gson.toJson(id));
+                firstMissing = false;
+            }
+        }
+
+        batches.increment();
+        batchKeys.add(Math.min(n, maxBatch));
+        return keys.append("},").append(missing).append("]}").toString();
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("cached", entries.size());
+        m.put("hits", hits.sum());
+        m.put("misses", misses.sum());
+        m.put("batches", batches.sum());
+        m.put("batchKeys", batchKeys.sum());
+        return m;
+    }
+
+    private String entry(String id) {
+        if (id == null) return null;
+
+        String e = entries.get(id);
+        if (e != null) {
+            hits.increment();
+            return e;
+        }
+        misses.increment();
+
+        String key = users.getPublicKey(id);
+        if (key == null) return null;
+
+        e = gson.toJson(id) + ":" + gson.toJson(key);
+        String prev = entries.putIfAbsent(id, e);
+        return prev != null ? prev : e;
+    }
+}
@@ -0,0 +1,411 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NIO Selector 이벤트 루프 몇 개가 논블로킹 SocketChannel 전체를 나눠 맡는 엔진.
+ *
+ * - accept 스레드 1개가 연결을 받아 루프들에 라운드로빈으로 넘긴다.
+ * - 각 연결은 자기만의 읽기 버퍼(FrameDecoder)와 쓰기 큐(OutboundQueue)를 가진다.
+ * - 쓰기 큐는 루프가 여러 프레임을 묶어 gathering write 한 번으로 내보낸다.
+ * - 핸들러(onFrame / onClose)는 루프 스레드가 아니라 연결별로 순서대로 도는 가상 스레드 작업에서 부른다.
+ *   기록 저장(fsync), 받은편지함 저장, 해시처럼 막힐 수 있는 일이 루프의 다른 연결들을 멈추지 않게.
+ *   연결의 처리 대기 프레임이 MAX_PENDING개를 넘으면 그 연결은 읽기를 멈췄다가 RESUME_AT개 아래로 내려가면 다시 읽는다.
+ */
+public class NioConnectionEngine implements ConnectionEngine {
+
+    private static final int READ_CHUNK = 16 * 1024;
+
+    // 연결마다 처리를 기다리는 프레임 수: 넘으면 읽기 멈춤 / 이만큼 내려가면 다시 읽기
+    static final int MAX_PENDING = 256;
+    static final int RESUME_AT = 64;
+
+    // 작업 큐에서 onClose 차례를 나타내는 표시
+    private static final Frame CLOSED = new Frame(new byte[0], 0, 0);
+
+    private final int loopCount;
+    private final int queueCapacity;
+    private final OutboundQueue.OverflowPolicy overflow;
+
+    private ServerSocketChannel server;
+    private EventLoop[] loops;
+    private volatile boolean running;
+
+    // 연결별 프레임 처리 작업 (처리할 게 있을 때만 가상 스레드 하나씩)
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("nio-worker-", 0).factory());
+
+    public NioConnectionEngine(int loopCount,
+                               int queueCapacity,
+                               OutboundQueue.OverflowPolicy overflow) {
+        this.loopCount = loopCount > 0
+                ? loopCount
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.queueCapacity = queueCapacity;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public int start(int port, ConnectionHandler handler) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        running = true;
+
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(handler);
+            Thread t = new Thread(loops[i], "nio-loop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        Thread acceptor = new Thread(this::acceptLoop, "tcp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        try {
+            while (running) {
+                SocketChannel ch = server.accept();
+                EventLog.info(LogCategory.CONN, "accept", "remote", ch.getRemoteAddress());
+
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                loops[next].register(ch);
+                next = (next + 1) % loops.length;
+            }
+        } catch (ClosedChannelException e) {
+            // stop()
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+        if (loops != null) {
+            for (EventLoop loop : loops) loop.shutdown();
+        }
+        workers.shutdown();
+    }
+
+    // ================= 이벤트 루프 =================
+    final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final ConnectionHandler handler;
+
+        // 다른 스레드에서 넘어온 작업들 (루프 스레드에서 처리)
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> writeRequests = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> resumeRequests = new ConcurrentLinkedQueue<>();
+
+        // 소켓에서 읽을 때 쓰는 임시 버퍼 (루프당 1개)
+        private final ByteBuffer readChunk = ByteBuffer.allocate(READ_CHUNK);
+
+        EventLoop(ConnectionHandler handler) throws IOException {
+            this.selector = Selector.open();
+            this.handler = handler;
+        }
+
+        void register(SocketChannel ch) {
+            newChannels.add(ch);
+            selector.wakeup();
+        }
+
+        void requestWrite(NioConnection conn) {
+            writeRequests.add(conn);
+            selector.wakeup();
+        }
+
+        void requestResume(NioConnection conn) {
+            resumeRequests.add(conn);
+            selector.wakeup();
+        }
+
+        // running=false 를 본 루프 스레드가 스스로 정리하도록 깨우기만 한다
+        void shutdown() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+
+                    SocketChannel ch;
+                    while ((ch = newChannels.poll()) != null) {
+                        accept(ch);
+                    }
+
+                    NioConnection w;
+                    while ((w = writeRequests.poll()) != null) {
+                        flush(w);
+                    }
+
+                    NioConnection r;
+                    while ((r = resumeRequests.poll()) != null) {
+                        resume(r);
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+
+                        NioConnection conn = (NioConnection) key.attachment();
+                        if (!key.isValid()) {
+                            conn.close();
+                            continue;
+                        }
+                        if (key.isReadable()) read(conn);
+                        if (key.isValid() && key.isWritable()) flush(conn);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            // 종료: 남은 연결을 닫고 Selector 정리
+            for (SelectionKey key : selector.keys()) {
+                Object att = key.attachment();
+                if (att instanceof NioConnection) ((NioConnection) att).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void accept(SocketChannel ch) {
+            try {
+                SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                NioConnection conn = new NioConnection(ch, key, this,
+                        new OutboundQueue(queueCapacity, overflow));
+                key.attach(conn);
+                handler.onOpen(conn);
+            } catch (IOException e) {
+                try {
+                    ch.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void read(NioConnection conn) {
+            try {
+                readChunk.clear();
+                int n = conn.channel.read(readChunk);
+                if (n < 0) {
+                    conn.close();
+                    return;
+                }
+
+                conn.received(readChunk.array(), 0, n);
+
+            } catch (Exception e) {
+                EventLog.info(LogCategory.CONN, "close", "conn", conn);
+                conn.close();
+            }
+        }
+
+        // 처리 대기 프레임이 너무 많음 → 읽기 멈춤 (루프 스레드)
+        void pause(NioConnection conn) {
+            if (conn.paused || !conn.key.isValid()) return;
+            conn.paused = true;
+            conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        private void resume(NioConnection conn) {
+            if (!conn.paused || !conn.key.isValid()) return;
+            conn.paused = false;
+            conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        // 쓰기 큐에 있는 걸 소켓이 받아주는 만큼 묶어서 보낸다
+        private void flush(NioConnection conn) {
+            if (!conn.isOpen()) return;
+            try {
+                while (true) {
+                    if (conn.batchOff == conn.batchLen && !conn.refillBatch()) {
+                        conn.key.interestOps(conn.readOps());
+                        conn.writeScheduled.set(false);
+
+                        // 그 사이 누가 또 넣었으면 한 번 더
+                        if (conn.outbound.isEmpty() || !conn.writeScheduled.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    conn.channel.write(conn.batch, conn.batchOff, conn.batchLen - conn.batchOff);
+
+                    int done = 0;
+                    while (conn.batchOff < conn.batchLen && !conn.batch[conn.batchOff].hasRemaining()) {
+                        conn.batch[conn.batchOff++] = null;
+                        done++;
+                    }
+                    conn.outbound.markWritten(done);
+
+                    if (conn.batchOff < conn.batchLen) {
+                        // 소켓 버퍼가 가득 참 → 쓸 수 있을 때 다시
+                        conn.key.interestOps(conn.readOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                conn.close();
+            }
+        }
+    }
+
+    // ================= NIO 연결 =================
+    final class NioConnection extends ClientConnection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final EventLoop loop;
+
+        // 지금 내보내는 중인 프레임 묶음 (루프 스레드만 만짐)
+        private final ByteBuffer[] batch = new ByteBuffer[OutboundQueue.BATCH_FRAMES];
+        private final byte[][] drained = new byte[OutboundQueue.BATCH_FRAMES][];
+        private int batchOff;
+        private int batchLen;
+
+        private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        // 받은 프레임 → 작업 스레드 (루프가 넣고, 한 번에 작업 하나만 꺼내 순서대로 처리)
+        private final Queue<Frame> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean dispatching = new AtomicBoolean();
+
+        // 읽기를 멈췄는지 (루프 스레드만 만짐)
+        private boolean paused;
+
+        NioConnection(SocketChannel channel, SelectionKey key, EventLoop loop, OutboundQueue outbound) throws IOException {
+            super(String.valueOf(channel.getRemoteAddress()), outbound, loop.handler);
+            this.channel = channel;
+            this.key = key;
+            this.loop = loop;
+        }
+
+        // 큐에서 다음 묶음을 꺼내 batch에 채운다 (없으면 false)
+        boolean refillBatch() {
+            int n = outbound.drainTo(drained, drained.length, OutboundQueue.BATCH_BYTES);
+            for (int i = 0; i < n; i++) {
+                batch[i] = ByteBuffer.wrap(drained[i]);
+                drained[i] = null;
+            }
+            batchOff = 0;
+            batchLen = n;
+            return n > 0;
+        }
+
+        int readOps() {
+            return paused ? 0 : SelectionKey.OP_READ;
+        }
+
+        // 루프 스레드: 프레임을 작업 큐에 넣고, 처리 중인 작업이 없으면 하나 띄운다
+        @Override
+        protected void dispatch(byte[] wire, int off, int len) {
+            inbox.add(new Frame(wire, off, len));
+            if (pending.incrementAndGet() >= MAX_PENDING) loop.pause(this);
+            startWorker();
+        }
+
+        private void startWorker() {
+            if (!dispatching.compareAndSet(false, true)) return;
+            try {
+                workers.execute(this::drainInbox);
+            } catch (RejectedExecutionException e) {
+                // 엔진 종료 중: 남은 것(onClose)은 이 스레드에서
+                drainInbox();
+            }
+        }
+
+        // 작업 스레드: 쌓인 프레임을 받은 순서대로, 닫힌 뒤에는 onClose만
+        private void drainInbox() {
+            do {
+                Frame f;
+                while ((f = inbox.poll()) != null) {
+                    if (f == CLOSED) {
+                        loop.handler.onClose(this);
+                        continue;
+                    }
+                    if (pending.decrementAndGet() == RESUME_AT) loop.requestResume(this);
+                    if (!isOpen()) continue;
+                    try {
+                        loop.handler.onFrame(this, f.wire, f.off, f.len);
+                    } catch (Exception e) {
+                        EventLog.warn(LogCategory.CONN, "frame_error", "conn", this, "error", e);
+                        close();
+                    }
+                }
+                dispatching.set(false);
+                // 그 사이 루프가 또 넣었으면 한 번 더
+            } while (!inbox.isEmpty() && dispatching.compareAndSet(false, true));
+        }
+
+        @Override
+        protected void scheduleWrite() {
+            if (writeScheduled.compareAndSet(false, true)) {
+                loop.requestWrite(this);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed.get();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            outbound.clear();
+            // 아직 처리 중인 프레임 뒤에 onClose (닫힌 연결에 세션이 새로 생기지 않게)
+            inbox.add(CLOSED);
+            startWorker();
+        }
+    }
+
+    // 받은 프레임 하나 (wire[off, off+len)이 본문)
+    private record Frame(byte[] wire, int off, int len) {
+    }
+}
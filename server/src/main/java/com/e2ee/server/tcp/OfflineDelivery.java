@@ -0,0 +1,178 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.log.EventLog;
+import com.e2ee.server.log.LogCategory;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.OfflineInbox;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 로그인한 사용자에게 오프라인 받은편지함을 묶음(batch) 단위로 흘려보낸다.
+ *
+ * 흐름: 묶음 전송 → OFFLINE_BATCH {"last":seq,"remaining":n} → 클라이언트 OFFLINE_ACK(seq) → 다음 묶음
+ *
+ * - 확인(ACK)된 것만 받은편지함에서 지우므로, 중간에 서버가 죽거나 연결이 끊기면
+ *   다음 로그인 때 확인 안 된 묶음부터 다시 보낸다. (최소 한 번 전달)
+ * - 묶음의 메시지도 진짜 seq를 달고 나가므로, 보낼 큐에서 넘치거나 밀려나면(SPILL/DROP_OLDEST)
+ *   unsent()로 이 묶음에서 빼고 받은편지함에 남긴다 → 확인이 와도 지워지지 않는다.
+ * - 한 번에 한 묶음만 확인을 기다리고, 묶음 사이 간격을 batchIntervalMillis 이상 둔다.
+ * - 상대 보낼 큐가 절반 넘게 차 있으면 비워질 때까지 미룬다.
+ * - 히스토리 읽기와 전송은 전용 스케줄러 스레드에서 해서 연결/릴레이 스레드를 막지 않는다.
+ */
+public class OfflineDelivery {
+
+    private static final long BACKOFF_MILLIS = 50;
+
+    private final OfflineInbox inbox;
+    private final HistoryStore history;
+    private final int batchSize;
+    private final long batchIntervalMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    // 진행 중인 전달 (연결당 하나)
+    private final Map<ClientConnection, Drain> drains = new ConcurrentHashMap<>();
+
+    private final class Drain {
+        final String user;
+        final ClientConnection conn;
+
+        // 보낸 묶음의 seq (오름차순, 확인 대기), 큐에 못 들어간 것은 unsent()가 뺀다
+        long[] sent = new long[0];
+        long lastBatchAt;
+        boolean awaitingAck;
+
+        Drain(String user, ClientConnection conn) {
+            this.user = user;
+            this.conn = conn;
+        }
+    }
+
+    public OfflineDelivery(OfflineInbox inbox, HistoryStore history,
+                           int batchSize, long batchIntervalMillis, int threads) {
+        this.inbox = inbox;
+        this.history = history;
+        this.batchSize = batchSize;
+        this.batchIntervalMillis = batchIntervalMillis;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "offline-drain");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // 로그인 성공 직후: 쌓인 게 있으면 전달 시작
+    public void start(String user, ClientConnection conn) {
+        if (inbox.pendingFor(user) == 0) return;
+
+        // 같은 사용자의 다른 기기가 이미 받고 있으면 그쪽에 맡긴다 (같은 묶음을 두 번 보내지 않도록)
+        for (Drain other : drains.values()) {
+            if (other.user.equals(user) && other.conn.isOpen()) return;
+        }
+
+        Drain d = new Drain(user, conn);
+        drains.put(conn, d);
+        EventLog.info(LogCategory.OFFLINE, "drain_start", "user", user, "pending", inbox.pendingFor(user));
+        scheduler.execute(() -> sendBatch(d));
+    }
+
+    // 클라이언트가 seq까지 받았다고 확인
+    public void ack(ClientConnection conn, long seq) {
+        Drain d = drains.get(conn);
+        if (d == null) return;
+
+        synchronized (d) {
+            if (!d.awaitingAck) return;
+            d.awaitingAck = false;
+            int n = 0;
+            while (n < d.sent.length && d.sent[n] <= seq) n++;
+            inbox.ack(d.user, Arrays.copyOf(d.sent, n));
+
+            // 간격 제한: 지난 묶음 시작 후 batchIntervalMillis가 지나야 다음 묶음
+            long wait = d.lastBatchAt + batchIntervalMillis - System.currentTimeMillis();
+            scheduler.schedule(() -> sendBatch(d), Math.max(0, wait), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 보낸 묶음의 seq 하나가 보낼 큐에 들어가지 못함 → 확인이 와도 받은편지함에서 지우지 않게
+    public void unsent(ClientConnection conn, long seq) {
+        Drain d = drains.get(conn);
+        if (d == null) return;
+
+        synchronized (d) {
+            int i = Arrays.binarySearch(d.sent, seq);
+            if (i < 0) return;
+            long[] rest = new long[d.sent.length - 1];
+            System.arraycopy(d.sent, 0, rest, 0, i);
+            System.arraycopy(d.sent, i + 1, rest, i, rest.length - i);
+            d.sent = rest;
+        }
+    }
+
+    public void stop(ClientConnection conn) {
+        drains.remove(conn);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void sendBatch(Drain d) {
+        if (drains.get(d.conn) != d) return;
+        if (!d.conn.isOpen()) {
+            drains.remove(d.conn);
+            return;
+        }
+
+        // 보낼 큐가 이미 많이 차 있으면 다른 트래픽을 위해 잠깐 미룬다
+        OutboundQueue q = d.conn.getOutbound();
+        if (q.getDepth() > q.getCapacity() / 2) {
+            scheduler.schedule(() -> sendBatch(d), BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        synchronized (d) {
+            // 확인된 것은 빠졌으므로 늘 맨 앞부터 (늦게 끼어든 작은 seq도 여기서 나간다)
+            long[] seqs = inbox.peek(d.user, -1, batchSize);
+            if (seqs.length == 0) {
+                drains.remove(d.conn);
+                EventLog.info(LogCategory.OFFLINE, "drain_done", "user", d.user);
+                return;
+            }
+
+            // 보내는 도중 넘치면 같은 스레드에서 unsent()가 불리므로 먼저 적어 둔다
+            d.sent = seqs;
+            try {
+                for (long seq : seqs) {
+                    EncodedMessage.fromRecord(history.readRecord(seq), seq).sendTo(d.conn);
+                }
+            } catch (Exception e) {
+                EventLog.warn(LogCategory.OFFLINE, "drain_failed", "user", d.user, "error", e);
+                drains.remove(d.conn);
+                return;
+            }
+
+            d.lastBatchAt = System.currentTimeMillis();
+            d.awaitingAck = true;
+
+            // peek은 오름차순 → 마지막이 묶음에서 가장 큰 seq
+            long last = seqs[seqs.length - 1];
+            int remaining = Math.max(0, inbox.pendingFor(d.user) - seqs.length);
+            d.conn.send(new ChatMessage(
+                    MessageType.OFFLINE_BATCH,
+                    "server",
+                    d.user,
+                    "{\"last\":" + last + ",\"remaining\":" + remaining + "}",
+                    null
+            ));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.e2ee.server.tcp;
+
+import java.util.ArrayDeque;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 연결 하나의 "보낼 프레임" 대기열 (크기 제한 있음).
+ *
+ * 보내는 쪽 스레드는 여기에 넣기만 하고 바로 돌아가고,
+ * 실제 소켓 쓰기는 연결별 writer 작업이 묶어서(batch) 처리한다.
+ * → 안 읽는 클라이언트 하나 때문에 다른 송신자가 막히지 않는다.
+ */
+public class OutboundQueue {
+
+    /** 큐가 가득 찼을 때 어떻게 할지 */
+    public enum OverflowPolicy {
+        DROP_OLDEST,   // 가장 오래된 프레임을 밀어내고 새 프레임을 넣는다 (저장된 메시지는 받은편지함으로)
+        DISCONNECT,    // 느린 수신자 연결을 끊는다
+        SPILL          // 새 프레임을 큐 대신 오프라인 보관소로 넘긴다
+    }
+
+    /** offer() 결과 */
+    public enum Offer {
+        QUEUED,
+        DROPPED_OLDEST,
+        OVERFLOW
+    }
+
+    // writer가 한 번에 꺼내서 쓰는 최대 프레임 수 / 바이트 수
+    public static final int BATCH_FRAMES = 64;
+    public static final int BATCH_BYTES = 64 * 1024;
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+
+    // frames와 같은 순서의 히스토리 seq (-1: 저장 안 한 프레임), 크기 capacity짜리 고리
+    private final long[] seqs;
+    private int seqHead;
+
+    // ---- 지표 ----
+    private volatile int depth;
+    private volatile int highWatermark;
+    private volatile long enqueued;
+    private volatile long written;
+    private volatile long dropped;
+    private volatile long overflowed;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.seqs = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * @param seq       히스토리에 저장된 메시지면 그 seq, 아니면 -1
+     * @param pushedOut DROP_OLDEST로 밀려난 프레임 중 저장된 것 (락을 놓은 뒤에 부른다)
+     */
+    public Offer offer(byte[] frame, long seq, ObjLongConsumer<byte[]> pushedOut) {
+        Offer result = Offer.QUEUED;
+        byte[] oldFrame = null;
+        long oldSeq = -1;
+
+        synchronized (this) {
+            if (frames.size() >= capacity) {
+                if (policy != OverflowPolicy.DROP_OLDEST) {
+                    overflowed++;
+                    return Offer.OVERFLOW;
+                }
+                oldFrame = frames.pollFirst();
+                oldSeq = pollSeq();
+                dropped++;
+                result = Offer.DROPPED_OLDEST;
+            }
+
+            seqs[(seqHead + frames.size()) % seqs.length] = seq;
+            frames.addLast(frame);
+            enqueued++;
+            depth = frames.size();
+            if (depth > highWatermark) highWatermark = depth;
+        }
+
+        if (oldFrame != null && oldSeq >= 0 && pushedOut != null) pushedOut.accept(oldFrame, oldSeq);
+        return result;
+    }
+
+    private long pollSeq() {
+        long seq = seqs[seqHead];
+        seqHead = (seqHead + 1) % seqs.length;
+        return seq;
+    }
+
+    /**
+     * 최대 max개(또는 maxBytes 바이트)까지 꺼내 dst에 담는다.
+     *
+     * @return 꺼낸 개수 (0이면 큐가 비어 있음)
+     */
+    public synchronized int drainTo(byte[][] dst, int max, int maxBytes) {
+        int n = 0;
+        int bytes = 0;
+        while (n < max && !frames.isEmpty()) {
+            byte[] f = frames.peekFirst();
+            if (n > 0 && bytes + f.length > maxBytes) break;
+            dst[n++] = frames.pollFirst();
+            pollSeq();
+            bytes += f.length;
+        }
+        depth = frames.size();
+        return n;
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    public synchronized void clear() {
+        frames.clear();
+        seqHead = 0;
+        depth = 0;
+    }
+
+    void markWritten(int n) {
+        written += n;
+    }
+
+    // ---------- 지표 조회 ----------
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    public long getEnqueued() {
+        return enqueued;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getOverflowed() {
+        return overflowed;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundQueue{depth=" + depth + "/" + capacity +
+                ", high=" + highWatermark +
+                ", enqueued=" + enqueued +
+                ", written=" + written +
+                ", dropped=" + dropped +
+                ", overflowed=" + overflowed +
+                ", policy=" + policy + '}';
+    }
+}
@@ -0,0 +1,132 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.config.ChatServerProperties;
+import com.e2ee.server.protocol.MessageType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 보내기 한도 (chat.limits.*).
+ *
+ *   CONN  연결마다 모든 프레임 1개씩 (decode 전에 확인 → 넘치면 본문을 보지도 않고 버림)
+ *   TYPE  연결마다 타입별 (로그인, 키 요청, 히스토리 ... 설정한 타입만)
+ *   USER  사용자마다 기기 모두 합쳐 "전달 건수" (1:1 = 1, 방 = 멤버 수, 전체방 = 접속 세션 수)
+ *
+ * 모두 TokenBucket(CAS 하나)이라 잠금이 없다.
+ * 연결 버킷은 Limits에 담아 연결에 붙여 두고, 사용자 버킷만 맵에서 찾는다 (get 먼저, 없을 때만 computeIfAbsent).
+ * 사용자 버킷은 마지막 기기가 나갈 때 버킷이 가득 차 있으면 지운다 (비어 있으면 남겨서 재접속으로 한도를 초기화하지 못하게).
+ * 그때 남긴 버킷은 1분마다 admit 하던 스레드가 한 번 훑어서, 다시 가득 찼고 접속해 있지 않은 사용자 것을 지운다.
+ */
+final class RateLimiter {
+
+    private static final MessageType[] TYPES = MessageType.values();
+
+    // 한도 알림(SYSTEM THROTTLED)은 연결마다 1초에 한 번만 (넘친 프레임마다 보내면 그게 또 폭주)
+    private static final long NOTICE_INTERVAL_NANOS = 1_000_000_000L;
+
+    // 나간 사용자의 버킷 훑기 간격
+    private static final long SWEEP_INTERVAL_NANOS = 60_000_000_000L;
+
+    private final boolean enabled;
+    private final ChatServerProperties.Limits.Rate connection;
+    private final ChatServerProperties.Limits.Rate user;
+    private final ChatServerProperties.Limits.Rate[] types = new ChatServerProperties.Limits.Rate[TYPES.length];
+
+    private final Map<String, TokenBucket> users = new ConcurrentHashMap<>();
+    private final Predicate<String> online;
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    RateLimiter(ChatServerProperties.Limits conf, Predicate<String> online) {
+        this.enabled = conf.isEnabled();
+        this.online = online;
+        this.connection = conf.getConnection();
+        this.user = conf.getUser();
+        // 설정 키 "key-batch-req" → MessageType.KEY_BATCH_REQ
+        conf.getTypes().forEach((name, rate) ->
+                types[MessageType.valueOf(name.toUpperCase().replace('-', '_')).ordinal()] = rate);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // 연결 하나의 버킷들 (onOpen에서 만들어 ClientConnection에 붙임)
+    Limits newConnection() {
+        return enabled ? new Limits(connection, types) : null;
+    }
+
+    // 프레임 하나 (decode 전): 넘치면 "CONN"
+    String admitFrame(Limits limits) {
+        if (limits == null || limits.frames.tryAcquire(1)) return null;
+        return "CONN";
+    }
+
+    // decode/헤더 확인 뒤, 처리 전: 타입 → 사용자 순서, 넘치면 "TYPE" / "USER"
+    // userId가 null이면 (인증 전) 사용자 버킷은 건너뜀
+    String admit(Limits limits, String userId, MessageType type, long cost) {
+        if (limits == null) return null;
+        TokenBucket t = type == null ? null : limits.types[type.ordinal()];
+        if (t != null && !t.tryAcquire(1)) return "TYPE";
+        if (userId != null && !userBucket(userId).tryAcquire(cost)) return "USER";
+        maybeSweep(System.nanoTime());
+        return null;
+    }
+
+    // 사용자의 마지막 기기가 나감
+    void release(String userId) {
+        TokenBucket b = users.get(userId);
+        if (b != null && b.isFull(System.nanoTime())) users.remove(userId, b);
+    }
+
+    // 가득 찬 버킷 중 접속해 있지 않은 사용자 것을 지운다 → 지운 개수
+    int sweep(long now) {
+        int removed = 0;
+        for (Map.Entry<String, TokenBucket> e : users.entrySet()) {
+            if (e.getValue().isFull(now) && !online.test(e.getKey()) && users.remove(e.getKey(), e.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    int getUserBuckets() {
+        return users.size();
+    }
+
+    // 간격이 지났으면 이번 호출 하나만 훑는다 (CAS)
+    private void maybeSweep(long now) {
+        long next = nextSweep.get();
+        if (now - next >= 0 && nextSweep.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) sweep(now);
+    }
+
+    private TokenBucket userBucket(String userId) {
+        TokenBucket b = users.get(userId);
+        if (b != null) return b;
+        return users.computeIfAbsent(userId, k -> new TokenBucket(user.getRate(), user.getBurst()));
+    }
+
+    /** 연결 하나에 딸린 버킷 (연결 버킷, 타입별 버킷, 마지막 알림 시각) */
+    static final class Limits {
+        private final TokenBucket frames;
+        private final TokenBucket[] types;
+        private final AtomicLong lastNotice = new AtomicLong(System.nanoTime() - NOTICE_INTERVAL_NANOS);
+
+        private Limits(ChatServerProperties.Limits.Rate connection, ChatServerProperties.Limits.Rate[] rates) {
+            this.frames = new TokenBucket(connection.getRate(), connection.getBurst());
+            this.types = new TokenBucket[rates.length];
+            for (int i = 0; i < rates.length; i++) {
+                if (rates[i] != null) types[i] = new TokenBucket(rates[i].getRate(), rates[i].getBurst());
+            }
+        }
+
+        // 지금 알림을 보내도 되는지 (1초에 한 번, 여러 스레드가 동시에 와도 하나만 true)
+        boolean shouldNotify() {
+            long now = System.nanoTime();
+            long last = lastNotice.get();
+            return now - last >= NOTICE_INTERVAL_NANOS && lastNotice.compareAndSet(last, now);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.metrics.RelayMetrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 방/전체방 메시지를 멤버 연결들의 보낼 큐에 넣는 전용 스레드들.
+ *
+ * - 보낸 사람의 읽기 스레드는 팬아웃 작업을 넘기고 바로 다음 프레임으로 간다.
+ *   그래서 큰 방에 메시지가 몰려도 1:1 릴레이(읽기 스레드에서 바로 처리)는 밀리지 않는다.
+ * - 프레임은 EncodedMessage가 코덱별로 한 번만 만들고, 모든 멤버 큐에 같은 바이트 배열을 넣는다.
+ * - 멤버가 shardSize보다 많으면 shardSize씩 잘라 여러 레인에 나눠 넣는다.
+ *
+ * 레인은 단일 스레드 실행기라 같은 레인에 들어간 작업은 순서대로 처리된다.
+ * 방마다 시작 레인이 정해져 있고 (이름 해시), k번째 조각은 항상 (시작 + k)번째 레인으로 가므로
+ * 멤버가 바뀌지 않는 한 한 방의 메시지는 각 멤버에게 보낸 순서대로 도착한다.
+ */
+public class RoomFanout {
+
+    private final ExecutorService[] lanes;
+    private final int shardSize;
+    private final SessionRegistry sessions;
+
+    // 조각마다 받은 순간 → 그 조각 큐에 다 넣을 때까지 (null이면 안 잼)
+    private final RelayMetrics metrics;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong shards = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    public RoomFanout(SessionRegistry sessions, int threads, int shardSize) {
+        this(sessions, threads, shardSize, null);
+    }
+
+    public RoomFanout(SessionRegistry sessions, int threads, int shardSize, RelayMetrics metrics) {
+        this.sessions = sessions;
+        this.metrics = metrics;
+        this.shardSize = Math.max(1, shardSize);
+        this.lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "room-fanout-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // 방 멤버(사용자 ID)들의 모든 기기로
+    public void publish(RoomRegistry.Room room, EncodedMessage msg) {
+        String[] members = room.members();
+        int first = lane(room.getName());
+        published.incrementAndGet();
+
+        for (int from = 0, k = 0; from < members.length; from += shardSize, k++) {
+            int to = Math.min(members.length, from + shardSize);
+            int start = from;
+            shards.incrementAndGet();
+            lanes[(first + k) % lanes.length].execute(() -> deliverToUsers(members, start, to, msg));
+        }
+    }
+
+    // 전체방: 지금 인증된 모든 세션으로
+    public void publishAll(EncodedMessage msg) {
+        SessionRegistry.Session[] all = sessions.all().toArray(new SessionRegistry.Session[0]);
+        int first = lane("ALL");
+        published.incrementAndGet();
+
+        for (int from = 0, k = 0; from < all.length; from += shardSize, k++) {
+            int to = Math.min(all.length, from + shardSize);
+            int start = from;
+            shards.incrementAndGet();
+            lanes[(first + k) % lanes.length].execute(() -> deliverToSessions(all, start, to, msg));
+        }
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) lane.shutdownNow();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getShards() {
+        return shards.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    private void deliverToUsers(String[] members, int from, int to, EncodedMessage msg) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            for (SessionRegistry.Session s : sessions.sessionsOf(members[i])) {
+                msg.sendTo(s.getConnection());
+                n++;
+            }
+        }
+        delivered.addAndGet(n);
+        measure(msg, n);
+    }
+
+    private void deliverToSessions(SessionRegistry.Session[] all, int from, int to, EncodedMessage msg) {
+        for (int i = from; i < to; i++) {
+            msg.sendTo(all[i].getConnection());
+        }
+        delivered.addAndGet(to - from);
+        measure(msg, to - from);
+    }
+
+    private void measure(EncodedMessage msg, int recipients) {
+        long start = msg.getReceivedNanos();
+        if (metrics != null && start != 0) metrics.fannedOut(start, recipients);
+    }
+
+    private int lane(String room) {
+        return Math.floorMod(room.hashCode(), lanes.length);
+    }
+}
@@ -0,0 +1,125 @@
+package com.e2ee.server.tcp;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 방(채널) 멤버십 색인.
+ *
+ *   방 이름 → 멤버(사용자 ID)
+ *   사용자 ID → 들어가 있는 방들
+ *
+ * 멤버십은 사용자 단위라 기기를 바꾸거나 다시 접속해도 유지된다. (메모리에만 있음, 재시작하면 비어 있음)
+ * 마지막 멤버가 나가면 방도 없어진다.
+ *
+ * 팬아웃은 멤버 배열 스냅샷(Room.members())을 쓴다.
+ * 가입/탈퇴 때 스냅샷만 버리고, 다음 팬아웃에서 한 번 다시 만든다.
+ */
+@Component
+public class RoomRegistry {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_\\-]{1,64}");
+
+    public static final class Room {
+        private final String name;
+        private final Set<String> members = new HashSet<>();
+        private volatile String[] snapshot;
+
+        Room(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized boolean contains(String user) {
+            return members.contains(user);
+        }
+
+        public synchronized int size() {
+            return members.size();
+        }
+
+        // 팬아웃용 멤버 배열 (바뀌지 않았으면 같은 배열)
+        public String[] members() {
+            String[] s = snapshot;
+            if (s != null) return s;
+            synchronized (this) {
+                if (snapshot == null) snapshot = members.toArray(new String[0]);
+                return snapshot;
+            }
+        }
+
+        synchronized boolean add(String user) {
+            boolean added = members.add(user);
+            if (added) snapshot = null;
+            return added;
+        }
+
+        synchronized boolean remove(String user) {
+            boolean removed = members.remove(user);
+            if (removed) snapshot = null;
+            return removed;
+        }
+    }
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> roomsByUser = new ConcurrentHashMap<>();
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    // 방에 들어가기 (없으면 만든다) → 들어간 뒤 멤버 수
+    public int join(String room, String user) {
+        if (!isValidName(room)) throw new IllegalArgumentException("잘못된 방 이름: " + room);
+
+        Room r = rooms.compute(room, (k, cur) -> {
+            Room next = cur != null ? cur : new Room(k);
+            next.add(user);
+            return next;
+        });
+        roomsByUser.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(room);
+        return r.size();
+    }
+
+    // 방에서 나가기 → 멤버였으면 true (마지막 멤버면 방도 지운다)
+    public boolean leave(String room, String user) {
+        boolean[] left = new boolean[1];
+        rooms.computeIfPresent(room, (k, r) -> {
+            left[0] = r.remove(user);
+            return r.size() == 0 ? null : r;
+        });
+
+        roomsByUser.computeIfPresent(user, (k, set) -> {
+            set.remove(room);
+            return set.isEmpty() ? null : set;
+        });
+        return left[0];
+    }
+
+    public Room get(String room) {
+        return rooms.get(room);
+    }
+
+    public boolean isMember(String room, String user) {
+        Room r = rooms.get(room);
+        return r != null && r.contains(user);
+    }
+
+    public Set<String> roomsOf(String user) {
+        Set<String> s = roomsByUser.get(user);
+        return s == null ? Collections.emptySet() : Collections.unmodifiableSet(s);
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
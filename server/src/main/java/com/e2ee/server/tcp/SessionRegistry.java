@@ -0,0 +1,186 @@
+package com.e2ee.server.tcp;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 인증된 연결(세션) 목록.
+ *
+ * - 로그인(또는 가입) 성공 후에만 등록한다. 첫 프레임의 sender를 믿지 않는다.
+ * - 사용자 → 세션들(기기 여러 대), 연결 → 세션 두 방향으로 찾는다.
+ * - 연결이 닫히면(onClose) 바로 지운다. 보내다가 닫힌 연결을 만나면 그 자리에서 치우고 stale로 센다.
+ *
+ * 사용자별 세션은 배열을 통째로 바꿔 끼우므로(copy-on-write) 읽는 쪽은 잠금 없이 스냅샷을 본다.
+ * 등록/해제는 드물고 조회(라우팅)는 메시지마다 일어나기 때문.
+ */
+@Component
+public class SessionRegistry {
+
+    private static final Session[] NONE = new Session[0];
+
+    public static final class Session {
+        private final String user;
+        private final ClientConnection conn;
+        private final long since = System.currentTimeMillis();
+
+        Session(String user, ClientConnection conn) {
+            this.user = user;
+            this.conn = conn;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public ClientConnection getConnection() {
+            return conn;
+        }
+
+        public long getSince() {
+            return since;
+        }
+
+        @Override
+        public String toString() {
+            return user + "@" + conn;
+        }
+    }
+
+    private final Map<String, Session[]> byUser = new ConcurrentHashMap<>();
+    private final Map<ClientConnection, Session> byConn = new ConcurrentHashMap<>();
+
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong staleReaped = new AtomicLong();
+
+    // 인증 성공: conn을 user의 기기 하나로 등록 (같은 연결로 다른 아이디 재로그인 시 이전 것은 해제)
+    public Session register(String user, ClientConnection conn) {
+        Session s = authenticate(user, conn);
+        route(s);
+        return s;
+    }
+
+    /**
+     * 등록 1단계: 이 연결이 user로 보내는 것만 받아 준다 (아직 user에게 가는 메시지는 오지 않음).
+     * 로그인 응답과 미리 보낼 것(공개키 묶음)을 큐에 넣은 뒤 route()로 라우팅에 올린다.
+     */
+    public Session authenticate(String user, ClientConnection conn) {
+        Session s = new Session(user, conn);
+        Session prev = byConn.put(conn, s);
+        if (prev != null) unlink(prev);
+        return s;
+    }
+
+    // 등록 2단계: 이제부터 user에게 가는 메시지가 이 연결로도 온다
+    public void route(Session s) {
+        String user = s.user;
+        ClientConnection conn = s.conn;
+        byUser.compute(user, (k, arr) -> {
+            if (arr == null) return new Session[]{s};
+            Session[] next = Arrays.copyOf(arr, arr.length + 1);
+            next[arr.length] = s;
+            return next;
+        });
+        registered.incrementAndGet();
+
+        // 등록하는 사이에 닫혔으면 onClose가 이미 지나갔을 수 있으므로 여기서 정리
+        if (!conn.isOpen()) remove(conn);
+        if (byConn.get(conn) != s) unlink(s);
+    }
+
+    // 연결 종료: 세션 해제 (인증 전 연결이면 null)
+    public Session remove(ClientConnection conn) {
+        Session s = byConn.remove(conn);
+        if (s != null) {
+            unlink(s);
+            removed.incrementAndGet();
+        }
+        return s;
+    }
+
+    // 이 연결의 인증된 세션 (없으면 인증 전)
+    public Session get(ClientConnection conn) {
+        return byConn.get(conn);
+    }
+
+    // user의 열린 세션들. 닫힌 게 섞여 있으면 치우고 나머지만 돌려준다.
+    public Session[] sessionsOf(String user) {
+        Session[] arr = byUser.getOrDefault(user, NONE);
+        for (Session s : arr) {
+            if (!s.conn.isOpen()) return reap(arr);
+        }
+        return arr;
+    }
+
+    public boolean isOnline(String user) {
+        return sessionsOf(user).length > 0;
+    }
+
+    public Set<String> onlineUsers() {
+        return byUser.keySet();
+    }
+
+    public Collection<Session> all() {
+        return byConn.values();
+    }
+
+    // ---------------- 지표 ----------------
+
+    public int getLiveSessions() {
+        return byConn.size();
+    }
+
+    public int getOnlineUserCount() {
+        return byUser.size();
+    }
+
+    public long getRegistered() {
+        return registered.get();
+    }
+
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    // onClose 전에 라우팅 중 발견해서 치운 닫힌 세션 수
+    public long getStaleReaped() {
+        return staleReaped.get();
+    }
+
+    // ---------------- 내부 ----------------
+
+    private Session[] reap(Session[] arr) {
+        List<Session> open = new ArrayList<>(arr.length);
+        for (Session s : arr) {
+            if (s.conn.isOpen()) {
+                open.add(s);
+            } else if (byConn.remove(s.conn, s)) {
+                unlink(s);
+                removed.incrementAndGet();
+                staleReaped.incrementAndGet();
+            }
+        }
+        return open.toArray(NONE);
+    }
+
+    private void unlink(Session s) {
+        byUser.computeIfPresent(s.user, (k, arr) -> {
+            int i = Arrays.asList(arr).indexOf(s);
+            if (i < 0) return arr;
+            if (arr.length == 1) return null;
+
+            Session[] next = new Session[arr.length - 1];
+            System.arraycopy(arr, 0, next, 0, i);
+            System.arraycopy(arr, i + 1, next, i, arr.length - i - 1);
+            return next;
+        });
+    }
+}
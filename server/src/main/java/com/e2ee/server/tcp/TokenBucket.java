@@ -0,0 +1,49 @@
+package com.e2ee.server.tcp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 토큰 버킷 하나 (초당 rate개 채워지고 최대 burst개까지 모임).
+ *
+ * 토큰 수와 마지막 채운 시각을 따로 두지 않고 "버킷이 다시 가득 차는 시각" 하나만 AtomicLong에 둔다 (GCRA).
+ *   꺼내기: full' = max(full, now) + cost × 토큰 하나 간격
+ *          full' - now 가 burst × 간격을 넘으면 거절, 아니면 CAS
+ * 잠금이 없고 CAS 하나라 여러 스레드(같은 사용자의 여러 기기)가 동시에 꺼내도 서로 기다리지 않는다.
+ *
+ * cost가 burst보다 크면 burst로 친다 (큰 방 전체 메시지: 버킷이 가득 찼을 때만 통과, 영영 막히지는 않음).
+ */
+final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final int burst;
+
+    // 버킷이 가득 차는 시각 (System.nanoTime 기준), 처음에는 가득 찬 상태
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) throw new IllegalArgumentException("rate, burst는 0보다 커야 함");
+        this.nanosPerToken = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.burst = burst;
+        this.capacityNanos = nanosPerToken * burst;
+    }
+
+    boolean tryAcquire(long cost) {
+        return tryAcquire(cost, System.nanoTime());
+    }
+
+    boolean tryAcquire(long cost, long now) {
+        long add = Math.min(cost, burst) * nanosPerToken;
+        while (true) {
+            long full = fullAt.get();
+            long next = Math.max(full, now) + add;
+            if (next - now > capacityNanos) return false;
+            if (fullAt.compareAndSet(full, next)) return true;
+        }
+    }
+
+    // 지금 가득 차 있는지 (오래 안 쓴 사용자 버킷 정리용)
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
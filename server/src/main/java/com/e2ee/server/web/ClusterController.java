@@ -0,0 +1,59 @@
+package com.e2ee.server.web;
+
+import com.e2ee.server.cluster.ClusterNode;
+import com.e2ee.server.tcp.ChatTcpServer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 클러스터 상태 (chat.cluster.enabled=true 일 때).
+ *
+ *   GET  /api/cluster         이 노드, 다른 노드 링크별 상태(연결, 큐, 보낸 프레임/묶음/버림), 다른 노드 사용자 수
+ *   POST /api/cluster/drain   이 노드 비우기: 접속한 기기에 다른 노드 주소를 알리고 끊는다
+ *
+ * drain은 이 기계 안(루프백)에서 온 요청만 받는다 (그 밖은 403, LocalOnly).
+ */
+@RestController
+public class ClusterController {
+
+    private final ChatTcpServer server;
+
+    public ClusterController(ChatTcpServer server) {
+        this.server = server;
+    }
+
+    @GetMapping("/api/cluster")
+    public Map<String, Object> cluster() {
+        ClusterNode cluster = server.getCluster();
+        if (cluster == null) return Map.of("enabled", false);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", true);
+        m.put("draining", server.isDraining());
+        m.putAll(cluster.metrics());
+        return m;
+    }
+
+    @PostMapping("/api/cluster/drain")
+    public Map<String, Object> drain(HttpServletRequest request) {
+        LocalOnly.require(request, "drain");
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("notified", server.drain());
+        m.put("movedTo", server.getCluster() == null ? null : server.getCluster().movedTarget());
+        return m;
+    }
+
+    @ExceptionHandler(SecurityException.class)
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    public Map<String, String> forbidden(SecurityException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
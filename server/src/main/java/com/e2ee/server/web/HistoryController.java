@@ -0,0 +1,99 @@
+package com.e2ee.server.web;
+
+import com.e2ee.server.store.HistoryPage;
+import com.e2ee.server.store.HistoryQuery;
+import com.e2ee.server.store.HistoryStore;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 채팅 기록 조회 REST API (HISTORY_REQ와 같은 HistoryStore.query).
+ *
+ *   GET /api/history/conversations/{a}/{b}   두 사람 대화
+ *   GET /api/history/all                      전체방
+ *   GET /api/history/users/{id}               한 사람이 보내거나 받은 것
+ *
+ * 공통 파라미터: cursor, limit, since, until (epoch ms), forward
+ * 응답의 nextCursor를 cursor로 넘기면 다음 페이지.
+ *
+ * 사용자 인증이 없는 운영/관리용이라 이 기계 안(루프백)에서 온 요청만 받는다 (그 밖은 403, LocalOnly).
+ * 사용자는 TCP의 HISTORY_REQ로 자기 대화/방만 조회한다.
+ */
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+
+    private final HistoryStore historyStore;
+
+    public HistoryController(HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    @GetMapping("/conversations/{a}/{b}")
+    public HistoryPage conversation(@PathVariable String a,
+                                    @PathVariable String b,
+                                    @RequestParam(required = false) Long cursor,
+                                    @RequestParam(defaultValue = "" + HistoryQuery.DEFAULT_LIMIT) int limit,
+                                    @RequestParam(required = false) Long since,
+                                    @RequestParam(required = false) Long until,
+                                    @RequestParam(defaultValue = "false") boolean forward,
+                                    HttpServletRequest request) {
+        LocalOnly.require(request, "기록 조회");
+        return historyStore.query(query(a, b, cursor, limit, since, until, forward));
+    }
+
+    @GetMapping("/all")
+    public HistoryPage all(@RequestParam(required = false) Long cursor,
+                           @RequestParam(defaultValue = "" + HistoryQuery.DEFAULT_LIMIT) int limit,
+                           @RequestParam(required = false) Long since,
+                           @RequestParam(required = false) Long until,
+                           @RequestParam(defaultValue = "false") boolean forward,
+                           HttpServletRequest request) {
+        LocalOnly.require(request, "기록 조회");
+        return historyStore.query(query(null, "ALL", cursor, limit, since, until, forward));
+    }
+
+    @GetMapping("/users/{id}")
+    public HistoryPage user(@PathVariable String id,
+                            @RequestParam(required = false) Long cursor,
+                            @RequestParam(defaultValue = "" + HistoryQuery.DEFAULT_LIMIT) int limit,
+                            @RequestParam(required = false) Long since,
+                            @RequestParam(required = false) Long until,
+                            @RequestParam(defaultValue = "false") boolean forward,
+                            HttpServletRequest request) {
+        LocalOnly.require(request, "기록 조회");
+        return historyStore.query(query(id, null, cursor, limit, since, until, forward));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> badRequest(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(SecurityException.class)
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    public Map<String, String> forbidden(SecurityException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    private static HistoryQuery query(String user, String peer, Long cursor, int limit,
+                                      Long since, Long until, boolean forward) {
+        HistoryQuery q = new HistoryQuery(user, peer);
+        q.setCursor(cursor);
+        q.setLimit(limit);
+        q.setSince(since);
+        q.setUntil(until);
+        q.setForward(forward);
+        return q;
+    }
+}
@@ -0,0 +1,33 @@
+package com.e2ee.server.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 운영/관리용 API는 이 기계 안(루프백)에서 온 요청만 받는다.
+ * 어기면 SecurityException → 각 컨트롤러가 403으로 바꾼다.
+ *
+ * 앞에 리버스 프록시를 두면 모든 요청이 루프백으로 보이므로 그 경로는 프록시에서 막을 것.
+ */
+final class LocalOnly {
+
+    private LocalOnly() {
+    }
+
+    static void require(HttpServletRequest request, String what) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            throw new SecurityException("이 기계 안에서만 허용 (" + what + "): " + request.getRemoteAddr());
+        }
+    }
+
+    // getRemoteAddr()는 IP 문자열이라 이름 조회 없이 바로 바뀐다
+    private static boolean isLoopback(String addr) {
+        try {
+            return addr != null && InetAddress.getByName(addr).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.e2ee.server.web;
+
+import com.e2ee.server.tcp.SessionRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 접속 상태 조회 REST API (SessionRegistry).
+ *
+ *   GET /api/presence          세션 수, 접속 사용자 수, 등록/해제/stale 정리 누적 수
+ *   GET /api/presence/{id}     한 사용자의 접속 여부와 기기(연결) 목록
+ *
+ * HistoryController와 마찬가지로 운영/관리용이라 이 기계 안(루프백)에서 온 요청만 받는다 (그 밖은 403, LocalOnly).
+ */
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    private final SessionRegistry sessions;
+
+    public PresenceController(SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    @GetMapping
+    public Map<String, Object> summary(HttpServletRequest request) {
+        LocalOnly.require(request, "접속 상태 조회");
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("liveSessions", sessions.getLiveSessions());
+        m.put("onlineUsers", sessions.getOnlineUserCount());
+        m.put("registered", sessions.getRegistered());
+        m.put("removed", sessions.getRemoved());
+        m.put("staleReaped", sessions.getStaleReaped());
+        return m;
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> user(@PathVariable String id, HttpServletRequest request) {
+        LocalOnly.require(request, "접속 상태 조회");
+        List<Map<String, Object>> devices = new ArrayList<>();
+        for (SessionRegistry.Session s : sessions.sessionsOf(id)) {
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("connection", s.getConnection().getId());
+            d.put("remote", s.getConnection().getRemote());
+            d.put("since", s.getSince());
+            devices.add(d);
+        }
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("user", id);
+        m.put("online", !devices.isEmpty());
+        m.put("devices", devices);
+        return m;
+    }
+
+    @ExceptionHandler(SecurityException.class)
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    public Map<String, String> forbidden(SecurityException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
@@ -3,7 +3,10 @@ package com.e2ee.server;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+		"chat.tcp.port=0",
+		"chat.data-dir=build/test-data"
+})
 class ServerApplicationTests {
 
 	@Test
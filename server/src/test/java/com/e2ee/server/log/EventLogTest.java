@@ -0,0 +1,93 @@
+package com.e2ee.server.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+	@Test
+	void writesOneStructuredLinePerEvent() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventLog log = new EventLog(64, new PrintStream(out, false, StandardCharsets.UTF_8));
+
+		log.log(LogLevel.INFO, LogCategory.AUTH, "signup", 1, "user", "alice", null, null, null, null, null, null);
+		log.log(LogLevel.WARN, LogCategory.OFFLINE, "bad_ack", 2, "user", "bob", "body", "x y\n\"z\"",
+				null, null, null, null);
+		assertTrue(log.awaitDrained(5000));
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\\R");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].endsWith("INFO  auth     signup user=alice"), lines[0]);
+		assertTrue(lines[1].endsWith("WARN  offline  bad_ack user=bob body=\"x y\\n\\\"z\\\"\""), lines[1]);
+	}
+
+	@Test
+	void levelsAndSamplingFilterBeforeTheRing() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventLog log = new EventLog(EventLog.DEFAULT_CAPACITY, new PrintStream(out, false, StandardCharsets.UTF_8));
+
+		// 기본: info 이상, raw는 1000건 중 1건꼴
+		log.log(LogLevel.DEBUG, LogCategory.RELAY, "chat", 0, null, null, null, null, null, null, null, null);
+		log.setLevel(LogCategory.CONN, LogLevel.OFF);
+		log.log(LogLevel.ERROR, LogCategory.CONN, "close", 0, null, null, null, null, null, null, null, null);
+
+		log.setSampleEvery(LogCategory.RAW, 10);
+		for (int i = 0; i < 10_000; i++) {
+			log.log(LogLevel.INFO, LogCategory.RAW, "frame", 0, null, null, null, null, null, null, null, null);
+		}
+		assertTrue(log.awaitDrained(5000));
+
+		String text = out.toString(StandardCharsets.UTF_8);
+		assertFalse(text.contains("chat"));
+		assertFalse(text.contains("close"));
+		assertTrue(log.getWritten() > 500 && log.getWritten() < 2000, "약 1000건이어야 함: " + log.getWritten());
+		assertTrue(text.contains("frame sample=1/10"));
+	}
+
+	@Test
+	void dropsInsteadOfWaitingWhenTheRingIsFull() throws Exception {
+		CountDownLatch stuck = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		OutputStream slow = new OutputStream() {
+			@Override
+			public void write(int b) {
+				write(new byte[]{(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				stuck.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				sink.write(b, off, len);
+			}
+		};
+		EventLog log = new EventLog(16, new PrintStream(slow, false, StandardCharsets.UTF_8));
+
+		// 첫 줄을 쓰다가 멈춘 동안 링(16칸)보다 많이 남긴다 → 부르는 쪽은 막히지 않고 버린다
+		log.log(LogLevel.INFO, LogCategory.SYSTEM, "first", 0, null, null, null, null, null, null, null, null);
+		stuck.await();
+		for (int i = 0; i < 100; i++) {
+			log.log(LogLevel.INFO, LogCategory.SYSTEM, "burst", 1, "i", i, null, null, null, null, null, null);
+		}
+		assertEquals(100 - 16, log.getDropped());
+
+		release.countDown();
+		assertTrue(log.awaitDrained(5000));
+		assertEquals(17, log.getWritten());
+		assertTrue(sink.toString(StandardCharsets.UTF_8).contains("log_dropped count=84"));
+	}
+}
@@ -0,0 +1,35 @@
+package com.e2ee.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+	@Test
+	void percentilesAreUpperBoundsWithinOneEighth() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.percentile(0.99));
+
+		// 1µs ~ 1000µs 고르게
+		for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+		assertEquals(1000, h.count());
+
+		assertWithin(500_000, h.percentile(0.5));
+		assertWithin(990_000, h.percentile(0.99));
+		assertWithin(1_000_000, h.percentile(0.999));
+	}
+
+	@Test
+	void everyValueFallsUnderItsBucketUpperBound() {
+		for (long v = 1; v < (1L << 41); v = v * 3 / 2 + 1) {
+			long upper = LatencyHistogram.upperBound(LatencyHistogram.indexOf(v));
+			assertTrue(v < upper || v >= (1L << 40), v + " → " + upper);
+		}
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected + expected / 8, expected + " 근처여야 함: " + actual);
+	}
+}
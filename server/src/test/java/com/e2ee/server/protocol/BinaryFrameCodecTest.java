@@ -0,0 +1,55 @@
+package com.e2ee.server.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryFrameCodecTest {
+
+	@Test
+	void nullAndEmptyFieldsDecodeLikeJson() {
+		ChatMessage msg = new ChatMessage(MessageType.SYSTEM, "server", null, "hi", null);
+		ChatMessage empty = new ChatMessage(MessageType.SYSTEM, "", "", "", "");
+
+		for (FrameCodec codec : new FrameCodec[]{FrameCodec.JSON, FrameCodec.BINARY}) {
+			ChatMessage back = roundTrip(codec, msg);
+			assertEquals("server", back.getSender(), codec.name());
+			assertNull(back.getReceiver(), codec.name());
+			assertNull(back.getTimestamp(), codec.name());
+
+			ChatMessage e = roundTrip(codec, empty);
+			assertEquals("", e.getSender(), codec.name());
+			assertEquals("", e.getReceiver(), codec.name());
+			assertEquals("", e.getTimestamp(), codec.name());
+		}
+
+		// 헤더만 읽어도 null은 null
+		byte[] wire = FrameCodec.BINARY.encode(msg);
+		FrameHeader h = FrameCodec.BINARY.readHeader(wire, 1, wire.length - 1);
+		assertEquals("server", h.getSender());
+		assertNull(h.getReceiver());
+	}
+
+	@Test
+	void unknownAlgorithmByteIsRejected() {
+		// [CHAT][sender "a"][receiver "b"][timestamp ""][암호문][alg 5 (목록에 없음)][nonce 1][cipher 1]
+		byte[] body = {
+				(byte) MessageType.CHAT.ordinal(),
+				1, 'a', 1, 'b', 0,
+				BinaryFrameCodec.KIND_ENCRYPTED, 5,
+				1, 'x', 1, 'y'
+		};
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> FrameCodec.BINARY.decode(body, 0, body.length));
+		assertEquals("알 수 없는 알고리즘 바이트: 5", e.getMessage());
+	}
+
+	private static ChatMessage roundTrip(FrameCodec codec, ChatMessage msg) {
+		byte[] wire = codec.encode(msg);
+		// JSON은 끝의 '\n', 바이너리는 앞의 1바이트 varint 길이를 뺀 본문
+		int off = codec == FrameCodec.BINARY ? 1 : 0;
+		return codec.decode(wire, off, wire.length - 1);
+	}
+}
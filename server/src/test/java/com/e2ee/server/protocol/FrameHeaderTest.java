@@ -0,0 +1,67 @@
+package com.e2ee.server.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FrameHeaderTest {
+
+	private final ChatMessage msg = new ChatMessage(MessageType.CHAT, "alice#0001", "bob#0001",
+			"AES/GCM/NoPadding:AAAAAAAAAAAAAAAA:BBBBBBBBBBBBBBBBBBBBBBBB", "2025-11-19T00:00:00");
+
+	@Test
+	void jsonAndBinaryHeadersMatchFullDecode() {
+		for (FrameCodec codec : new FrameCodec[]{FrameCodec.JSON, FrameCodec.BINARY}) {
+			byte[] wire = codec.encode(msg);
+			// JSON은 끝의 '\n', 바이너리는 앞의 1바이트 varint 길이를 뺀 본문
+			int off = codec == FrameCodec.BINARY ? 1 : 0;
+			int len = wire.length - 1;
+
+			FrameHeader h = codec.readHeader(wire, off, len);
+			assertEquals(MessageType.CHAT, h.getType(), codec.name());
+			assertEquals("alice#0001", h.getSender(), codec.name());
+			assertEquals("bob#0001", h.getReceiver(), codec.name());
+		}
+	}
+
+	@Test
+	void jsonHeaderInAnyKeyOrder() {
+		byte[] f = "{ \"body\": {\"x\": [1, \"}\"]}, \"receiver\":\"ALL\", \"n\": 3, \"sender\":\"a\", \"type\":\"CHAT\" }"
+				.getBytes(StandardCharsets.UTF_8);
+
+		FrameHeader h = FrameCodec.JSON.readHeader(f, 0, f.length);
+		assertEquals(MessageType.CHAT, h.getType());
+		assertEquals("a", h.getSender());
+		assertEquals("ALL", h.getReceiver());
+	}
+
+	@Test
+	void escapedOrBrokenJsonFallsBackToFullDecode() {
+		byte[] escaped = "{\"type\":\"CHAT\",\"sender\":\"a\\u0041\",\"receiver\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+		assertNull(FrameCodec.JSON.readHeader(escaped, 0, escaped.length));
+
+		byte[] unknown = "{\"type\":\"NOPE\",\"sender\":\"a\",\"receiver\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+		assertNull(FrameCodec.JSON.readHeader(unknown, 0, unknown.length));
+
+		byte[] cut = "{\"type\":\"CHAT\",\"sen".getBytes(StandardCharsets.UTF_8);
+		assertNull(FrameCodec.JSON.readHeader(cut, 0, cut.length));
+	}
+
+	@Test
+	void duplicateOrEscapedHeaderKeysFallBackToFullDecode() {
+		String[] frames = {
+				"{\"type\":\"CHAT\",\"sender\":\"a\",\"receiver\":\"b\",\"body\":\"x\",\"sender\":\"c\"}",
+				"{\"type\":\"CHAT\",\"sender\":\"a\",\"receiver\":\"b\",\"type\":\"KEY_RES\"}",
+				"{\"type\":\"CHAT\",\"sender\":\"a\",\"receiver\":\"b\",\"s\\u0065nder\":\"c\"}",
+				"{\"type\":\"CHAT\",\"sender\":\"a\",\"receiver\":\"b\",\"body\":'x,\"sender\":\"c\"'}",
+				"{\"type\":\"CHAT\",\"sender\":\"a\",\"receiver\":\"b\"}{\"sender\":\"c\"}",
+		};
+		for (String s : frames) {
+			byte[] f = s.getBytes(StandardCharsets.UTF_8);
+			assertNull(FrameCodec.JSON.readHeader(f, 0, f.length), s);
+		}
+	}
+}
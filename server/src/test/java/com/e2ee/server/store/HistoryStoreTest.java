@@ -0,0 +1,129 @@
+package com.e2ee.server.store;
+
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HistoryStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private static ChatMessage chat(String from, String to, int n) {
+		return new ChatMessage(MessageType.CHAT, from, to, "m" + n, "t");
+	}
+
+	private HistoryStore open() {
+		return new HistoryStore(dir, 4096, 0, 0);
+	}
+
+	@Test
+	void conversationPagesBackwardAndForwardAcrossRestart() {
+		try (HistoryStore store = open()) {
+			for (int i = 0; i < 25; i++) {
+				store.add(chat(i % 2 == 0 ? "alice" : "bob", i % 2 == 0 ? "bob" : "alice", i));
+				store.add(chat("carol", "alice", i));
+				store.add(chat("dave", "ALL", i));
+			}
+		}
+
+		// 다시 열면 로그에서 색인을 다시 만든다
+		try (HistoryStore store = open()) {
+			HistoryQuery q = new HistoryQuery("bob", "alice");
+			q.setLimit(10);
+
+			// 최신부터 거슬러 올라가며 10 / 10 / 5
+			List<String> bodies = new ArrayList<>();
+			Long cursor = null;
+			int pages = 0;
+			do {
+				q.setCursor(cursor);
+				HistoryPage page = store.query(q);
+				List<String> part = new ArrayList<>();
+				page.getEntries().forEach(e -> part.add(e.getMessage().getBody()));
+				bodies.addAll(0, part);
+				cursor = page.getNextCursor();
+				pages++;
+			} while (cursor != null);
+
+			assertEquals(3, pages);
+			assertEquals(25, bodies.size());
+			assertEquals("m0", bodies.get(0));
+			assertEquals("m24", bodies.get(24));
+
+			// 앞으로: 처음 3건 다음부터
+			HistoryQuery fwd = new HistoryQuery("alice", "bob");
+			fwd.setForward(true);
+			fwd.setLimit(3);
+			HistoryPage first = store.query(fwd);
+			assertEquals("m2", first.getEntries().get(2).getMessage().getBody());
+			fwd.setCursor(first.getNextCursor());
+			assertEquals("m3", store.query(fwd).getEntries().get(0).getMessage().getBody());
+
+			// 사용자 색인: alice는 bob과 25건 + carol에게서 25건
+			HistoryQuery user = new HistoryQuery("alice", null);
+			user.setLimit(HistoryQuery.MAX_LIMIT);
+			HistoryPage all = store.query(user);
+			assertEquals(50, all.getEntries().size());
+			assertNull(all.getNextCursor());
+
+			// 전체방
+			HistoryQuery room = new HistoryQuery(null, "ALL");
+			room.setLimit(5);
+			assertEquals("m24", store.query(room).getEntries().get(4).getMessage().getBody());
+		}
+	}
+
+	@Test
+	void timeRangeUsesAppendTime() throws Exception {
+		try (HistoryStore store = open()) {
+			store.add(chat("alice", "bob", 0));
+			Thread.sleep(20);
+			long middle = System.currentTimeMillis();
+			Thread.sleep(20);
+			store.add(chat("alice", "bob", 1));
+
+			HistoryQuery after = new HistoryQuery("alice", "bob");
+			after.setSince(middle);
+			assertEquals(1, store.query(after).getEntries().size());
+			assertEquals("m1", store.query(after).getEntries().get(0).getMessage().getBody());
+
+			HistoryQuery before = new HistoryQuery("alice", "bob");
+			before.setUntil(middle);
+			assertEquals("m0", store.query(before).getEntries().get(0).getMessage().getBody());
+		}
+	}
+
+	@Test
+	void taggedSendersShareOneConversationAndUserIndex() {
+		try (HistoryStore store = open()) {
+			// 클라이언트는 "아이디#기기" 태그로 보내고 상대는 아이디만 적는다
+			store.add(chat("alice#0001", "bob", 0));
+			store.add(chat("bob#0001", "alice", 1));
+			store.add(chat("alice#0002", "bob#0001", 2));
+			store.add(chat("alice#0001", "alice#0002", 3));
+
+			// 어느 쪽 태그로 물어도 같은 대화 3건
+			for (HistoryQuery q : new HistoryQuery[]{
+					new HistoryQuery("alice", "bob"),
+					new HistoryQuery("bob#0001", "alice#0001")}) {
+				List<String> bodies = new ArrayList<>();
+				store.query(q).getEntries().forEach(e -> bodies.add(e.getMessage().getBody()));
+				assertEquals(List.of("m0", "m1", "m2"), bodies);
+			}
+
+			// 사용자 색인: 받은 것도 포함, 자기 기기끼리는 한 번만
+			assertEquals(4, store.query(new HistoryQuery("alice#0001", null)).getEntries().size());
+			assertEquals(3, store.query(new HistoryQuery("bob", null)).getEntries().size());
+			assertEquals(List.of("bob"), store.contactsOf("alice", 10));
+		}
+	}
+}
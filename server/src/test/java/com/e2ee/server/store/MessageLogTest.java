@@ -0,0 +1,74 @@
+package com.e2ee.server.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageLogTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void appendAndReadBackAcrossSegments() throws Exception {
+		try (MessageLog log = new MessageLog(dir, 256, 1, 0)) {
+			for (int i = 0; i < 50; i++) {
+				assertEquals(i, log.append(("msg-" + i).getBytes(StandardCharsets.UTF_8)));
+			}
+			assertTrue(log.segmentCount() > 1);
+		}
+
+		try (MessageLog log = new MessageLog(dir, 256, 1, 0)) {
+			assertEquals(50, log.size());
+
+			List<String> read = new ArrayList<>();
+			log.forEach((seq, millis, payload) -> read.add(new String(payload, StandardCharsets.UTF_8)));
+
+			assertEquals(50, read.size());
+			assertEquals("msg-0", read.get(0));
+			assertEquals("msg-49", read.get(49));
+
+			// 다시 열어도 번호가 이어진다
+			assertEquals(50, log.append("next".getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Test
+	void recoveryTruncatesTornTail() throws Exception {
+		try (MessageLog log = new MessageLog(dir, 1 << 20, 0, 0)) {
+			log.append("first".getBytes(StandardCharsets.UTF_8));
+			log.append("second".getBytes(StandardCharsets.UTF_8));
+		}
+
+		Path segment;
+		try (Stream<Path> files = Files.list(dir)) {
+			segment = files.findFirst().orElseThrow();
+		}
+		long validSize = Files.size(segment);
+
+		// 마지막 레코드를 쓰다가 죽은 것처럼 헤더 + 일부 본문만 남긴다
+		try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+			raf.seek(validSize);
+			raf.writeInt(100);
+			raf.writeInt(12345);
+			raf.writeLong(0L);
+			raf.write("torn".getBytes(StandardCharsets.UTF_8));
+		}
+
+		try (MessageLog log = new MessageLog(dir, 1 << 20, 0, 0)) {
+			assertEquals(2, log.size());
+			assertEquals(validSize, Files.size(segment));
+			assertEquals(2, log.append("third".getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.e2ee.server.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OfflineInboxTest {
+
+	@TempDir
+	Path dir;
+
+	private OfflineInbox open(int maxPerUser) {
+		return new OfflineInbox(dir, maxPerUser, 4096, 0, 0);
+	}
+
+	@Test
+	void ackedAndDroppedEntriesStayGoneAfterRestart() {
+		try (OfflineInbox inbox = open(3)) {
+			for (long seq = 1; seq <= 5; seq++) {
+				inbox.enqueue("bob", seq);
+			}
+			inbox.enqueue("carol", 6);
+
+			// 한도 3: 1, 2는 버려짐
+			assertEquals(3, inbox.pendingFor("bob"));
+			assertEquals(2, inbox.getDropped());
+			assertArrayEquals(new long[]{3, 4}, inbox.peek("bob", -1, 2));
+			assertArrayEquals(new long[]{5}, inbox.peek("bob", 4, 2));
+
+			inbox.ack("bob", new long[]{3, 4});
+		}
+
+		try (OfflineInbox inbox = open(3)) {
+			assertArrayEquals(new long[]{5}, inbox.peek("bob", -1, 10));
+			assertArrayEquals(new long[]{6}, inbox.peek("carol", -1, 10));
+			assertEquals(2, inbox.getPending());
+		}
+	}
+
+	@Test
+	void outOfOrderSeqsAreKeptSortedAndOnlyDeliveredOnesAreAcked() {
+		try (OfflineInbox inbox = open(10)) {
+			// 저장 순서와 넣는 순서가 다름 (동시 송신, SPILL)
+			inbox.enqueue("bob", 11);
+			inbox.enqueue("bob", 10);
+			inbox.enqueue("bob", 11);
+			assertEquals(2, inbox.pendingFor("bob"));
+
+			long[] batch = inbox.peek("bob", -1, 10);
+			assertArrayEquals(new long[]{10, 11}, batch);
+
+			// 묶음을 보낸 뒤 확인 전에 더 작은 seq가 끼어든다 → 확인해도 그것은 남는다
+			inbox.enqueue("bob", 5);
+			inbox.ack("bob", batch);
+			assertArrayEquals(new long[]{5, 10, 11}, inbox.peek("bob", -1, 10));
+
+			// 큐 맨 앞부터 보낸 것이면 다 빠진다
+			inbox.ack("bob", inbox.peek("bob", -1, 10));
+			assertEquals(0, inbox.pendingFor("bob"));
+
+			inbox.enqueue("bob", 3);
+			inbox.enqueue("bob", 1);
+		}
+
+		try (OfflineInbox inbox = open(10)) {
+			assertArrayEquals(new long[]{1, 3}, inbox.peek("bob", -1, 10));
+			assertEquals(2, inbox.getPending());
+		}
+	}
+
+	@Test
+	void largeJournalIsCompactedOnStartup() {
+		try (OfflineInbox inbox = open(OfflineInbox.DEFAULT_MAX_PER_USER)) {
+			for (long seq = 0; seq < 30_000; seq++) {
+				inbox.enqueue("bob", seq);
+				inbox.ack("bob", new long[]{seq});
+			}
+			inbox.enqueue("bob", 30_000);
+		}
+
+		try (OfflineInbox inbox = open(OfflineInbox.DEFAULT_MAX_PER_USER)) {
+			assertArrayEquals(new long[]{30_000}, inbox.peek("bob", -1, 10));
+		}
+		// 압축 후에도 같은 내용
+		try (OfflineInbox inbox = open(OfflineInbox.DEFAULT_MAX_PER_USER)) {
+			assertEquals(1, inbox.getPending());
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.e2ee.server.store;
+
+import com.e2ee.server.crypto.PasswordHasher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserStoreTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void passwordsAreStoredAsSaltedHashes() throws Exception {
+		Path file = dir.resolve("users.json");
+		UserStore store = new UserStore(file.toFile(), new PasswordHasher(1000));
+
+		assertTrue(store.addUser("alice", "secret", "PUB"));
+		assertFalse(store.addUser("alice", "other", "PUB"));
+		assertTrue(store.checkPassword("alice", "secret"));
+		assertFalse(store.checkPassword("alice", "wrong"));
+		store.close();
+
+		String all = readAll();
+		assertFalse(all.contains("secret"));
+		assertTrue(all.contains(PasswordHasher.PREFIX + "$1000$"));
+
+		// 비용을 올리면 다음 로그인 때 새 비용으로 다시 저장
+		UserStore stronger = new UserStore(file.toFile(), new PasswordHasher(2000));
+		assertTrue(stronger.checkPassword("alice", "secret"));
+		stronger.close();
+		assertTrue(readAll().contains(PasswordHasher.PREFIX + "$2000$"));
+	}
+
+	@Test
+	void legacyPlaintextIsUpgradedOnFirstLogin() throws Exception {
+		Path file = dir.resolve("users.json");
+		Files.writeString(file, "{\"bob\":{\"id\":\"bob\",\"password\":\"pw\",\"publicKey\":\"PUB\"}}");
+
+		UserStore store = new UserStore(file.toFile(), new PasswordHasher(1000));
+		assertFalse(store.checkPassword("bob", "nope"));
+		assertTrue(store.checkPassword("bob", "pw"));
+		store.snapshot();
+		store.close();
+
+		assertFalse(Files.readString(file).contains("\"password\""));
+		assertTrue(new UserStore(file.toFile(), new PasswordHasher(1000)).checkPassword("bob", "pw"));
+	}
+
+	@Test
+	void snapshotPlusJournalSurvivesRestart() throws Exception {
+		Path file = dir.resolve("users.json");
+		UserStore store = new UserStore(file.toFile(), new PasswordHasher(1), 10, 1 << 20, 1, 0);
+		for (int i = 0; i < 25; i++) {
+			assertTrue(store.addUser("u" + i, "pw" + i, "PUB" + i));
+		}
+		store.close();
+
+		UserStore reopened = new UserStore(file.toFile(), new PasswordHasher(1), 10, 1 << 20, 1, 0);
+		assertEquals(25, reopened.size());
+		for (int i = 0; i < 25; i++) {
+			assertTrue(reopened.checkPassword("u" + i, "pw" + i));
+			assertEquals("PUB" + i, reopened.getPublicKey("u" + i));
+		}
+		reopened.close();
+	}
+
+	@Test
+	void crashDuringSnapshotLosesNothing() throws Exception {
+		Path file = dir.resolve("users.json");
+		UserStore store = new UserStore(file.toFile(), new PasswordHasher(1), 1000, 1 << 20, 1, 0);
+		store.addUser("alice", "a", "PUB");
+		store.snapshot();
+		store.addUser("bob", "b", "PUB");
+		store.addUser("carol", "c", "PUB");
+		store.close();
+
+		// 저널을 넘긴 직후, 새 users.json을 rename 하기 전에 죽은 상태
+		Files.move(dir.resolve("users.journal"), dir.resolve("users.journal.old"));
+		Files.writeString(dir.resolve("users.json.tmp"), "{\"torn");
+
+		UserStore reopened = new UserStore(file.toFile(), new PasswordHasher(1), 1000, 1 << 20, 1, 0);
+		assertEquals(3, reopened.size());
+		assertTrue(reopened.checkPassword("bob", "b"));
+		assertTrue(reopened.checkPassword("carol", "c"));
+		assertFalse(Files.exists(dir.resolve("users.journal.old")));
+		reopened.close();
+
+		assertEquals(3, new UserStore(file.toFile(), new PasswordHasher(1)).size());
+	}
+
+	private String readAll() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).map(p -> {
+				try {
+					return new String(Files.readAllBytes(p), StandardCharsets.ISO_8859_1);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.joining("\n"));
+		}
+	}
+}
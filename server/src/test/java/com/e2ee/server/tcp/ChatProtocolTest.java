@@ -0,0 +1,579 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.config.ChatServerProperties;
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.HistoryPage;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.OfflineInbox;
+import com.e2ee.server.store.UserStore;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 모든 연결 엔진이 같은 프로토콜 동작을 하는지 확인한다.
+ */
+class ChatProtocolTest {
+
+	@TempDir
+	Path dataDir;
+
+	private ChatTcpServer server;
+	private HistoryStore historyStore;
+	private OfflineInbox offlineInbox;
+	private UserStore userStore;
+	private SessionRegistry sessions;
+
+	private ChatTcpServer startServer(ConnectionEngine.Mode mode) throws Exception {
+		return startServer(mode, props -> { });
+	}
+
+	private ChatTcpServer startServer(ConnectionEngine.Mode mode, Consumer<ChatServerProperties> config) throws Exception {
+		ChatServerProperties props = new ChatServerProperties();
+		props.setDataDir(dataDir.toString());
+		props.getTcp().setPort(0);
+		props.getTcp().setEngine(mode);
+		props.getTcp().setNioLoops(2);
+		props.getOffline().setBatchSize(2);
+		props.getOffline().setBatchIntervalMillis(0);
+		props.getFiles().setMaxChunkBytes(4096);
+		config.accept(props);
+
+		historyStore = new HistoryStore(dataDir, HistoryStore.DEFAULT_SEGMENT_BYTES, 64, 0);
+		userStore = new UserStore(dataDir.resolve("users.json").toFile(), new PasswordHasher(1000));
+		offlineInbox = new OfflineInbox(dataDir, OfflineInbox.DEFAULT_MAX_PER_USER,
+				HistoryStore.DEFAULT_SEGMENT_BYTES, 64, 0);
+
+		sessions = new SessionRegistry();
+
+		server = new ChatTcpServer(props, sessions, new RoomRegistry(), userStore, historyStore, offlineInbox);
+		server.start();
+		return server;
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (server != null) server.stop();
+		if (historyStore != null) historyStore.close();
+		if (offlineInbox != null) offlineInbox.close();
+		if (userStore != null) userStore.close();
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void signupLoginKeyAndChat(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob")) {
+
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+
+			bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bob.receive().getBody());
+
+			// 같은 아이디로 또 가입
+			try (TestClient dup = new TestClient(port, "alice")) {
+				dup.auth(MessageType.AUTH_SIGNUP, "x", "PUB-X");
+				assertEquals("SIGNUP_FAIL:ID_EXISTS", dup.receive().getBody());
+			}
+
+			// 비밀번호 틀림 / 맞음
+			try (TestClient again = new TestClient(port, "alice")) {
+				again.auth(MessageType.AUTH_LOGIN, "wrong", "PUB-A");
+				assertEquals("LOGIN_FAIL:BAD_PASSWORD", again.receive().getBody());
+				again.auth(MessageType.AUTH_LOGIN, "pw-a", "PUB-A");
+				assertEquals("LOGIN_OK", again.receive().getBody());
+			}
+
+			// 공개키 요청 → 서버가 bob 공개키로 응답 (보낸 사람은 server, 키 주인은 본문에)
+			alice.send(MessageType.KEY_REQ, "bob", "PUB-A");
+			ChatMessage keyRes = alice.receive();
+			assertEquals(MessageType.KEY_RES, keyRes.getType());
+			assertEquals("server", keyRes.getSender());
+			assertEquals("PUB-B", JsonParser.parseString(keyRes.getBody()).getAsJsonObject()
+					.getAsJsonObject("keys").get("bob").getAsString());
+
+			// 1:1 채팅 릴레이
+			alice.send(MessageType.CHAT, "bob", "AES/GCM/NoPadding:bm9uY2U=:Y2lwaGVy");
+			ChatMessage relayed = bob.receive();
+			assertEquals(MessageType.CHAT, relayed.getType());
+			assertEquals("alice", relayed.getSender());
+			assertEquals("AES/GCM/NoPadding:bm9uY2U=:Y2lwaGVy", relayed.getBody());
+
+			// 없는 상대
+			alice.send(MessageType.CHAT, "carol", "hello");
+			ChatMessage warn = alice.receive();
+			assertEquals(MessageType.SYSTEM, warn.getType());
+			assertEquals("TARGET_OFFLINE:carol", warn.getBody());
+
+			// 지표: 타입별 프레임 수, 릴레이 지연, 가입 저장
+			MeterRegistry registry = server.getMetrics().getRegistry();
+			assertEquals(2, registry.get("chat.frames").tag("type", "CHAT").counter().count());
+			assertEquals(1, registry.get("chat.relay.latency").tag("path", "direct").timer().count());
+			assertEquals(2, registry.get("chat.store.latency").tag("store", "user").timer().count());
+			assertTrue(registry.get("chat.bytes").tag("direction", "out").counter().count() > 0);
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void keyBatchReturnsManyKeysInOneResponse(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice")) {
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+
+			for (int i = 0; i < 5; i++) {
+				try (TestClient c = new TestClient(port, "m" + i)) {
+					c.auth(MessageType.AUTH_SIGNUP, "pw", "PUB-" + i);
+					assertEquals("SIGNUP_OK", c.receive().getBody());
+				}
+			}
+
+			// 태그로 물어도 ID 기준, 같은 ID는 한 번만
+			alice.send(MessageType.KEY_BATCH_REQ, "server",
+					"{\"ids\":[\"m0\",\"m1#0001\",\"m2\",\"m3\",\"m4\",\"m0\",\"nobody\"]}");
+			ChatMessage res = alice.receive();
+			assertEquals(MessageType.KEY_BATCH_RES, res.getType());
+
+			JsonObject body = JsonParser.parseString(res.getBody()).getAsJsonObject();
+			JsonObject keys = body.getAsJsonObject("keys");
+			assertEquals(5, keys.size());
+			for (int i = 0; i < 5; i++) {
+				assertEquals("PUB-" + i, keys.get("m" + i).getAsString());
+			}
+			assertEquals("[\"nobody\"]", body.getAsJsonArray("missing").toString());
+
+			alice.send(MessageType.KEY_BATCH_REQ, "server", "not json");
+			assertEquals("KEY_BATCH_FAIL:BAD_REQUEST", alice.receive().getBody());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void jsonAndBinaryClientsTalkToEachOther(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		String encrypted = "AES/GCM/NoPadding:AAECAwQFBgcICQoL:3q2+7wABAgMEBQYHCAkKCwwNDg8Q";
+
+		try (TestClient json = new TestClient(port, "alice", FrameCodec.JSON);
+			 TestClient bin = new TestClient(port, "bob", FrameCodec.BINARY)) {
+
+			json.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", json.receive().getBody());
+			bin.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bin.receive().getBody());
+
+			// JSON → 바이너리
+			json.send(MessageType.CHAT, "bob", encrypted);
+			ChatMessage atBob = bin.receive();
+			assertEquals("alice", atBob.getSender());
+			assertEquals(encrypted, atBob.getBody());
+
+			// 바이너리 → JSON
+			bin.send(MessageType.CHAT, "alice", "평문도 그대로");
+			ChatMessage atAlice = json.receive();
+			assertEquals("bob", atAlice.getSender());
+			assertEquals("평문도 그대로", atAlice.getBody());
+
+			// 기록 조회: JSON으로 저장된 것과 바이너리로 저장된 것이 섞여 있어도 같은 모양으로
+			bin.send(MessageType.HISTORY_REQ, "server", "{\"peer\":\"alice\",\"limit\":10}");
+			ChatMessage res = bin.receive();
+			assertEquals(MessageType.HISTORY_RES, res.getType());
+
+			HistoryPage page = new Gson().fromJson(res.getBody(), HistoryPage.class);
+			assertEquals(2, page.getEntries().size());
+			assertEquals(encrypted, page.getEntries().get(0).getMessage().getBody());
+			assertEquals("평문도 그대로", page.getEntries().get(1).getMessage().getBody());
+			assertNull(page.getNextCursor());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void offlineMessagesAreDeliveredInAckedBatchesOnLogin(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice")) {
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+
+			try (TestClient bob = new TestClient(port, "bob")) {
+				bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+				assertEquals("SIGNUP_OK", bob.receive().getBody());
+			}
+			// bob 연결이 닫힌 것을 서버가 알아챌 때까지
+			long deadline = System.currentTimeMillis() + 5000;
+			while (sessions.isOnline("bob") && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			for (int i = 0; i < 3; i++) {
+				alice.send(MessageType.CHAT, "bob", "m" + i);
+				assertEquals("TARGET_OFFLINE_QUEUED:bob", alice.receive().getBody());
+			}
+			assertEquals(3, offlineInbox.pendingFor("bob"));
+
+			try (TestClient bob = new TestClient(port, "bob")) {
+				bob.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob.receive().getBody());
+
+				// 메시지를 풀 수 있게 최근 상대(alice) 공개키가 먼저 온다
+				ChatMessage prefetch = bob.receive();
+				assertEquals(MessageType.KEY_BATCH_RES, prefetch.getType());
+				assertEquals("PUB-A", JsonParser.parseString(prefetch.getBody()).getAsJsonObject()
+						.getAsJsonObject("keys").get("alice").getAsString());
+
+				// 묶음 1: m0, m1 (batchSize=2)
+				assertEquals("m0", bob.receive().getBody());
+				assertEquals("m1", bob.receive().getBody());
+				JsonObject batch = offlineBatch(bob.receive());
+				assertEquals(1, batch.get("remaining").getAsInt());
+
+				// 확인 전에는 다음 묶음이 오지 않고, 받은편지함에도 그대로 남아 있다
+				assertEquals(3, offlineInbox.pendingFor("bob"));
+				bob.send(MessageType.OFFLINE_ACK, "server", batch.get("last").getAsString());
+
+				// 묶음 2: m2
+				assertEquals("m2", bob.receive().getBody());
+				batch = offlineBatch(bob.receive());
+				assertEquals(0, batch.get("remaining").getAsInt());
+				bob.send(MessageType.OFFLINE_ACK, "server", batch.get("last").getAsString());
+
+				deadline = System.currentTimeMillis() + 5000;
+				while (offlineInbox.pendingFor("bob") > 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertEquals(0, offlineInbox.pendingFor("bob"));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void spilledMessagesGoToInboxAndArriveOnceReceiverCatchesUp(ConnectionEngine.Mode mode) throws Exception {
+		allArriveAfterOverflow(mode, OutboundQueue.OverflowPolicy.SPILL);
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void pushedOutMessagesGoToInboxUnderDropOldest(ConnectionEngine.Mode mode) throws Exception {
+		// 밀려난 것(오프라인 묶음에서 다시 보낸 것 포함)도 받은편지함으로 → 하나도 잃지 않는다
+		allArriveAfterOverflow(mode, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+	}
+
+	private void allArriveAfterOverflow(ConnectionEngine.Mode mode, OutboundQueue.OverflowPolicy policy) throws Exception {
+		int port = startServer(mode, props -> {
+			props.getTcp().setOutboundCapacity(8);
+			props.getTcp().setOverflowPolicy(policy);
+		}).getPort();
+		int count = 200;
+		String padding = "x".repeat(64 * 1024);
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob")) {
+			for (TestClient c : new TestClient[]{alice, bob}) {
+				c.auth(MessageType.AUTH_SIGNUP, "pw", "PUB");
+				assertEquals("SIGNUP_OK", c.receive().getBody());
+			}
+
+			// bob이 읽지 않는 동안 소켓 버퍼와 큐(8개)를 넘치게 보낸다
+			for (int i = 0; i < count; i++) {
+				alice.send(MessageType.CHAT, "bob", "m" + i + ":" + padding);
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (offlineInbox.pendingFor("bob") == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(offlineInbox.pendingFor("bob") > 0, "넘친 메시지가 받은편지함에 있어야 함");
+
+			// 읽기 시작하면 바로 온 것 + 받은편지함 묶음으로 모두 도착
+			Set<String> got = new HashSet<>();
+			while (got.size() < count) {
+				ChatMessage m = bob.receive();
+				if (m.getType() == MessageType.OFFLINE_BATCH) {
+					bob.send(MessageType.OFFLINE_ACK, "server", offlineBatch(m).get("last").getAsString());
+				} else if (m.getType() == MessageType.CHAT) {
+					got.add(m.getBody().substring(0, m.getBody().indexOf(':')));
+				}
+			}
+			assertEquals(count, got.size());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void sessionsAreRegisteredOnlyAfterAuthAndRemovedOnClose(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob")) {
+
+			// 인증 전: 채팅은 거절되고 등록도 안 된다
+			alice.send(MessageType.CHAT, "bob", "hi");
+			assertEquals("NOT_AUTHENTICATED", alice.receive().getBody());
+			assertEquals(0, sessions.getLiveSessions());
+
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+			bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bob.receive().getBody());
+
+			// 다른 사람 이름으로 보내기
+			alice.send(new ChatMessage(MessageType.CHAT, "bob", "alice", "spoof", "t"));
+			assertEquals("SENDER_MISMATCH:bob", alice.receive().getBody());
+
+			// bob의 두 번째 기기: 태그(bob#0001)로 보내도 bob의 모든 기기로
+			try (TestClient bob2 = new TestClient(port, "bob")) {
+				bob2.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob2.receive().getBody());
+				// 라우팅은 LOGIN_OK(와 공개키 묶음)를 큐에 넣은 직후라 응답보다 조금 늦을 수 있다
+				awaitDevices("bob", 2);
+
+				// 로그인 때 주고받은 상대가 없었으므로 공개키 묶음 없이 바로 메시지
+				alice.send(MessageType.CHAT, "bob#0001", "both");
+				assertEquals("both", bob.receive().getBody());
+				assertEquals("both", bob2.receive().getBody());
+			}
+
+			// 세 번째 기기: 이제 alice가 최근 상대 → LOGIN_OK 바로 뒤에 공개키 묶음, 실시간 메시지는 그 뒤
+			try (TestClient bob3 = new TestClient(port, "bob")) {
+				bob3.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob3.receive().getBody());
+				awaitDevices("bob", 2);
+				alice.send(MessageType.CHAT, "bob", "after-login");
+
+				ChatMessage prefetch = bob3.receive();
+				assertEquals(MessageType.KEY_BATCH_RES, prefetch.getType());
+				assertEquals("PUB-A", JsonParser.parseString(prefetch.getBody()).getAsJsonObject()
+						.getAsJsonObject("keys").get("alice").getAsString());
+				assertEquals("after-login", bob3.receive().getBody());
+				assertEquals("after-login", bob.receive().getBody());
+			}
+
+			awaitDevices("bob", 1);
+			assertEquals(2, sessions.getLiveSessions());
+			assertEquals(4, sessions.getRegistered());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void duplicateHeaderKeysCannotSmuggleAnotherSender(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob")) {
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+			bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bob.receive().getBody());
+
+			// 앞의 헤더는 alice의 CHAT, Gson이 읽는 마지막 키는 carol의 KEY_RES
+			alice.sendRaw("{\"type\":\"CHAT\",\"sender\":\"alice#0001\",\"receiver\":\"bob#0001\","
+					+ "\"body\":\"PUB-A\",\"type\":\"KEY_RES\",\"sender\":\"carol#0001\"}");
+			assertEquals("SENDER_MISMATCH:carol#0001", alice.receive().getBody());
+
+			// 이스케이프한 키도 빠른 경로를 타지 않는다
+			alice.sendRaw("{\"type\":\"CHAT\",\"sender\":\"alice\",\"receiver\":\"bob\","
+					+ "\"body\":\"x\",\"s\\u0065nder\":\"carol\"}");
+			assertEquals("SENDER_MISMATCH:carol", alice.receive().getBody());
+
+			// bob에게는 위의 두 프레임 모두 가지 않았다
+			alice.send(MessageType.CHAT, "bob", "real");
+			ChatMessage next = bob.receive();
+			assertEquals(MessageType.CHAT, next.getType());
+			assertEquals("alice", next.getSender());
+			assertEquals("real", next.getBody());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void roomMessagesGoOnlyToMembers(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+		MessageType members = MessageType.ROOM_MEMBERS;
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob");
+			 TestClient carol = new TestClient(port, "carol")) {
+
+			for (TestClient c : new TestClient[]{alice, bob, carol}) {
+				c.auth(MessageType.AUTH_SIGNUP, "pw", "PUB");
+				assertEquals("SIGNUP_OK", c.receive().getBody());
+			}
+
+			alice.send(MessageType.ROOM_JOIN, "server", "dev");
+			assertEquals("ROOM_JOINED:dev:1", alice.receive().getBody());
+			bob.send(MessageType.ROOM_JOIN, "server", "dev");
+			assertEquals("ROOM_JOINED:dev:2", bob.receive().getBody());
+			carol.send(MessageType.ROOM_JOIN, "server", "bad name!");
+			assertEquals("ROOM_FAIL:BAD_NAME", carol.receive().getBody());
+
+			// 들어온 bob은 전체 멤버 목록을 받는다 (joined 알림은 타이밍에 따라 섞여 올 수 있음)
+			JsonObject list;
+			do {
+				list = JsonParser.parseString(bob.receive().getBody()).getAsJsonObject();
+			} while (!list.has("members"));
+			assertEquals(2, list.getAsJsonArray("members").size());
+
+			// 1:1 세션으로 암호화한 체인 키는 CHAT처럼 그대로 릴레이
+			alice.send(MessageType.SENDER_KEY, "bob", "AES/GCM/NoPadding:bm9uY2U=:a2V5");
+			ChatMessage sk = bob.receiveSkipping(members);
+			assertEquals(MessageType.SENDER_KEY, sk.getType());
+			assertEquals("AES/GCM/NoPadding:bm9uY2U=:a2V5", sk.getBody());
+
+			// 멤버 아닌 사람은 방에 못 보냄
+			carol.send(MessageType.CHAT, "room:dev", "x");
+			assertEquals("NOT_IN_ROOM:dev", carol.receive().getBody());
+
+			// 멤버 전원(보낸 사람 포함)에게 같은 암호문 하나
+			alice.send(MessageType.CHAT, "room:dev", "hello dev");
+			assertEquals("hello dev", bob.receiveSkipping(members).getBody());
+			assertEquals("hello dev", alice.receiveSkipping(members).getBody());
+
+			// bob이 나가면 alice는 left 알림을 받는다 (sender key 교체용)
+			bob.send(MessageType.ROOM_LEAVE, "server", "dev");
+			assertEquals("ROOM_LEFT:dev", bob.receive().getBody());
+			ChatMessage left = alice.receive();
+			assertEquals(members, left.getType());
+			assertEquals("bob", JsonParser.parseString(left.getBody()).getAsJsonObject().get("left").getAsString());
+
+			alice.send(MessageType.CHAT, "room:dev", "only me");
+			assertEquals("only me", alice.receive().getBody());
+
+			// 방 기록은 멤버만, carol에게는 아무것도 안 왔다
+			carol.send(MessageType.HISTORY_REQ, "server", "{\"peer\":\"room:dev\"}");
+			assertEquals("HISTORY_FAIL:NOT_IN_ROOM", carol.receive().getBody());
+			alice.send(MessageType.HISTORY_REQ, "server", "{\"peer\":\"room:dev\"}");
+			HistoryPage page = new Gson().fromJson(alice.receive().getBody(), HistoryPage.class);
+			assertEquals(2, page.getEntries().size());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void fileChunksAreRelayedToOnlineReceiverWithoutBeingStored(ConnectionEngine.Mode mode) throws Exception {
+		int port = startServer(mode).getPort();
+
+		String chunk = "AES/GCM/NoPadding:AAAAAAAAAAAAAAAB:" + "QUJD".repeat(100);
+
+		try (TestClient alice = new TestClient(port, "alice", FrameCodec.BINARY);
+			 TestClient bob = new TestClient(port, "bob")) {
+
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+			bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bob.receive().getBody());
+
+			alice.send(MessageType.FILE_OFFER, "bob", "offer");
+			assertEquals(MessageType.FILE_OFFER, bob.receive().getType());
+			for (int i = 0; i < 3; i++) {
+				alice.send(MessageType.FILE_CHUNK, "bob", chunk);
+				ChatMessage c = bob.receive();
+				assertEquals(MessageType.FILE_CHUNK, c.getType());
+				assertEquals(chunk, c.getBody());
+			}
+			bob.send(MessageType.FILE_ACK, "alice", "id:3");
+			assertEquals("id:3", alice.receive().getBody());
+
+			// 너무 큰 조각, 방, 접속 안 한 상대는 거절 (받은편지함에도 안 들어감)
+			alice.send(MessageType.FILE_CHUNK, "bob", "x".repeat(5000));
+			assertEquals("FILE_FAIL:TOO_LARGE:bob", alice.receive().getBody());
+			alice.send(MessageType.FILE_CHUNK, "room:dev", chunk);
+			assertEquals("FILE_FAIL:BAD_TARGET:room:dev", alice.receive().getBody());
+			alice.send(MessageType.FILE_OFFER, "carol", "offer");
+			assertEquals("FILE_FAIL:TARGET_OFFLINE:carol", alice.receive().getBody());
+
+			// 기록에는 아무것도 없다
+			bob.send(MessageType.HISTORY_REQ, "server", "{\"peer\":\"alice\"}");
+			HistoryPage page = new Gson().fromJson(bob.receive().getBody(), HistoryPage.class);
+			assertEquals(0, page.getEntries().size());
+			MeterRegistry registry = server.getMetrics().getRegistry();
+			assertEquals(3, registry.get("chat.files").tag("type", "FILE_CHUNK").counter().count());
+			assertTrue(registry.get("chat.files.bytes").counter().count() > 0);
+			assertEquals(1, registry.get("chat.files.refused").tag("reason", "TOO_LARGE").counter().count());
+			assertEquals(1, registry.get("chat.files.refused").tag("reason", "TARGET_OFFLINE").counter().count());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(ConnectionEngine.Mode.class)
+	void overLimitFramesGetThrottleNoticeInsteadOfBeingProcessed(ConnectionEngine.Mode mode) throws Exception {
+		// 거의 안 채워지는 버킷: 키 요청은 연결마다 2개, 사용자는 전달 10건까지
+		int port = startServer(mode, props -> {
+			props.getLimits().getTypes().put("key-req", new ChatServerProperties.Limits.Rate(0.01, 2));
+			props.getLimits().getUser().setRate(0.01);
+			props.getLimits().getUser().setBurst(10);
+		}).getPort();
+
+		try (TestClient alice = new TestClient(port, "alice");
+			 TestClient bob = new TestClient(port, "bob");
+			 TestClient carol = new TestClient(port, "carol")) {
+
+			for (TestClient c : new TestClient[]{alice, bob, carol}) {
+				c.auth(MessageType.AUTH_SIGNUP, "pw", "PUB");
+				assertEquals("SIGNUP_OK", c.receive().getBody());
+			}
+
+			// 타입 한도: 세 번째 키 요청은 응답 대신 알림
+			for (int i = 0; i < 2; i++) {
+				bob.send(MessageType.KEY_REQ, "alice", "PUB");
+				assertEquals(MessageType.KEY_RES, bob.receive().getType());
+			}
+			bob.send(MessageType.KEY_REQ, "alice", "PUB");
+			ChatMessage typeNotice = bob.receive();
+			assertEquals(MessageType.SYSTEM, typeNotice.getType());
+			assertEquals("THROTTLED:TYPE", typeNotice.getBody());
+
+			// 사용자 한도: 전체방은 접속 세션 수(3)만큼 → 3번(9건)은 가고 4번째(12건)는 저장도 릴레이도 안 됨
+			for (int i = 1; i <= 4; i++) {
+				alice.send(MessageType.CHAT, "ALL", "m" + i);
+			}
+			ChatMessage userNotice = alice.receiveSkipping(MessageType.CHAT);
+			assertEquals("THROTTLED:USER", userNotice.getBody());
+			for (int i = 1; i <= 3; i++) {
+				assertEquals("m" + i, carol.receive().getBody());
+			}
+
+			assertEquals(3, historyStore.size());
+
+			MeterRegistry registry = server.getMetrics().getRegistry();
+			assertEquals(1, registry.get("chat.throttled").tag("scope", "TYPE").counter().count());
+			assertTrue(registry.get("chat.throttled").tag("scope", "USER").counter().count() >= 1);
+		}
+	}
+
+	private void awaitDevices(String user, int n) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (sessions.sessionsOf(user).length != n && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(n, sessions.sessionsOf(user).length);
+	}
+
+	private static JsonObject offlineBatch(ChatMessage msg) {
+		assertEquals(MessageType.OFFLINE_BATCH, msg.getType());
+		return JsonParser.parseString(msg.getBody()).getAsJsonObject();
+	}
+}
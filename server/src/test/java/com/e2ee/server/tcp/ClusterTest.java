@@ -0,0 +1,233 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.config.ChatServerProperties;
+import com.e2ee.server.crypto.PasswordHasher;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.OfflineInbox;
+import com.e2ee.server.store.UserStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 한 프로세스 안에 노드 두 개(n1, n2)를 띄워 노드를 넘나드는 가입/키/채팅/방/오프라인 넘기기를 확인한다.
+ */
+class ClusterTest {
+
+	@TempDir
+	Path dataDir;
+
+	private static final String SECRET = "test-cluster-secret";
+
+	private Node n1;
+	private Node n2;
+
+	private static final class Node {
+		final ChatTcpServer server;
+		final HistoryStore history;
+		final OfflineInbox inbox;
+		final UserStore users;
+		final RoomRegistry rooms = new RoomRegistry();
+		boolean stopped;
+
+		Node(Path dir, String id) throws Exception {
+			ChatServerProperties props = new ChatServerProperties();
+			props.setDataDir(dir.toString());
+			props.getTcp().setPort(0);
+			props.getCluster().setEnabled(true);
+			props.getCluster().setNodeId(id);
+			props.getCluster().setPort(0);
+			props.getCluster().setSecret(SECRET);
+
+			history = new HistoryStore(dir, HistoryStore.DEFAULT_SEGMENT_BYTES, 64, 0);
+			users = new UserStore(dir.resolve("users.json").toFile(), new PasswordHasher(1000));
+			inbox = new OfflineInbox(dir, OfflineInbox.DEFAULT_MAX_PER_USER,
+					HistoryStore.DEFAULT_SEGMENT_BYTES, 64, 0);
+			server = new ChatTcpServer(props, new SessionRegistry(), rooms, users, history, inbox);
+			server.start();
+		}
+
+		int port() {
+			return server.getPort();
+		}
+
+		void stop() {
+			if (stopped) return;
+			stopped = true;
+			server.stop();
+			history.close();
+			inbox.close();
+			users.close();
+		}
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		n1 = new Node(dataDir.resolve("n1"), "n1");
+		n2 = new Node(dataDir.resolve("n2"), "n2");
+		n1.server.getCluster().addPeer("n2", "127.0.0.1", n2.server.getCluster().getPort());
+		n2.server.getCluster().addPeer("n1", "127.0.0.1", n1.server.getCluster().getPort());
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (n1 != null) n1.stop();
+		if (n2 != null) n2.stop();
+	}
+
+	@Test
+	void crossNodeSignupKeyChatAndRoom() throws Exception {
+		try (TestClient alice = new TestClient(n1.port(), "alice");
+			 TestClient bob = new TestClient(n2.port(), "bob")) {
+
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+			bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+			assertEquals("SIGNUP_OK", bob.receive().getBody());
+
+			// 가입은 다른 노드에도, 접속 위치는 다른 노드의 디렉터리에
+			await(() -> n1.users.exists("bob") && n2.users.exists("alice"));
+			await(() -> n1.server.getCluster().nodesOf("bob").length == 1
+					&& n2.server.getCluster().nodesOf("alice").length == 1);
+			assertArrayEquals(new String[]{"n2"}, n1.server.getCluster().nodesOf("bob"));
+
+			// 공개키는 로컬 저장소에서
+			alice.send(MessageType.KEY_REQ, "bob", "");
+			assertEquals("{\"keys\":{\"bob\":\"PUB-B\"}}", alice.receive().getBody());
+
+			// 1:1: n1 → n2
+			alice.send(MessageType.CHAT, "bob", "hi bob");
+			ChatMessage m = bob.receive();
+			assertEquals(MessageType.CHAT, m.getType());
+			assertEquals("hi bob", m.getBody());
+
+			// 방: bob(n2)이 먼저 들어가 있으면 alice(n1)가 들어갈 때 멤버 2명
+			bob.send(MessageType.ROOM_JOIN, "server", "dev");
+			assertEquals("ROOM_JOINED:dev:1", bob.receive().getBody());
+			await(() -> n1.rooms.isMember("dev", "bob"));
+
+			alice.send(MessageType.ROOM_JOIN, "server", "dev");
+			assertEquals("ROOM_JOINED:dev:2", alice.receive().getBody());
+
+			alice.send(MessageType.CHAT, ChatMessage.ROOM_PREFIX + "dev", "to room");
+			m = bob.receiveSkipping(MessageType.ROOM_MEMBERS);
+			assertEquals("to room", m.getBody());
+
+			// n1 비우기 → alice에게 n2 주소 (그 전에 방 알림과 자기 방 메시지가 와 있다)
+			n1.server.drain();
+			do {
+				m = alice.receive();
+			} while (m.getType() != MessageType.SYSTEM);
+			assertEquals("MOVED:127.0.0.1:" + n2.port(), m.getBody());
+		}
+	}
+
+	@Test
+	void offlineMessagesFollowUserToOtherNodeAndFailover() throws Exception {
+		try (TestClient alice = new TestClient(n1.port(), "alice")) {
+			alice.auth(MessageType.AUTH_SIGNUP, "pw-a", "PUB-A");
+			assertEquals("SIGNUP_OK", alice.receive().getBody());
+
+			try (TestClient bob = new TestClient(n2.port(), "bob")) {
+				bob.auth(MessageType.AUTH_SIGNUP, "pw-b", "PUB-B");
+				assertEquals("SIGNUP_OK", bob.receive().getBody());
+			}
+			await(() -> n1.users.exists("bob"));
+			await(() -> n1.server.getCluster().nodesOf("bob").length == 0);
+
+			// bob이 어디에도 없음 → n1 받은편지함
+			alice.send(MessageType.CHAT, "bob", "while away");
+			assertEquals("TARGET_OFFLINE_QUEUED:bob", alice.receive().getBody());
+			assertEquals(1, n1.inbox.pendingFor("bob"));
+
+			// n2로 다시 로그인 → n1이 쌓아 둔 것을 n2로 넘기고 ack
+			try (TestClient bob = new TestClient(n2.port(), "bob")) {
+				bob.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob.receive().getBody());
+				ChatMessage m = bob.receiveSkipping(MessageType.KEY_BATCH_RES);
+				assertEquals(MessageType.CHAT, m.getType());
+				assertEquals("while away", m.getBody());
+				await(() -> n1.inbox.pendingFor("bob") == 0);
+			}
+
+			// n2가 죽으면 n1은 n2 사용자 위치를 지우고, bob은 n1로 다시 접속
+			try (TestClient bob = new TestClient(n2.port(), "bob")) {
+				bob.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob.receive().getBody());
+				await(() -> n1.server.getCluster().nodesOf("bob").length == 1);
+				n2.stop();
+			}
+			await(() -> n1.server.getCluster().nodesOf("bob").length == 0);
+
+			try (TestClient bob = new TestClient(n1.port(), "bob")) {
+				bob.auth(MessageType.AUTH_LOGIN, "pw-b", "PUB-B");
+				assertEquals("LOGIN_OK", bob.receive().getBody());
+				alice.send(MessageType.CHAT, "bob", "after failover");
+				assertEquals("after failover", bob.receiveSkipping(MessageType.KEY_BATCH_RES).getBody());
+			}
+		}
+	}
+
+	@Test
+	void linkWithWrongSecretIsClosedBeforeAnyFrameIsApplied() throws Exception {
+		try (Socket s = new Socket("127.0.0.1", n1.server.getCluster().getPort())) {
+			s.setSoTimeout(5000);
+			DataInputStream in = new DataInputStream(s.getInputStream());
+			in.readFully(new byte[16]);
+
+			// HELLO(op 1)에 엉뚱한 HMAC, 이어서 ONLINE(op 2) mallory
+			ByteArrayOutputStream hello = new ByteArrayOutputStream();
+			DataOutputStream h = new DataOutputStream(hello);
+			h.writeByte(1);
+			h.writeUTF("evil");
+			h.writeUTF("127.0.0.1");
+			h.writeInt(1);
+			h.writeInt(32);
+			h.write(new byte[32]);
+
+			ByteArrayOutputStream online = new ByteArrayOutputStream();
+			DataOutputStream o = new DataOutputStream(online);
+			o.writeByte(2);
+			o.writeUTF("mallory");
+
+			DataOutputStream out = new DataOutputStream(s.getOutputStream());
+			out.writeInt(hello.size());
+			hello.writeTo(out);
+			out.writeInt(online.size());
+			online.writeTo(out);
+			out.flush();
+
+			// 상대가 닫는다 (ONLINE은 읽히지도 않음, 읽지 않은 바이트가 남아 있었으면 RST)
+			try {
+				assertEquals(-1, in.read());
+			} catch (SocketException reset) {
+				// 닫힘
+			}
+		}
+		assertEquals(0, n1.server.getCluster().nodesOf("mallory").length);
+	}
+
+	// 링크로 오는 것은 비동기라 잠깐 기다린다
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "5초 안에 반영되지 않음");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.metrics.RelayMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KdfExecutorTest {
+
+	@Test
+	void fullQueueIsRejectedInsteadOfWaiting() throws Exception {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		KdfExecutor kdf = new KdfExecutor(1, 2, new RelayMetrics(registry));
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+
+		try {
+			Runnable slow = () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			};
+
+			// 스레드 1개 실행 중 + 대기열 2개 → 네 번째는 바로 거절
+			assertTrue(kdf.submit(slow));
+			assertTrue(kdf.submit(slow));
+			assertTrue(kdf.submit(slow));
+			assertFalse(kdf.submit(slow));
+			assertEquals(1, kdf.getRejected());
+
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (kdf.getCompleted() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(3, registry.get("chat.kdf.time").timer().count());
+			assertEquals(3, registry.get("chat.kdf.wait").timer().count());
+			assertEquals(1, registry.get("chat.kdf.rejected").counter().count());
+			assertTrue(kdf.submit(() -> { }));
+		} finally {
+			kdf.shutdown();
+		}
+	}
+}
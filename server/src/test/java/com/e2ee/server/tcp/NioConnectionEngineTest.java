@@ -0,0 +1,84 @@
+package com.e2ee.server.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioConnectionEngineTest {
+
+	private NioConnectionEngine engine;
+
+	@AfterEach
+	void tearDown() {
+		if (engine != null) engine.stop();
+	}
+
+	@Test
+	void blockedHandlerDoesNotStallOtherConnectionsOnTheSameLoop() throws Exception {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+
+		// "slow" 프레임은 디스크가 멈춘 것처럼 막히고, 나머지는 그대로 돌려보낸다
+		ConnectionHandler handler = new ConnectionHandler() {
+			@Override
+			public void onOpen(ClientConnection conn) {
+			}
+
+			@Override
+			public void onFrame(ClientConnection conn, byte[] wire, int off, int len) throws Exception {
+				String body = new String(wire, off, len, StandardCharsets.UTF_8).trim();
+				if (body.equals("slow")) {
+					blocked.countDown();
+					release.await();
+				}
+				conn.sendFrame((body + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+
+			@Override
+			public void onClose(ClientConnection conn) {
+				closed.countDown();
+			}
+
+			@Override
+			public void onOverflow(ClientConnection conn, byte[] frame, long seq) {
+			}
+		};
+
+		// 루프 하나 → 두 연결이 같은 셀렉터
+		engine = new NioConnectionEngine(1, 64, OutboundQueue.OverflowPolicy.DISCONNECT);
+		int port = engine.start(0, handler);
+
+		try (Socket slow = new Socket("localhost", port);
+			 Socket fast = new Socket("localhost", port)) {
+			OutputStream slowOut = slow.getOutputStream();
+			slowOut.write("slow\nafter\n".getBytes(StandardCharsets.UTF_8));
+			slowOut.flush();
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+			fast.setSoTimeout(5000);
+			fast.getOutputStream().write("ping\n".getBytes(StandardCharsets.UTF_8));
+			fast.getOutputStream().flush();
+			BufferedReader fastIn = new BufferedReader(new InputStreamReader(fast.getInputStream(), StandardCharsets.UTF_8));
+			assertEquals("ping", fastIn.readLine());
+
+			// 막힌 연결도 풀리면 받은 순서대로
+			release.countDown();
+			slow.setSoTimeout(5000);
+			BufferedReader slowIn = new BufferedReader(new InputStreamReader(slow.getInputStream(), StandardCharsets.UTF_8));
+			assertEquals("slow", slowIn.readLine());
+			assertEquals("after", slowIn.readLine());
+		}
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+}
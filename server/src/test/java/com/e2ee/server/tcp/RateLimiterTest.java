@@ -0,0 +1,39 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.config.ChatServerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RateLimiterTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void drainedBucketOfDepartedUserIsSweptOnceFullAgain() {
+		ChatServerProperties.Limits conf = new ChatServerProperties.Limits();
+		conf.getUser().setRate(10);
+		conf.getUser().setBurst(5);
+		Set<String> online = new HashSet<>(Set.of("alice", "bob"));
+		RateLimiter limiter = new RateLimiter(conf, online::contains);
+		RateLimiter.Limits limits = limiter.newConnection();
+
+		// alice는 버킷을 다 쓰고 나감 → 비어 있어서 release로는 안 지워진다
+		assertNull(limiter.admit(limits, "alice", null, 5));
+		assertNull(limiter.admit(limits, "bob", null, 5));
+		online.remove("alice");
+		limiter.release("alice");
+		assertEquals(2, limiter.getUserBuckets());
+
+		// 덜 찼을 때는 남기고
+		assertEquals(0, limiter.sweep(System.nanoTime()));
+
+		// 다시 가득 차면 지운다 (bob은 아직 접속해 있으니 남김)
+		assertEquals(1, limiter.sweep(System.nanoTime() + 60 * SECOND));
+		assertEquals(1, limiter.getUserBuckets());
+	}
+}
@@ -0,0 +1,71 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RoomFanoutTest {
+
+	// 큐에만 넣고 실제로 쓰지는 않는 연결
+	private static final class QueuedConnection extends ClientConnection {
+		QueuedConnection() {
+			super("test", new OutboundQueue(16, OutboundQueue.OverflowPolicy.DROP_OLDEST), null);
+		}
+
+		@Override
+		protected void scheduleWrite() {
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	void largeRoomIsShardedAndEveryMemberGetsTheSameFrameOnce() throws Exception {
+		SessionRegistry sessions = new SessionRegistry();
+		RoomRegistry rooms = new RoomRegistry();
+		List<QueuedConnection> conns = new ArrayList<>();
+
+		for (int i = 0; i < 2500; i++) {
+			QueuedConnection c = new QueuedConnection();
+			sessions.register("u" + i, c);
+			rooms.join("big", "u" + i);
+			conns.add(c);
+		}
+
+		RoomFanout fanout = new RoomFanout(sessions, 4, 1000);
+		try {
+			fanout.publish(rooms.get("big"), new EncodedMessage(
+					new ChatMessage(MessageType.CHAT, "u0", "room:big", "hi", "t")));
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (fanout.getDelivered() < 2500 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(3, fanout.getShards());
+			assertEquals(2500, fanout.getDelivered());
+
+			byte[][] first = new byte[1][];
+			conns.get(0).getOutbound().drainTo(first, 1, Integer.MAX_VALUE);
+			for (QueuedConnection c : conns.subList(1, conns.size())) {
+				byte[][] got = new byte[2][];
+				assertEquals(1, c.getOutbound().drainTo(got, 2, Integer.MAX_VALUE));
+				assertSame(first[0], got[0]);
+			}
+		} finally {
+			fanout.shutdown();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.BinaryFrameCodec;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
+import com.e2ee.server.protocol.MessageType;
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 테스트용 클라이언트 (JSON 줄 또는 바이너리 프레임).
+ */
+class TestClient implements Closeable {
+
+	private static final Gson gson = new Gson();
+
+	private final String id;
+	private final Socket socket;
+	private final OutputStream out;
+	private final InputStream in;
+	private final FrameCodec codec;
+
+	TestClient(int port, String id) throws IOException {
+		this(port, id, FrameCodec.JSON);
+	}
+
+	TestClient(int port, String id, FrameCodec codec) throws IOException {
+		this.id = id;
+		this.codec = codec;
+		this.socket = new Socket("127.0.0.1", port);
+		this.socket.setSoTimeout(5000);
+		this.out = new BufferedOutputStream(socket.getOutputStream());
+		this.in = new BufferedInputStream(socket.getInputStream());
+
+		if (codec == FrameCodec.BINARY) {
+			out.write(BinaryFrameCodec.PREAMBLE);
+			out.flush();
+			byte[] ack = in.readNBytes(BinaryFrameCodec.PREAMBLE.length);
+			if (!Arrays.equals(ack, BinaryFrameCodec.PREAMBLE)) throw new IOException("핸드셰이크 실패");
+		}
+	}
+
+	void send(MessageType type, String receiver, String body) throws IOException {
+		send(new ChatMessage(type, id, receiver, body, "2025-11-19T00:00:00"));
+	}
+
+	void send(ChatMessage msg) throws IOException {
+		out.write(codec.encode(msg));
+		out.flush();
+	}
+
+	// JSON 줄을 그대로 (인코더가 만들지 않는 모양을 보낼 때)
+	void sendRaw(String line) throws IOException {
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	void auth(MessageType type, String password, String publicKey) throws IOException {
+		send(type, "server", gson.toJson(Map.of("id", id, "password", password, "publicKey", publicKey)));
+	}
+
+	ChatMessage receive() throws IOException {
+		byte[] frame;
+		if (codec == FrameCodec.BINARY) {
+			int len = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = in.read();
+				if (b < 0) throw new EOFException("서버가 연결을 닫음");
+				len |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) break;
+			}
+			frame = in.readNBytes(len);
+		} else {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) != '\n') {
+				if (b < 0) throw new EOFException("서버가 연결을 닫음");
+				line.write(b);
+			}
+			frame = line.toByteArray();
+		}
+		return codec.decode(frame);
+	}
+
+	// skip 타입은 건너뛰고 다음 메시지 (다른 스레드에서 오는 알림과 순서가 정해지지 않을 때)
+	ChatMessage receiveSkipping(MessageType skip) throws IOException {
+		ChatMessage m;
+		do {
+			m = receive();
+		} while (m.getType() == skip);
+		return m;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
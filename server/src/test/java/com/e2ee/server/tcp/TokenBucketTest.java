@@ -0,0 +1,84 @@
+package com.e2ee.server.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void burstThenRefillAtRate() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long t = System.nanoTime();
+
+		// 처음에는 가득 (5개), 여섯 번째는 거절
+		for (int i = 0; i < 5; i++) {
+			assertTrue(bucket.tryAcquire(1, t));
+		}
+		assertFalse(bucket.tryAcquire(1, t));
+		assertFalse(bucket.isFull(t));
+
+		// 초당 10개 → 0.1초에 하나
+		assertTrue(bucket.tryAcquire(1, t + SECOND / 10));
+		assertFalse(bucket.tryAcquire(1, t + SECOND / 10));
+
+		// 오래 쉬어도 burst까지만 모인다
+		long later = t + 60 * SECOND;
+		assertTrue(bucket.isFull(later));
+		assertTrue(bucket.tryAcquire(5, later));
+		assertFalse(bucket.tryAcquire(1, later));
+	}
+
+	@Test
+	void costAboveBurstPassesOnlyWhenFull() {
+		TokenBucket bucket = new TokenBucket(100, 10);
+		long t = System.nanoTime();
+
+		// 큰 방 메시지 (전달 50건): burst로 쳐서 가득 찼을 때만 통과
+		assertTrue(bucket.tryAcquire(50, t));
+		assertFalse(bucket.tryAcquire(50, t + SECOND / 20));
+		assertTrue(bucket.tryAcquire(50, t + SECOND / 10));
+	}
+
+	@Test
+	void rejectsNonPositiveSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5));
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(10, 0));
+	}
+
+	@Test
+	void concurrentAcquiresNeverExceedBurst() throws Exception {
+		// 거의 안 채워지는 버킷을 여러 스레드가 동시에 비움 → 정확히 burst개만 통과
+		TokenBucket bucket = new TokenBucket(0.001, 1000);
+		long t = System.nanoTime();
+		AtomicInteger granted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int n = 0; n < 1000; n++) {
+					if (bucket.tryAcquire(1, t)) granted.incrementAndGet();
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread th : threads) th.join();
+
+		assertEquals(1000, granted.get());
+	}
+}
@@ -0,0 +1,46 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메시지 한 건 암호화/복호화 비용 (AesGcmUtil).
+ *
+ * 평문 크기별로 측정한다: 짧은 채팅 / 보통 / 긴 붙여넣기
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AesGcmBenchmark {
+
+    @Param({"32", "256", "4096"})
+    public int plainBytes;
+
+    private SecretKey key;
+    private String plaintext;
+    private EncryptedPayload encrypted;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        key = AesGcmUtil.generateKey();
+        plaintext = "a".repeat(plainBytes);
+        encrypted = AesGcmUtil.encrypt(plaintext, key);
+    }
+
+    @Benchmark
+    public EncryptedPayload encrypt() throws Exception {
+        return AesGcmUtil.encrypt(plaintext, key);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return AesGcmUtil.decrypt(encrypted, key);
+    }
+}
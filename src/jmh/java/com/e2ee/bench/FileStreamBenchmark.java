@@ -0,0 +1,94 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.session.E2eeSession;
+import com.e2ee.session.FileStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 파일 sizeMb MB 한 개를 암호화 → 복호화 (네트워크 없이).
+ *
+ *   stream : FileStream 조각(64KB)으로 InputStream → OutputStream, 힙에는 조각 몇 개만
+ *   whole  : 예전 방식처럼 파일 전체를 String 하나로 AesGcmUtil.encrypt/decrypt
+ *            (평문 String + UTF-8 바이트 + 암호문 + Base64가 한꺼번에 힙에 올라간다)
+ *
+ * -prof gc 의 op당 할당은 둘 다 크기에 비례하지만, stream은 그게 짧게 사는 조각들이라 최대 힙이 늘지 않는다.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileStreamBenchmark {
+
+    @Param({"1", "64"})
+    public int sizeMb;
+
+    private E2eeSession sender;
+    private E2eeSession receiver;
+    private String wholeText;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyPair a = EcdhUtil.generateKeyPair();
+        KeyPair b = EcdhUtil.generateKeyPair();
+        sender = E2eeSession.create(a, b.getPublic());
+        receiver = E2eeSession.create(b, a.getPublic());
+        wholeText = "x".repeat(sizeMb << 20);
+    }
+
+    @Benchmark
+    public long stream() throws Exception {
+        byte[] fileId = FileStream.newFileId();
+        FileStream.Encryptor enc = sender.encryptStream(new Zeros((long) sizeMb << 20), fileId,
+                FileStream.DEFAULT_CHUNK_BYTES);
+        FileStream.Decryptor dec = receiver.decryptStream(fileId, OutputStream.nullOutputStream());
+
+        EncryptedPayload chunk;
+        while ((chunk = enc.next()) != null) {
+            // 실제로는 toWireString → 프레임 → fromWireString 을 거친다
+            dec.accept(EncryptedPayload.fromWireString(chunk.toWireString()));
+        }
+        return dec.getBytes();
+    }
+
+    @Benchmark
+    public int whole() throws Exception {
+        String wire = AesGcmUtil.encrypt(wholeText, sender.getAesKey()).toWireString();
+        return AesGcmUtil.decrypt(EncryptedPayload.fromWireString(wire), receiver.getAesKey())
+                .getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // n바이트짜리 가짜 파일 (준비 비용 없이)
+    private static final class Zeros extends InputStream {
+        private long left;
+
+        Zeros(long n) {
+            this.left = n;
+        }
+
+        @Override
+        public int read() {
+            if (left == 0) return -1;
+            left--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (left == 0) return -1;
+            int n = (int) Math.min(len, left);
+            left -= n;
+            return n;
+        }
+    }
+}
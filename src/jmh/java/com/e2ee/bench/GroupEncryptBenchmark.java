@@ -0,0 +1,53 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.session.SenderKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 방 메시지 한 건을 멤버 N명에게 보낼 때 보내는 쪽 암호화 비용.
+ *
+ *   pairwise  : 멤버마다 1:1 세션 키로 따로 암호화 (N번, 암호문 N개)
+ *   senderKey : 내 체인 키로 한 번 (체인 한 칸 + 암호화 1번, 암호문 1개)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupEncryptBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int members;
+
+    private SecretKey[] pairwiseKeys;
+    private SenderKey senderKey;
+    private final String plaintext = "a".repeat(64);
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        pairwiseKeys = new SecretKey[members];
+        for (int i = 0; i < members; i++) {
+            pairwiseKeys[i] = AesGcmUtil.generateKey();
+        }
+        senderKey = SenderKey.generate();
+    }
+
+    @Benchmark
+    public void pairwise(Blackhole bh) throws Exception {
+        for (SecretKey k : pairwiseKeys) {
+            bh.consume(AesGcmUtil.encrypt(plaintext, k));
+        }
+    }
+
+    @Benchmark
+    public EncryptedPayload senderKey() throws Exception {
+        return senderKey.encrypt(plaintext);
+    }
+}
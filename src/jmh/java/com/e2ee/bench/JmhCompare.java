@@ -0,0 +1,123 @@
+package com.e2ee.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JMH 결과 JSON(-rf json) 두 개를 벤치마크+파라미터별로 나란히 비교한다.
+ *
+ * 사용: ./gradlew jmhCompare -Pbase=benchmarks/results/a.json -Pnew=benchmarks/results/b.json
+ *
+ * 변화가 두 결과의 오차 범위(±error 합)보다 크면 '*' 표시.
+ * -prof gc 로 돌린 결과면 op당 할당 바이트(gc.alloc.rate.norm)도 같이 보여준다.
+ */
+public class JmhCompare {
+
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    static final class Score {
+        double score;
+        double error;
+        String unit;
+        Double allocBytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args[0].isEmpty() || args[1].isEmpty()) {
+            System.out.println("사용법: JmhCompare <base.json> <new.json>");
+            return;
+        }
+
+        Map<String, Score> base = load(Paths.get(args[0]));
+        Map<String, Score> next = load(Paths.get(args[1]));
+
+        System.out.printf("%-60s %14s %14s %9s %12s%n", "benchmark", "base", "new", "change", "alloc B/op");
+
+        for (Map.Entry<String, Score> e : next.entrySet()) {
+            Score n = e.getValue();
+            Score b = base.get(e.getKey());
+
+            if (b == null) {
+                System.out.printf("%-60s %14s %14s %9s %12s%n", e.getKey(), "-",
+                        format(n.score) + " " + n.unit, "new", alloc(null, n));
+                continue;
+            }
+
+            double change = (n.score - b.score) / b.score * 100;
+            boolean significant = Math.abs(n.score - b.score) > b.error + n.error;
+
+            System.out.printf("%-60s %14s %14s %+8.1f%%%s %12s%n", e.getKey(),
+                    format(b.score) + " " + b.unit,
+                    format(n.score) + " " + n.unit,
+                    change, significant ? "*" : " ",
+                    alloc(b, n));
+        }
+
+        for (String k : base.keySet()) {
+            if (!next.containsKey(k)) {
+                System.out.printf("%-60s %14s %14s %9s%n", k, format(base.get(k).score), "-", "not run");
+            }
+        }
+    }
+
+    // "Benchmark.method [a=1, b=2]" → 점수
+    static Map<String, Score> load(Path file) throws Exception {
+        Map<String, Score> result = new LinkedHashMap<>();
+
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonArray runs = JsonParser.parseReader(r).getAsJsonArray();
+
+            for (JsonElement el : runs) {
+                JsonObject run = el.getAsJsonObject();
+
+                String name = run.get("benchmark").getAsString();
+                name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+
+                if (run.has("params")) {
+                    Map<String, String> params = new TreeMap<>();
+                    for (Map.Entry<String, JsonElement> p : run.getAsJsonObject("params").entrySet()) {
+                        params.put(p.getKey(), p.getValue().getAsString());
+                    }
+                    name += " " + params;
+                }
+
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                Score s = new Score();
+                s.score = primary.get("score").getAsDouble();
+                s.error = primary.get("scoreError").isJsonPrimitive()
+                        ? primary.get("scoreError").getAsDouble() : 0;
+                if (Double.isNaN(s.error)) s.error = 0;
+                s.unit = primary.get("scoreUnit").getAsString();
+
+                JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+                if (secondary != null && secondary.has(ALLOC)) {
+                    s.allocBytes = secondary.getAsJsonObject(ALLOC).get("score").getAsDouble();
+                }
+
+                result.put(name, s);
+            }
+        }
+        return result;
+    }
+
+    private static String format(double v) {
+        return v >= 100 ? String.format("%.0f", v) : String.format("%.2f", v);
+    }
+
+    private static String alloc(Score b, Score n) {
+        if (n.allocBytes == null) return "";
+        if (b == null || b.allocBytes == null) return format(n.allocBytes);
+        return format(b.allocBytes) + "→" + format(n.allocBytes);
+    }
+}
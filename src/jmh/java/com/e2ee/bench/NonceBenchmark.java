@@ -0,0 +1,66 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.session.CounterNonces;
+import com.e2ee.session.E2eeSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1:1 메시지 처리량: nonce를 SecureRandom으로 뽑기(RANDOM) vs epoch + 카운터(COUNTER).
+ *
+ *   encrypt   : 보내기만
+ *   roundTrip : 보내고 상대 세션으로 풀기 (COUNTER는 재전송 창 검사 포함)
+ *   encrypt4  : 같은 세션으로 스레드 4개가 같이 보냄 (COUNTER는 카운터 잠금, RANDOM은 스레드별 SecureRandom)
+ *
+ * 여러 스레드 roundTrip은 재지 않는다: 한 스레드가 잠깐 밀리면 카운터가 재전송 창(1024)보다 뒤처져 거절된다.
+ * (실제로는 TCP 연결 하나로 순서대로 오므로 창 밖으로 밀릴 일이 없다)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NonceBenchmark {
+
+    @Param({"RANDOM", "COUNTER"})
+    public E2eeSession.NonceMode mode;
+
+    @Param({"32", "256"})
+    public int plainBytes;
+
+    private E2eeSession sender;
+    private E2eeSession receiver;
+    private String plaintext;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyPair a = EcdhUtil.generateKeyPair();
+        KeyPair b = EcdhUtil.generateKeyPair();
+        E2eeSession s = E2eeSession.create(a, b.getPublic());
+        E2eeSession r = E2eeSession.create(b, a.getPublic());
+        sender = new E2eeSession(a, b.getPublic(), s.getAesKey(), mode, CounterNonces.DEFAULT_REKEY_AFTER);
+        receiver = new E2eeSession(b, a.getPublic(), r.getAesKey(), mode, CounterNonces.DEFAULT_REKEY_AFTER);
+        plaintext = "a".repeat(plainBytes);
+    }
+
+    @Benchmark
+    public EncryptedPayload encrypt() throws Exception {
+        return sender.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String roundTrip() throws Exception {
+        return receiver.decrypt(sender.encrypt(plaintext));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EncryptedPayload encrypt4() throws Exception {
+        return sender.encrypt(plaintext);
+    }
+}
@@ -0,0 +1,75 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.JsonUtil;
+import com.e2ee.protocol.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 암호문 포장(EncryptedPayload ↔ "alg:nonce:cipher")과
+ * Gson ChatMessage JSON 왕복 비용.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    // 평문 길이 (암호문 = 평문 + 16바이트 태그)
+    @Param({"32", "4096"})
+    public int plainBytes;
+
+    private EncryptedPayload payload;
+    private String wire;
+    private ChatMessage msg;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        byte[] nonce = new byte[12];
+        byte[] cipher = new byte[plainBytes + 16];
+        rnd.nextBytes(nonce);
+        rnd.nextBytes(cipher);
+
+        payload = new EncryptedPayload("AES/GCM/NoPadding",
+                Base64.getEncoder().encodeToString(nonce),
+                Base64.getEncoder().encodeToString(cipher));
+        wire = payload.toWireString();
+
+        msg = new ChatMessage(MessageType.CHAT, "alice#0001", "bob#0001", wire, "2025-11-19T00:00:00");
+        json = JsonUtil.toJson(msg);
+    }
+
+    @Benchmark
+    public String payloadToWire() {
+        return payload.toWireString();
+    }
+
+    @Benchmark
+    public EncryptedPayload payloadFromWire() {
+        return EncryptedPayload.fromWireString(wire);
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return JsonUtil.toJson(msg);
+    }
+
+    @Benchmark
+    public ChatMessage gsonFromJson() {
+        return JsonUtil.fromJson(json, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatMessage gsonRoundTrip() {
+        return JsonUtil.fromJson(JsonUtil.toJson(msg), ChatMessage.class);
+    }
+}
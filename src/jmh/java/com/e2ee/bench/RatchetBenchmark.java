@@ -0,0 +1,84 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.session.CounterNonces;
+import com.e2ee.session.E2eeSession;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1:1 메시지 한 건 비용: 세션 키 하나 + 카운터 nonce(COUNTER) vs 더블 래칫(RATCHET).
+ *
+ *   roundTrip  : 한 방향으로 계속 (래칫은 메시지마다 체인 HKDF 한 번)
+ *   pingPong   : 주고받기 번갈아 (래칫은 답장마다 X25519 키 생성 + DH 두 번 + 루트 HKDF 두 번), 메시지당
+ *   outOfOrder : 64건을 거꾸로 받기 (래칫은 63건이 건너뛴 키 캐시를 거쳐 감), 메시지당
+ *   hkdf       : EcdhUtil.deriveAesKeyFromSharedSecret 한 번 (HKDF 자체의 할당은 -prof gc로)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RatchetBenchmark {
+
+    private static final int BATCH = 64;
+
+    @Param({"COUNTER", "RATCHET"})
+    public String mode;
+
+    private E2eeSession sender;
+    private E2eeSession receiver;
+    private final String plaintext = "a".repeat(64);
+    private final EncryptedPayload[] batch = new EncryptedPayload[BATCH];
+    private final byte[] secret = new byte[32];
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyPair a = EcdhUtil.generateKeyPair();
+        KeyPair b = EcdhUtil.generateKeyPair();
+        if (mode.equals("RATCHET")) {
+            E2eeSession x = E2eeSession.createRatcheting(a, b.getPublic());
+            E2eeSession y = E2eeSession.createRatcheting(b, a.getPublic());
+            // 첫 메시지는 initiator가 보내야 래칫으로 나간다
+            sender = x.getRatchet().isInitiator() ? x : y;
+            receiver = sender == x ? y : x;
+        } else {
+            SecretKey key = E2eeSession.create(a, b.getPublic()).getAesKey();
+            sender = new E2eeSession(a, b.getPublic(), key, E2eeSession.NonceMode.COUNTER,
+                    CounterNonces.DEFAULT_REKEY_AFTER);
+            receiver = new E2eeSession(b, a.getPublic(), key, E2eeSession.NonceMode.COUNTER,
+                    CounterNonces.DEFAULT_REKEY_AFTER);
+        }
+    }
+
+    @Benchmark
+    public String roundTrip() throws Exception {
+        return receiver.decrypt(sender.encrypt(plaintext));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public String pingPong() throws Exception {
+        receiver.decrypt(sender.encrypt(plaintext));
+        return sender.decrypt(receiver.encrypt(plaintext));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public String outOfOrder() throws Exception {
+        for (int i = 0; i < BATCH; i++) batch[i] = sender.encrypt(plaintext);
+        String last = null;
+        for (int i = BATCH - 1; i >= 0; i--) last = receiver.decrypt(batch[i]);
+        return last;
+    }
+
+    @Benchmark
+    public SecretKey hkdf() throws Exception {
+        return EcdhUtil.deriveAesKeyFromSharedSecret(secret);
+    }
+}
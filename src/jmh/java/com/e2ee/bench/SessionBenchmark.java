@@ -0,0 +1,43 @@
+package com.e2ee.bench;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.session.E2eeSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 세션 하나 만드는 비용: X25519 합의 + HKDF (E2eeSession.create),
+ * 그리고 KEY_RES로 받은 Base64 공개키 복원 (EcdhUtil.decodePublicKey).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    private KeyPair mine;
+    private PublicKey theirs;
+    private String theirsBase64;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        mine = EcdhUtil.generateKeyPair();
+        theirs = EcdhUtil.generateKeyPair().getPublic();
+        theirsBase64 = EcdhUtil.encodePublicKey(theirs);
+    }
+
+    @Benchmark
+    public E2eeSession create() throws Exception {
+        return E2eeSession.create(mine, theirs);
+    }
+
+    @Benchmark
+    public PublicKey decodePublicKey() throws Exception {
+        return EcdhUtil.decodePublicKey(theirsBase64);
+    }
+}
@@ -0,0 +1,104 @@
+package com.e2ee.bench;
+
+import com.e2ee.client.store.SessionStore;
+import com.e2ee.client.store.UnlockedVault;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.session.E2eeSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 저장된 세션 (SessionStore) 비용, 상대 contacts명이 저장돼 있을 때.
+ *
+ *   open    : 파일 열기 + 색인 만들기 (세션은 풀지 않음) → 시작 시간
+ *   coldGet : 메모리에 없는 상대 하나를 파일에서 읽어 풀기
+ *             (비교: SessionBenchmark.create = 매번 X25519 + HKDF, 그 전에 /key 왕복)
+ *   hotGet  : 메모리(LRU)에 있는 상대
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class SessionStoreBenchmark {
+
+    @Param({"1000", "10000"})
+    public int contacts;
+
+    private Path dir;
+    private UnlockedVault vault;
+    private KeyPair mine;
+
+    private SessionStore cold;
+    private SessionStore hot;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("session-bench");
+        vault = new UnlockedVault(new byte[32], 0);
+        mine = EcdhUtil.generateKeyPair();
+
+        try (SessionStore s = new SessionStore(dir, vault, mine, 1)) {
+            for (int i = 0; i < contacts; i++) {
+                s.put("peer" + i, E2eeSession.create(mine, EcdhUtil.generateKeyPair().getPublic()));
+            }
+        }
+
+        // 메모리에 하나만 → 매번 파일에서
+        cold = new SessionStore(dir, vault, mine, 1);
+        hot = new SessionStore(dir, vault, mine, SessionStore.DEFAULT_MAX_IN_MEMORY);
+        hot.get("peer0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cold.close();
+        hot.close();
+        vault.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public int open() throws IOException {
+        try (SessionStore s = new SessionStore(dir, vault, mine, SessionStore.DEFAULT_MAX_IN_MEMORY)) {
+            return s.size();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public E2eeSession coldGet() {
+        next = (next + 1) % contacts;
+        return cold.get("peer" + next);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public E2eeSession hotGet() {
+        return hot.get("peer0");
+    }
+}
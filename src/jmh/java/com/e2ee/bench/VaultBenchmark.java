@@ -0,0 +1,59 @@
+package com.e2ee.bench;
+
+import com.e2ee.client.store.UnlockedVault;
+import com.e2ee.crypto.AesGcmUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 로컬 보관소 암호화 한 건 (개인키 크기 48바이트).
+ *
+ *   passwordEncrypt : 예전 방식, 호출마다 PBKDF2(65,536회) + AES-GCM
+ *   vaultEncrypt    : UnlockedVault, 로그인 때 한 번 파생한 키로 AES-GCM만
+ *   vaultMac        : SessionStore 색인 키 한 건 (용도별 키로 HMAC)
+ *   unlock          : 로그인/잠금 해제 때 한 번 내는 비용
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VaultBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private final byte[] raw = new byte[48];
+    private UnlockedVault vault;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vault = UnlockedVault.unlock(PASSWORD, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        vault.close();
+    }
+
+    @Benchmark
+    public byte[] passwordEncrypt() throws Exception {
+        return AesGcmUtil.encryptBytes(raw, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] vaultEncrypt() throws Exception {
+        return vault.encrypt(raw);
+    }
+
+    @Benchmark
+    public byte[] vaultMac() throws Exception {
+        return vault.mac("session-index", raw);
+    }
+
+    @Benchmark
+    public void unlock() throws Exception {
+        vault.unlock(PASSWORD);
+    }
+}
@@ -0,0 +1,252 @@
+package com.e2ee.loadgen;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 셀렉터 스레드 하나와 그 스레드가 맡은 클라이언트들.
+ *
+ * 한 바퀴(최대 1ms)마다:
+ *   1) 읽을 수 있는 연결을 읽어 프레임 처리 (복호화, 지연 기록)
+ *   2) 램프: 예정보다 덜 붙었으면 새로 접속
+ *   3) 때가 된 타이머 (BUSY 재시도, 끊긴 연결 재접속)
+ *   4) 트래픽: 시작 후 지난 시간 × 초당 동작 수만큼 동작을 꺼내 접속 중인 클라이언트에 무작위로 (open loop)
+ *   5) 이번 바퀴에 쌓인 프레임을 클라이언트마다 한 번에 write
+ *
+ * 동작마다 예정 시각을 정해 두고 그 시각부터 지연을 잰다 → 이 스레드가 밀려도 지연이 작게 보이지 않는다.
+ */
+final class ClientLoop implements Runnable {
+
+    // 한 바퀴에 꺼내는 최대 동작 수 (밀렸을 때 읽기를 굶기지 않게)
+    private static final int MAX_OPS_PER_TICK = 2000;
+
+    final LoadConfig config;
+    final LatencyStats stats;
+    final SecretKey groupKey;
+    final String padding;
+    final Selector selector;
+    final Random random = new Random();
+
+    private final List<SimClient> clients = new ArrayList<>();
+    private final ArrayList<SimClient> ready = new ArrayList<>();
+    private final ArrayList<SimClient> dirty = new ArrayList<>();
+    private final PriorityQueue<SimClient> timers = new PriorityQueue<>(Comparator.comparingLong(c -> c.wakeAt));
+    private final ByteBuffer readBuf = ByteBuffer.allocateDirect(64 * 1024);
+
+    private final double rampPerNano;
+    private final double ratePerNano;
+    private int connected;
+    private long issued;
+
+    // 다른 스레드(LoadGenMain)가 바꾸는 것
+    private volatile long trafficStart;
+    private volatile boolean stormRequested;
+    private volatile boolean stopped;
+    private volatile int online;
+
+    ClientLoop(LoadConfig config, LatencyStats stats, SecretKey groupKey, String padding) throws IOException {
+        this.config = config;
+        this.stats = stats;
+        this.groupKey = groupKey;
+        this.padding = padding;
+        this.selector = Selector.open();
+        this.rampPerNano = config.ramp / (double) config.threads / 1e9;
+        this.ratePerNano = config.rate / (double) config.threads / 1e9;
+    }
+
+    // 스레드 시작 전에만
+    void add(SimClient c) {
+        clients.add(c);
+    }
+
+    int getOnline() {
+        return online;
+    }
+
+    void startTraffic(long startNanos) {
+        trafficStart = startNanos;
+    }
+
+    void stopTraffic() {
+        trafficStart = 0;
+    }
+
+    void storm() {
+        stormRequested = true;
+    }
+
+    void stop() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    // ---------------- SimClient가 부르는 것 ----------------
+
+    void addReady(SimClient c) {
+        if (c.readyIndex >= 0) return;
+        c.readyIndex = ready.size();
+        ready.add(c);
+        online = ready.size();
+    }
+
+    void removeReady(SimClient c) {
+        int i = c.readyIndex;
+        if (i < 0) return;
+        SimClient last = ready.remove(ready.size() - 1);
+        if (last != c) {
+            ready.set(i, last);
+            last.readyIndex = i;
+        }
+        c.readyIndex = -1;
+        online = ready.size();
+    }
+
+    void markDirty(SimClient c) {
+        if (c.dirty) return;
+        c.dirty = true;
+        dirty.add(c);
+    }
+
+    void schedule(SimClient c, long wakeAt) {
+        timers.remove(c);
+        c.wakeAt = wakeAt;
+        timers.add(c);
+    }
+
+    // ---------------- 루프 ----------------
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        while (!stopped) {
+            try {
+                selector.select(1);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey k = it.next();
+                it.remove();
+                SimClient c = (SimClient) k.attachment();
+                try {
+                    if (!k.isValid()) continue;
+                    if (k.isConnectable()) c.onConnectable();
+                    if (k.isValid() && k.isReadable()) c.onReadable(readBuf);
+                    if (k.isValid() && k.isWritable()) c.flush();
+                } catch (IOException | RuntimeException e) {
+                    c.dropped(e);
+                }
+            }
+
+            long now = System.nanoTime();
+            ramp(now - start, now);
+            runTimers(now);
+            if (stormRequested) {
+                stormRequested = false;
+                storm(now);
+            }
+            traffic(now);
+            flushDirty();
+        }
+
+        for (SimClient c : clients) c.close();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void ramp(long elapsed, long now) {
+        long target = Math.min(clients.size(), 1 + (long) (elapsed * rampPerNano));
+        while (connected < target) {
+            SimClient c = clients.get(connected++);
+            try {
+                c.connect(now);
+            } catch (IOException e) {
+                c.dropped(e);
+            }
+        }
+    }
+
+    private void runTimers(long now) {
+        while (!timers.isEmpty() && timers.peek().wakeAt <= now) {
+            SimClient c = timers.poll();
+            try {
+                c.wake(now);
+            } catch (IOException e) {
+                c.dropped(e);
+            }
+        }
+    }
+
+    // 접속 중인 클라이언트 중 storm-fraction 만큼이 한꺼번에 끊고 다시 로그인
+    private void storm(long now) {
+        for (SimClient c : new ArrayList<>(ready)) {
+            if (random.nextDouble() >= config.stormFraction) continue;
+            try {
+                c.relogin(now);
+            } catch (IOException e) {
+                c.dropped(e);
+            }
+        }
+    }
+
+    private void traffic(long now) {
+        long startNanos = trafficStart;
+        if (startNanos == 0) {
+            issued = 0;
+            return;
+        }
+
+        long due = (long) ((now - startNanos) * ratePerNano);
+        int budget = MAX_OPS_PER_TICK;
+        while (issued < due && budget-- > 0) {
+            long planned = startNanos + (long) (issued / ratePerNano);
+            issued++;
+            if (ready.isEmpty()) {
+                stats.count("no_client_online");
+                continue;
+            }
+
+            SimClient c = ready.get(random.nextInt(ready.size()));
+            try {
+                switch (config.mix.pick(random)) {
+                    case DIRECT -> {
+                        if (!c.sendDirect(planned, random)) continue;
+                    }
+                    case BROADCAST -> c.sendBroadcast(planned);
+                    case KEY -> c.sendKeyRequest(planned, config.userId(random.nextInt(config.clients)));
+                    case LOGIN -> c.relogin(planned);
+                }
+                stats.sent.increment();
+            } catch (IOException e) {
+                c.dropped(e);
+            } catch (Exception e) {
+                stats.count("send_fail:" + e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private void flushDirty() {
+        for (SimClient c : dirty) {
+            c.dirty = false;
+            try {
+                c.flush();
+            } catch (IOException e) {
+                c.dropped(e);
+            }
+        }
+        dirty.clear();
+    }
+}
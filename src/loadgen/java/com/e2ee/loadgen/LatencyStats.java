@@ -0,0 +1,120 @@
+package com.e2ee.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 종단 지연(마이크로초)과 건수.
+ *
+ * 지연은 "보내기로 예정한 시각 → 받는 쪽이 복호화를 끝낸 시각"이다.
+ * 실제로 보낸 시각이 아니라 예정 시각부터 재므로 부하 생성기가 밀리면 그만큼 지연으로 잡힌다 (coordinated omission 보정).
+ *
+ * 셀렉터 스레드들이 HdrHistogram Recorder에 바로 기록하고 (대기 없음),
+ * 보고 스레드가 1초마다 구간 히스토그램을 떼어 가서 누적한다.
+ */
+final class LatencyStats {
+
+    enum Metric {
+        DIRECT("1:1"),
+        BROADCAST("전체방"),
+        KEY("키 요청"),
+        LOGIN("재로그인"),
+        OFFLINE("오프라인 전달"),
+        SIGNUP("가입");
+
+        final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+    private static final long HIGHEST_MICROS = 3_600_000_000L;
+
+    private final Recorder[] recorders = new Recorder[METRICS.length];
+    private final Histogram[] totals = new Histogram[METRICS.length];
+    private Histogram[] intervals = new Histogram[METRICS.length];
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder received = new LongAdder();
+    private final Map<String, LongAdder> events = new ConcurrentHashMap<>();
+
+    LatencyStats() {
+        for (int i = 0; i < METRICS.length; i++) {
+            recorders[i] = new Recorder(HIGHEST_MICROS, 3);
+            totals[i] = new Histogram(HIGHEST_MICROS, 3);
+        }
+    }
+
+    // 셀렉터 스레드
+    void record(Metric m, long startNanos, long endNanos) {
+        long micros = Math.max(0, (endNanos - startNanos) / 1000);
+        recorders[m.ordinal()].recordValue(Math.min(micros, HIGHEST_MICROS));
+    }
+
+    // 시스템 알림, 오류 등 (이름별 건수)
+    void count(String event) {
+        events.computeIfAbsent(event, k -> new LongAdder()).increment();
+    }
+
+    // ---------------- 보고 스레드 ----------------
+
+    // 지난 호출 뒤 구간을 떼어 와 누적, 한 줄 요약
+    void interval(PrintStream out, long elapsedSec, int online, double seconds) {
+        StringBuilder line = new StringBuilder(String.format("[LOAD] %4ds 접속 %d", elapsedSec, online));
+        for (int i = 0; i < METRICS.length; i++) {
+            intervals[i] = recorders[i].getIntervalHistogram(intervals[i]);
+            totals[i].add(intervals[i]);
+            long n = intervals[i].getTotalCount();
+            if (n == 0) continue;
+            line.append(String.format(" | %s %.0f/s p99 %s", METRICS[i].label, n / seconds,
+                    millis(intervals[i].getValueAtPercentile(99))));
+        }
+        out.println(line);
+    }
+
+    // 워밍업 끝: 지금까지 누적한 것을 버림
+    void reset() {
+        for (int i = 0; i < METRICS.length; i++) {
+            intervals[i] = recorders[i].getIntervalHistogram(intervals[i]);
+            totals[i].reset();
+        }
+        sent.reset();
+        received.reset();
+        events.clear();
+    }
+
+    void report(PrintStream out, double seconds) {
+        out.println();
+        out.printf("[LOAD] 결과 (%.0f초, 워밍업 제외)%n", seconds);
+        out.printf("  보낸 동작 %d (%.0f/s), 받은 메시지 %d (%.0f/s)%n",
+                sent.sum(), sent.sum() / seconds, received.sum(), received.sum() / seconds);
+        out.printf("  %-12s %10s %10s %9s %9s %9s %9s %9s%n",
+                "", "건수", "/s", "p50", "p90", "p99", "p999", "max");
+        for (int i = 0; i < METRICS.length; i++) {
+            Histogram h = totals[i];
+            if (h.getTotalCount() == 0) continue;
+            out.printf("  %-12s %10d %10.0f %9s %9s %9s %9s %9s%n", METRICS[i].label,
+                    h.getTotalCount(), h.getTotalCount() / seconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+        }
+        if (!events.isEmpty()) {
+            Map<String, Long> sorted = new TreeMap<>();
+            events.forEach((k, v) -> sorted.put(k, v.sum()));
+            out.println("  이벤트 " + sorted);
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.e2ee.loadgen;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 부하 생성기 설정 (-Dload.* 시스템 속성, gradle에서는 -Pload.*).
+ *
+ *   load.servers    서버 주소 "host:port,..." (여러 노드면 클라이언트를 돌아가며 나눔), localhost만
+ *   load.clients    동시 접속 클라이언트 수
+ *   load.threads    셀렉터 스레드 수 (클라이언트를 나눠 맡음, 암호화/복호화도 이 스레드에서)
+ *   load.ramp       초당 새 연결 수 (accept 대기열이 넘치지 않게)
+ *   load.rate       초당 동작 수 (전체, 트래픽 구성에 따라 1:1 / 전체방 / 키 요청 / 재로그인)
+ *   load.mix        트래픽 구성 (TrafficMix 참고)
+ *   load.peers      클라이언트마다 1:1 상대 수 (앞뒤 이웃, 시작할 때 KEY_BATCH_REQ로 세션)
+ *   load.payload    1:1 / 전체방 평문 바이트 수
+ *   load.warmup     이 시간(초) 동안의 기록은 버림
+ *   load.duration   측정 시간(초)
+ *   load.storm-every / load.storm-fraction  N초마다 클라이언트 이 비율이 한꺼번에 끊고 다시 로그인 (0 = 끔)
+ *   load.prefix     사용자 아이디 앞부분 (기본: 실행마다 새로 → 매번 새로 가입)
+ */
+final class LoadConfig {
+
+    final List<InetSocketAddress> servers = new ArrayList<>();
+    final int clients = Integer.getInteger("load.clients", 1000);
+    final int threads = Integer.getInteger("load.threads", Runtime.getRuntime().availableProcessors());
+    final int ramp = Integer.getInteger("load.ramp", 2000);
+    final int rate = Integer.getInteger("load.rate", 1000);
+    final TrafficMix mix = TrafficMix.parse(System.getProperty("load.mix", "mixed"));
+    final int peers = Integer.getInteger("load.peers", 4);
+    final int payload = Integer.getInteger("load.payload", 100);
+    final int warmup = Integer.getInteger("load.warmup", 5);
+    final int duration = Integer.getInteger("load.duration", 60);
+    final int stormEvery = Integer.getInteger("load.storm-every", mix.stormEvery());
+    final double stormFraction = Double.parseDouble(System.getProperty("load.storm-fraction", "0.5"));
+    final String prefix = System.getProperty("load.prefix", "lg" + Long.toString(System.currentTimeMillis(), 36));
+    final String password = System.getProperty("load.password", "loadgen-pw");
+
+    LoadConfig() throws UnknownHostException {
+        for (String addr : System.getProperty("load.servers", "127.0.0.1:9000").split(",")) {
+            String a = addr.trim();
+            int colon = a.lastIndexOf(':');
+            InetAddress host = InetAddress.getByName(a.substring(0, colon));
+            // 남의 서버를 두드리지 않도록
+            if (!host.isLoopbackAddress()) {
+                throw new IllegalArgumentException("부하 생성기는 localhost 서버에만 붙습니다: " + a);
+            }
+            servers.add(new InetSocketAddress(host, Integer.parseInt(a.substring(colon + 1))));
+        }
+        if (clients < 2) throw new IllegalArgumentException("load.clients는 2 이상");
+        if (peers >= clients) throw new IllegalArgumentException("load.peers는 load.clients보다 작아야 함");
+    }
+
+    String userId(int index) {
+        return prefix + "u" + index;
+    }
+
+    @Override
+    public String toString() {
+        return "servers=" + servers + " clients=" + clients + " threads=" + threads + " ramp=" + ramp + "/s"
+                + " rate=" + rate + "/s mix=" + mix + " peers=" + peers + " payload=" + payload + "B"
+                + " warmup=" + warmup + "s duration=" + duration + "s"
+                + (stormEvery > 0 ? " storm=" + stormEvery + "s×" + stormFraction : "")
+                + " prefix=" + prefix;
+    }
+}
@@ -0,0 +1,108 @@
+package com.e2ee.loadgen;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.EcdhUtil;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+
+/**
+ * 채팅 서버 부하 생성기 (localhost 전용).
+ *
+ *   ./gradlew loadgen -Pload.clients=10000 -Pload.rate=5000 -Pload.mix=mixed -Pload.duration=60
+ *   scripts/run-loadgen.sh ...   (서버를 가입 해시 비용을 낮춰 띄우고 이것까지 실행)
+ *
+ * 실제 클라이언트 코드(ChatMessage, BinaryFrameCodec, E2eeSession, EcdhUtil, AesGcmUtil)로 프로토콜을 그대로 말한다.
+ * 클라이언트 수만큼 스레드를 만들지 않고 셀렉터 스레드 몇 개(load.threads)가 나눠 맡는다.
+ *
+ * 순서: 키쌍 생성 → 램프(초당 load.ramp개 접속 + 가입) → 워밍업 → 측정(load.duration초) → 결과.
+ * 1초마다 구간 처리량/p99를, 끝에 종류별 건수, 초당 건수, p50/p90/p99/p999/max를 찍는다 (LatencyStats).
+ *
+ * 같은 기계에서 서버와 CPU를 나눠 쓰므로 결과는 "이 기계에서 서버+클라이언트" 기준이다.
+ * 클라이언트 수만 개면 ulimit -n (양쪽 프로세스)과 로컬 포트 범위가 충분해야 한다.
+ */
+public class LoadGenMain {
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = new LoadConfig();
+        System.out.println("[LOAD] " + config);
+
+        LatencyStats stats = new LatencyStats();
+        SecretKey groupKey = AesGcmUtil.generateKey();
+        String padding = "x".repeat(Math.max(0, config.payload - 20));
+
+        ClientLoop[] loops = new ClientLoop[config.threads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new ClientLoop(config, stats, groupKey, padding);
+        }
+
+        // 클라이언트 i의 1:1 상대: 앞뒤 이웃 (i±1, i±2, ...) → 서로가 서로의 상대라 양쪽 다 세션이 생긴다
+        System.out.println("[LOAD] 키쌍 " + config.clients + "개 생성 중...");
+        for (int i = 0; i < config.clients; i++) {
+            String[] peers = new String[config.peers];
+            for (int d = 0; d < config.peers; d++) {
+                int step = d / 2 + 1;
+                int j = (d % 2 == 0) ? i + step : i - step;
+                peers[d] = config.userId(Math.floorMod(j, config.clients));
+            }
+            KeyPair keyPair = EcdhUtil.generateKeyPair();
+            ClientLoop loop = loops[i % loops.length];
+            loop.add(new SimClient(config.userId(i), peers, keyPair,
+                    config.servers.get(i % config.servers.size()), loop));
+        }
+
+        Thread[] threads = new Thread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            threads[i] = new Thread(loops[i], "loadgen-" + i);
+            threads[i].start();
+        }
+
+        // 램프: 다 붙을 때까지 (예상 시간의 두 배 + 10초까지만 기다림)
+        long rampStart = System.nanoTime();
+        long rampLimit = rampStart + (2L * config.clients / Math.max(1, config.ramp) + 10) * 1_000_000_000L;
+        while (online(loops) < config.clients && System.nanoTime() < rampLimit) {
+            Thread.sleep(1000);
+            stats.interval(System.out, (System.nanoTime() - rampStart) / 1_000_000_000L, online(loops), 1.0);
+        }
+        System.out.println("[LOAD] 접속 " + online(loops) + "/" + config.clients + " → 트래픽 시작");
+
+        long trafficStart = System.nanoTime();
+        for (ClientLoop l : loops) l.startTraffic(trafficStart);
+
+        int total = config.warmup + config.duration;
+        long measureStart = trafficStart;
+        for (int sec = 1; sec <= total; sec++) {
+            long wakeAt = trafficStart + sec * 1_000_000_000L;
+            Thread.sleep(Math.max(0, (wakeAt - System.nanoTime()) / 1_000_000));
+
+            if (sec == config.warmup) {
+                stats.reset();
+                measureStart = System.nanoTime();
+                System.out.println("[LOAD] 워밍업 끝 → 측정 시작");
+                continue;
+            }
+            if (config.stormEvery > 0 && sec > config.warmup && (sec - config.warmup) % config.stormEvery == 0) {
+                System.out.println("[LOAD] 로그인 폭주: 접속 중인 클라이언트의 " + config.stormFraction);
+                for (ClientLoop l : loops) l.storm();
+            }
+            stats.interval(System.out, sec, online(loops), 1.0);
+        }
+
+        for (ClientLoop l : loops) l.stopTraffic();
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+
+        // 가는 중인 메시지를 조금 더 받고 마무리
+        Thread.sleep(2000);
+        stats.interval(System.out, total + 2, online(loops), 2.0);
+        for (ClientLoop l : loops) l.stop();
+        for (Thread t : threads) t.join();
+
+        stats.report(System.out, seconds);
+    }
+
+    private static int online(ClientLoop[] loops) {
+        int n = 0;
+        for (ClientLoop l : loops) n += l.getOnline();
+        return n;
+    }
+}
@@ -0,0 +1,381 @@
+package com.e2ee.loadgen;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.BinaryFrameCodec;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.FrameCodec;
+import com.e2ee.protocol.MessageType;
+import com.e2ee.session.E2eeSession;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 가상 클라이언트 하나 (ClientMain과 같은 프로토콜, 바이너리 코덱).
+ *
+ * 접속 → PREAMBLE 핸드셰이크 → AUTH_SIGNUP (두 번째부터는 AUTH_LOGIN) → KEY_BATCH_REQ로 이웃 상대 공개키
+ * → 1:1은 E2eeSession(ECDH + HKDF, 카운터 nonce)으로 암호화해서 주고받는다.
+ * 평문 맨 앞에 보내기로 예정한 System.nanoTime()을 넣어 받는 쪽이 복호화한 뒤 지연을 잰다 (같은 프로세스라 시계가 같다).
+ *
+ * 모든 메서드는 이 클라이언트를 맡은 ClientLoop 스레드에서만 불린다 (잠금 없음).
+ */
+final class SimClient {
+
+    enum State { IDLE, CONNECTING, HANDSHAKE, AUTH, READY }
+
+    private static final FrameCodec CODEC = FrameCodec.BINARY;
+    private static final byte[] PREAMBLE = BinaryFrameCodec.PREAMBLE;
+    private static final String TIMESTAMP = "2025-11-21T00:00:00";
+    private static final String TAG_SUFFIX = "#0001";
+
+    final String id;
+    final String tag;
+    private final String[] peers;
+    private final KeyPair keyPair;
+    private final String publicKey;
+    private final InetSocketAddress server;
+    private final ClientLoop loop;
+    private final LatencyStats stats;
+
+    // 상대 아이디 → 세션 (이웃 상대만)
+    private final Map<String, E2eeSession> sessions = new HashMap<>();
+    // KEY_REQ 보낸 상대 → 예정 시각
+    private final Map<String, Long> pendingKeys = new HashMap<>();
+    private boolean batchPending;
+
+    State state = State.IDLE;
+    private SocketChannel channel;
+    private SelectionKey key;
+
+    private byte[] in = new byte[2048];
+    private int inLen;
+    private ByteBuffer out = ByteBuffer.allocate(1024);   // 쓰기 모드 (position = 쌓인 바이트 끝)
+
+    private boolean signedUp;
+    private boolean relogin;
+    private long connectStart;
+    private long onlineSince;
+    private int authAttempts;
+
+    // ClientLoop가 쓰는 자리
+    long wakeAt;
+    int readyIndex = -1;
+    boolean dirty;
+
+    SimClient(String id, String[] peers, KeyPair keyPair, InetSocketAddress server, ClientLoop loop) {
+        this.id = id;
+        this.tag = id + TAG_SUFFIX;
+        this.peers = peers;
+        this.keyPair = keyPair;
+        this.publicKey = EcdhUtil.encodePublicKey(keyPair.getPublic());
+        this.server = server;
+        this.loop = loop;
+        this.stats = loop.stats;
+    }
+
+    // ---------------- 연결 ----------------
+
+    void connect(long startNanos) throws IOException {
+        connectStart = startNanos;
+        inLen = 0;
+        out.clear();
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        state = State.CONNECTING;
+        if (channel.connect(server)) {
+            key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            connected();
+        } else {
+            key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+        }
+    }
+
+    void onConnectable() throws IOException {
+        channel.finishConnect();
+        key.interestOps(SelectionKey.OP_READ);
+        connected();
+    }
+
+    private void connected() {
+        state = State.HANDSHAKE;
+        append(PREAMBLE);
+    }
+
+    // 끊고 바로 다시 로그인 (login 동작, 로그인 폭주)
+    void relogin(long startNanos) throws IOException {
+        close();
+        relogin = true;
+        connect(startNanos);
+    }
+
+    // 읽기/쓰기 실패 → 1초 뒤 다시 접속
+    void dropped(Exception e) {
+        stats.count("disconnect:" + e.getClass().getSimpleName());
+        close();
+        relogin = true;
+        loop.schedule(this, System.nanoTime() + 1_000_000_000L);
+    }
+
+    void close() {
+        loop.removeReady(this);
+        state = State.IDLE;
+        if (key != null) key.cancel();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        key = null;
+        channel = null;
+    }
+
+    // schedule()한 시각이 됨: 접속 전이면 다시 접속, 인증 중이면 인증 다시 (BUSY)
+    void wake(long now) throws IOException {
+        if (state == State.IDLE) connect(now);
+        else if (state == State.AUTH) sendAuth();
+    }
+
+    // ---------------- 읽기 ----------------
+
+    void onReadable(ByteBuffer buf) throws IOException {
+        while (true) {
+            buf.clear();
+            int n = channel.read(buf);
+            if (n < 0) throw new IOException("서버가 연결을 닫음");
+            if (n == 0) break;
+            buf.flip();
+            if (in.length - inLen < n) in = Arrays.copyOf(in, Math.max(in.length * 2, inLen + n));
+            buf.get(in, inLen, n);
+            inLen += n;
+        }
+        parse();
+    }
+
+    private void parse() throws IOException {
+        int off = 0;
+        if (state == State.HANDSHAKE) {
+            if (inLen < PREAMBLE.length) return;
+            if (!Arrays.equals(in, 0, PREAMBLE.length, PREAMBLE, 0, PREAMBLE.length)) {
+                throw new IOException("서버가 바이너리 코덱을 지원하지 않음");
+            }
+            off = PREAMBLE.length;
+            state = State.AUTH;
+            authAttempts = 0;
+            sendAuth();
+        }
+
+        while (off < inLen && channel != null) {
+            int[] varint = BinaryFrameCodec.readVarint(in, off, inLen);
+            if (varint == null || off + varint[1] + varint[0] > inLen) break;
+            ChatMessage msg = CODEC.decode(in, off + varint[1], varint[0]);
+            off += varint[1] + varint[0];
+            try {
+                handle(msg);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                stats.count("fail:" + msg.getType() + ":" + e.getClass().getSimpleName());
+            }
+        }
+
+        if (channel == null) return;   // handle 중에 닫힘
+        System.arraycopy(in, off, in, 0, inLen - off);
+        inLen -= off;
+    }
+
+    private void handle(ChatMessage msg) throws Exception {
+        switch (msg.getType()) {
+            case AUTH_RESULT -> onAuthResult(msg.getBody());
+            case CHAT -> onChat(msg);
+            case KEY_RES -> onKeyResponse(msg);
+            case KEY_BATCH_RES -> onKeyBatch(msg.getBody());
+            case OFFLINE_BATCH -> {
+                String last = JsonParser.parseString(msg.getBody()).getAsJsonObject().get("last").getAsString();
+                send(new ChatMessage(MessageType.OFFLINE_ACK, tag, "server", last, TIMESTAMP));
+            }
+            case SYSTEM -> onSystem(msg.getBody());
+            default -> stats.count("ignored:" + msg.getType());
+        }
+    }
+
+    private void onAuthResult(String body) throws IOException {
+        if (body.startsWith("SIGNUP_OK") || body.startsWith("LOGIN_OK")) {
+            long now = System.nanoTime();
+            stats.record(relogin ? LatencyStats.Metric.LOGIN : LatencyStats.Metric.SIGNUP, connectStart, now);
+            signedUp = true;
+            onlineSince = now;
+            state = State.READY;
+            loop.addReady(this);
+            requestMissingKeys();
+        } else if (body.endsWith(":BUSY")) {
+            // 서버 KDF 대기열이 가득 참 → ClientMain처럼 조금 기다렸다 다시
+            stats.count("auth_busy");
+            authAttempts++;
+            loop.schedule(this, System.nanoTime() + (200L * authAttempts + loop.random.nextInt(200)) * 1_000_000L);
+        } else if (body.equals("SIGNUP_FAIL:ID_EXISTS")) {
+            signedUp = true;
+            sendAuth();
+        } else {
+            stats.count("auth_fail:" + body);
+            close();
+        }
+    }
+
+    private void sendAuth() {
+        String body = "{\"id\":\"" + id + "\",\"password\":\"" + loop.config.password + "\","
+                + "\"publicKey\":\"" + publicKey + "\"}";
+        send(new ChatMessage(signedUp ? MessageType.AUTH_LOGIN : MessageType.AUTH_SIGNUP, id, "server", body, TIMESTAMP));
+    }
+
+    private void onChat(ChatMessage msg) throws Exception {
+        String plain;
+        LatencyStats.Metric metric;
+        if ("ALL".equalsIgnoreCase(msg.getReceiver())) {
+            if (tag.equals(msg.getSender())) return;
+            plain = AesGcmUtil.decrypt(EncryptedPayload.fromWireString(msg.getBody()), loop.groupKey);
+            metric = LatencyStats.Metric.BROADCAST;
+        } else {
+            E2eeSession session = sessions.get(userIdOf(msg.getSender()));
+            if (session == null) {
+                // 상대가 나보다 늦게 가입해서 처음 요청 때 missing이었음 → 다시 요청 (그 사이 것은 못 푼다)
+                stats.count("recv_no_session");
+                requestMissingKeys();
+                return;
+            }
+            plain = session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+            metric = LatencyStats.Metric.DIRECT;
+        }
+
+        long sentAt = Long.parseLong(plain.substring(0, plain.indexOf(' ')));
+        // 내가 없는 동안 보낸 것 → 받은편지함을 거쳐 왔다
+        if (sentAt < onlineSince) metric = LatencyStats.Metric.OFFLINE;
+        stats.record(metric, sentAt, System.nanoTime());
+        stats.received.increment();
+    }
+
+    // 본문: {"keys":{주인 ID:공개키}} (보낸 사람은 server)
+    private void onKeyResponse(ChatMessage msg) throws Exception {
+        for (Map.Entry<String, JsonElement> e : JsonParser.parseString(msg.getBody()).getAsJsonObject()
+                .getAsJsonObject("keys").entrySet()) {
+            String owner = userIdOf(e.getKey());
+            Long start = pendingKeys.remove(owner);
+            E2eeSession session = E2eeSession.create(keyPair, EcdhUtil.decodePublicKey(e.getValue().getAsString()));
+            if (isPeer(owner)) sessions.put(owner, session);
+            if (start != null) stats.record(LatencyStats.Metric.KEY, start, System.nanoTime());
+        }
+    }
+
+    private void onKeyBatch(String body) throws Exception {
+        batchPending = false;
+        JsonObject res = JsonParser.parseString(body).getAsJsonObject();
+        for (Map.Entry<String, JsonElement> e : res.getAsJsonObject("keys").entrySet()) {
+            String owner = userIdOf(e.getKey());
+            if (isPeer(owner) && !sessions.containsKey(owner)) {
+                sessions.put(owner, E2eeSession.create(keyPair, EcdhUtil.decodePublicKey(e.getValue().getAsString())));
+            }
+        }
+    }
+
+    private void onSystem(String body) {
+        if (body == null) return;
+        if (body.startsWith("NO_SUCH_USER:")) pendingKeys.remove(body.substring("NO_SUCH_USER:".length()));
+        int colon = body.indexOf(':');
+        stats.count("system:" + (colon < 0 ? body : body.substring(0, colon)));
+    }
+
+    // 아직 세션이 없는 이웃 (상대가 아직 가입 전이면 missing → 다음 1:1 차례에 다시)
+    private void requestMissingKeys() {
+        if (batchPending) return;
+        List<String> missing = new ArrayList<>();
+        for (String p : peers) {
+            if (!sessions.containsKey(p)) missing.add(p);
+        }
+        if (missing.isEmpty()) return;
+        batchPending = true;
+        send(ChatMessage.keyBatchRequest(tag, missing, TIMESTAMP));
+    }
+
+    // ---------------- 동작 (예정 시각 startNanos) ----------------
+
+    boolean sendDirect(long startNanos, Random random) throws Exception {
+        if (sessions.size() < peers.length) requestMissingKeys();
+        int first = random.nextInt(peers.length);
+        for (int i = 0; i < peers.length; i++) {
+            String peer = peers[(first + i) % peers.length];
+            E2eeSession session = sessions.get(peer);
+            if (session == null) continue;
+            send(ChatMessage.encryptedChat(tag, peer + TAG_SUFFIX, startNanos + " " + loop.padding, session, TIMESTAMP));
+            return true;
+        }
+        stats.count("send_no_session");
+        return false;
+    }
+
+    void sendBroadcast(long startNanos) throws Exception {
+        String body = AesGcmUtil.encrypt(startNanos + " " + loop.padding, loop.groupKey).toWireString();
+        send(new ChatMessage(MessageType.CHAT, tag, "ALL", body, TIMESTAMP));
+    }
+
+    void sendKeyRequest(long startNanos, String target) {
+        pendingKeys.put(target, startNanos);
+        send(ChatMessage.keyRequest(tag, target, keyPair.getPublic(), TIMESTAMP));
+    }
+
+    // ---------------- 쓰기 ----------------
+
+    private void send(ChatMessage msg) {
+        append(CODEC.encode(msg));
+    }
+
+    private void append(byte[] frame) {
+        if (out.remaining() < frame.length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + frame.length));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+        out.put(frame);
+        loop.markDirty(this);
+    }
+
+    // 쌓인 것을 소켓에 (다 못 쓰면 OP_WRITE로 나머지)
+    void flush() throws IOException {
+        if (channel == null || state == State.CONNECTING || out.position() == 0) return;
+        out.flip();
+        channel.write(out);
+        out.compact();
+        key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    // ---------------- 그 밖 ----------------
+
+    private boolean isPeer(String user) {
+        for (String p : peers) {
+            if (p.equals(user)) return true;
+        }
+        return false;
+    }
+
+    private static String userIdOf(String tag) {
+        int i = tag.indexOf('#');
+        return i < 0 ? tag : tag.substring(0, i);
+    }
+}
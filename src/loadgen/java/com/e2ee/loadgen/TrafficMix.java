@@ -0,0 +1,82 @@
+package com.e2ee.loadgen;
+
+import java.util.Random;
+
+/**
+ * 동작 하나마다 무엇을 할지 (가중치).
+ *
+ *   direct     1:1 CHAT (이웃 상대 하나에게, E2eeSession으로 암호화)
+ *   broadcast  전체방 CHAT (receiver = ALL, 접속한 모두가 받아서 푼다 → 클라이언트 수만큼 부하가 커짐)
+ *   key        아무 사용자에게 KEY_REQ → KEY_RES로 ECDH + HKDF
+ *   login      끊고 다시 접속해서 로그인 (그 사이 온 메시지는 오프라인 받은편지함으로)
+ *
+ * 이름으로 고르거나 (chat, broadcast, keys, churn, storm, mixed) "direct=90,key=10" 처럼 직접 적는다.
+ * storm은 1:1만 보내면서 load.storm-every(기본 10초)마다 한꺼번에 재로그인.
+ */
+final class TrafficMix {
+
+    enum Op { DIRECT, BROADCAST, KEY, LOGIN }
+
+    private static final Op[] OPS = Op.values();
+
+    private final String name;
+    private final int[] cumulative = new int[OPS.length];
+    private final int total;
+    private final int stormEvery;
+
+    private TrafficMix(String name, int[] weights, int stormEvery) {
+        this.name = name;
+        int sum = 0;
+        for (int i = 0; i < OPS.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("가중치 합이 0: " + name);
+        this.total = sum;
+        this.stormEvery = stormEvery;
+    }
+
+    static TrafficMix parse(String spec) {
+        switch (spec.trim().toLowerCase()) {
+            case "chat":      return new TrafficMix("chat", new int[]{100, 0, 0, 0}, 0);
+            case "broadcast": return new TrafficMix("broadcast", new int[]{95, 5, 0, 0}, 0);
+            case "keys":      return new TrafficMix("keys", new int[]{50, 0, 50, 0}, 0);
+            case "churn":     return new TrafficMix("churn", new int[]{80, 0, 0, 20}, 0);
+            case "storm":     return new TrafficMix("storm", new int[]{100, 0, 0, 0}, 10);
+            case "mixed":     return new TrafficMix("mixed", new int[]{93, 1, 4, 2}, 0);
+            default:
+        }
+
+        int[] weights = new int[OPS.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("load.mix 형식: direct=90,key=10 (" + spec + ")");
+            weights[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        return new TrafficMix(spec, weights, 0);
+    }
+
+    Op pick(Random random) {
+        int r = random.nextInt(total);
+        for (int i = 0; i < OPS.length; i++) {
+            if (r < cumulative[i]) return OPS[i];
+        }
+        return OPS[OPS.length - 1];
+    }
+
+    int stormEvery() {
+        return stormEvery;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(name).append('(');
+        int prev = 0;
+        for (int i = 0; i < OPS.length; i++) {
+            int w = cumulative[i] - prev;
+            prev = cumulative[i];
+            if (w > 0) b.append(b.charAt(b.length() - 1) == '(' ? "" : ",").append(OPS[i].name().toLowerCase()).append('=').append(w);
+        }
+        return b.append(')').toString();
+    }
+}
@@ -3,23 +3,32 @@ package com.e2ee.client;
 import com.e2ee.crypto.EncryptedPayload;
 import com.e2ee.crypto.EcdhUtil;
 import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.FrameChannel;
 import com.e2ee.protocol.JsonUtil;
 import com.e2ee.protocol.MessageType;
 import com.e2ee.session.E2eeSession;
+import com.e2ee.session.FileStream;
+import com.e2ee.session.GroupSessions;
 import com.e2ee.client.store.KeyVault;   // 🔥 KeyVault 임포트
+import com.e2ee.client.store.SessionStore;
+import com.e2ee.client.store.UnlockedVault;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -43,9 +52,34 @@ public class ClientMain {
     // 현재 대화 상대
     private static String currentTarget = null;
 
-    // 상대 userTag → 세션 객체
-    private static final Map<String, E2eeSession> sessions = new HashMap<>();
+    // 상대 userTag → 세션 객체 (로컬 파일에 암호화 저장, 메모리에는 최근 것만)
+    private static SessionStore sessions;
+    private static UnlockedVault vault;
 
+    // 방마다 sender key (방 메시지는 멤버 수와 상관없이 한 번만 암호화)
+    private static GroupSessions groups;
+
+    // 파일 주고받기 (/file)
+    private static FileTransfers files;
+
+
+    // 목록에서 처음으로 붙는 서버 (노드 하나가 죽어 있어도 다음 노드로)
+    private static Socket connect(String servers) throws IOException {
+        IOException last = null;
+        for (String addr : servers.split(",")) {
+            String a = addr.trim();
+            int colon = a.lastIndexOf(':');
+            try {
+                Socket s = new Socket();
+                s.connect(new InetSocketAddress(a.substring(0, colon), Integer.parseInt(a.substring(colon + 1))), 2000);
+                return s;
+            } catch (IOException e) {
+                System.out.println("[NET] " + a + " 접속 실패: " + e.getMessage());
+                last = e;
+            }
+        }
+        throw last != null ? last : new IOException("e2ee.servers가 비어 있음");
+    }
 
     public static void main(String[] args) throws Exception {
 
@@ -54,18 +88,15 @@ public class ClientMain {
         // ===========================
         // 0) 서버 연결
         // ===========================
+        // -De2ee.servers=host:port,host:port,... 여러 노드면 붙는 첫 번째로 (기본 127.0.0.1:9000)
         System.out.println("[NET] 서버에 접속 시도 중...");
-        Socket socket = new Socket("127.0.0.1", 9000);
-        System.out.println("[NET] 서버에 연결되었습니다!");
-
-        PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
-                true
-        );
+        Socket socket = connect(System.getProperty("e2ee.servers", "127.0.0.1:9000"));
+        System.out.println("[NET] 서버에 연결되었습니다! (" + socket.getRemoteSocketAddress() + ")");
 
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
-        );
+        // -De2ee.codec=binary 로 실행하면 바이너리 프레임 사용 (기본은 JSON 줄)
+        boolean binary = "binary".equalsIgnoreCase(System.getProperty("e2ee.codec"));
+        FrameChannel channel = FrameChannel.open(socket, binary);
+        System.out.println("[NET] 코덱: " + channel.getCodec().name());
 
 
         // ===========================
@@ -98,7 +129,10 @@ public class ClientMain {
         // 🔥 2) 로컬 KeyVault에서 키 불러오기 or 자동 생성
         // ===========================
         System.out.println("[KEYVAULT] 키 로드 또는 생성 중...");
-        myKeyPair = KeyVault.loadOrCreate(id, pw);     // 🔥 핵심
+        // PBKDF2는 여기서 한 번만 → 보관소 키를 들고 있다가 -De2ee.vaultIdleMillis 동안 안 쓰면 잠근다
+        vault = UnlockedVault.unlock(pw,
+                Long.getLong("e2ee.vaultIdleMillis", UnlockedVault.DEFAULT_IDLE_MILLIS));
+        myKeyPair = KeyVault.loadOrCreate(id, vault);     // 🔥 핵심
         myPrivateKey = myKeyPair.getPrivate();
         myPublicKey  = myKeyPair.getPublic();
 
@@ -106,6 +140,12 @@ public class ClientMain {
 
         myTag = id + "#0001";
 
+        // 지난번에 만든 세션들 (열 때는 색인만, 세션은 상대와 처음 주고받을 때 읽음)
+        // -De2ee.sessionCache=N : 메모리에 둘 최대 세션 수
+        sessions = SessionStore.open(id, vault, myKeyPair,
+                Integer.getInteger("e2ee.sessionCache", SessionStore.DEFAULT_MAX_IN_MEMORY));
+        System.out.println("[SESSION] 저장된 세션 " + sessions.size() + "개");
+
 
         // ===========================
         // 3) 인증 요청 (공개키 포함!)
@@ -123,14 +163,18 @@ public class ClientMain {
                 "2025-11-19T00:00:00"
         );
 
-        writer.println(toJson(authMsg));
-        System.out.println("[SEND AUTH] " + toJson(authMsg));
+        // 인증 결과 읽기 (서버 KDF 대기열이 가득 차면 ...:BUSY → 조금 기다렸다 다시)
+        ChatMessage authRes;
+        for (int attempt = 1; ; attempt++) {
+            channel.send(authMsg);
+            System.out.println("[SEND AUTH] " + toJson(authMsg));
 
-        // 인증 결과 읽기
-        String authLine = reader.readLine();
-        ChatMessage authRes = JsonUtil.fromJson(authLine, ChatMessage.class);
+            authRes = channel.receive();
+            System.out.println("[AUTH_RESULT] " + authRes.getBody());
 
-        System.out.println("[AUTH_RESULT] " + authRes.getBody());
+            if (!authRes.getBody().endsWith(":BUSY") || attempt >= 5) break;
+            Thread.sleep(200L * attempt + (long) (Math.random() * 200));
+        }
 
         if (!(authRes.getBody().startsWith("LOGIN_OK") ||
                 authRes.getBody().startsWith("SIGNUP_OK"))) {
@@ -141,6 +185,14 @@ public class ClientMain {
 
         System.out.println("[INFO] 인증 성공! 이제 키 교환/채팅 가능합니다.");
 
+        groups = new GroupSessions(myTag, myKeyPair, channel::send);
+
+        // -De2ee.downloadDir=경로 : 받은 파일 저장 위치, -De2ee.fileChunk=N : 보낼 때 조각 크기(바이트)
+        files = new FileTransfers(myTag, sessions, channel::send,
+                Paths.get(System.getProperty("e2ee.downloadDir",
+                        Paths.get(System.getProperty("user.home"), ".e2ee-chat", "downloads").toString())),
+                Integer.getInteger("e2ee.fileChunk", FileStream.DEFAULT_CHUNK_BYTES));
+
 
 
         // ===========================
@@ -148,25 +200,60 @@ public class ClientMain {
         // ===========================
         Thread recvThread = new Thread(() -> {
             try {
-                String line;
-                while ((line = reader.readLine()) != null) {
-
-                    ChatMessage msg = JsonUtil.fromJson(line, ChatMessage.class);
+                ChatMessage msg;
+                while ((msg = channel.receive()) != null) {
 
                     // 🔹 시스템 메시지
                     if (msg.getType() == MessageType.SYSTEM) {
                         System.out.println("[SERVER] " + msg.getBody());
+                        if (msg.getBody() != null && msg.getBody().startsWith("FILE_FAIL:")) {
+                            files.onServerFail(msg.getBody());
+                        }
+                        // 접속한 노드를 비우는 중 → 곧 끊긴다
+                        if (msg.getBody() != null && msg.getBody().startsWith("MOVED:")) {
+                            System.out.println("[NET] 이 서버는 곧 닫힙니다. -De2ee.servers="
+                                    + msg.getBody().substring("MOVED:".length()) + " 로 다시 실행하세요.");
+                        }
                     }
 
-                    // 🔹 KEY_RES (상대 공개키 수신)
-                    else if (msg.getType() == MessageType.KEY_RES) {
-
-                        PublicKey otherPub = EcdhUtil.decodePublicKey(msg.getBody());
+                    // 🔹 파일 (조각은 받는 대로 풀어서 파일에 씀)
+                    else if (msg.getType() == MessageType.FILE_OFFER) {
+                        files.onOffer(msg);
+                    }
+                    else if (msg.getType() == MessageType.FILE_CHUNK) {
+                        files.onChunk(msg);
+                    }
+                    else if (msg.getType() == MessageType.FILE_ACK) {
+                        files.onAck(msg);
+                    }
 
-                        E2eeSession session = E2eeSession.create(myKeyPair, otherPub);
-                        sessions.put(msg.getSender(), session);
+                    // 🔹 KEY_RES / KEY_BATCH_RES (상대 공개키 수신: /key, /keys 응답, 방 멤버, 로그인 직후 최근 상대들)
+                    // 본문: {"keys":{id:공개키},"missing":[..]} — 서버가 보낸 것만 믿는다 (다른 사용자가 릴레이한 것은 버림)
+                    else if (msg.getType() == MessageType.KEY_RES || msg.getType() == MessageType.KEY_BATCH_RES) {
 
-                        System.out.println("[INFO] " + msg.getSender() + " 과의 세션 생성 완료!");
+                        if (!"server".equals(msg.getSender())) {
+                            System.out.println("[WARN] 서버가 아닌 " + msg.getSender() + " 의 " + msg.getType() + " 무시");
+                        } else {
+                            JsonObject res = JsonParser.parseString(msg.getBody()).getAsJsonObject();
+                            int n = 0;
+                            for (Map.Entry<String, JsonElement> e : res.getAsJsonObject("keys").entrySet()) {
+                                PublicKey otherPub = EcdhUtil.decodePublicKey(e.getValue().getAsString());
+                                // 로그인할 때마다 같은 키가 다시 오므로, 이미 있으면 ECDH + HKDF를 하지 않는다
+                                if (!sessions.hasKey(e.getKey(), otherPub)) {
+                                    sessions.put(e.getKey(), E2eeSession.createRatcheting(myKeyPair, otherPub));
+                                }
+                                groups.onPeerKey(e.getKey(), otherPub);
+                                n++;
+                            }
+
+                            if (msg.getType() == MessageType.KEY_RES) {
+                                System.out.println("[INFO] " + String.join(", ", res.getAsJsonObject("keys").keySet())
+                                        + " 과의 세션 생성 완료!");
+                            } else {
+                                System.out.println("[INFO] 공개키 " + n + "명 세션 생성 완료"
+                                        + (res.getAsJsonArray("missing").size() > 0 ? " (없는 사용자: " + res.get("missing") + ")" : ""));
+                            }
+                        }
                     }
 
                     // 🔹 KEY_REQ (상대가 먼저 요청함)
@@ -174,8 +261,9 @@ public class ClientMain {
 
                         PublicKey otherPub = EcdhUtil.decodePublicKey(msg.getBody());
 
-                        E2eeSession session = E2eeSession.create(myKeyPair, otherPub);
-                        sessions.put(msg.getSender(), session);
+                        if (!sessions.hasKey(msg.getSender(), otherPub)) {
+                            sessions.put(msg.getSender(), E2eeSession.createRatcheting(myKeyPair, otherPub));
+                        }
 
                         System.out.println("[INFO] KEY_REQ: " + msg.getSender() + " 세션 저장됨");
 
@@ -187,7 +275,27 @@ public class ClientMain {
                                 "2025-11-19T00:00:00"
                         );
 
-                        writer.println(toJson(res));
+                        channel.send(res);
+                    }
+
+                    // 🔹 방 멤버 변동 / 방 체인 키
+                    else if (msg.getType() == MessageType.ROOM_MEMBERS) {
+                        groups.onMembers(msg.getBody());
+                    }
+                    else if (msg.getType() == MessageType.SENDER_KEY) {
+                        groups.onSenderKey(msg);
+                    }
+
+                    // 🔹 방 CHAT 메시지 (sender key)
+                    else if (msg.getType() == MessageType.CHAT && GroupSessions.isRoom(msg.getReceiver())) {
+                        try {
+                            String plain = groups.decrypt(msg);
+                            if (plain != null) {
+                                System.out.println("[" + msg.getReceiver() + "] " + msg.getSender() + " : " + plain);
+                            }
+                        } catch (Exception e) {
+                            System.out.println("[" + msg.getReceiver() + ":RAW] " + msg.getSender() + " : " + e.getMessage());
+                        }
                     }
 
                     // 🔹 CHAT 메시지
@@ -200,12 +308,32 @@ public class ClientMain {
                         } else {
                             EncryptedPayload payload = EncryptedPayload.fromWireString(msg.getBody());
                             String plain = session.decrypt(payload);
+                            sessions.save(msg.getSender());
                             System.out.println("[CHAT] " + msg.getSender() + " : " + plain);
                         }
                     }
 
+                    // 🔹 HISTORY_RES (채팅 기록 한 페이지)
+                    else if (msg.getType() == MessageType.HISTORY_RES) {
+                        printHistory(msg.getBody());
+                    }
+
+                    // 🔹 OFFLINE_BATCH (없는 동안 쌓인 메시지 한 묶음 끝) → 받았다고 ACK
+                    else if (msg.getType() == MessageType.OFFLINE_BATCH) {
+                        JsonObject batch = JsonParser.parseString(msg.getBody()).getAsJsonObject();
+                        System.out.println("[OFFLINE] 묶음 수신 (남은 " + batch.get("remaining").getAsInt() + "건)");
+
+                        channel.send(new ChatMessage(
+                                MessageType.OFFLINE_ACK,
+                                myTag,
+                                "server",
+                                batch.get("last").getAsString(),
+                                "2025-11-19T00:00:00"
+                        ));
+                    }
+
                     else {
-                        System.out.println("[RAW] " + line);
+                        System.out.println("[RAW] " + toJson(msg));
                     }
                 }
 
@@ -232,6 +360,30 @@ public class ClientMain {
                 break;
             }
 
+            // 오래 안 써서 보관소가 잠겼으면 비밀번호부터 (개인키가 풀리는지로 확인)
+            if (vault.isLocked()) {
+                System.out.print("[VAULT] 잠겨 있습니다. 비밀번호를 다시 입력하세요 : ");
+                try {
+                    vault.unlock(sc.nextLine());
+                    KeyVault.loadKeyPair(id, vault);
+                    System.out.println("[VAULT] 잠금 해제");
+                } catch (Exception e) {
+                    vault.lock();
+                    System.out.println("[VAULT] 비밀번호가 맞지 않습니다.");
+                    continue;
+                }
+                // 잠기기 전에 입력한 줄은 그대로 처리
+            }
+
+            // /rekey target : 저장된 세션을 무시하고 서버에서 공개키를 다시 받는다
+            if (line.startsWith("/rekey ")) {
+                String target = line.substring(7).trim();
+                currentTarget = target;
+                sessions.remove(target);
+                channel.send(ChatMessage.keyRequest(myTag, target, myPublicKey, "2025-11-19T00:00:00"));
+                continue;
+            }
+
             // -------------------------
             // /key target
             // -------------------------
@@ -240,6 +392,12 @@ public class ClientMain {
                 String target = line.substring(5).trim();
                 currentTarget = target;
 
+                // 지난번에 만든 세션이 있으면 왕복 없이 그대로 쓴다 (상대 키가 바뀌었으면 /rekey)
+                if (sessions.get(target) != null) {
+                    System.out.println("[INFO] " + target + " 저장된 세션 사용");
+                    continue;
+                }
+
                 ChatMessage keyReq = ChatMessage.keyRequest(
                         myTag,
                         target,
@@ -247,11 +405,84 @@ public class ClientMain {
                         "2025-11-19T00:00:00"
                 );
 
-                writer.println(toJson(keyReq));
+                channel.send(keyReq);
                 System.out.println("[SEND] " + toJson(keyReq));
                 continue;
             }
 
+            // -------------------------
+            // /keys a b c  (여러 명 공개키를 한 번에)
+            // -------------------------
+            if (line.startsWith("/keys ")) {
+
+                List<String> ids = Arrays.asList(line.substring(6).trim().split("\\s+"));
+                channel.send(ChatMessage.keyBatchRequest(myTag, ids, "2025-11-19T00:00:00"));
+                continue;
+            }
+
+            // -------------------------
+            // /file target 경로  (조각으로 나눠 암호화하면서 보냄, 상대가 접속해 있어야 함)
+            // -------------------------
+            if (line.startsWith("/file ")) {
+
+                String[] parts = line.substring(6).trim().split("\\s+", 2);
+                if (parts.length < 2) {
+                    System.out.println("사용법: /file 상대 경로");
+                } else {
+                    files.send(parts[0], Path.of(parts[1]));
+                }
+                continue;
+            }
+
+            // -------------------------
+            // /join 방  /leave 방  /room 방(이후 메시지를 그 방으로)
+            // -------------------------
+            if (line.startsWith("/join ") || line.startsWith("/leave ")) {
+
+                boolean join = line.startsWith("/join ");
+                String room = line.substring(join ? 6 : 7).trim();
+
+                channel.send(new ChatMessage(
+                        join ? MessageType.ROOM_JOIN : MessageType.ROOM_LEAVE,
+                        myTag,
+                        "server",
+                        room,
+                        "2025-11-19T00:00:00"
+                ));
+                if (join) currentTarget = "room:" + room;
+                else groups.leave(room);
+                continue;
+            }
+
+            if (line.startsWith("/room ")) {
+                currentTarget = "room:" + line.substring(6).trim();
+                System.out.println("[INFO] 대화 상대: " + currentTarget);
+                continue;
+            }
+
+            // -------------------------
+            // /history [상대] [개수] [cursor]  (상대 생략 = 내 전체 기록)
+            // -------------------------
+            if (line.equals("/history") || line.startsWith("/history ")) {
+
+                String[] parts = line.trim().split("\\s+");
+
+                JsonObject query = new JsonObject();
+                if (parts.length > 1) query.addProperty("peer", parts[1]);
+                if (parts.length > 2) query.addProperty("limit", Integer.parseInt(parts[2]));
+                if (parts.length > 3) query.addProperty("cursor", Long.parseLong(parts[3]));
+
+                ChatMessage req = new ChatMessage(
+                        MessageType.HISTORY_REQ,
+                        myTag,
+                        "server",
+                        query.toString(),
+                        "2025-11-19T00:00:00"
+                );
+                channel.send(req);
+                continue;
+            }
+
             // -------------------------
             // 일반 메시지
             // -------------------------
@@ -263,6 +494,17 @@ public class ClientMain {
             String target = currentTarget;
             String timestamp = "2025-11-21T00:00:00";
 
+            // 방: 내 체인 키로 한 번만 암호화 → 서버가 같은 암호문을 멤버 전원에게
+            if (GroupSessions.isRoom(target)) {
+                ChatMessage roomChat = groups.encrypt(target.substring(5), line, timestamp);
+                if (roomChat == null) {
+                    System.out.println("[WARN] 방 키가 아직 없습니다. '/join 방' 후 멤버 목록을 받으면 보낼 수 있습니다.");
+                    continue;
+                }
+                channel.send(roomChat);
+                continue;
+            }
+
             E2eeSession session = sessions.get(target);
 
             ChatMessage chat;
@@ -286,14 +528,50 @@ public class ClientMain {
                         session,
                         timestamp
                 );
+                sessions.save(target);
                 System.out.println("[INFO] 암호화 후 전송.");
             }
 
-            writer.println(toJson(chat));
+            channel.send(chat);
             System.out.println("[SEND] " + toJson(chat));
         }
 
+        sessions.close();
+        vault.close();
         socket.close();
         System.out.println("[NET] 연결 종료.");
     }
+
+    // HISTORY_RES 본문: {"entries":[{"seq":..,"time":..,"message":{...}}], "nextCursor":..}
+    private static void printHistory(String body) {
+        JsonObject page = JsonParser.parseString(body).getAsJsonObject();
+        JsonArray entries = page.getAsJsonArray("entries");
+
+        System.out.println("[HISTORY] " + entries.size() + "건");
+        for (JsonElement e : entries) {
+            ChatMessage m = JsonUtil.fromJson(e.getAsJsonObject().get("message").toString(), ChatMessage.class);
+
+            // 내가 보낸 것도 같은 세션 키(대칭)로 풀 수 있다
+            String other = myTag.equals(m.getSender()) ? m.getReceiver() : m.getSender();
+            E2eeSession session = sessions.get(other);
+
+            String text = m.getBody();
+            if (session != null) {
+                try {
+                    EncryptedPayload payload = EncryptedPayload.fromWireString(m.getBody());
+                    text = E2eeSession.isRatchetMessage(payload)
+                            ? "(래칫 메시지: 받을 때 키를 지워서 다시 볼 수 없음)"
+                            : session.decryptStored(payload);
+                } catch (Exception ex) {
+                    // 다른 세션 키로 암호화된 예전 메시지 → 그대로 표시
+                }
+            }
+            System.out.println("  #" + e.getAsJsonObject().get("seq").getAsLong()
+                    + " " + m.getSender() + " -> " + m.getReceiver() + " : " + text);
+        }
+
+        if (page.has("nextCursor") && !page.get("nextCursor").isJsonNull()) {
+            System.out.println("[HISTORY] 더 보기: /history <상대> <개수> " + page.get("nextCursor").getAsLong());
+        }
+    }
 }
@@ -0,0 +1,297 @@
+package com.e2ee.client;
+
+import com.e2ee.client.store.SessionStore;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.MessageType;
+import com.e2ee.session.E2eeSession;
+import com.e2ee.session.FileStream;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 파일 주고받기 (/file 상대 경로).
+ *
+ * 보내는 쪽
+ *   FILE_OFFER (1:1 세션으로 암호화한 {"id","name","size","chunk"}) → FILE_CHUNK 여러 개
+ *   조각은 파일에서 읽는 대로 암호화해서 보내고, 받는 쪽 FILE_ACK가 올 때까지 WINDOW개까지만 앞서 간다.
+ *   → 파일이 몇 GB여도 메모리에는 조각 몇 개, 서버/받는 쪽 큐에도 WINDOW개 이상 쌓이지 않는다.
+ *
+ * 받는 쪽
+ *   조각을 받는 대로 풀어서 <다운로드 폴더>/<이름>.part 에 바로 쓰고, 마지막 조각이 맞게 오면 이름을 바꾼다.
+ *   ACK_EVERY개마다(그리고 마지막에) FILE_ACK "fileId:받은 조각 수".
+ *   중간에 순서가 틀리거나 인증이 실패하면 .part를 지우고 FILE_ACK "fileId:FAIL".
+ *
+ * FILE_CHUNK에는 fileId가 없으므로 같은 상대에게서는 한 번에 파일 하나씩만 받는다 (새 OFFER가 오면 이전 것은 버림).
+ */
+public class FileTransfers {
+
+    public interface Outbox {
+        void send(ChatMessage msg) throws Exception;
+    }
+
+    // ACK 없이 앞서 보낼 수 있는 조각 수 / 받는 쪽이 ACK를 보내는 간격
+    public static final int WINDOW = 16;
+    public static final int ACK_EVERY = 4;
+
+    // 이 시간 동안 ACK가 하나도 안 오면 보내기를 그만둔다
+    private static final long ACK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final String TIMESTAMP = "2025-11-19T00:00:00";
+    private static final Base64.Encoder ID_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final String myTag;
+    private final SessionStore sessions;
+    private final Outbox out;
+    private final Path downloadDir;
+    private final int chunkBytes;
+
+    // 보내는 중: fileId → 상태 (보내는 스레드와 수신 스레드가 같이 만짐)
+    private final Map<String, Outgoing> outgoing = new ConcurrentHashMap<>();
+
+    // 받는 중: 보낸 사람 → 상태 (수신 스레드만 만짐)
+    private final Map<String, Incoming> incoming = new HashMap<>();
+
+    public FileTransfers(String myTag, SessionStore sessions, Outbox out, Path downloadDir, int chunkBytes) {
+        this.myTag = myTag;
+        this.sessions = sessions;
+        this.out = out;
+        this.downloadDir = downloadDir;
+        this.chunkBytes = chunkBytes;
+    }
+
+    // ======================= 보내기 =======================
+
+    /** 백그라운드 스레드에서 보낸다 (입력 루프는 바로 돌아감) */
+    public void send(String target, Path file) {
+        E2eeSession session = sessions.get(target);
+        if (session == null) {
+            System.out.println("[FILE] " + target + " 과의 세션이 없습니다. /key " + target + " 먼저");
+            return;
+        }
+        if (!Files.isRegularFile(file)) {
+            System.out.println("[FILE] 파일이 없습니다: " + file);
+            return;
+        }
+
+        Thread t = new Thread(() -> {
+            try {
+                sendNow(target, file, session);
+            } catch (Exception e) {
+                System.out.println("[FILE] 보내기 실패 (" + file.getFileName() + "): " + e.getMessage());
+            }
+        }, "file-send");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void sendNow(String target, Path file, E2eeSession session) throws Exception {
+        byte[] fileId = FileStream.newFileId();
+        String id = ID_ENCODER.encodeToString(fileId);
+        Outgoing o = new Outgoing(target);
+        outgoing.put(id, o);
+
+        try (InputStream in = Files.newInputStream(file)) {
+            JsonObject offer = new JsonObject();
+            offer.addProperty("id", id);
+            offer.addProperty("name", file.getFileName().toString());
+            offer.addProperty("size", Files.size(file));
+            offer.addProperty("chunk", chunkBytes);
+            out.send(new ChatMessage(MessageType.FILE_OFFER, myTag, target,
+                    session.encrypt(offer.toString()).toWireString(), TIMESTAMP));
+            sessions.save(target);
+
+            long start = System.nanoTime();
+            FileStream.Encryptor enc = session.encryptStream(in, fileId, chunkBytes);
+            EncryptedPayload chunk;
+            while ((chunk = enc.next()) != null) {
+                o.awaitWindow(enc.getChunks() - 1);
+                out.send(new ChatMessage(MessageType.FILE_CHUNK, myTag, target, chunk.toWireString(), TIMESTAMP));
+            }
+            o.awaitWindow(enc.getChunks() - 1 + WINDOW);   // 마지막 ACK까지
+
+            long ms = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            System.out.println("[FILE] 보냄: " + file.getFileName() + " → " + target + " (" + enc.getBytes()
+                    + " bytes, 조각 " + enc.getChunks() + "개, " + (enc.getBytes() / 1024 * 1000 / ms) + " KB/s)");
+        } finally {
+            outgoing.remove(id);
+        }
+    }
+
+    // 보내는 쪽 상태: 받는 쪽이 확인한 조각 수
+    private static final class Outgoing {
+        final String target;
+        long acked;
+        String failed;
+
+        Outgoing(String target) {
+            this.target = target;
+        }
+
+        // index번 조각을 보내도 될 때까지 (index - acked < WINDOW)
+        synchronized void awaitWindow(long index) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + ACK_TIMEOUT_MILLIS;
+            long seen = acked;
+            while (failed == null && index - acked >= WINDOW) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) throw new IOException("ACK가 오지 않음");
+                wait(left);
+                if (acked != seen) {
+                    seen = acked;
+                    deadline = System.currentTimeMillis() + ACK_TIMEOUT_MILLIS;
+                }
+            }
+            if (failed != null) throw new IOException(failed);
+        }
+
+        synchronized void ack(long count) {
+            if (count > acked) acked = count;
+            notifyAll();
+        }
+
+        synchronized void fail(String reason) {
+            failed = reason;
+            notifyAll();
+        }
+    }
+
+    // FILE_ACK "fileId:조각 수" / "fileId:FAIL"
+    public void onAck(ChatMessage msg) {
+        String body = msg.getBody();
+        int c = body == null ? -1 : body.lastIndexOf(':');
+        Outgoing o = c < 0 ? null : outgoing.get(body.substring(0, c));
+        if (o == null) return;   // 다른 기기에서 보낸 파일
+
+        String value = body.substring(c + 1);
+        if (value.equals("FAIL")) {
+            o.fail("받는 쪽에서 실패");
+        } else {
+            o.ack(Long.parseLong(value));
+        }
+    }
+
+    // 서버 SYSTEM "FILE_FAIL:사유:상대" → 그 상대에게 보내던 것을 멈춘다
+    public void onServerFail(String body) {
+        String rest = body.substring("FILE_FAIL:".length());
+        int c = rest.indexOf(':');
+        String reason = c < 0 ? rest : rest.substring(0, c);
+        String target = c < 0 ? "" : rest.substring(c + 1);
+        for (Outgoing o : outgoing.values()) {
+            if (o.target.equals(target)) o.fail("서버 거절: " + reason);
+        }
+    }
+
+    // ======================= 받기 =======================
+
+    private static final class Incoming {
+        final String id;
+        final Path part;
+        final Path target;
+        final OutputStream file;
+        final FileStream.Decryptor dec;
+
+        Incoming(String id, Path part, Path target, OutputStream file, FileStream.Decryptor dec) {
+            this.id = id;
+            this.part = part;
+            this.target = target;
+            this.file = file;
+            this.dec = dec;
+        }
+    }
+
+    public void onOffer(ChatMessage msg) {
+        String from = msg.getSender();
+        E2eeSession session = sessions.get(from);
+        if (session == null) {
+            System.out.println("[FILE] " + from + " 과의 세션이 없어 파일을 받을 수 없습니다");
+            return;
+        }
+
+        try {
+            JsonObject offer = JsonParser.parseString(
+                    session.decrypt(EncryptedPayload.fromWireString(msg.getBody()))).getAsJsonObject();
+            sessions.save(from);
+            String id = offer.get("id").getAsString();
+
+            // 경로 부분은 버리고 이름만
+            String name = Path.of(offer.get("name").getAsString()).getFileName().toString();
+            if (name.isBlank() || name.equals("..")) name = "file";
+
+            discard(from);
+            Files.createDirectories(downloadDir);
+            Path target = uniqueName(downloadDir.resolve(name));
+            Path part = target.resolveSibling(target.getFileName() + ".part");
+
+            OutputStream file = new BufferedOutputStream(Files.newOutputStream(part), 64 * 1024);
+            byte[] fileId = Base64.getUrlDecoder().decode(id);
+            incoming.put(from, new Incoming(id, part, target, file, session.decryptStream(fileId, file)));
+
+            System.out.println("[FILE] " + from + " → " + name + " (" + offer.get("size").getAsLong() + " bytes) 받는 중...");
+        } catch (Exception e) {
+            System.out.println("[FILE] 잘못된 FILE_OFFER (" + from + "): " + e.getMessage());
+        }
+    }
+
+    public void onChunk(ChatMessage msg) throws Exception {
+        String from = msg.getSender();
+        Incoming in = incoming.get(from);
+        if (in == null) return;
+
+        boolean last;
+        try {
+            last = in.dec.accept(EncryptedPayload.fromWireString(msg.getBody()));
+        } catch (Exception e) {
+            System.out.println("[FILE] " + in.target.getFileName() + " 받기 실패: " + e.getMessage());
+            discard(from);
+            out.send(new ChatMessage(MessageType.FILE_ACK, myTag, from, in.id + ":FAIL", TIMESTAMP));
+            return;
+        }
+
+        if (last) {
+            incoming.remove(from);
+            in.file.close();
+            Files.move(in.part, in.target, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("[FILE] 받음: " + in.target + " (" + in.dec.getBytes() + " bytes)");
+        }
+        if (last || in.dec.getChunks() % ACK_EVERY == 0) {
+            out.send(new ChatMessage(MessageType.FILE_ACK, myTag, from, in.id + ":" + in.dec.getChunks(), TIMESTAMP));
+        }
+    }
+
+    // 받던 것을 버린다 (.part 삭제)
+    private void discard(String from) {
+        Incoming in = incoming.remove(from);
+        if (in == null) return;
+        try {
+            in.file.close();
+            Files.deleteIfExists(in.part);
+        } catch (IOException e) {
+            System.out.println("[FILE] 임시 파일 정리 실패: " + in.part);
+        }
+    }
+
+    private static Path uniqueName(Path p) {
+        if (!Files.exists(p) && !Files.exists(p.resolveSibling(p.getFileName() + ".part"))) return p;
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            Path q = p.resolveSibling(base + " (" + i + ")" + ext);
+            if (!Files.exists(q) && !Files.exists(q.resolveSibling(q.getFileName() + ".part"))) return q;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.e2ee.client.store;
 
-import com.e2ee.crypto.PasswordKey;
-import com.e2ee.crypto.AesGcmUtil;
 import com.e2ee.crypto.EcdhUtil;
 
 import java.nio.file.Files;
@@ -21,6 +19,7 @@ import java.util.Base64;
  *   KeyVault
  *   - 클라이언트 개인키/공개키 로컬 보관소
  *   - 개인키는 AES-GCM + PBKDF2 로 암호화
+ *     (로그인 때 UnlockedVault로 한 번 파생한 키를 씀, 비밀번호 버전은 호출마다 PBKDF2)
  *   - 공개키는 Base64 평문 저장
  * =====================================
  */
@@ -58,6 +57,12 @@ public class KeyVault {
     // 1) 키쌍 저장
     // ----------------------------------------------------
     public static void saveKeyPair(KeyPair kp, String userId, String password) throws Exception {
+        try (UnlockedVault vault = UnlockedVault.unlock(password, 0)) {
+            saveKeyPair(kp, userId, vault);
+        }
+    }
+
+    public static void saveKeyPair(KeyPair kp, String userId, UnlockedVault vault) throws Exception {
 
         PublicKey pub = kp.getPublic();
         PrivateKey priv = kp.getPrivate();
@@ -68,7 +73,7 @@ public class KeyVault {
 
         // ====== 개인키 저장 (AES-GCM + PBKDF2 암호화) ======
         byte[] privBytes = priv.getEncoded(); // PKCS8
-        byte[] encryptedPriv = AesGcmUtil.encryptBytes(privBytes, password);
+        byte[] encryptedPriv = vault.encrypt(privBytes);
 
         Files.write(privFile(userId), encryptedPriv);
 
@@ -79,6 +84,13 @@ public class KeyVault {
     // 2) 키쌍 로드 (AES-GCM 복호화)
     // ----------------------------------------------------
     public static KeyPair loadKeyPair(String userId, String password) throws Exception {
+        try (UnlockedVault vault = UnlockedVault.unlock(password, 0)) {
+            return loadKeyPair(userId, vault);
+        }
+    }
+
+    // 비밀번호가 틀렸으면 (보관소 키가 다르면) AES-GCM 태그 검증에서 예외
+    public static KeyPair loadKeyPair(String userId, UnlockedVault vault) throws Exception {
 
         // (1) 공개키 로드
         byte[] pubBase64 = Files.readAllBytes(pubFile(userId));
@@ -89,7 +101,7 @@ public class KeyVault {
 
         // (2) 개인키 로드 (AES-GCM 복호화)
         byte[] encPrivBytes = Files.readAllBytes(privFile(userId));
-        byte[] privBytes = AesGcmUtil.decryptBytes(encPrivBytes, password);
+        byte[] privBytes = vault.decrypt(encPrivBytes);
 
         PrivateKey priv = kf.generatePrivate(new PKCS8EncodedKeySpec(privBytes));
 
@@ -108,14 +120,14 @@ public class KeyVault {
     // ----------------------------------------------------
     // 4) 로드 or 생성
     // ----------------------------------------------------
-    public static KeyPair loadOrCreate(String userId, String password) throws Exception {
+    public static KeyPair loadOrCreate(String userId, UnlockedVault vault) throws Exception {
         if (exists(userId)) {
-            return loadKeyPair(userId, password);
+            return loadKeyPair(userId, vault);
         }
 
         // 없으면 새로 생성
         KeyPair kp = EcdhUtil.generateKeyPair();
-        saveKeyPair(kp, userId, password);
+        saveKeyPair(kp, userId, vault);
         return kp;
     }
 }
@@ -0,0 +1,372 @@
+package com.e2ee.client.store;
+
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.session.E2eeSession;
+import com.e2ee.session.RatchetSession;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * =====================================
+ *   SessionStore
+ *   - 상대별 E2eeSession을 로컬 파일에 암호화해서 보관
+ *   - 다시 실행해도 /key 왕복, ECDH, HKDF 없이 바로 세션을 쓴다
+ * =====================================
+ *
+ * 파일: ~/.e2ee-chat/sessions/<userId>/sessions.dat (붙이기만 하는 레코드들)
+ *
+ *   레코드 = [32바이트 색인 키][int 길이][nonce + AES-GCM 암호문]
+ *   색인 키 = HMAC(색인용 키, 내 공개키 + 상대 ID)  → 파일만 봐서는 누구와 대화했는지 모른다
+ *   평문   = [short 0x8000 | 길이][상대 공개키 X509][세션 AES 키 32바이트]
+ *            [short 길이][래칫 상태 (RatchetSession.encodeState, 없으면 길이 0)]
+ *            [받는 쪽 재전송 창 (CounterNonces.encodeState)]
+ *            (0x8000이 없는 예전 레코드 = 공개키, AES 키 뒤 나머지 전부가 래칫 상태, 재전송 창 없음)
+ *   길이 0인 레코드 = 지움 (/rekey)
+ *
+ * 암호화 키와 색인용 키는 KeyVault와 같은 보관소 키(UnlockedVault)의 용도별 키 "session-enc", "session-index".
+ * 보관소가 잠겨 있는 동안에는 파일을 못 읽고 못 쓴다 → 메모리에 있는 세션만 쓰고, 새 세션은 메모리에만 둔다.
+ * 색인 키를 AAD로 같이 인증하므로 레코드를 다른 상대 자리로 옮겨 붙여도 풀리지 않는다.
+ * 내 키쌍이 바뀌면 색인 키도 바뀌어서 예전 세션은 그냥 안 보인다.
+ *
+ * 열 때는 레코드 머리(색인 키, 길이)만 훑어서 색인 키 → 파일 위치를 만든다. (복호화는 안 함)
+ * 세션은 그 상대와 처음 주고받을 때 한 건만 읽어서 풀고(get), 메모리에는 최근 maxInMemory명만 둔다(LRU).
+ * 같은 상대를 다시 저장하면 뒤에 새로 붙고, 안 쓰는 레코드가 많아지면 압축한다 (열 때, 그리고 붙이다가 넘으면 바로).
+ * 래칫 세션은 메시지를 주고받을 때마다 save()로 상태(래칫 + 재전송 창)를 다시 붙인다 (예전 레코드는 래칫을 새로 시작).
+ */
+public class SessionStore implements Closeable {
+
+    public static final int DEFAULT_MAX_IN_MEMORY = 256;
+
+    private static final Path BASE_DIR =
+            Paths.get(System.getProperty("user.home"), ".e2ee-chat", "sessions");
+
+    private static final int INDEX_KEY_BYTES = 32;
+    private static final int HEADER_BYTES = INDEX_KEY_BYTES + 4;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int AES_KEY_BYTES = 32;
+    private static final int WITH_NONCES = 0x8000;
+
+    // 레코드 수가 (살아 있는 레코드 * 2 + 이 값)을 넘으면 압축
+    private static final int COMPACT_SLACK = 1000;
+
+    private final Path file;
+    private final KeyPair myKeyPair;
+    private final byte[] myPublic;
+    private final UnlockedVault vault;
+
+    private FileChannel ch;
+
+    // 색인 키(Base64) → 파일 안 레코드 시작 위치
+    private final Map<String, Long> index = new HashMap<>();
+    private long records;
+
+    // 상대 ID → 세션 (가장 오래 안 쓴 것부터 밀려남)
+    private final LinkedHashMap<String, E2eeSession> cache;
+
+    private long diskLoads;
+
+    // 기본 위치에 연다
+    public static SessionStore open(String userId, UnlockedVault vault, KeyPair myKeyPair, int maxInMemory)
+            throws IOException {
+        return new SessionStore(BASE_DIR.resolve(userId), vault, myKeyPair, maxInMemory);
+    }
+
+    public SessionStore(Path dir, UnlockedVault vault, KeyPair myKeyPair, int maxInMemory) throws IOException {
+        this.file = dir.resolve("sessions.dat");
+        this.myKeyPair = myKeyPair;
+        this.myPublic = myKeyPair.getPublic().getEncoded();
+        this.vault = vault;
+
+        int max = Math.max(1, maxInMemory);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, E2eeSession> eldest) {
+                return size() > max;
+            }
+        };
+
+        Files.createDirectories(dir);
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        scan();
+        if (needsCompaction()) compact();
+    }
+
+    // ---------------- 사용 ----------------
+
+    // 메모리 → 파일 순서로 찾는다 (없으면 null → /key 로 새로 만들어야 함)
+    public synchronized E2eeSession get(String peer) {
+        E2eeSession s = cache.get(peer);
+        if (s != null) return s;
+
+        if (vault.isLocked()) return null;
+        Long pos = index.get(indexKeyOf(peer));
+        if (pos == null) return null;
+
+        try {
+            s = read(pos);
+        } catch (IllegalStateException e) {
+            return null; // 읽는 사이에 잠김
+        } catch (Exception e) {
+            // 깨졌거나 다른 비밀번호로 만든 레코드 → 없는 것으로 (다음 /key 때 덮어씀)
+            System.out.println("[SessionStore] " + peer + " 세션 읽기 실패: " + e.getMessage());
+            return null;
+        }
+        diskLoads++;
+        cache.put(peer, s);
+        return s;
+    }
+
+    // 새 세션 (KEY_RES 등) → 메모리 + 파일.
+    // 이미 같은 키의 세션이 있으면 그대로 둔다 (진행 중인 래칫 상태를 새 세션으로 덮지 않게)
+    public synchronized void put(String peer, E2eeSession s) {
+        E2eeSession prev = get(peer);
+        if (prev != null && sameSession(prev, s)) return;
+        cache.put(peer, s);
+
+        if (vault.isLocked()) {
+            System.out.println("[SessionStore] 보관소가 잠겨 있어 " + peer + " 세션은 메모리에만 둠");
+            return;
+        }
+        try {
+            append(indexKeyOf(peer), encode(s));
+        } catch (Exception e) {
+            throw new IllegalStateException("세션 저장 실패: " + peer, e);
+        }
+    }
+
+    // 래칫 상태가 바뀐 세션을 다시 붙인다 (메시지를 보내거나 받은 뒤)
+    public synchronized void save(String peer) {
+        E2eeSession s = cache.get(peer);
+        if (s == null || s.getRatchet() == null || vault.isLocked()) return;
+        try {
+            append(indexKeyOf(peer), encode(s));
+        } catch (IllegalStateException e) {
+            // 저장하는 사이에 잠김 → 메모리 상태만 (다음에 저장)
+        } catch (Exception e) {
+            System.out.println("[SessionStore] " + peer + " 래칫 상태 저장 실패: " + e.getMessage());
+        }
+    }
+
+    // 세션을 지운다 (/rekey: 다음 KEY_RES로 새로 만들도록)
+    public synchronized void remove(String peer) {
+        cache.remove(peer);
+        if (vault.isLocked()) return;
+        String key = indexKeyOf(peer);
+        if (!index.containsKey(key)) return;
+        try {
+            ByteBuffer rec = ByteBuffer.allocate(HEADER_BYTES);
+            rec.put(Base64.getDecoder().decode(key)).putInt(0).flip();
+            long pos = ch.size();
+            while (rec.hasRemaining()) ch.write(rec, pos + rec.position());
+            index.remove(key);
+            records++;
+        } catch (IOException e) {
+            throw new IllegalStateException("세션 지우기 실패: " + peer, e);
+        }
+    }
+
+    // 이 상대의 세션이 이미 theirs 키로 있는지 (KEY_BATCH_RES 등에서 ECDH + HKDF를 건너뛰려고)
+    public synchronized boolean hasKey(String peer, PublicKey theirs) {
+        E2eeSession s = get(peer);
+        return s != null && Arrays.equals(s.getTheirPublicKey().getEncoded(), theirs.getEncoded());
+    }
+
+    public synchronized boolean contains(String peer) {
+        if (cache.containsKey(peer)) return true;
+        return !vault.isLocked() && index.containsKey(indexKeyOf(peer));
+    }
+
+    // 파일에 있는 상대 수
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized int inMemory() {
+        return cache.size();
+    }
+
+    // 파일에 있는 레코드 수 (덮어쓴 것, 지움 표시 포함)
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    // 메모리에 없어서 파일에서 읽어 온 횟수
+    public synchronized long getDiskLoads() {
+        return diskLoads;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        ch.force(false);
+        ch.close();
+        cache.clear();
+    }
+
+    // ---------------- 파일 ----------------
+
+    // 머리만 훑어서 색인을 만든다. 끝에 찢어진 레코드가 있으면 잘라낸다.
+    private void scan() throws IOException {
+        long size = ch.size();
+        long pos = 0;
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+        byte[] key = new byte[INDEX_KEY_BYTES];
+
+        while (pos + HEADER_BYTES <= size) {
+            head.clear();
+            ch.read(head, pos);
+            head.flip();
+            head.get(key);
+            int len = head.getInt();
+            if (len < 0 || len > MAX_RECORD_BYTES || pos + HEADER_BYTES + len > size) break;
+
+            if (len == 0) {
+                index.remove(Base64.getEncoder().encodeToString(key));
+            } else {
+                index.put(Base64.getEncoder().encodeToString(key), pos);
+            }
+            records++;
+            pos += HEADER_BYTES + len;
+        }
+
+        if (pos < size) {
+            System.out.println("[SessionStore] 끝의 불완전한 레코드 잘라냄: " + (size - pos) + "바이트");
+            ch.truncate(pos);
+        }
+    }
+
+    private void append(String key, byte[] plain) throws Exception {
+        byte[] keyBytes = Base64.getDecoder().decode(key);
+        byte[] enc = vault.encrypt("session-enc", plain, keyBytes);
+
+        ByteBuffer rec = ByteBuffer.allocate(HEADER_BYTES + enc.length);
+        rec.put(keyBytes).putInt(enc.length).put(enc).flip();
+
+        // fsync는 닫을 때 한 번 (그 전에 죽어서 끝이 날아가도 그 상대는 /key 한 번 더 하면 됨)
+        long pos = ch.size();
+        while (rec.hasRemaining()) ch.write(rec, pos + rec.position());
+
+        index.put(key, pos);
+        records++;
+        // 래칫 세션은 메시지마다 다시 붙으므로 열 때까지 기다리지 않는다
+        if (needsCompaction()) compact();
+    }
+
+    private boolean needsCompaction() {
+        return records > index.size() * 2L + COMPACT_SLACK;
+    }
+
+    private E2eeSession read(long pos) throws Exception {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+        ch.read(head, pos);
+        head.flip();
+        byte[] keyBytes = new byte[INDEX_KEY_BYTES];
+        head.get(keyBytes);
+        int len = head.getInt();
+
+        ByteBuffer body = ByteBuffer.allocate(len);
+        while (body.hasRemaining()) {
+            if (ch.read(body, pos + HEADER_BYTES + body.position()) < 0) throw new IOException("짧은 레코드");
+        }
+
+        ByteBuffer plain = ByteBuffer.wrap(vault.decrypt("session-enc", body.array(), keyBytes));
+        int pubLen = plain.getShort() & 0xFFFF;
+        boolean withNonces = (pubLen & WITH_NONCES) != 0;
+        byte[] pub = new byte[pubLen & ~WITH_NONCES];
+        plain.get(pub);
+        byte[] aes = new byte[AES_KEY_BYTES];
+        plain.get(aes);
+
+        PublicKey theirs = CryptoPool.x25519KeyFactory().generatePublic(new X509EncodedKeySpec(pub));
+        ByteBuffer state = plain;
+        if (withNonces) {
+            int stateLen = plain.getShort();
+            state = plain.slice(plain.position(), stateLen);
+            plain.position(plain.position() + stateLen);
+        }
+        RatchetSession ratchet = state.hasRemaining()
+                ? RatchetSession.restore(myKeyPair, theirs, aes, state)
+                : new RatchetSession(myKeyPair, theirs, aes);
+        E2eeSession s = new E2eeSession(myKeyPair, theirs, new SecretKeySpec(aes, "AES"), ratchet);
+        if (withNonces) s.getNonces().restoreState(plain);
+        return s;
+    }
+
+    // 살아 있는 레코드만 새 파일로 복사 (다시 암호화할 필요 없이 그대로) → rename으로 바꿔 끼움
+    private void compact() throws IOException {
+        long before = records;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Long> moved = new HashMap<>();
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long at = 0;
+            for (Map.Entry<String, Long> e : index.entrySet()) {
+                ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+                ch.read(head, e.getValue());
+                int len = head.getInt(INDEX_KEY_BYTES);
+
+                long n = ch.transferTo(e.getValue(), HEADER_BYTES + len, out);
+                moved.put(e.getKey(), at);
+                at += n;
+            }
+            out.force(true);
+        }
+
+        ch.close();
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        index.clear();
+        index.putAll(moved);
+        records = moved.size();
+        System.out.println("[SessionStore] 압축: " + before + " → " + records + "건");
+    }
+
+    // ---------------- 내부 ----------------
+
+    // 잠겨 있으면 IllegalStateException (UnlockedVault)
+    private String indexKeyOf(String peer) {
+        try {
+            byte[] mac = vault.mac("session-index", myPublic, new byte[]{0}, peer.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encode(E2eeSession s) {
+        byte[] pub = s.getTheirPublicKey().getEncoded();
+        byte[] aes = s.getAesKey().getEncoded();
+        byte[] state = s.getRatchet() == null ? null : s.getRatchet().encodeState();
+        if (state == null) state = new byte[0];
+        byte[] nonces = s.getNonces().encodeState();
+        return ByteBuffer.allocate(2 + pub.length + aes.length + 2 + state.length + nonces.length)
+                .putShort((short) (WITH_NONCES | pub.length)).put(pub).put(aes)
+                .putShort((short) state.length).put(state).put(nonces).array();
+    }
+
+    private static boolean sameSession(E2eeSession a, E2eeSession b) {
+        return Arrays.equals(a.getTheirPublicKey().getEncoded(), b.getTheirPublicKey().getEncoded())
+                && Arrays.equals(a.getAesKey().getEncoded(), b.getAesKey().getEncoded());
+    }
+}
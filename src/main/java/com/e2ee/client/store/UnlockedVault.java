@@ -0,0 +1,164 @@
+package com.e2ee.client.store;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.crypto.PasswordKey;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * =====================================
+ *   UnlockedVault
+ *   - 로그인 때 비밀번호로 PBKDF2를 한 번만 돌려 얻은 보관소 키
+ *   - KeyVault(개인키), SessionStore(세션) 등 로컬 암호화는 전부 이 키로
+ * =====================================
+ *
+ * 예전에는 encryptBytes/decryptBytes를 부를 때마다 PBKDF2(65,536회)를 다시 돌렸다.
+ * 이제는 키를 byte[]로 들고 있다가, idleMillis 동안 안 쓰면 0으로 덮어쓰고 잠근다(lock).
+ * 잠긴 뒤에 쓰려고 하면 IllegalStateException → 비밀번호로 unlock() 다시.
+ *
+ * 용도별 키(label)는 HMAC(보관소 키, label)로 한 번 뽑아 두고, 잠글 때 같이 지운다.
+ *   ""(빈 label) : 보관소 키 그대로 (KeyVault 개인키 파일, 예전 형식 그대로)
+ *   "session-enc", "session-index" : SessionStore
+ *
+ * Cipher.init 등에 넘기는 SecretKeySpec은 JCA가 안에서 복사하므로 그 복사본까지는 지우지 못한다.
+ * (쓰는 순간에만 잠깐 만들고 바로 버린다)
+ */
+public class UnlockedVault implements AutoCloseable {
+
+    // 0 이하 = 자동으로 잠그지 않음
+    public static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final long idleMillis;
+
+    private byte[] key;
+    private final Map<String, byte[]> subKeys = new HashMap<>();
+    private long lastUsed;
+
+    private final ScheduledExecutorService idleTimer;
+
+    // 비밀번호 → PBKDF2 한 번
+    public static UnlockedVault unlock(String password, long idleMillis) throws Exception {
+        byte[] k = PasswordKey.deriveKeyBytes(password);
+        try {
+            return new UnlockedVault(k, idleMillis);
+        } finally {
+            Arrays.fill(k, (byte) 0);
+        }
+    }
+
+    // 이미 파생한 키로 (key는 복사해서 들고 있으므로 호출한 쪽에서 지워도 됨)
+    public UnlockedVault(byte[] key, long idleMillis) {
+        this.key = key.clone();
+        this.idleMillis = idleMillis;
+        this.lastUsed = System.nanoTime();
+
+        if (idleMillis > 0) {
+            idleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "vault-idle");
+                t.setDaemon(true);
+                return t;
+            });
+            long every = Math.max(1, idleMillis / 4);
+            idleTimer.scheduleWithFixedDelay(this::lockIfIdle, every, every, TimeUnit.MILLISECONDS);
+        } else {
+            idleTimer = null;
+        }
+    }
+
+    // ---------------- 잠금 ----------------
+
+    // 잠긴 보관소를 비밀번호로 다시 연다 (틀린 비밀번호인지는 복호화해 봐야 안다 → KeyVault.loadKeyPair)
+    public void unlock(String password) throws Exception {
+        byte[] k = PasswordKey.deriveKeyBytes(password);
+        synchronized (this) {
+            wipe();
+            key = k;
+            lastUsed = System.nanoTime();
+        }
+    }
+
+    public synchronized boolean isLocked() {
+        return key == null;
+    }
+
+    // 키를 0으로 덮어쓰고 잠근다
+    public synchronized void lock() {
+        wipe();
+    }
+
+    @Override
+    public void close() {
+        lock();
+        if (idleTimer != null) idleTimer.shutdownNow();
+    }
+
+    // ---------------- 암호화 ----------------
+
+    // 보관소 키 그대로 (nonce + 암호문, AesGcmUtil.encryptBytes 와 같은 형식)
+    public byte[] encrypt(byte[] raw) throws Exception {
+        return encrypt("", raw, null);
+    }
+
+    public byte[] decrypt(byte[] encrypted) throws Exception {
+        return decrypt("", encrypted, null);
+    }
+
+    // 용도별 키로 (aad: 같이 인증할 추가 데이터, 없으면 null)
+    public byte[] encrypt(String label, byte[] raw, byte[] aad) throws Exception {
+        return AesGcmUtil.encryptBytes(raw, keyFor(label, "AES"), aad);
+    }
+
+    public byte[] decrypt(String label, byte[] encrypted, byte[] aad) throws Exception {
+        return AesGcmUtil.decryptBytes(encrypted, keyFor(label, "AES"), aad);
+    }
+
+    // 용도별 키로 HMAC (파일 이름/색인처럼 내용은 숨기고 같은 입력이면 같은 값이 필요할 때)
+    public byte[] mac(String label, byte[]... parts) throws Exception {
+        Mac mac = CryptoPool.hmacSha256();
+        mac.init(keyFor(label, "HmacSHA256"));
+        for (byte[] p : parts) mac.update(p);
+        return mac.doFinal();
+    }
+
+    // ---------------- 내부 ----------------
+
+    // 잠겨 있으면 예외, 아니면 사용 시각을 갱신하고 label 키를 돌려준다
+    // (잠금 안에서 SecretKeySpec으로 복사해야 쓰는 도중에 지워져도 엉뚱한 키가 되지 않는다)
+    private synchronized SecretKeySpec keyFor(String label, String algorithm) throws Exception {
+        if (key == null) throw new IllegalStateException("보관소가 잠겨 있습니다 (비밀번호 다시 입력)");
+        lastUsed = System.nanoTime();
+        if (label.isEmpty()) return new SecretKeySpec(key, algorithm);
+
+        byte[] sub = subKeys.get(label);
+        if (sub == null) {
+            Mac mac = CryptoPool.hmacSha256();
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            sub = mac.doFinal(label.getBytes(StandardCharsets.UTF_8));
+            subKeys.put(label, sub);
+        }
+        return new SecretKeySpec(sub, algorithm);
+    }
+
+    private synchronized void lockIfIdle() {
+        if (key != null && System.nanoTime() - lastUsed > TimeUnit.MILLISECONDS.toNanos(idleMillis)) {
+            wipe();
+            System.out.println("[VAULT] " + idleMillis / 1000 + "초 동안 안 써서 잠금");
+        }
+    }
+
+    private void wipe() {
+        if (key != null) Arrays.fill(key, (byte) 0);
+        key = null;
+        for (byte[] sub : subKeys.values()) Arrays.fill(sub, (byte) 0);
+        subKeys.clear();
+    }
+}
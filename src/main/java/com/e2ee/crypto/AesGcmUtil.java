@@ -4,7 +4,6 @@ import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import java.security.SecureRandom;
 import java.util.Base64;
 
 import java.nio.charset.StandardCharsets;
@@ -34,10 +33,14 @@ public class AesGcmUtil {
     public static EncryptedPayload encrypt(String plaintext, SecretKey key) throws Exception {
         // 1. Nonce(IV) 12바이트 랜덤으로 만들기
         byte[] nonce = new byte[NONCE_LENGTH];
-        new SecureRandom().nextBytes(nonce);
+        CryptoPool.random().nextBytes(nonce);
+        return encrypt(plaintext, key, nonce);
+    }
 
-        // 2. Cipher(AES/GCM/NoPadding) 준비하기
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+    // 2-1) nonce를 직접 정해서 암호화 (키마다 한 번만 쓰는 nonce일 것 - SenderKey처럼 메시지마다 키가 바뀌는 경우)
+    public static EncryptedPayload encrypt(String plaintext, SecretKey key, byte[] nonce) throws Exception {
+        // 2. Cipher(AES/GCM/NoPadding) 준비하기 (스레드별로 재사용, 아래 init이 매번 초기화)
+        Cipher cipher = CryptoPool.aesGcm();
 
         // GCM 모드에 Nonce와 태그 길이 설정
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
@@ -62,8 +65,8 @@ public class AesGcmUtil {
         byte[] nonce = Base64.getDecoder().decode(payload.getNonceBase64());
         byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
 
-        // 2. Cipher(AES/GCM/NoPadding) 준비
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        // 2. Cipher(AES/GCM/NoPadding) 준비 (스레드별로 재사용)
+        Cipher cipher = CryptoPool.aesGcm();
 
         // GCMParameterSpec에 똑같은 태그 길이 + nonce 사용
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
@@ -97,14 +100,20 @@ public class AesGcmUtil {
     public static byte[] encryptBytes(byte[] rawBytes, String password) throws Exception {
 
         // password → AES key로 파생 (간단 버전 PBKDF2)
-        SecretKey key = PasswordKey.deriveKey(password);
+        return encryptBytes(rawBytes, PasswordKey.deriveKey(password), null);
+    }
+
+    // 4-1) 이미 파생한 키로 (SessionStore처럼 여러 번 쓸 때 PBKDF2를 매번 돌리지 않게)
+    //      aad: 같이 인증할 추가 데이터 (없으면 null) - 레코드를 다른 자리로 옮겨 붙이는 것을 막을 때
+    public static byte[] encryptBytes(byte[] rawBytes, SecretKey key, byte[] aad) throws Exception {
 
         byte[] nonce = new byte[NONCE_LENGTH];
-        new SecureRandom().nextBytes(nonce);
+        CryptoPool.random().nextBytes(nonce);
 
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CryptoPool.aesGcm();
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
         cipher.init(Cipher.ENCRYPT_MODE, key, spec);
+        if (aad != null) cipher.updateAAD(aad);
 
         byte[] cipherBytes = cipher.doFinal(rawBytes);
 
@@ -118,8 +127,11 @@ public class AesGcmUtil {
 
     // ====== 5) byte[] AES-GCM 복호화 ======
     public static byte[] decryptBytes(byte[] encrypted, String password) throws Exception {
+        return decryptBytes(encrypted, PasswordKey.deriveKey(password), null);
+    }
 
-        SecretKey key = PasswordKey.deriveKey(password);
+    // 5-1) 이미 파생한 키로 (aad는 암호화 때와 같아야 함)
+    public static byte[] decryptBytes(byte[] encrypted, SecretKey key, byte[] aad) throws Exception {
 
         byte[] nonce = new byte[NONCE_LENGTH];
         byte[] cipherBytes = new byte[encrypted.length - NONCE_LENGTH];
@@ -127,9 +139,10 @@ public class AesGcmUtil {
         System.arraycopy(encrypted, 0, nonce, 0, NONCE_LENGTH);
         System.arraycopy(encrypted, NONCE_LENGTH, cipherBytes, 0, cipherBytes.length);
 
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CryptoPool.aesGcm();
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
         cipher.init(Cipher.DECRYPT_MODE, key, spec);
+        if (aad != null) cipher.updateAAD(aad);
 
         return cipher.doFinal(cipherBytes);
     }
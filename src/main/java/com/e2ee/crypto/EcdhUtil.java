@@ -5,16 +5,25 @@ import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.KeyFactory;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class EcdhUtil {
 
+    private static final int HASH_LEN = 32; // SHA-256 출력 길이
+    private static final byte[] AES_INFO = "E2EE-Chat-AES-GCM".getBytes(StandardCharsets.UTF_8);
+    private static final SecretKeySpec ZERO_SALT = new SecretKeySpec(new byte[HASH_LEN], "HmacSHA256");
+
+    // hkdf 중간 값 (PRK + T) 스레드별 재사용
+    private static final ThreadLocal<byte[]> HKDF_BUFFER = ThreadLocal.withInitial(() -> new byte[2 * HASH_LEN]);
+
     // 1) X25519 키쌍 생성
     public static KeyPair generateKeyPair() throws Exception {
 
@@ -33,8 +42,8 @@ public class EcdhUtil {
     // 2) 내 개인키 + 상대 공개키로 공유 비밀키 생성하기
     public static byte[] deriveSharedSecret(PrivateKey myPrivate, PublicKey theirPublic) throws Exception {
 
-        //1. X25519용 비밀 공유 기계(KeyAgreement) 준비
-        KeyAgreement ka = KeyAgreement.getInstance("X25519");
+        //1. X25519용 비밀 공유 기계(KeyAgreement) 준비 (스레드별로 재사용, init이 매번 초기화)
+        KeyAgreement ka = CryptoPool.x25519Agreement();
 
         //2. 내 개인키로 초기화
         ka.init(myPrivate);
@@ -51,67 +60,51 @@ public class EcdhUtil {
     // 3) 공유 비밀키에서 AES 키 뽑아내기 (HKDF-SHA256, 정석)
     public static SecretKey deriveAesKeyFromSharedSecret(byte[] sharedSecret) throws Exception {
 
-        // 1. HKDF-Extract: PRK 만들기 (salt는 일단 비움)
-        byte[] prk = hkdfExtract(null, sharedSecret);
-
-        // 2. info: 용도 태그 (원하는 문자열 넣어도 됨)
-        byte[] info = "E2EE-Chat-AES-GCM".getBytes(StandardCharsets.UTF_8);
-
-        // 3. HKDF-Expand: 32바이트짜리 AES 키로 확장
-        byte[] okm = hkdfExpand(prk, info, 32); // 32바이트 = 256bit
+        // 1. salt는 비우고(32바이트 0), info는 용도 태그
+        // 2. 32바이트 = 256bit AES 키로 확장
+        byte[] okm = new byte[32];
+        hkdf(null, sharedSecret, AES_INFO, okm, 0, okm.length);
 
-        // 4. 이 바이트 배열을 AES SecretKey로 포장
+        // 3. 이 바이트 배열을 AES SecretKey로 포장
         return new SecretKeySpec(okm, "AES");
     }
 
-    // HKDF-Extract 단계: salt와 sharedSecret으로 PRK 만들기
-    private static byte[] hkdfExtract(byte[] salt, byte[] ikm) throws Exception {
-        //1. salt가 없으면 32바이트 0으로 대체
-        if (salt == null || salt.length == 0) {
-            salt = new byte[32]; //자동으로 0으로 채워짐
-        }
-
-        // 2. HmacSHA256 준비 (키 = salt)
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(salt, "HmacSHA256");
-        mac.init(keySpec);
-
-        // 3. ikm(sharedSecret)을 넣어서 PRK 생성
-        return mac.doFinal(ikm);
-    }
-
-    // HKDF-Expand 단계: PRK에서 원하는 길이만큼 키 뽑기
-    private static byte[] hkdfExpand(byte[] prk, byte[] info, int length) throws Exception {
-        int hashLen = 32; //SHA-256 출력길이
-        int n = (int) Math.ceil((double) length / hashLen);
-
-        byte[] okm = new byte[length]; // Output Keying Material
-        byte[] previousT = new byte[0];
-        int offset = 0;
-
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(prk, "HmacSHA256");
-        mac.init(keySpec);
-
-        for (int i = 1; i <= n; i++) {
-            mac.reset();
-
-            // T(i) = HMAC-PRK(T(i-1) | info | i)
-            mac.update(previousT);
-            if (info != null) {
-                mac.update(info);
+    /**
+     * HKDF-SHA256 (RFC 5869): Extract(salt, ikm) → Expand(info) 결과를 out[off, off + len)에 바로 쓴다.
+     *
+     * 래칫(RatchetSession)이 메시지마다 부르므로 배열을 새로 만들지 않는다.
+     * PRK와 T(i)는 스레드별 버퍼에 두고, T(i-1) | info | i 는 이어 붙이지 않고 Mac에 차례로 넣는다.
+     * salt가 없으면 32바이트 0 (RFC 기본값).
+     */
+    public static void hkdf(byte[] salt, byte[] ikm, byte[] info, byte[] out, int off, int len)
+            throws GeneralSecurityException {
+        if (len < 0 || len > 255 * HASH_LEN) throw new IllegalArgumentException("HKDF 길이: " + len);
+
+        byte[] buf = HKDF_BUFFER.get();   // [0, 32) PRK, [32, 64) T(i)
+        Mac mac = CryptoPool.hmacSha256();
+        try {
+            // Extract: PRK = HMAC(salt, ikm)
+            mac.init(salt == null || salt.length == 0 ? ZERO_SALT : new SecretKeySpec(salt, "HmacSHA256"));
+            mac.update(ikm);
+            mac.doFinal(buf, 0);
+
+            // Expand: T(i) = HMAC(PRK, T(i-1) | info | i)
+            mac.init(new SecretKeySpec(buf, 0, HASH_LEN, "HmacSHA256"));
+            for (int i = 1, done = 0; done < len; i++) {
+                if (i > 1) mac.update(buf, HASH_LEN, HASH_LEN);
+                if (info != null) mac.update(info);
+                mac.update((byte) i);
+                mac.doFinal(buf, HASH_LEN);
+
+                int n = Math.min(HASH_LEN, len - done);
+                System.arraycopy(buf, HASH_LEN, out, off + done, n);
+                done += n;
             }
-            mac.update((byte) i);
-
-            byte[] t = mac.doFinal();
-
-            int bytesToCopy = Math.min(hashLen, length - offset);
-            System.arraycopy(t, 0, okm, offset, bytesToCopy);
-            offset += bytesToCopy;
-            previousT = t;
+        } finally {
+            Arrays.fill(buf, (byte) 0);
         }
-        return okm;
     }
+
     // === 공개키 <-> Base64 문자열 변환 ===
 
     // PublicKey -> Base64 문자열
@@ -124,7 +117,7 @@ public class EcdhUtil {
     public static PublicKey decodePublicKey(String base64) throws Exception {
         byte[] encoded = Base64.getDecoder().decode(base64);
         X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
-        KeyFactory kf = KeyFactory.getInstance("X25519");
+        KeyFactory kf = CryptoPool.x25519KeyFactory();
         return kf.generatePublic(spec);
     }
 
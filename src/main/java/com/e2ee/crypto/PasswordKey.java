@@ -9,6 +9,11 @@ import java.nio.charset.StandardCharsets;
 public class PasswordKey {
 
     public static SecretKey deriveKey(String password) throws Exception {
+        return new SecretKeySpec(deriveKeyBytes(password), "AES");
+    }
+
+    // 키 바이트 그대로 (UnlockedVault가 들고 있다가 잠글 때 0으로 지움)
+    public static byte[] deriveKeyBytes(String password) throws Exception {
         byte[] salt = "fixed-salt-for-demo".getBytes(StandardCharsets.UTF_8);
 
         PBEKeySpec spec = new PBEKeySpec(
@@ -18,9 +23,11 @@ public class PasswordKey {
                 256 // 256-bit AES key
         );
 
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = skf.generateSecret(spec).getEncoded();
-
-        return new SecretKeySpec(keyBytes, "AES");
+        SecretKeyFactory skf = CryptoPool.pbkdf2();
+        try {
+            return skf.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
     }
 }
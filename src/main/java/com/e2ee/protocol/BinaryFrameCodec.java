@@ -0,0 +1,310 @@
+package com.e2ee.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 길이 접두사 바이너리 프레임.
+ *
+ * 프레임 = [varint 본문길이][본문]
+ * 본문   = [type(1)]
+ *          [varint len][sender UTF-8]
+ *          [varint len][receiver UTF-8]
+ *          [varint len][timestamp UTF-8]
+ *          [bodyKind(1)] + 내용
+ *
+ * sender/receiver/timestamp가 null이면 len = -1 (varint 5바이트, 본문 없음) → ""와 구분해 JSON과 같게 복원
+ *
+ * bodyKind
+ *   0 = body 없음(null)
+ *   1 = 문자열      : [varint len][UTF-8]
+ *   2 = 암호문      : [alg(1)] (0xFF면 [varint len][알고리즘 이름] 추가)
+ *                     [varint len][nonce 원시 바이트]
+ *                     [varint len][암호문+태그 원시 바이트]
+ *
+ * 암호문은 EncryptedPayload.toWireString() 형식("alg:nonceB64:cipherB64")을
+ * 알아보고 Base64를 벗겨서 원시 바이트로 싣는다. (약 33% 절약)
+ *
+ * 연결 시작 시 클라이언트가 PREAMBLE 4바이트를 먼저 보내면 이 코덱으로 전환되고,
+ * 서버는 같은 PREAMBLE을 돌려보내 수락을 알린다. ('{'로 시작하면 예전 JSON 그대로)
+ * (서버 com.e2ee.server.protocol.BinaryFrameCodec 과 같은 형식이어야 함)
+ */
+public class BinaryFrameCodec implements FrameCodec {
+
+    public static final byte[] PREAMBLE = {(byte) 0xE2, (byte) 0xEE, 'B', 1};
+
+    // 본문 최대 크기
+    public static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    static final int KIND_NULL = 0;
+    static final int KIND_TEXT = 1;
+    static final int KIND_ENCRYPTED = 2;
+
+    private static final String[] KNOWN_ALGORITHMS = {"AES/GCM/NoPadding"};
+    private static final int ALG_CUSTOM = 0xFF;
+    private static final int NULL_LENGTH = -1;
+
+    private static final MessageType[] TYPES = MessageType.values();
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    // ======================= 인코딩 =======================
+
+    @Override
+    public byte[] encode(ChatMessage msg) {
+        Sink body = new Sink(64 + (msg.getBody() != null ? msg.getBody().length() : 0));
+
+        body.put(msg.getType().ordinal());
+        body.putString(msg.getSender());
+        body.putString(msg.getReceiver());
+        body.putString(msg.getTimestamp());
+        putBody(body, msg.getBody());
+
+        Sink frame = new Sink(body.len + 5);
+        frame.putVarint(body.len);
+        frame.put(body.buf, 0, body.len);
+        return frame.toArray();
+    }
+
+    private void putBody(Sink out, String body) {
+        if (body == null) {
+            out.put(KIND_NULL);
+            return;
+        }
+
+        byte[][] enc = splitEncrypted(body);
+        if (enc == null) {
+            out.put(KIND_TEXT);
+            out.putString(body);
+            return;
+        }
+
+        out.put(KIND_ENCRYPTED);
+        int alg = algorithmId(enc[0]);
+        out.put(alg);
+        if (alg == ALG_CUSTOM) out.putBytes(enc[0]);
+        out.putBytes(enc[1]);
+        out.putBytes(enc[2]);
+    }
+
+    // "alg:nonceB64:cipherB64" 이면 {alg, nonce, cipher} 바이트, 아니면 null
+    private static byte[][] splitEncrypted(String body) {
+        int c1 = body.indexOf(':');
+        if (c1 <= 0) return null;
+        int c2 = body.indexOf(':', c1 + 1);
+        if (c2 < 0) return null;
+
+        String alg = body.substring(0, c1);
+        String nonceB64 = body.substring(c1 + 1, c2);
+        String cipherB64 = body.substring(c2 + 1);
+
+        try {
+            byte[] nonce = Base64.getDecoder().decode(nonceB64);
+            byte[] cipher = Base64.getDecoder().decode(cipherB64);
+
+            // 다시 Base64로 만들었을 때 원래 문자열과 같아야 손실 없이 복원 가능
+            if (!Base64.getEncoder().encodeToString(nonce).equals(nonceB64) ||
+                    !Base64.getEncoder().encodeToString(cipher).equals(cipherB64)) {
+                return null;
+            }
+            return new byte[][]{alg.getBytes(StandardCharsets.UTF_8), nonce, cipher};
+
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int algorithmId(byte[] alg) {
+        String name = new String(alg, StandardCharsets.UTF_8);
+        for (int i = 0; i < KNOWN_ALGORITHMS.length; i++) {
+            if (KNOWN_ALGORITHMS[i].equals(name)) return i;
+        }
+        return ALG_CUSTOM;
+    }
+
+    // ======================= 디코딩 =======================
+
+    @Override
+    public ChatMessage decode(byte[] frame, int off, int len) {
+        Source in = new Source(frame, off, off + len);
+
+        int typeId = in.get();
+        if (typeId >= TYPES.length) {
+            throw new IllegalArgumentException("알 수 없는 타입 바이트: " + typeId);
+        }
+        MessageType type = TYPES[typeId];
+
+        String sender = in.getString();
+        String receiver = in.getString();
+        String timestamp = in.getString();
+        String body = getBody(in);
+
+        return new ChatMessage(type, sender, receiver, body, timestamp);
+    }
+
+    private static String getBody(Source in) {
+        int kind = in.get();
+        switch (kind) {
+            case KIND_NULL:
+                return null;
+
+            case KIND_TEXT:
+                return in.getString();
+
+            case KIND_ENCRYPTED: {
+                int alg = in.get();
+                if (alg >= KNOWN_ALGORITHMS.length && alg != ALG_CUSTOM) {
+                    throw new IllegalArgumentException("알 수 없는 알고리즘 바이트: " + alg);
+                }
+                String algorithm = (alg == ALG_CUSTOM)
+                        ? new String(in.getBytes(), StandardCharsets.UTF_8)
+                        : KNOWN_ALGORITHMS[alg];
+                byte[] nonce = in.getBytes();
+                byte[] cipher = in.getBytes();
+                return algorithm + ":" +
+                        Base64.getEncoder().encodeToString(nonce) + ":" +
+                        Base64.getEncoder().encodeToString(cipher);
+            }
+
+            default:
+                throw new IllegalArgumentException("알 수 없는 body 종류: " + kind);
+        }
+    }
+
+    // ======================= 헤더만 읽기 =======================
+
+    /** 본문 첫 바이트(type)만 보고 MessageType을 알아낸다 */
+    public static MessageType peekType(byte[] frame, int off) {
+        int typeId = frame[off] & 0xFF;
+        return typeId < TYPES.length ? TYPES[typeId] : null;
+    }
+
+    // ======================= varint =======================
+
+    /**
+     * buf[off..end) 에서 varint 하나를 읽는다.
+     *
+     * @return {값, 읽은 바이트 수}, 아직 바이트가 모자라면 null
+     */
+    public static int[] readVarint(byte[] buf, int off, int end) {
+        int value = 0;
+        int shift = 0;
+        for (int i = off; i < end; i++) {
+            int b = buf[i] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return new int[]{value, i - off + 1};
+            shift += 7;
+            if (shift > 28) throw new IllegalArgumentException("varint가 너무 깁니다");
+        }
+        return null;
+    }
+
+    // ======================= 내부 버퍼 =======================
+
+    static final class Sink {
+        byte[] buf;
+        int len;
+
+        Sink(int initial) {
+            buf = new byte[Math.max(16, initial)];
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+
+        void put(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        void put(byte[] src, int off, int n) {
+            ensure(n);
+            System.arraycopy(src, off, buf, len, n);
+            len += n;
+        }
+
+        void putVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void putBytes(byte[] b) {
+            putVarint(b.length);
+            put(b, 0, b.length);
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putVarint(NULL_LENGTH);
+                return;
+            }
+            putBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toArray() {
+            return len == buf.length ? buf : Arrays.copyOf(buf, len);
+        }
+    }
+
+    static final class Source {
+        final byte[] buf;
+        int pos;
+        final int end;
+
+        Source(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int get() {
+            if (pos >= end) throw new IllegalArgumentException("프레임이 잘렸습니다");
+            return buf[pos++] & 0xFF;
+        }
+
+        int getLength() {
+            int[] v = readVarint(buf, pos, end);
+            if (v == null || v[0] < 0 || pos + v[1] + v[0] > end) {
+                throw new IllegalArgumentException("프레임이 잘렸습니다");
+            }
+            pos += v[1];
+            return v[0];
+        }
+
+        // null 표시(-1)는 문자열 자리에서만 허용
+        private int getNullableLength() {
+            int[] v = readVarint(buf, pos, end);
+            if (v != null && v[0] == NULL_LENGTH) {
+                pos += v[1];
+                return NULL_LENGTH;
+            }
+            return getLength();
+        }
+
+        byte[] getBytes() {
+            int n = getLength();
+            byte[] b = Arrays.copyOfRange(buf, pos, pos + n);
+            pos += n;
+            return b;
+        }
+
+        String getString() {
+            int n = getNullableLength();
+            if (n == NULL_LENGTH) return null;
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+}
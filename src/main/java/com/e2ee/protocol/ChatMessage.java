@@ -76,6 +76,23 @@ public class ChatMessage {
         );
     }
 
+    // 여러 명의 공개키를 한 번에 요청 (KEY_BATCH_REQ, 서버가 KEY_BATCH_RES 하나로 응답)
+    public static ChatMessage keyBatchRequest(String sender,
+                                              java.util.Collection<String> ids,
+                                              String timestamp) {
+
+        com.google.gson.JsonObject body = new com.google.gson.JsonObject();
+        body.add("ids", new com.google.gson.Gson().toJsonTree(ids));
+
+        return new ChatMessage(
+                MessageType.KEY_BATCH_REQ,
+                sender,
+                "server",
+                body.toString(),
+                timestamp
+        );
+    }
+
     // body에 들어있는 Base64 공개키를 PublicKey 객체로 복원
     public java.security.PublicKey extractPeerPublicKey() throws Exception {
         return com.e2ee.crypto.EcdhUtil.decodePublicKey(this.body);
@@ -0,0 +1,93 @@
+package com.e2ee.protocol;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * 소켓 위에서 ChatMessage를 프레임 단위로 주고받는 통로 (클라이언트용).
+ *
+ * binary=true 면 연결 직후 PREAMBLE을 보내고 서버가 같은 PREAMBLE로
+ * 수락하는 것을 확인한 뒤 바이너리 프레임을 쓴다. 아니면 예전 JSON 줄 그대로.
+ */
+public class FrameChannel implements Closeable {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final FrameCodec codec;
+
+    private FrameChannel(Socket socket, FrameCodec codec) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.codec = codec;
+    }
+
+    public static FrameChannel open(Socket socket, boolean binary) throws IOException {
+        if (!binary) {
+            return new FrameChannel(socket, FrameCodec.JSON);
+        }
+
+        FrameChannel ch = new FrameChannel(socket, FrameCodec.BINARY);
+
+        // 핸드셰이크: PREAMBLE 보내고 같은 값이 돌아오는지 확인
+        ch.out.write(BinaryFrameCodec.PREAMBLE);
+        ch.out.flush();
+
+        byte[] ack = ch.in.readNBytes(BinaryFrameCodec.PREAMBLE.length);
+        if (!Arrays.equals(ack, BinaryFrameCodec.PREAMBLE)) {
+            socket.close();
+            throw new IOException("서버가 바이너리 코덱을 지원하지 않습니다");
+        }
+        return ch;
+    }
+
+    public FrameCodec getCodec() {
+        return codec;
+    }
+
+    public synchronized void send(ChatMessage msg) throws IOException {
+        out.write(codec.encode(msg));
+        out.flush();
+    }
+
+    /** 다음 메시지 하나 (연결이 끊기면 null) */
+    public ChatMessage receive() throws IOException {
+        byte[] frame = (codec == FrameCodec.BINARY) ? readBinary() : readLine();
+        return frame == null ? null : codec.decode(frame);
+    }
+
+    private byte[] readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') return line.toByteArray();
+            if (b != '\r') line.write(b);
+        }
+        return line.size() > 0 ? line.toByteArray() : null;
+    }
+
+    private byte[] readBinary() throws IOException {
+        int len = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) return null;
+            len |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 28) throw new IOException("varint가 너무 깁니다");
+        }
+        if (len > BinaryFrameCodec.MAX_FRAME) throw new IOException("프레임이 너무 깁니다: " + len);
+
+        byte[] frame = in.readNBytes(len);
+        if (frame.length < len) return null;
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,24 @@
+package com.e2ee.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 예전 방식: Gson JSON 한 줄.
+ */
+public class JsonFrameCodec implements FrameCodec {
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(ChatMessage msg) {
+        return (JsonUtil.toJson(msg) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ChatMessage decode(byte[] frame, int off, int len) {
+        return JsonUtil.fromJson(new String(frame, off, len, StandardCharsets.UTF_8), ChatMessage.class);
+    }
+}
@@ -0,0 +1,290 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.crypto.EncryptedPayload;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 1:1 세션(E2eeSession)의 카운터 nonce 모드.
+ *
+ * 메시지마다 SecureRandom으로 12바이트를 뽑는 대신, 보내는 쪽이 epoch를 하나 정해 두고 카운터를 1씩 올린다.
+ *
+ *   보내는 키 = HMAC(세션 AES 키, "e2ee-ctr" + epoch)
+ *   GCM IV(12바이트) = 0 0 0 0 + counter(8)
+ *   와이어 nonce(16바이트) = epoch(8) + counter(8)   ← 무작위 모드(12바이트)와 길이로 구분
+ *   epoch = 만든 시각(ms) << 20 | 무작위 19비트 << 1 | side
+ *
+ * epoch는 이 객체가 처음 보낼 때 정한다. 세션은 SessionStore에 저장됐다가 다시 읽히지만
+ * 보내는 카운터는 저장하지 않으므로, 다시 읽힌 세션은 새 epoch(= 새 키)로 0부터 센다 → 같은 (키, IV)가 다시 나오지 않는다.
+ * side는 신원 공개키가 작은 쪽 0, 큰 쪽 1 → 양쪽이 같은 세션 키를 써도 방향마다 epoch가 겹치지 않고,
+ * 내 side의 epoch로 온 메시지(내가 보낸 것을 되돌려 보냄)는 받지 않는다.
+ *
+ * 카운터가 rekeyAfter(기본 2^32, GCM 키 하나에 권장되는 호출 수)에 닿으면 새 epoch로 바꾼다.
+ *
+ * 받는 쪽은 상대 epoch마다 ReplayWindow(최근 1024개)를 두고 같은 카운터를 두 번 받으면 거절한다.
+ * 창은 최근에 쓴 상대 epoch MAX_PEER_EPOCHS개만 두고, 밀려난 epoch 중 가장 큰 값(floor) 이하의
+ * 처음 보는 epoch는 거절한다 (창을 새로 만들면 그 epoch의 옛 메시지를 다시 받게 되므로).
+ * epoch가 시각 순이라 상대가 새로 만든 epoch는 floor보다 크다.
+ * 창과 floor는 encodeState로 세션과 함께 SessionStore에 저장된다 → 다시 켜도 이어서 거절한다.
+ */
+public class CounterNonces {
+
+    public static final int WIRE_NONCE_BYTES = 16;
+    public static final long DEFAULT_REKEY_AFTER = 1L << 32;
+
+    static final int MAX_PEER_EPOCHS = 8;
+
+    private static final byte STATE_VERSION = 1;
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final byte[] LABEL = "e2ee-ctr".getBytes(StandardCharsets.UTF_8);
+
+    private final SecretKey sessionKey;
+    private final long rekeyAfter;
+    private final int side;    // 0 / 1, 양쪽 신원 키가 같으면(내 기기끼리) -1 → 방향 확인 안 함
+
+    // ---- 보내는 쪽 ----
+    private long epoch;
+    private SecretKey sendKey;
+    private long counter;
+    private long rekeys;
+
+    // ---- 받는 쪽: 상대 epoch → 키 + 재전송 창 (오래 안 쓴 것부터 밀려남) ----
+    private static final class Peer {
+        final SecretKey key;
+        final ReplayWindow window = new ReplayWindow();
+
+        Peer(SecretKey key) {
+            this.key = key;
+        }
+    }
+
+    private final LinkedHashMap<Long, Peer> peers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Peer> eldest) {
+            if (size() <= MAX_PEER_EPOCHS) return false;
+            floor = Math.max(floor, eldest.getKey());
+            return true;
+        }
+    };
+
+    // 밀려난 상대 epoch 중 가장 큰 값 (이하의 처음 보는 epoch는 거절)
+    private long floor = Long.MIN_VALUE;
+
+    public CounterNonces(SecretKey sessionKey, int side) {
+        this(sessionKey, DEFAULT_REKEY_AFTER, side);
+    }
+
+    public CounterNonces(SecretKey sessionKey, long rekeyAfter, int side) {
+        this.sessionKey = sessionKey;
+        this.rekeyAfter = rekeyAfter;
+        this.side = side;
+    }
+
+    // 내 신원 공개키가 작으면 0, 크면 1, 같으면 -1
+    public static int sideOf(byte[] myPublic, byte[] theirPublic) {
+        int c = Arrays.compareUnsigned(myPublic, theirPublic);
+        return c < 0 ? 0 : c > 0 ? 1 : -1;
+    }
+
+    public static boolean isCounterNonce(byte[] nonce) {
+        return nonce.length == WIRE_NONCE_BYTES;
+    }
+
+    public EncryptedPayload encrypt(byte[] plain) throws GeneralSecurityException {
+        long e;
+        long c;
+        SecretKey key;
+        synchronized (this) {
+            if (sendKey == null || counter >= rekeyAfter) {
+                if (sendKey != null) rekeys++;
+                epoch = nextEpoch();
+                sendKey = keyFor(epoch);
+                counter = 0;
+            }
+            e = epoch;
+            c = counter++;
+            key = sendKey;
+        }
+
+        Cipher cipher = CryptoPool.aesGcm();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv(c)));
+        byte[] encrypted = cipher.doFinal(plain);
+
+        byte[] wire = ByteBuffer.allocate(WIRE_NONCE_BYTES).putLong(e).putLong(c).array();
+        return new EncryptedPayload(ALGORITHM,
+                Base64.getEncoder().encodeToString(wire),
+                Base64.getEncoder().encodeToString(encrypted));
+    }
+
+    /**
+     * @param checkReplay false면 재전송 창을 보지도 바꾸지도 않는다 (기록 다시 보기처럼 이미 받은 것을 또 풀 때)
+     */
+    public byte[] decrypt(byte[] wireNonce, byte[] cipherBytes, boolean checkReplay) throws GeneralSecurityException {
+        ByteBuffer n = ByteBuffer.wrap(wireNonce);
+        long e = n.getLong();
+        long c = n.getLong();
+
+        Peer peer;
+        synchronized (this) {
+            peer = peers.get(e);
+            if (checkReplay) refuse(e, c, peer);
+        }
+        SecretKey key = peer != null ? peer.key : keyFor(e);
+
+        Cipher cipher = CryptoPool.aesGcm();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv(c)));
+        byte[] plain = cipher.doFinal(cipherBytes);
+
+        // 인증이 통과한 뒤에만 기록 (가짜 epoch로 창을 밀어내지 못하게)
+        if (checkReplay) {
+            synchronized (this) {
+                Peer p = peers.get(e);
+                refuse(e, c, p);
+                if (p == null) {
+                    p = new Peer(key);
+                    peers.put(e, p);
+                }
+                p.window.mark(c);
+            }
+        }
+        return plain;
+    }
+
+    // ---------------- 저장 (SessionStore) ----------------
+
+    /**
+     * 받는 쪽 상태: [버전][floor][epoch 수] + epoch마다 [epoch][highest][비트맵 SIZE/64개 long]
+     * 오래 안 쓴 epoch부터 적는다 (restoreState가 같은 순서로 넣으면 LRU 순서도 그대로)
+     */
+    public synchronized byte[] encodeState() {
+        ByteBuffer b = ByteBuffer.allocate(1 + 8 + 1 + peers.size() * ReplayWindow.STATE_BYTES);
+        b.put(STATE_VERSION).putLong(floor).put((byte) peers.size());
+        for (Map.Entry<Long, Peer> e : peers.entrySet()) {
+            b.putLong(e.getKey());
+            e.getValue().window.writeTo(b);
+        }
+        return b.array();
+    }
+
+    public synchronized void restoreState(ByteBuffer state) throws GeneralSecurityException {
+        if (state.get() != STATE_VERSION) throw new GeneralSecurityException("알 수 없는 nonce 상태 버전");
+        floor = state.getLong();
+        int n = state.get();
+        for (int i = 0; i < n; i++) {
+            long e = state.getLong();
+            Peer p = new Peer(keyFor(e));
+            p.window.readFrom(state);
+            peers.put(e, p);
+        }
+    }
+
+    public synchronized long getCounter() {
+        return counter;
+    }
+
+    public synchronized long getRekeys() {
+        return rekeys;
+    }
+
+    // 재전송 / 내 방향 / 잊어버린 epoch면 GeneralSecurityException (peer: 이 epoch의 창, 없으면 null)
+    private void refuse(long e, long c, Peer peer) throws GeneralSecurityException {
+        if (side >= 0 && (e & 1) == side) {
+            throw new GeneralSecurityException("내 방향의 epoch로 온 메시지");
+        }
+        if (peer == null && e <= floor) {
+            throw new GeneralSecurityException("이미 잊어버린 epoch (" + e + ")");
+        }
+        if (peer != null && !peer.window.check(c)) {
+            throw new GeneralSecurityException("재전송된 메시지 (counter " + c + ")");
+        }
+    }
+
+    // 시각 순 + 이전 epoch보다 항상 크게 (side 비트는 그대로)
+    private long nextEpoch() {
+        long e = (System.currentTimeMillis() << 20) | ((long) (CryptoPool.random().nextInt() & 0x7FFFF) << 1);
+        e |= side >= 0 ? side : CryptoPool.random().nextInt() & 1;
+        return sendKey != null && e <= epoch ? epoch + 2 : e;
+    }
+
+    private SecretKey keyFor(long epoch) throws GeneralSecurityException {
+        Mac mac = CryptoPool.hmacSha256();
+        mac.init(new SecretKeySpec(sessionKey.getEncoded(), "HmacSHA256"));
+        mac.update(LABEL);
+        return new SecretKeySpec(mac.doFinal(ByteBuffer.allocate(8).putLong(epoch).array()), "AES");
+    }
+
+    private static byte[] iv(long counter) {
+        return ByteBuffer.allocate(12).putInt(0).putLong(counter).array();
+    }
+
+    /**
+     * 최근 SIZE개 카운터 중 받은 것 (비트맵).
+     * 가장 큰 카운터보다 SIZE 이상 뒤처진 것은 이미 받았는지 모르므로 거절한다.
+     */
+    static final class ReplayWindow {
+        static final int SIZE = 1024;
+        static final int STATE_BYTES = 8 + 8 + SIZE / 8;
+
+        private final long[] bits = new long[SIZE / 64];
+        private long highest = -1;
+
+        boolean check(long c) {
+            if (c < 0) return false;
+            if (c > highest) return true;
+            if (highest - c >= SIZE) return false;
+            return !get(c);
+        }
+
+        void mark(long c) {
+            if (c > highest) {
+                if (c - highest >= SIZE) {
+                    Arrays.fill(bits, 0);
+                } else {
+                    for (long i = highest + 1; i <= c; i++) clear(i);
+                }
+                highest = c;
+            }
+            set(c);
+        }
+
+        // [highest][비트맵] (epoch는 부르는 쪽이 앞에 적는다)
+        void writeTo(ByteBuffer b) {
+            b.putLong(highest);
+            for (long w : bits) b.putLong(w);
+        }
+
+        void readFrom(ByteBuffer b) {
+            highest = b.getLong();
+            for (int i = 0; i < bits.length; i++) bits[i] = b.getLong();
+        }
+
+        private boolean get(long c) {
+            int i = (int) (c % SIZE);
+            return (bits[i >>> 6] & (1L << (i & 63))) != 0;
+        }
+
+        private void set(long c) {
+            int i = (int) (c % SIZE);
+            bits[i >>> 6] |= 1L << (i & 63);
+        }
+
+        private void clear(long c) {
+            int i = (int) (c % SIZE);
+            bits[i >>> 6] &= ~(1L << (i & 63));
+        }
+    }
+}
@@ -5,22 +5,76 @@ import com.e2ee.crypto.EcdhUtil;
 import com.e2ee.crypto.AesGcmUtil;
 
 import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
+import java.util.Base64;
 
 public class E2eeSession {
 
+    /**
+     * 보낼 때 nonce 만드는 방식 (받을 때는 nonce 길이를 보고 알아서 구분)
+     *   COUNTER : epoch + 카운터 (CounterNonces, 재전송 거절) - 기본
+     *   RANDOM  : 메시지마다 SecureRandom 12바이트 (예전 방식, -De2ee.nonce=random)
+     * 래칫 세션(createRatcheting)은 래칫 체인이 있으면 그걸로 보내고, 없을 때만 이 방식을 쓴다.
+     */
+    public enum NonceMode { COUNTER, RANDOM }
+
+    private static final NonceMode DEFAULT_MODE =
+            "random".equalsIgnoreCase(System.getProperty("e2ee.nonce")) ? NonceMode.RANDOM : NonceMode.COUNTER;
+
     private final KeyPair myKeyPair;   // 내 X25519 키쌍
     private final PublicKey theirPublicKey; // 상대 공개키
     private final SecretKey aesKey;     // 이 세션에서 쓸 AES 키
 
+    private final NonceMode mode;
+    private final CounterNonces nonces;
+
+    // 더블 래칫 (null이면 세션 키 하나로만: 그룹 pairwise 등)
+    private final RatchetSession ratchet;
+
     // 생성자: 세션 안에 쓸 값 3개를 저장
     public E2eeSession(KeyPair myKeyPair,
                        PublicKey theirPublicKey,
                        SecretKey aesKey) {
+        this(myKeyPair, theirPublicKey, aesKey, DEFAULT_MODE, CounterNonces.DEFAULT_REKEY_AFTER, null);
+    }
+
+    // 래칫 세션 (SessionStore에서 상태를 되살릴 때)
+    public E2eeSession(KeyPair myKeyPair,
+                       PublicKey theirPublicKey,
+                       SecretKey aesKey,
+                       RatchetSession ratchet) {
+        this(myKeyPair, theirPublicKey, aesKey, DEFAULT_MODE, CounterNonces.DEFAULT_REKEY_AFTER, ratchet);
+    }
+
+    // rekeyAfter: 카운터가 여기에 닿으면 새 epoch(새 키)로 (테스트/벤치마크용으로 작게)
+    public E2eeSession(KeyPair myKeyPair,
+                       PublicKey theirPublicKey,
+                       SecretKey aesKey,
+                       NonceMode mode,
+                       long rekeyAfter) {
+        this(myKeyPair, theirPublicKey, aesKey, mode, rekeyAfter, null);
+    }
+
+    // ratchet이 있으면 보낼 수 있을 때는 래칫으로, 아직 못 보내면(responder가 첫 메시지를 받기 전) mode로 보낸다
+    public E2eeSession(KeyPair myKeyPair,
+                       PublicKey theirPublicKey,
+                       SecretKey aesKey,
+                       NonceMode mode,
+                       long rekeyAfter,
+                       RatchetSession ratchet) {
         this.myKeyPair = myKeyPair;
         this.theirPublicKey = theirPublicKey;
         this.aesKey = aesKey;
+        this.mode = mode;
+        this.nonces = new CounterNonces(aesKey, rekeyAfter,
+                CounterNonces.sideOf(myKeyPair.getPublic().getEncoded(), theirPublicKey.getEncoded()));
+        this.ratchet = ratchet;
     }
 
     public static E2eeSession create(KeyPair myKeyPair, PublicKey theirPublicKey) throws Exception{
@@ -37,14 +91,89 @@ public class E2eeSession {
         return new E2eeSession(myKeyPair, theirPublicKey, aesKey);
     }
 
+    // 1:1 채팅용: 세션 키를 첫 루트 키로 하는 더블 래칫 세션
+    // (같은 상대와의 세션 객체마다 래칫이 따로 돌므로 1:1 채팅 한 곳(SessionStore)에서만 쓴다)
+    public static E2eeSession createRatcheting(KeyPair myKeyPair, PublicKey theirPublicKey) throws Exception {
+        E2eeSession base = create(myKeyPair, theirPublicKey);
+        return new E2eeSession(myKeyPair, theirPublicKey, base.getAesKey(),
+                new RatchetSession(myKeyPair, theirPublicKey, base.getAesKey().getEncoded()));
+    }
+
+    // 로컬 저장(SessionStore)용: 다시 만들 때 ECDH/HKDF 없이 이 두 값만 있으면 된다
+    public PublicKey getTheirPublicKey() {
+        return theirPublicKey;
+    }
+
+    public SecretKey getAesKey() {
+        return aesKey;
+    }
+
+    public NonceMode getNonceMode() {
+        return mode;
+    }
+
+    public CounterNonces getNonces() {
+        return nonces;
+    }
+
+    public RatchetSession getRatchet() {
+        return ratchet;
+    }
+
+    // 래칫으로 암호화된 메시지인지 (받은 뒤에는 키를 지우므로 기록 조회로 다시 풀 수 없다)
+    public static boolean isRatchetMessage(EncryptedPayload payload) {
+        return RatchetSession.isRatchetHeader(Base64.getDecoder().decode(payload.getNonceBase64()));
+    }
+
     // 이 세션의 AES 키로 문자열 암호화
     public EncryptedPayload encrypt(String plaintext) throws Exception {
-        return AesGcmUtil.encrypt(plaintext, aesKey);
+        if (ratchet != null && ratchet.canSend()) {
+            return ratchet.encrypt(plaintext.getBytes(StandardCharsets.UTF_8));
+        }
+        if (mode == NonceMode.RANDOM) {
+            return AesGcmUtil.encrypt(plaintext, aesKey);
+        }
+        return nonces.encrypt(plaintext.getBytes(StandardCharsets.UTF_8));
     }
 
-    // 이 세션의 AES 키로 암호문 복호화
+    // 이 세션의 AES 키로 암호문 복호화 (카운터 nonce면 같은 메시지를 두 번 받으면 거절)
     public String decrypt(EncryptedPayload payload) throws Exception {
-        return AesGcmUtil.decrypt(payload, aesKey);
+        return decrypt(payload, true);
+    }
+
+    // 이미 받았던 메시지를 다시 풀 때 (기록 조회) → 재전송 검사 없이
+    public String decryptStored(EncryptedPayload payload) throws Exception {
+        return decrypt(payload, false);
+    }
+
+    private String decrypt(EncryptedPayload payload, boolean checkReplay) throws Exception {
+        byte[] nonce = Base64.getDecoder().decode(payload.getNonceBase64());
+        if (RatchetSession.isRatchetHeader(nonce)) {
+            if (ratchet == null) throw new GeneralSecurityException("래칫 메시지지만 이 세션은 래칫을 쓰지 않음");
+            if (!checkReplay) throw new GeneralSecurityException("래칫 메시지는 받을 때 키를 지워서 다시 풀 수 없음");
+            byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
+            return new String(ratchet.decrypt(nonce, cipherBytes), StandardCharsets.UTF_8);
+        }
+
+        if (!CounterNonces.isCounterNonce(nonce)) {
+            // 무작위 nonce는 재전송을 가려낼 수 없으므로 래칫을 다시 시작하는 근거로 쓰지 않는다
+            return AesGcmUtil.decrypt(payload, aesKey);
+        }
+        byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
+        String plain = new String(nonces.decrypt(nonce, cipherBytes, checkReplay), StandardCharsets.UTF_8);
+        // 상대가 래칫 없이 보낸 새 메시지(재전송 검사 통과) → 상대가 래칫 상태를 잃었으면 다시 시작
+        if (ratchet != null && checkReplay) ratchet.onPeerWithoutRatchet();
+        return plain;
+    }
+
+    // 파일 보내기: in을 chunkBytes 조각으로 나눠 차례로 암호화 (fileId마다 다른 파일 키)
+    public FileStream.Encryptor encryptStream(InputStream in, byte[] fileId, int chunkBytes) throws IOException {
+        return new FileStream.Encryptor(in, aesKey, fileId, chunkBytes);
+    }
+
+    // 파일 받기: 받은 조각을 풀어서 바로 out에 쓴다
+    public FileStream.Decryptor decryptStream(byte[] fileId, OutputStream out) {
+        return new FileStream.Decryptor(out, aesKey, fileId);
     }
 
 
@@ -0,0 +1,206 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.crypto.EncryptedPayload;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 큰 파일을 고정 크기 조각(chunk)으로 나눠 AES-GCM으로 하나씩 암호화/복호화한다.
+ * 파일 크기와 상관없이 메모리에는 조각 두 개(지금 것 + 다음 것)만 있다.
+ *
+ *   파일 키 = HMAC(세션 AES 키, "e2ee-file" + fileId)   → 파일마다 다른 키라 nonce를 카운터로 써도 안 겹친다
+ *   nonce(12바이트) = 조각 번호(8) + 0 0 0 + 마지막 표시(1)
+ *   AAD = fileId
+ *
+ * 받는 쪽은 자기가 센 조각 번호로 nonce를 다시 만들어 비교하므로
+ * 순서가 바뀌거나, 빠지거나, 다른 파일 조각이 끼거나, 마지막 조각 전에 끊기면 모두 알아챈다.
+ * (nonce가 GCM 인증에 들어가므로 조작하면 복호화가 실패함)
+ *
+ * 조각 하나 = 1:1 메시지와 같은 "AES/GCM/NoPadding:nonce:cipher" 모양 (바이너리 코덱이면 원시 바이트로 감)
+ */
+public class FileStream {
+
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+    public static final int MAX_CHUNK_BYTES = 1024 * 1024;
+
+    public static final int FILE_ID_BYTES = 16;
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int NONCE_LENGTH = 12;
+    private static final byte[] LABEL = "e2ee-file".getBytes(StandardCharsets.UTF_8);
+
+    // 새 파일 ID (파일 키 파생 + AAD)
+    public static byte[] newFileId() {
+        byte[] id = new byte[FILE_ID_BYTES];
+        CryptoPool.random().nextBytes(id);
+        return id;
+    }
+
+    static SecretKey fileKey(SecretKey sessionKey, byte[] fileId) throws GeneralSecurityException {
+        Mac mac = CryptoPool.hmacSha256();
+        mac.init(new SecretKeySpec(sessionKey.getEncoded(), "HmacSHA256"));
+        mac.update(LABEL);
+        return new SecretKeySpec(mac.doFinal(fileId), "AES");
+    }
+
+    static byte[] nonce(long index, boolean last) {
+        return ByteBuffer.allocate(NONCE_LENGTH).putLong(index).put(new byte[3]).put((byte) (last ? 1 : 0)).array();
+    }
+
+    // ======================= 보내는 쪽 =======================
+
+    /**
+     * InputStream을 조각 단위로 암호화. next()를 null이 나올 때까지 부른다.
+     * 빈 파일도 (빈) 마지막 조각 하나는 나간다.
+     */
+    public static class Encryptor {
+
+        private final InputStream in;
+        private final SecretKey key;
+        private final byte[] fileId;
+
+        // 지금 조각 / 미리 읽은 다음 조각 (마지막인지 알려면 하나 앞서 읽어야 함)
+        private byte[] current;
+        private byte[] ahead;
+        private int currentLen;
+        private int aheadLen;
+
+        private long index;
+        private long bytes;
+        private boolean done;
+
+        Encryptor(InputStream in, SecretKey sessionKey, byte[] fileId, int chunkBytes) throws IOException {
+            if (chunkBytes <= 0 || chunkBytes > MAX_CHUNK_BYTES) {
+                throw new IllegalArgumentException("조각 크기: " + chunkBytes);
+            }
+            try {
+                this.key = fileKey(sessionKey, fileId);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            this.in = in;
+            this.fileId = fileId.clone();
+            this.current = new byte[chunkBytes];
+            this.ahead = new byte[chunkBytes];
+            this.aheadLen = in.readNBytes(ahead, 0, chunkBytes);
+        }
+
+        /** 다음 조각의 암호문 (다 보냈으면 null) */
+        public EncryptedPayload next() throws IOException, GeneralSecurityException {
+            if (done) return null;
+
+            byte[] t = current;
+            current = ahead;
+            currentLen = aheadLen;
+            ahead = t;
+            aheadLen = currentLen == current.length ? in.readNBytes(ahead, 0, ahead.length) : 0;
+
+            boolean last = aheadLen == 0;
+            byte[] nonce = nonce(index, last);
+
+            Cipher cipher = CryptoPool.aesGcm();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+            cipher.updateAAD(fileId);
+            byte[] encrypted = cipher.doFinal(current, 0, currentLen);
+
+            index++;
+            bytes += currentLen;
+            done = last;
+
+            return new EncryptedPayload(ALGORITHM,
+                    Base64.getEncoder().encodeToString(nonce),
+                    Base64.getEncoder().encodeToString(encrypted));
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        // 지금까지 암호화한 조각 수 / 평문 바이트
+        public long getChunks() {
+            return index;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    // ======================= 받는 쪽 =======================
+
+    /**
+     * 조각을 받은 순서대로 넣으면 풀어서 바로 OutputStream에 쓴다.
+     * 순서가 어긋나거나 인증이 실패하면 예외 (그 뒤로는 받지 않음 → 받던 파일은 버릴 것).
+     */
+    public static class Decryptor {
+
+        private final OutputStream out;
+        private final SecretKey key;
+        private final byte[] fileId;
+
+        private long index;
+        private long bytes;
+        private boolean done;
+        private boolean failed;
+
+        Decryptor(OutputStream out, SecretKey sessionKey, byte[] fileId) {
+            try {
+                this.key = fileKey(sessionKey, fileId);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            this.out = out;
+            this.fileId = fileId.clone();
+        }
+
+        /** @return 마지막 조각이었으면 true */
+        public boolean accept(EncryptedPayload chunk) throws IOException, GeneralSecurityException {
+            if (done || failed) throw new IllegalStateException(done ? "이미 끝난 파일" : "실패한 파일");
+            failed = true;
+
+            byte[] nonce = Base64.getDecoder().decode(chunk.getNonceBase64());
+            boolean last = nonce.length == NONCE_LENGTH && nonce[NONCE_LENGTH - 1] == 1;
+            if (!Arrays.equals(nonce, nonce(index, last))) {
+                throw new GeneralSecurityException("조각 순서가 맞지 않음 (기대한 번호 " + index + ")");
+            }
+
+            Cipher cipher = CryptoPool.aesGcm();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+            cipher.updateAAD(fileId);
+            byte[] plain = cipher.doFinal(Base64.getDecoder().decode(chunk.getCipherBase64()));
+            out.write(plain);
+
+            index++;
+            bytes += plain.length;
+            done = last;
+            failed = false;
+            return last;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        public long getChunks() {
+            return index;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
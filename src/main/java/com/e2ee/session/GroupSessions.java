@@ -0,0 +1,244 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.MessageType;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 방(그룹) 암호화 상태: 방마다 내 SenderKey + 다른 멤버들의 SenderKey.
+ *
+ * 서버가 보내는 ROOM_MEMBERS로 멤버가 바뀐 걸 알고
+ *   - 멤버 목록을 처음 받거나 누가 들어오면: 그 사람에게 내 체인 키를 SENDER_KEY로 보낸다
+ *   - 누가 나가면: 내 체인 키를 새로 만들어 남은 멤버들에게 다시 보낸다 (나간 사람은 이후 메시지를 못 푼다)
+ *
+ * SENDER_KEY 본문은 상대와의 1:1 세션(X25519 → HKDF → AES-GCM)으로 암호화한다.
+ * 아직 상대 공개키가 없으면 서버에 공개키를 물어 두고, KEY_RES / KEY_BATCH_RES가 오면(onPeerKey) 밀린 것을 처리한다.
+ * 멤버 목록을 처음 받을 때처럼 여러 명이 한꺼번에 필요하면 KEY_BATCH_REQ 한 번으로 묻는다.
+ *
+ * 1:1 세션과 SenderKey는 사용자 ID("bob#0001" → "bob") 기준.
+ */
+public class GroupSessions {
+
+    public interface Outbox {
+        void send(ChatMessage msg) throws Exception;
+    }
+
+    private static final String ROOM_PREFIX = "room:";
+    private static final String TIMESTAMP = "2025-11-19T00:00:00";
+
+    private final String myTag;
+    private final String myId;
+    private final KeyPair myKeyPair;
+    private final Outbox out;
+
+    // 상대 ID → 1:1 세션 (SENDER_KEY 전달용)
+    private final Map<String, E2eeSession> pairwise = new HashMap<>();
+
+    // 방 → 멤버 ID / 내 키 / (보낸 사람 ID → 그 사람 키)
+    private final Map<String, Set<String>> members = new HashMap<>();
+    private final Map<String, SenderKey> mine = new HashMap<>();
+    private final Map<String, Map<String, SenderKey>> theirs = new HashMap<>();
+
+    // 공개키 기다리는 중: 상대 ID → 내 키를 보내야 할 방들 / 풀어야 할 SENDER_KEY들
+    private final Map<String, Set<String>> waitingToSend = new HashMap<>();
+    private final Map<String, List<ChatMessage>> waitingToOpen = new HashMap<>();
+    private final Set<String> requested = new HashSet<>();
+
+    // 이번 처리 중에 물어야 할 상대들 (끝날 때 KEY_BATCH_REQ 하나로)
+    private final List<String> toRequest = new ArrayList<>();
+
+    public GroupSessions(String myTag, KeyPair myKeyPair, Outbox out) {
+        this.myTag = myTag;
+        this.myId = userIdOf(myTag);
+        this.myKeyPair = myKeyPair;
+        this.out = out;
+    }
+
+    public static String userIdOf(String tag) {
+        int i = tag.indexOf('#');
+        return i < 0 ? tag : tag.substring(0, i);
+    }
+
+    public static boolean isRoom(String receiver) {
+        return receiver != null && receiver.startsWith(ROOM_PREFIX);
+    }
+
+    // ---------------- 서버 알림 ----------------
+
+    // ROOM_MEMBERS 본문: {"room":..,"members":[..]} (들어간 직후) / {"room":..,"joined":id} / {"room":..,"left":id}
+    public synchronized void onMembers(String body) throws Exception {
+        JsonObject o = JsonParser.parseString(body).getAsJsonObject();
+        String room = o.get("room").getAsString();
+
+        if (o.has("members")) {
+            Set<String> set = new LinkedHashSet<>();
+            for (JsonElement e : o.getAsJsonArray("members")) set.add(e.getAsString());
+            members.put(room, set);
+            mine.computeIfAbsent(room, k -> SenderKey.generate());
+            for (String m : set) {
+                if (!m.equals(myId)) sendMyKey(room, m);
+            }
+            flushKeyRequests();
+            return;
+        }
+
+        Set<String> set = members.get(room);
+        if (set == null) return;
+
+        if (o.has("joined")) {
+            String who = o.get("joined").getAsString();
+            if (set.add(who) && !who.equals(myId)) sendMyKey(room, who);
+        }
+
+        if (o.has("left")) {
+            String who = o.get("left").getAsString();
+            set.remove(who);
+            Map<String, SenderKey> keys = theirs.get(room);
+            if (keys != null) keys.remove(who);
+
+            // 나간 사람이 가진 내 체인 키는 버리고 새로 나눠 준다
+            mine.put(room, SenderKey.generate());
+            for (String m : set) {
+                if (!m.equals(myId)) sendMyKey(room, m);
+            }
+        }
+        flushKeyRequests();
+    }
+
+    // 내가 방에서 나감
+    public synchronized void leave(String room) {
+        members.remove(room);
+        mine.remove(room);
+        theirs.remove(room);
+    }
+
+    // KEY_RES로 상대 공개키를 받음 → 1:1 세션을 만들고 밀린 일을 처리
+    public synchronized void onPeerKey(String peerTag, PublicKey pub) throws Exception {
+        String peer = userIdOf(peerTag);
+        pairwise.put(peer, E2eeSession.create(myKeyPair, pub));
+        requested.remove(peer);
+
+        Set<String> rooms = waitingToSend.remove(peer);
+        if (rooms != null) {
+            for (String room : rooms) sendMyKey(room, peer);
+        }
+        List<ChatMessage> msgs = waitingToOpen.remove(peer);
+        if (msgs != null) {
+            for (ChatMessage m : msgs) onSenderKey(m);
+        }
+    }
+
+    // 다른 멤버가 보낸 체인 키
+    public synchronized void onSenderKey(ChatMessage msg) throws Exception {
+        String from = userIdOf(msg.getSender());
+        E2eeSession s = pairwise.get(from);
+        if (s == null) {
+            waitingToOpen.computeIfAbsent(from, k -> new ArrayList<>()).add(msg);
+            requestKey(from);
+            flushKeyRequests();
+            return;
+        }
+
+        JsonObject o = JsonParser.parseString(s.decrypt(EncryptedPayload.fromWireString(msg.getBody())))
+                .getAsJsonObject();
+        SenderKey key = new SenderKey(
+                o.get("keyId").getAsInt(),
+                o.get("iteration").getAsLong(),
+                Base64.getDecoder().decode(o.get("chainKey").getAsString()));
+
+        theirs.computeIfAbsent(o.get("room").getAsString(), k -> new HashMap<>()).put(from, key);
+    }
+
+    // ---------------- 메시지 ----------------
+
+    // 방 메시지 한 건: 멤버 수와 상관없이 암호화 한 번 (방 키가 아직 없으면 null)
+    public synchronized ChatMessage encrypt(String room, String plaintext, String timestamp) throws Exception {
+        SenderKey key = mine.get(room);
+        if (key == null) return null;
+
+        return new ChatMessage(
+                MessageType.CHAT,
+                myTag,
+                ROOM_PREFIX + room,
+                key.encrypt(plaintext).toWireString(),
+                timestamp
+        );
+    }
+
+    /**
+     * 방 메시지 복호화.
+     *
+     * @return 평문, 내가 보낸 것이 되돌아온 거면 null
+     * @throws IllegalStateException 보낸 사람의 체인 키를 아직 못 받음
+     */
+    public synchronized String decrypt(ChatMessage msg) throws Exception {
+        String from = userIdOf(msg.getSender());
+        if (from.equals(myId)) return null;
+
+        String room = msg.getReceiver().substring(ROOM_PREFIX.length());
+        Map<String, SenderKey> keys = theirs.get(room);
+        SenderKey key = keys == null ? null : keys.get(from);
+
+        EncryptedPayload payload = EncryptedPayload.fromWireString(msg.getBody());
+        if (key == null || key.getKeyId() != SenderKey.keyIdOf(payload)) {
+            throw new IllegalStateException(from + " 의 방 키를 아직 받지 못함");
+        }
+        return key.decrypt(payload);
+    }
+
+    // ---------------- 내부 ----------------
+
+    private void sendMyKey(String room, String peer) throws Exception {
+        E2eeSession s = pairwise.get(peer);
+        if (s == null) {
+            waitingToSend.computeIfAbsent(peer, k -> new LinkedHashSet<>()).add(room);
+            requestKey(peer);
+            return;
+        }
+
+        SenderKey key = mine.get(room);
+        if (key == null) return;
+
+        JsonObject o = new JsonObject();
+        o.addProperty("room", room);
+        o.addProperty("keyId", key.getKeyId());
+        o.addProperty("iteration", key.getIteration());
+        o.addProperty("chainKey", Base64.getEncoder().encodeToString(key.getChainKey()));
+
+        out.send(new ChatMessage(
+                MessageType.SENDER_KEY,
+                myTag,
+                peer,
+                s.encrypt(o.toString()).toWireString(),
+                TIMESTAMP
+        ));
+    }
+
+    private void requestKey(String peer) {
+        if (requested.add(peer)) toRequest.add(peer);
+    }
+
+    private void flushKeyRequests() throws Exception {
+        if (toRequest.isEmpty()) return;
+        if (toRequest.size() == 1) {
+            out.send(ChatMessage.keyRequest(myTag, toRequest.get(0), myKeyPair.getPublic(), TIMESTAMP));
+        } else {
+            out.send(ChatMessage.keyBatchRequest(myTag, new ArrayList<>(toRequest), TIMESTAMP));
+        }
+        toRequest.clear();
+    }
+}
@@ -0,0 +1,414 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 1:1 세션의 더블 래칫 (Signal Double Ratchet를 줄인 것).
+ *
+ *   메시지마다 : CK', MK = HKDF(salt = CK, "E2EE-Ratchet-Chain")                     ← 대칭 래칫, 쓴 MK는 바로 버림
+ *   답장마다   : RK', CK = HKDF(salt = RK, DH(내 래칫 키, 상대 래칫 키), "E2EE-Ratchet-Root") ← DH 래칫
+ *   (HKDF는 EcdhUtil.hkdf)
+ *
+ * 시작: RK = 세션 AES 키(신원 키 ECDH + HKDF). 신원 공개키가 작은 쪽이 initiator.
+ *   initiator : 새 래칫 키로 바로 DH 래칫 (상대 래칫 키 = 상대 신원 공개키) → 바로 보낼 수 있다
+ *   responder : 래칫 키 = 내 신원 키. initiator 메시지를 한 번 받아야 보낼 체인이 생긴다
+ *               (그 전에는 E2eeSession이 카운터 nonce 모드로 보낸다)
+ *
+ * 헤더 = flags(1) + 보내는 래칫 공개키 X509(44) + PN(4) + N(4) = 53바이트
+ *   와이어 nonce 자리에 그대로 싣고(12 / 16바이트와 길이로 구분) AAD로 인증한다.
+ *   MK가 메시지마다 다르므로 GCM IV는 0으로 고정.
+ *   flags INIT: initiator가 아직 답장을 못 받은 첫 체인. responder가 이걸 새 래칫 키로 받으면
+ *               상대가 상태를 잃은 것(재설치, /rekey) → responder도 처음부터 다시 시작한다.
+ *
+ * 늦게 / 순서가 바뀌어 오는 메시지 (오프라인 묶음 등): 건너뛴 번호의 MK를 skipped에 넣어 둔다.
+ *   - 한 체인에서 한 번에 건너뛸 수 있는 수는 MAX_SKIP (넘으면 거절 → 가짜 N으로 HKDF를 몇백만 번 돌리게 못 함)
+ *   - 전체는 MAX_SKIPPED_KEYS개까지, 넘으면 가장 먼저 넣은 것부터 버린다 (해시 조회 + 삽입 순서 → 메시지당 O(1))
+ * 상태는 복호화(인증)가 통과한 뒤에만 바꾼다 → 가짜 헤더로 체인을 밀거나 skipped를 채우지 못한다.
+ *
+ * 상태(encodeState)는 SessionStore가 메시지를 주고받을 때마다 다시 저장한다. 건너뛴 키는 저장하지 않는다.
+ * 스레드: 메서드는 모두 synchronized (입력 스레드 보내기 / 수신 스레드 받기).
+ */
+public class RatchetSession {
+
+    public static final int HEADER_BYTES = 1 + 44 + 4 + 4;
+    public static final int MAX_SKIP = 1000;
+    public static final int MAX_SKIPPED_KEYS = 1000;
+
+    private static final int KEY_BYTES = 32;
+    private static final int PUB_BYTES = 44;          // X25519 공개키 X509
+    private static final int MAX_INIT_KEYS = 8;       // responder가 기억하는 받아 본 INIT 래칫 키
+    private static final byte FLAG_INIT = 1;
+    private static final byte STATE_VERSION = 1;
+
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final GCMParameterSpec ZERO_IV = new GCMParameterSpec(GCM_TAG_LENGTH, new byte[12]);
+    private static final byte[] ROOT_INFO = "E2EE-Ratchet-Root".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CHAIN_INFO = "E2EE-Ratchet-Chain".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CHAIN_IKM = {0x01};
+
+    private final KeyPair identity;
+    private final PublicKey theirIdentity;
+    private final byte[] sharedKey;
+    private final boolean initiator;
+
+    private boolean started;
+    private KeyPair dhs;        // 내 래칫 키
+    private byte[] dhsPub;
+    private byte[] dhr;         // 상대 래칫 공개키 (responder가 아직 못 받았으면 null)
+    private byte[] rk;
+    private byte[] cks;         // 보내는 체인 (없으면 아직 못 보냄)
+    private byte[] ckr;         // 받는 체인
+    private int ns;
+    private int nr;
+    private int pn;             // 직전 보내는 체인 길이
+    private boolean sendInit;
+
+    private long dhRatchets;
+    private long evicted;
+
+    // 건너뛴 메시지 키: "래칫키 Base64:N" → MK (가장 먼저 넣은 것부터 밀려남)
+    private final LinkedHashMap<String, byte[]> skipped = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            if (size() <= MAX_SKIPPED_KEYS) return false;
+            Arrays.fill(eldest.getValue(), (byte) 0);
+            evicted++;
+            return true;
+        }
+    };
+
+    // responder: 이미 받아서 시작한 INIT 래칫 키 (다시 와도 상태를 되돌리지 않게)
+    private final LinkedHashMap<String, Boolean> initKeys = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_INIT_KEYS;
+        }
+    };
+
+    // 체인 한 단계 결과 (CK' 32 + MK 32), synchronized 안에서만 씀
+    private final byte[] okm = new byte[2 * KEY_BYTES];
+
+    /**
+     * @param sharedKey 신원 키로 만든 세션 AES 키 (E2eeSession.getAesKey) = 첫 루트 키
+     */
+    public RatchetSession(KeyPair identity, PublicKey theirIdentity, byte[] sharedKey) {
+        this.identity = identity;
+        this.theirIdentity = theirIdentity;
+        this.sharedKey = sharedKey.clone();
+        this.initiator = Arrays.compareUnsigned(identity.getPublic().getEncoded(), theirIdentity.getEncoded()) < 0;
+    }
+
+    public static boolean isRatchetHeader(byte[] nonce) {
+        return nonce.length == HEADER_BYTES;
+    }
+
+    // ======================= 보내기 =======================
+
+    // responder는 initiator 메시지를 받기 전까지 false
+    public synchronized boolean canSend() throws Exception {
+        start();
+        return cks != null;
+    }
+
+    public synchronized EncryptedPayload encrypt(byte[] plain) throws Exception {
+        start();
+        if (cks == null) throw new IllegalStateException("아직 보낼 래칫 체인이 없음 (상대 메시지를 먼저 받아야 함)");
+
+        byte[] header = ByteBuffer.allocate(HEADER_BYTES)
+                .put(sendInit ? FLAG_INIT : 0).put(dhsPub).putInt(pn).putInt(ns).array();
+        SecretKeySpec mk = chainStep(cks);
+        ns++;
+
+        Cipher cipher = CryptoPool.aesGcm();
+        cipher.init(Cipher.ENCRYPT_MODE, mk, ZERO_IV);
+        cipher.updateAAD(header);
+        byte[] encrypted = cipher.doFinal(plain);
+
+        return new EncryptedPayload("AES/GCM/NoPadding",
+                Base64.getEncoder().encodeToString(header),
+                Base64.getEncoder().encodeToString(encrypted));
+    }
+
+    // ======================= 받기 =======================
+
+    public synchronized byte[] decrypt(byte[] header, byte[] cipherBytes) throws Exception {
+        start();
+        if (header.length != HEADER_BYTES) throw new GeneralSecurityException("래칫 헤더 길이: " + header.length);
+
+        ByteBuffer h = ByteBuffer.wrap(header);
+        boolean init = (h.get() & FLAG_INIT) != 0;
+        byte[] dh = new byte[PUB_BYTES];
+        h.get(dh);
+        int prevN = h.getInt();
+        int n = h.getInt();
+        if (n < 0 || prevN < 0) throw new GeneralSecurityException("래칫 헤더 번호");
+
+        // 1) 전에 건너뛴 메시지
+        if (!skipped.isEmpty()) {
+            String id = skipId(dh, n);
+            byte[] mk = skipped.get(id);
+            if (mk != null) {
+                byte[] plain = open(new SecretKeySpec(mk, "AES"), header, cipherBytes);
+                Arrays.fill(skipped.remove(id), (byte) 0);
+                return plain;
+            }
+        }
+
+        // 2) 지금 받는 체인
+        if (ckr != null && Arrays.equals(dh, dhr)) {
+            if (n < nr) throw new GeneralSecurityException("이미 받았거나 키를 버린 메시지 (N " + n + ")");
+
+            byte[] ck = ckr.clone();
+            Map<String, byte[]> newSkipped = skipUntil(ck, dh, nr, n, null);
+            byte[] plain = open(chainStep(ck), header, cipherBytes);
+
+            if (newSkipped != null) skipped.putAll(newSkipped);
+            ckr = ck;
+            nr = n + 1;
+            return plain;
+        }
+
+        // 3) 새 래칫 키 → DH 래칫 (INIT이면 responder는 처음부터)
+        boolean restart = init && !initiator && dhr != null;
+        String dhId = Base64.getEncoder().encodeToString(dh);
+        if (init && !initiator && initKeys.containsKey(dhId)) {
+            throw new GeneralSecurityException("이미 지나간 시작 체인");
+        }
+
+        Map<String, byte[]> newSkipped = null;
+        if (!restart && ckr != null) {
+            // 이전 받는 체인에서 아직 안 온 것들 (상대가 PN으로 알려줌)
+            newSkipped = skipUntil(ckr.clone(), dhr, nr, prevN, null);
+        }
+
+        PublicKey theirRatchet = CryptoPool.x25519KeyFactory().generatePublic(new X509EncodedKeySpec(dh));
+        byte[] root = restart ? sharedKey : rk;
+        KeyPair mine = restart ? identity : dhs;
+        byte[] newRk = new byte[KEY_BYTES];
+        byte[] ck = new byte[KEY_BYTES];
+        rootStep(root, EcdhUtil.deriveSharedSecret(mine.getPrivate(), theirRatchet), newRk, ck);
+
+        newSkipped = skipUntil(ck, dh, 0, n, newSkipped);
+        byte[] plain = open(chainStep(ck), header, cipherBytes);
+
+        // ---- 여기서부터 확정 ----
+        if (restart) {
+            clearSkipped();
+            ns = 0;
+        }
+        if (init && !initiator) initKeys.put(dhId, Boolean.TRUE);
+        if (newSkipped != null) skipped.putAll(newSkipped);
+
+        pn = ns;
+        ns = 0;
+        nr = n + 1;
+        dhr = dh;
+        ckr = ck;
+
+        // 내 쪽도 새 래칫 키로 → 다음 답장은 새 보내는 체인
+        dhs = EcdhUtil.generateKeyPair();
+        dhsPub = dhs.getPublic().getEncoded();
+        rk = new byte[KEY_BYTES];
+        cks = new byte[KEY_BYTES];
+        rootStep(newRk, EcdhUtil.deriveSharedSecret(dhs.getPrivate(), theirRatchet), rk, cks);
+        sendInit = false;
+        dhRatchets++;
+        return plain;
+    }
+
+    /**
+     * 상대가 래칫이 아닌 카운터 nonce 메시지를 (재전송 검사를 통과해) 보냈다 = 상대에게 보내는 체인이 없다.
+     * initiator인데 이미 답장을 받은 뒤라면 상대가 상태를 잃은 것 → INIT부터 다시 시작한다.
+     */
+    public synchronized void onPeerWithoutRatchet() throws Exception {
+        if (initiator && started && !sendInit) reset();
+    }
+
+    // ======================= 지표 =======================
+
+    public synchronized boolean isInitiator() {
+        return initiator;
+    }
+
+    public synchronized long getDhRatchets() {
+        return dhRatchets;
+    }
+
+    public synchronized int getSkippedKeys() {
+        return skipped.size();
+    }
+
+    // MAX_SKIPPED_KEYS를 넘어서 버린 건너뛴 키 수
+    public synchronized long getEvictedKeys() {
+        return evicted;
+    }
+
+    // ======================= 저장 =======================
+
+    /**
+     * [버전][flags][내 래칫 개인키 PKCS8][공개키][상대 래칫 키][RK][CKs][CKr][Ns][Nr][PN][INIT 키들]
+     * 아직 한 번도 안 썼으면 null (다시 읽을 때 새로 시작해도 같다)
+     */
+    public synchronized byte[] encodeState() {
+        if (!started) return null;
+        byte[] priv = dhs.getPrivate().getEncoded();
+
+        ByteBuffer b = ByteBuffer.allocate(2 + 2 + priv.length + 1 + dhsPub.length + 1 + PUB_BYTES
+                + 3 * (1 + KEY_BYTES) + 12 + 1 + initKeys.size() * PUB_BYTES);
+        b.put(STATE_VERSION).put(sendInit ? (byte) 1 : 0);
+        b.putShort((short) priv.length).put(priv);
+        putBytes(b, dhsPub);
+        putBytes(b, dhr);
+        putBytes(b, rk);
+        putBytes(b, cks);
+        putBytes(b, ckr);
+        b.putInt(ns).putInt(nr).putInt(pn);
+        b.put((byte) initKeys.size());
+        for (String k : initKeys.keySet()) b.put(Base64.getDecoder().decode(k));
+        return Arrays.copyOf(b.array(), b.position());
+    }
+
+    public static RatchetSession restore(KeyPair identity, PublicKey theirIdentity, byte[] sharedKey,
+                                         ByteBuffer state) throws Exception {
+        RatchetSession r = new RatchetSession(identity, theirIdentity, sharedKey);
+        if (state.get() != STATE_VERSION) throw new GeneralSecurityException("알 수 없는 래칫 상태 버전");
+        r.sendInit = state.get() == 1;
+
+        byte[] priv = new byte[state.getShort()];
+        state.get(priv);
+        PrivateKey dhsPrivate = CryptoPool.x25519KeyFactory().generatePrivate(new PKCS8EncodedKeySpec(priv));
+        r.dhsPub = getBytes(state);
+        PublicKey dhsPublic = CryptoPool.x25519KeyFactory().generatePublic(new X509EncodedKeySpec(r.dhsPub));
+        r.dhs = new KeyPair(dhsPublic, dhsPrivate);
+        Arrays.fill(priv, (byte) 0);
+
+        r.dhr = getBytes(state);
+        r.rk = getBytes(state);
+        r.cks = getBytes(state);
+        r.ckr = getBytes(state);
+        r.ns = state.getInt();
+        r.nr = state.getInt();
+        r.pn = state.getInt();
+        int inits = state.get();
+        for (int i = 0; i < inits; i++) {
+            byte[] k = new byte[PUB_BYTES];
+            state.get(k);
+            r.initKeys.put(Base64.getEncoder().encodeToString(k), Boolean.TRUE);
+        }
+        r.started = true;
+        return r;
+    }
+
+    // ======================= 내부 =======================
+
+    // 처음 쓸 때 시작 (SessionStore에서 읽기만 하고 안 쓰는 세션은 키 생성 비용이 없다)
+    private void start() throws Exception {
+        if (!started) reset();
+    }
+
+    private void reset() throws Exception {
+        clearSkipped();
+        ns = 0;
+        nr = 0;
+        pn = 0;
+        ckr = null;
+        if (initiator) {
+            dhs = EcdhUtil.generateKeyPair();
+            dhr = theirIdentity.getEncoded();
+            rk = new byte[KEY_BYTES];
+            cks = new byte[KEY_BYTES];
+            rootStep(sharedKey, EcdhUtil.deriveSharedSecret(dhs.getPrivate(), theirIdentity), rk, cks);
+            sendInit = true;
+        } else {
+            dhs = identity;
+            dhr = null;
+            rk = sharedKey.clone();
+            cks = null;
+            sendInit = false;
+        }
+        dhsPub = dhs.getPublic().getEncoded();
+        started = true;
+    }
+
+    // RK', CK = HKDF(salt = RK, ikm = DH 출력)
+    private void rootStep(byte[] root, byte[] dhOut, byte[] newRoot, byte[] chain) throws GeneralSecurityException {
+        EcdhUtil.hkdf(root, dhOut, ROOT_INFO, okm, 0, okm.length);
+        System.arraycopy(okm, 0, newRoot, 0, KEY_BYTES);
+        System.arraycopy(okm, KEY_BYTES, chain, 0, KEY_BYTES);
+        Arrays.fill(okm, (byte) 0);
+        Arrays.fill(dhOut, (byte) 0);
+    }
+
+    // ck를 한 칸 앞으로 (제자리), 이번 메시지 키를 돌려준다
+    private SecretKeySpec chainStep(byte[] ck) throws GeneralSecurityException {
+        EcdhUtil.hkdf(ck, CHAIN_IKM, CHAIN_INFO, okm, 0, okm.length);
+        System.arraycopy(okm, 0, ck, 0, KEY_BYTES);
+        SecretKeySpec mk = new SecretKeySpec(okm, KEY_BYTES, KEY_BYTES, "AES");
+        Arrays.fill(okm, (byte) 0);
+        return mk;
+    }
+
+    // ck를 from에서 until 직전까지 밀면서 건너뛴 키를 번호 순서대로 모은다 (아직 skipped에는 안 넣음)
+    private Map<String, byte[]> skipUntil(byte[] ck, byte[] chainKey, int from, int until,
+                                          Map<String, byte[]> into) throws GeneralSecurityException {
+        if (until <= from) return into;
+        if (until - from > MAX_SKIP) {
+            throw new GeneralSecurityException("건너뛸 메시지가 너무 많음 (" + (until - from) + ")");
+        }
+        if (into == null) into = new LinkedHashMap<>();
+        for (int i = from; i < until; i++) {
+            into.put(skipId(chainKey, i), chainStep(ck).getEncoded());
+        }
+        return into;
+    }
+
+    private static byte[] open(SecretKeySpec mk, byte[] header, byte[] cipherBytes) throws GeneralSecurityException {
+        Cipher cipher = CryptoPool.aesGcm();
+        cipher.init(Cipher.DECRYPT_MODE, mk, ZERO_IV);
+        cipher.updateAAD(header);
+        return cipher.doFinal(cipherBytes);
+    }
+
+    private void clearSkipped() {
+        for (byte[] mk : skipped.values()) Arrays.fill(mk, (byte) 0);
+        skipped.clear();
+    }
+
+    private static String skipId(byte[] chainKey, int n) {
+        return Base64.getEncoder().encodeToString(chainKey) + ":" + n;
+    }
+
+    private static void putBytes(ByteBuffer b, byte[] v) {
+        if (v == null) {
+            b.put((byte) 0);
+        } else {
+            b.put((byte) v.length).put(v);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer b) {
+        int len = b.get() & 0xff;
+        if (len == 0) return null;
+        byte[] v = new byte[len];
+        b.get(v);
+        return v;
+    }
+}
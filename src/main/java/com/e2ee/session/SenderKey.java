@@ -0,0 +1,151 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.CryptoPool;
+import com.e2ee.crypto.EncryptedPayload;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 방(그룹) 하나에서 한 사람이 보내는 메시지용 체인 키 (sender key).
+ *
+ *   메시지 키  = HMAC(체인 키, 0x01)
+ *   다음 체인 키 = HMAC(체인 키, 0x02)
+ *
+ * 보내는 쪽은 자기 SenderKey를 멤버마다 1:1 세션(E2eeSession)으로 한 번씩만 나눠 주고,
+ * 그 뒤로는 메시지마다 암호화 한 번 → 같은 암호문 하나를 서버가 모든 멤버에게 릴레이한다.
+ * (멤버가 N명이어도 보내는 쪽 암호화 비용과 올려 보내는 바이트는 그대로)
+ *
+ * nonce(12바이트) = keyId(4) + iteration(8)
+ * 메시지 키가 매번 달라서 nonce가 겹칠 일은 없고, 받는 쪽은 nonce만 보고 어느 키의 몇 번째인지 안다.
+ * 그래서 본문은 1:1 메시지와 같은 "AES/GCM/NoPadding:nonce:cipher" 모양이다.
+ *
+ * nonce는 평문이라 누구나 다음 번호로 가짜 메시지를 만들 수 있으므로,
+ * 받는 쪽 상태(체인 키, 위치, 건너뛴 키)는 복호화(인증)가 통과한 뒤에만 바꾼다. (RatchetSession과 같음)
+ */
+public class SenderKey {
+
+    // 받는 쪽에서 앞질러 건너뛴 메시지 키를 최대 몇 개까지 들고 있을지
+    private static final int MAX_SKIP = 1000;
+
+    private static final byte[] MESSAGE_KEY_SEED = {0x01};
+    private static final byte[] CHAIN_KEY_SEED = {0x02};
+
+    private final int keyId;
+    private long iteration;
+    private byte[] chainKey;
+
+    // 순서가 바뀌어 늦게 온 메시지용 (받는 쪽만 씀, 가장 먼저 넣은 것부터 밀려남)
+    private final LinkedHashMap<Long, SecretKey> skipped = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SecretKey> eldest) {
+            return size() > MAX_SKIP;
+        }
+    };
+
+    public SenderKey(int keyId, long iteration, byte[] chainKey) {
+        this.keyId = keyId;
+        this.iteration = iteration;
+        this.chainKey = chainKey.clone();
+    }
+
+    // 내 새 체인 키 (방에 들어갈 때, 멤버가 나가서 바꿀 때)
+    public static SenderKey generate() {
+        byte[] chainKey = new byte[32];
+        CryptoPool.random().nextBytes(chainKey);
+        return new SenderKey(CryptoPool.random().nextInt(), 0, chainKey);
+    }
+
+    public int getKeyId() {
+        return keyId;
+    }
+
+    public synchronized long getIteration() {
+        return iteration;
+    }
+
+    // 나눠 줄 때: 지금 위치의 체인 키 (이전 메시지는 이 키로 못 푼다)
+    public synchronized byte[] getChainKey() {
+        return chainKey.clone();
+    }
+
+    // ---------------- 보내는 쪽 ----------------
+
+    public synchronized EncryptedPayload encrypt(String plaintext) throws Exception {
+        SecretKey key = messageKey(chainKey);
+        byte[] nonce = nonce(keyId, iteration);
+        advance();
+        return AesGcmUtil.encrypt(plaintext, key, nonce);
+    }
+
+    // ---------------- 받는 쪽 ----------------
+
+    public synchronized String decrypt(EncryptedPayload payload) throws Exception {
+        ByteBuffer nonce = ByteBuffer.wrap(Base64.getDecoder().decode(payload.getNonceBase64()));
+        if (nonce.remaining() != 12 || nonce.getInt() != keyId) {
+            throw new IllegalArgumentException("다른 sender key로 암호화된 메시지");
+        }
+        long n = nonce.getLong();
+
+        // 늦게 온 것: 인증이 통과해야 그 키를 버린다
+        if (n < iteration) {
+            SecretKey key = skipped.get(n);
+            if (key == null) throw new IllegalArgumentException("이미 받았거나 너무 오래된 메시지: " + n);
+            String plain = AesGcmUtil.decrypt(payload, key);
+            skipped.remove(n);
+            return plain;
+        }
+
+        // 앞의 것: 복사본으로 n까지 밀어 보고, 인증이 통과하면 그때 반영
+        if (n - iteration > MAX_SKIP) throw new IllegalArgumentException("너무 많이 건너뜀: " + n);
+        byte[] ck = chainKey;
+        Map<Long, SecretKey> newSkipped = null;
+        for (long i = iteration; i < n; i++) {
+            if (newSkipped == null) newSkipped = new LinkedHashMap<>();
+            newSkipped.put(i, messageKey(ck));
+            ck = hmac(ck, CHAIN_KEY_SEED);
+        }
+        String plain = AesGcmUtil.decrypt(payload, messageKey(ck));
+
+        if (newSkipped != null) skipped.putAll(newSkipped);
+        chainKey = hmac(ck, CHAIN_KEY_SEED);
+        iteration = n + 1;
+        return plain;
+    }
+
+    // 받는 쪽이 sender key 식별자만 먼저 볼 때
+    public static int keyIdOf(EncryptedPayload payload) {
+        return ByteBuffer.wrap(Base64.getDecoder().decode(payload.getNonceBase64())).getInt();
+    }
+
+    // ---------------- 내부 ----------------
+
+    private void advance() {
+        chainKey = hmac(chainKey, CHAIN_KEY_SEED);
+        iteration++;
+    }
+
+    private static SecretKey messageKey(byte[] chainKey) {
+        return new SecretKeySpec(hmac(chainKey, MESSAGE_KEY_SEED), "AES");
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = CryptoPool.hmacSha256();
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (java.security.InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] nonce(int keyId, long iteration) {
+        return ByteBuffer.allocate(12).putInt(keyId).putLong(iteration).array();
+    }
+}
@@ -0,0 +1,126 @@
+package com.e2ee.client.store;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.session.E2eeSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private UnlockedVault vault;
+    private KeyPair alice;
+    private KeyPair bob;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vault = new UnlockedVault(new byte[32], 0);
+        alice = EcdhUtil.generateKeyPair();
+        bob = EcdhUtil.generateKeyPair();
+    }
+
+    @AfterEach
+    void tearDown() {
+        vault.close();
+    }
+
+    @Test
+    void replayWindowSurvivesReopen() throws Exception {
+        E2eeSession fromAlice = new E2eeSession(alice, bob.getPublic(),
+                E2eeSession.create(alice, bob.getPublic()).getAesKey(), E2eeSession.NonceMode.COUNTER, 1L << 32);
+        EncryptedPayload m = fromAlice.encrypt("once");
+
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            store.put("alice", E2eeSession.createRatcheting(bob, alice.getPublic()));
+            assertEquals("once", store.get("alice").decrypt(m));
+            store.save("alice");
+        }
+
+        // 다시 켜도 같은 메시지는 거절
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            E2eeSession s = store.get("alice");
+            assertThrows(GeneralSecurityException.class, () -> s.decrypt(m));
+            assertEquals("twice", s.decrypt(fromAlice.encrypt("twice")));
+        }
+    }
+
+    @Test
+    void savingOnEveryMessageCompactsWithoutReopening() throws Exception {
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            store.put("alice", E2eeSession.createRatcheting(bob, alice.getPublic()));
+            store.put("carol", E2eeSession.createRatcheting(bob, EcdhUtil.generateKeyPair().getPublic()));
+            E2eeSession s = store.get("alice");
+            for (int i = 0; i < 3000; i++) {
+                s.encrypt("m" + i);
+                store.save("alice");
+            }
+            // 2 * 2 + 1000을 넘을 때마다 살아 있는 2건으로 줄어든다
+            assertTrue(store.getRecords() <= 2 * 2 + 1000, "records=" + store.getRecords());
+            assertEquals(2, store.size());
+        }
+
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            assertNotNull(store.get("alice"));
+            assertNotNull(store.get("carol"));
+        }
+    }
+
+    @Test
+    void tornTailIsCutAndEarlierRecordsStillLoad() throws Exception {
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            store.put("alice", E2eeSession.createRatcheting(bob, alice.getPublic()));
+        }
+        Path file = dir.resolve("sessions.dat");
+        long good = Files.size(file);
+
+        // 쓰다가 죽은 레코드: 머리는 있는데 본문이 모자람
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.allocate(32 + 4 + 10).put(new byte[32]).putInt(500).flip());
+        }
+
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            assertEquals(good, Files.size(file));
+            assertNotNull(store.get("alice"));
+            store.put("carol", E2eeSession.createRatcheting(bob, EcdhUtil.generateKeyPair().getPublic()));
+        }
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            assertEquals(2, store.size());
+            assertNotNull(store.get("carol"));
+        }
+    }
+
+    @Test
+    void hasKeyMatchesOnlyTheSamePeerKeyAndPutKeepsTheRunningSession() throws Exception {
+        try (SessionStore store = new SessionStore(dir, vault, bob, 16)) {
+            assertFalse(store.hasKey("alice", alice.getPublic()));
+            E2eeSession s = E2eeSession.createRatcheting(bob, alice.getPublic());
+            store.put("alice", s);
+
+            assertTrue(store.hasKey("alice", alice.getPublic()));
+            assertFalse(store.hasKey("alice", EcdhUtil.generateKeyPair().getPublic()));
+
+            store.put("alice", E2eeSession.createRatcheting(bob, alice.getPublic()));
+            assertSame(s, store.get("alice"));
+        }
+    }
+}
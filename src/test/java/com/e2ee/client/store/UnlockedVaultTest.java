@@ -0,0 +1,83 @@
+package com.e2ee.client.store;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnlockedVaultTest {
+
+    private static final byte[] DATA = "secret".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void lockOverwritesKeyAndSubKeysWithZeros() throws Exception {
+        byte[] k = new byte[32];
+        Arrays.fill(k, (byte) 7);
+        UnlockedVault vault = new UnlockedVault(k, 0);
+
+        // 부른 쪽이 자기 배열을 지워도 보관소는 복사본으로 계속 쓴다
+        Arrays.fill(k, (byte) 0);
+        byte[] enc = vault.encrypt("session-enc", DATA, null);
+        assertArrayEquals(DATA, vault.decrypt("session-enc", enc, null));
+        vault.mac("session-index", DATA);
+
+        byte[] key = field(vault, "key");
+        Map<String, byte[]> subKeys = field(vault, "subKeys");
+        List<byte[]> held = new ArrayList<>(subKeys.values());
+        held.add(key);
+        assertEquals(3, held.size());
+
+        vault.lock();
+        assertTrue(vault.isLocked());
+        for (byte[] b : held) assertArrayEquals(new byte[b.length], b);
+        assertThrows(IllegalStateException.class, () -> vault.encrypt("session-enc", DATA, null));
+        assertThrows(IllegalStateException.class, () -> vault.mac("session-index", DATA));
+        vault.close();
+    }
+
+    @Test
+    void locksItselfAfterIdle() throws Exception {
+        try (UnlockedVault vault = new UnlockedVault(new byte[32], 50)) {
+            vault.encrypt(DATA);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!vault.isLocked()) {
+                assertTrue(System.currentTimeMillis() < deadline, "5초 안에 잠기지 않음");
+                Thread.sleep(10);
+            }
+            assertThrows(IllegalStateException.class, () -> vault.encrypt(DATA));
+        }
+    }
+
+    @Test
+    void unlockWithPasswordBringsBackTheSameKey() throws Exception {
+        try (UnlockedVault vault = UnlockedVault.unlock("pw", 0)) {
+            byte[] enc = vault.encrypt(DATA);
+            vault.lock();
+
+            vault.unlock("wrong");
+            assertFalse(vault.isLocked());
+            assertThrows(AEADBadTagException.class, () -> vault.decrypt(enc));
+
+            vault.unlock("pw");
+            assertArrayEquals(DATA, vault.decrypt(enc));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T field(Object o, String name) throws ReflectiveOperationException {
+        Field f = o.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        return (T) f.get(o);
+    }
+}
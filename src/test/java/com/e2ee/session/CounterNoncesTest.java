@@ -0,0 +1,101 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EncryptedPayload;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CounterNoncesTest {
+
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @Test
+    void replayIsRejectedAcrossRestore() throws Exception {
+        CounterNonces alice = new CounterNonces(KEY, 0);
+        CounterNonces bob = new CounterNonces(KEY, 1);
+
+        EncryptedPayload m = alice.encrypt(bytes("hello"));
+        assertArrayEquals(bytes("hello"), open(bob, m, true));
+        assertThrows(GeneralSecurityException.class, () -> open(bob, m, true));
+
+        // 다시 켠 것처럼: 저장한 상태로 새 객체
+        CounterNonces restarted = restore(bob.encodeState(), 1);
+        assertThrows(GeneralSecurityException.class, () -> open(restarted, m, true));
+
+        // 같은 epoch의 다음 메시지는 그대로 받는다
+        assertArrayEquals(bytes("next"), open(restarted, alice.encrypt(bytes("next")), true));
+    }
+
+    @Test
+    void evictedEpochIsNotRebuiltEvenAfterRestore() throws Exception {
+        // 메시지마다 새 epoch
+        CounterNonces alice = new CounterNonces(KEY, 1, 0);
+        CounterNonces bob = new CounterNonces(KEY, 1);
+
+        List<EncryptedPayload> sent = new ArrayList<>();
+        for (int i = 0; i <= CounterNonces.MAX_PEER_EPOCHS; i++) {
+            EncryptedPayload m = alice.encrypt(bytes("m" + i));
+            sent.add(m);
+            open(bob, m, true);
+        }
+
+        // 첫 epoch는 밀려났다 → 창을 새로 만들지 않고 거절
+        assertThrows(GeneralSecurityException.class, () -> open(bob, sent.get(0), true));
+        CounterNonces restarted = restore(bob.encodeState(), 1);
+        assertThrows(GeneralSecurityException.class, () -> open(restarted, sent.get(0), true));
+        assertThrows(GeneralSecurityException.class, () -> open(restarted, sent.get(1), true));
+
+        // 새로 만든 epoch는 받는다
+        assertArrayEquals(bytes("fresh"), open(restarted, alice.encrypt(bytes("fresh")), true));
+    }
+
+    @Test
+    void reflectedOwnMessageIsRejectedButStillReadableFromHistory() throws Exception {
+        CounterNonces alice = new CounterNonces(KEY, 0);
+
+        EncryptedPayload mine = alice.encrypt(bytes("to bob"));
+        assertThrows(GeneralSecurityException.class, () -> open(alice, mine, true));
+        assertArrayEquals(bytes("to bob"), open(alice, mine, false));
+    }
+
+    @Test
+    void epochsOfBothSidesNeverCollide() throws Exception {
+        CounterNonces alice = new CounterNonces(KEY, 1, 0);
+        CounterNonces bob = new CounterNonces(KEY, 1, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, epochOf(alice.encrypt(bytes("a"))) & 1);
+            assertEquals(1, epochOf(bob.encrypt(bytes("b"))) & 1);
+        }
+    }
+
+    private static CounterNonces restore(byte[] state, int side) throws GeneralSecurityException {
+        CounterNonces n = new CounterNonces(KEY, side);
+        n.restoreState(ByteBuffer.wrap(state));
+        return n;
+    }
+
+    private static byte[] open(CounterNonces n, EncryptedPayload p, boolean checkReplay) throws GeneralSecurityException {
+        return n.decrypt(Base64.getDecoder().decode(p.getNonceBase64()),
+                Base64.getDecoder().decode(p.getCipherBase64()), checkReplay);
+    }
+
+    private static long epochOf(EncryptedPayload p) {
+        return ByteBuffer.wrap(Base64.getDecoder().decode(p.getNonceBase64())).getLong();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
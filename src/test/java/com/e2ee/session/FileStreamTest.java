@@ -0,0 +1,100 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EncryptedPayload;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileStreamTest {
+
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+    private static final int CHUNK = 4096;
+
+    @Test
+    void roundTripsPartialExactAndEmptyFiles() throws Exception {
+        for (int size : new int[]{10_000, 2 * CHUNK, 0}) {
+            byte[] data = data(size);
+            byte[] id = FileStream.newFileId();
+            List<EncryptedPayload> chunks = encrypt(data, id);
+            assertEquals(Math.max(1, (size + CHUNK - 1) / CHUNK), chunks.size());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FileStream.Decryptor d = new FileStream.Decryptor(out, KEY, id);
+            for (int i = 0; i < chunks.size(); i++) {
+                assertEquals(i == chunks.size() - 1, d.accept(chunks.get(i)));
+            }
+            assertTrue(d.isDone());
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    @Test
+    void reorderedChunkIsRejectedAndStopsTheFile() throws Exception {
+        byte[] id = FileStream.newFileId();
+        List<EncryptedPayload> chunks = encrypt(data(3 * CHUNK), id);
+
+        FileStream.Decryptor d = new FileStream.Decryptor(new ByteArrayOutputStream(), KEY, id);
+        assertThrows(GeneralSecurityException.class, () -> d.accept(chunks.get(1)));
+        // 한 번 실패하면 그 파일은 더 받지 않는다
+        assertThrows(IllegalStateException.class, () -> d.accept(chunks.get(0)));
+    }
+
+    @Test
+    void truncationIsDetected() throws Exception {
+        byte[] id = FileStream.newFileId();
+        List<EncryptedPayload> chunks = encrypt(data(3 * CHUNK), id);
+
+        // 마지막 조각이 오지 않음 → 끝나지 않은 채로 남는다
+        FileStream.Decryptor cut = new FileStream.Decryptor(new ByteArrayOutputStream(), KEY, id);
+        assertFalse(cut.accept(chunks.get(0)));
+        assertFalse(cut.accept(chunks.get(1)));
+        assertFalse(cut.isDone());
+
+        // 중간 조각에 마지막 표시를 붙여 일찍 끝내려 해도 인증이 실패한다
+        byte[] nonce = Base64.getDecoder().decode(chunks.get(1).getNonceBase64());
+        nonce[nonce.length - 1] = 1;
+        EncryptedPayload forged = new EncryptedPayload(chunks.get(1).getAlgorithm(),
+                Base64.getEncoder().encodeToString(nonce), chunks.get(1).getCipherBase64());
+        FileStream.Decryptor d = new FileStream.Decryptor(new ByteArrayOutputStream(), KEY, id);
+        d.accept(chunks.get(0));
+        assertThrows(AEADBadTagException.class, () -> d.accept(forged));
+        assertFalse(d.isDone());
+    }
+
+    @Test
+    void chunkOfAnotherFileIsRejected() throws Exception {
+        List<EncryptedPayload> other = encrypt(data(CHUNK), FileStream.newFileId());
+
+        FileStream.Decryptor d = new FileStream.Decryptor(new ByteArrayOutputStream(), KEY, FileStream.newFileId());
+        assertThrows(AEADBadTagException.class, () -> d.accept(other.get(0)));
+    }
+
+    private static List<EncryptedPayload> encrypt(byte[] data, byte[] id) throws Exception {
+        FileStream.Encryptor e = new FileStream.Encryptor(new ByteArrayInputStream(data), KEY, id, CHUNK);
+        List<EncryptedPayload> chunks = new ArrayList<>();
+        for (EncryptedPayload c; (c = e.next()) != null; ) chunks.add(c);
+        assertEquals(data.length, e.getBytes());
+        return chunks;
+    }
+
+    private static byte[] data(int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,141 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RatchetSessionTest {
+
+    private KeyPair a;
+    private KeyPair b;
+    private byte[] shared;
+
+    // initiator(신원 공개키가 작은 쪽) / responder
+    private RatchetSession init;
+    private RatchetSession resp;
+    private KeyPair initId;
+    private KeyPair respId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        a = EcdhUtil.generateKeyPair();
+        b = EcdhUtil.generateKeyPair();
+        shared = E2eeSession.create(a, b.getPublic()).getAesKey().getEncoded();
+        RatchetSession x = new RatchetSession(a, b.getPublic(), shared);
+        RatchetSession y = new RatchetSession(b, a.getPublic(), shared);
+        init = x.isInitiator() ? x : y;
+        resp = x.isInitiator() ? y : x;
+        initId = x.isInitiator() ? a : b;
+        respId = x.isInitiator() ? b : a;
+    }
+
+    @Test
+    void outOfOrderWithinAChainAndAcrossADhRatchet() throws Exception {
+        assertFalse(resp.canSend());
+
+        List<EncryptedPayload> first = send(init, "a", 5);
+        assertEquals("a4", open(resp, first.get(4)));
+        assertEquals("a1", open(resp, first.get(1)));
+        assertEquals(3, resp.getSkippedKeys());
+
+        // 답장 → initiator 쪽 DH 래칫, 그 뒤 새 체인
+        assertTrue(resp.canSend());
+        assertEquals("r0", open(init, send(resp, "r", 1).get(0)));
+        List<EncryptedPayload> second = send(init, "b", 2);
+
+        // 새 체인이 먼저 오고 이전 체인의 늦은 것이 뒤따라온다
+        assertEquals("b1", open(resp, second.get(1)));
+        assertEquals("a0", open(resp, first.get(0)));
+        assertEquals("b0", open(resp, second.get(0)));
+        assertEquals("a3", open(resp, first.get(3)));
+        assertEquals("a2", open(resp, first.get(2)));
+        assertEquals(0, resp.getSkippedKeys());
+
+        // 쓴 키는 버렸으므로 같은 메시지는 다시 안 풀린다
+        assertThrows(GeneralSecurityException.class, () -> open(resp, first.get(2)));
+        assertThrows(GeneralSecurityException.class, () -> open(resp, second.get(1)));
+    }
+
+    @Test
+    void gapAboveMaxSkipIsRejectedWithoutChangingState() throws Exception {
+        List<EncryptedPayload> sent = send(init, "m", RatchetSession.MAX_SKIP + 2);
+
+        assertThrows(GeneralSecurityException.class, () -> open(resp, sent.get(RatchetSession.MAX_SKIP + 1)));
+        assertEquals(0, resp.getSkippedKeys());
+
+        // 딱 MAX_SKIP개 건너뛰는 것은 된다
+        assertEquals("m" + RatchetSession.MAX_SKIP, open(resp, sent.get(RatchetSession.MAX_SKIP)));
+        assertEquals(RatchetSession.MAX_SKIP, resp.getSkippedKeys());
+        assertEquals("m0", open(resp, sent.get(0)));
+    }
+
+    @Test
+    void skippedKeysAreCappedOldestFirst() throws Exception {
+        int n = 800;
+        List<EncryptedPayload> first = send(init, "a", n + 1);
+        open(resp, first.get(n));
+        open(init, send(resp, "r", 1).get(0));
+        List<EncryptedPayload> second = send(init, "b", n + 1);
+        open(resp, second.get(n));
+
+        // 800 + 800개 건너뜀 → 1000개만 남고 먼저 넣은 600개는 버림
+        assertEquals(RatchetSession.MAX_SKIPPED_KEYS, resp.getSkippedKeys());
+        assertEquals(2L * n - RatchetSession.MAX_SKIPPED_KEYS, resp.getEvictedKeys());
+        assertThrows(GeneralSecurityException.class, () -> open(resp, first.get(0)));
+        assertThrows(GeneralSecurityException.class, () -> open(resp, first.get(599)));
+        assertEquals("a600", open(resp, first.get(600)));
+        assertEquals("a799", open(resp, first.get(n - 1)));
+        assertEquals("b0", open(resp, second.get(0)));
+    }
+
+    @Test
+    void encodedStateRestoresBothSides() throws Exception {
+        assertNull(new RatchetSession(a, b.getPublic(), shared).encodeState());
+
+        open(resp, send(init, "a", 1).get(0));
+        open(init, send(resp, "r", 1).get(0));
+
+        RatchetSession init2 = RatchetSession.restore(initId, respId.getPublic(), shared,
+                ByteBuffer.wrap(init.encodeState()));
+        RatchetSession resp2 = RatchetSession.restore(respId, initId.getPublic(), shared,
+                ByteBuffer.wrap(resp.encodeState()));
+        assertTrue(init2.isInitiator());
+
+        // 다시 읽은 쪽끼리 양방향으로 계속 (DH 래칫도 두 번 더)
+        for (int i = 0; i < 3; i++) {
+            assertEquals("x" + i, open(resp2, init2.encrypt(bytes("x" + i))));
+            assertEquals("y" + i, open(init2, resp2.encrypt(bytes("y" + i))));
+        }
+    }
+
+    private static List<EncryptedPayload> send(RatchetSession r, String prefix, int count) throws Exception {
+        List<EncryptedPayload> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) out.add(r.encrypt(bytes(prefix + i)));
+        return out;
+    }
+
+    private static String open(RatchetSession r, EncryptedPayload p) throws Exception {
+        byte[] plain = r.decrypt(Base64.getDecoder().decode(p.getNonceBase64()),
+                Base64.getDecoder().decode(p.getCipherBase64()));
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
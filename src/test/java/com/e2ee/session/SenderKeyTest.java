@@ -0,0 +1,107 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EncryptedPayload;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SenderKeyTest {
+
+    @Test
+    void lateMessagesUseSkippedKeysOnlyOnce() throws Exception {
+        SenderKey mine = SenderKey.generate();
+        SenderKey theirs = new SenderKey(mine.getKeyId(), mine.getIteration(), mine.getChainKey());
+
+        List<EncryptedPayload> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) sent.add(mine.encrypt("m" + i));
+
+        // 4번이 먼저, 나머지는 뒤늦게 (순서도 뒤섞여서)
+        assertEquals("m4", theirs.decrypt(sent.get(4)));
+        assertEquals("m1", theirs.decrypt(sent.get(1)));
+        assertEquals("m0", theirs.decrypt(sent.get(0)));
+        assertEquals("m3", theirs.decrypt(sent.get(3)));
+        assertEquals("m2", theirs.decrypt(sent.get(2)));
+
+        // 같은 것을 다시 받으면 키가 없다
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(sent.get(1)));
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(sent.get(4)));
+    }
+
+    @Test
+    void forgedMessagesDoNotMoveTheChain() throws Exception {
+        SenderKey mine = SenderKey.generate();
+        SenderKey theirs = new SenderKey(mine.getKeyId(), mine.getIteration(), mine.getChainKey());
+
+        EncryptedPayload m0 = mine.encrypt("m0");
+        EncryptedPayload m1 = mine.encrypt("m1");
+        EncryptedPayload m2 = mine.encrypt("m2");
+
+        // nonce는 평문 → 다음 번호(0)와 앞선 번호(2)로 아무 암호문이나 보낼 수 있다
+        assertThrows(GeneralSecurityException.class, () -> theirs.decrypt(forge(m0)));
+        assertThrows(GeneralSecurityException.class, () -> theirs.decrypt(forge(m2)));
+        assertEquals(0, theirs.getIteration());
+
+        assertEquals("m2", theirs.decrypt(m2));
+
+        // 건너뛴 키(1)도 가짜로는 지워지지 않는다
+        assertThrows(GeneralSecurityException.class, () -> theirs.decrypt(forge(m1)));
+        assertEquals("m1", theirs.decrypt(m1));
+        assertEquals("m0", theirs.decrypt(m0));
+    }
+
+    @Test
+    void skippedKeysAreEvictedOldestFirst() throws Exception {
+        SenderKey mine = SenderKey.generate();
+        SenderKey theirs = new SenderKey(mine.getKeyId(), mine.getIteration(), mine.getChainKey());
+
+        // 1000개 건너뛰고, 다시 1000개 건너뜀 → 처음 1000개가 밀려난다
+        List<EncryptedPayload> sent = new ArrayList<>();
+        for (int i = 0; i <= 2001; i++) sent.add(mine.encrypt("m" + i));
+        assertEquals("m1000", theirs.decrypt(sent.get(1000)));
+        assertEquals("m2001", theirs.decrypt(sent.get(2001)));
+
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(sent.get(0)));
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(sent.get(999)));
+        assertEquals("m1001", theirs.decrypt(sent.get(1001)));
+        assertEquals("m2000", theirs.decrypt(sent.get(2000)));
+    }
+
+    @Test
+    void memberWhoJoinsLaterCannotReadEarlierMessages() throws Exception {
+        SenderKey mine = SenderKey.generate();
+        EncryptedPayload before = mine.encrypt("before");
+
+        // 지금 위치의 체인 키를 나눠 받음
+        SenderKey late = new SenderKey(mine.getKeyId(), mine.getIteration(), mine.getChainKey());
+        assertEquals("after", late.decrypt(mine.encrypt("after")));
+        assertThrows(IllegalArgumentException.class, () -> late.decrypt(before));
+    }
+
+    @Test
+    void rejectsTooLargeGapAndForeignKeyId() throws Exception {
+        SenderKey mine = SenderKey.generate();
+        SenderKey theirs = new SenderKey(mine.getKeyId(), mine.getIteration(), mine.getChainKey());
+
+        EncryptedPayload far = null;
+        for (int i = 0; i <= 1001; i++) far = mine.encrypt("m" + i);
+        EncryptedPayload tooFar = far;
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(tooFar));
+
+        SenderKey other = SenderKey.generate();
+        assertThrows(IllegalArgumentException.class, () -> theirs.decrypt(other.encrypt("x")));
+    }
+
+    // 같은 nonce에 아무 암호문
+    private static EncryptedPayload forge(EncryptedPayload real) {
+        byte[] junk = Base64.getDecoder().decode(real.getCipherBase64());
+        junk[0] ^= 1;
+        return new EncryptedPayload(real.getAlgorithm(), real.getNonceBase64(),
+                Base64.getEncoder().encodeToString(junk));
+    }
+}